@@ -78,7 +78,11 @@ public @interface Aspect {
     /**
      * 异常
      */
-    CATCHING
+    CATCHING,
+    /**
+     * 最终，无论是否异常或前面的拦截是否中断都会执行
+     */
+    FINALLY
   }
 
 }
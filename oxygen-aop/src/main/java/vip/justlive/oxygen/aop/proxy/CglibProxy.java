@@ -56,20 +56,39 @@ public class CglibProxy implements MethodInterceptor {
   public Object intercept(Object obj, Method method, Object[] args, MethodProxy methodProxy)
       throws Throwable {
     Invocation invocation = new Invocation(obj, method, args);
-    boolean interrupted = doIntercept(TYPE.BEFORE, method, invocation);
     try {
-      if (interrupted && log.isDebugEnabled()) {
-        log.debug("aop intercepted and return an updated value before invoke super method {}",
-            invocation);
-      } else if (!interrupted) {
-        invocation.setReturnValue(methodProxy.invokeSuper(obj, args));
+      boolean interrupted = doIntercept(TYPE.BEFORE, method, invocation);
+      try {
+        if (interrupted && log.isDebugEnabled()) {
+          log.debug("aop intercepted and return an updated value before invoke super method {}",
+              invocation);
+        } else if (!interrupted) {
+          invocation.setReturnValue(methodProxy.invokeSuper(obj, args));
+        }
+      } catch (Throwable e) {
+        doIntercept(TYPE.CATCHING, method, invocation);
+        throw e;
+      }
+      doIntercept(TYPE.AFTER, method, invocation);
+      return invocation.getReturnValue();
+    } finally {
+      doFinally(method, invocation);
+    }
+  }
+
+  private void doFinally(Method method, Invocation invocation) {
+    List<Interceptor> interceptors = ProxyStore.get(TYPE.FINALLY, method);
+    if (interceptors == null) {
+      return;
+    }
+    // 逐个执行，不因某个拦截中断或异常而跳过其余拦截
+    for (Interceptor interceptor : interceptors) {
+      try {
+        interceptor.intercept(invocation);
+      } catch (Exception e) {
+        log.error("aop finally interceptor error {}", invocation, e);
       }
-    } catch (Exception e) {
-      doIntercept(TYPE.CATCHING, method, invocation);
-      throw e;
     }
-    doIntercept(TYPE.AFTER, method, invocation);
-    return invocation.getReturnValue();
   }
 
   private boolean doIntercept(TYPE type, Method method, Invocation invocation) {
@@ -13,105 +13,300 @@
  */
 package vip.justlive.oxygen.cache;
 
+import java.lang.reflect.Method;
 import java.util.Arrays;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import lombok.RequiredArgsConstructor;
 import lombok.ToString;
+import lombok.extern.slf4j.Slf4j;
 import vip.justlive.oxygen.aop.Invocation;
 import vip.justlive.oxygen.aop.annotation.Aspect;
 import vip.justlive.oxygen.aop.annotation.Aspect.TYPE;
 import vip.justlive.oxygen.cache.annotation.Cacheable;
 import vip.justlive.oxygen.cache.generator.ArgsKeyGenerator;
-import vip.justlive.oxygen.cache.generator.DefaultKeyGenerator;
 import vip.justlive.oxygen.cache.store.Cache;
-import vip.justlive.oxygen.cache.store.LocalCacheImpl;
+import vip.justlive.oxygen.core.util.ExpiringMap;
+import vip.justlive.oxygen.core.util.MoreObjects;
 import vip.justlive.oxygen.core.util.Strings;
+import vip.justlive.oxygen.core.util.ThreadUtils;
 import vip.justlive.oxygen.ioc.annotation.Bean;
 import vip.justlive.oxygen.ioc.annotation.Inject;
 
 /**
  * cache切面
+ * <br>
+ * 同一个key并发未命中时只有一个线程执行加载，其余线程等待其结果，加载失败或等待超时时各自加载；
+ * 配置了refreshAfter时在过期前异步刷新，刷新期间继续返回旧值
  *
  * @author wubo
  */
+@Slf4j
 @Bean
 public class CacheAspect {
 
-  static final Cache CACHE = new LocalCacheImpl("Aspect-Cache");
-  private final DefaultKeyGenerator defaultKeyGenerator;
+  /**
+   * 方法的缓存元数据，首次调用时解析
+   */
+  static final Map<Method, Meta> METAS = new ConcurrentHashMap<>(16);
+  /**
+   * 加载失败标识
+   */
+  private static final Object FAILED = new Object();
+  /**
+   * 当前线程正在刷新的缓存
+   */
+  private static final ThreadLocal<String> REFRESH = new ThreadLocal<>();
+  /**
+   * 等待其他线程加载的最长时间，超时后自行加载
+   */
+  private static final long LOAD_WAIT_TIMEOUT = Long.getLong("cache.loadWaitTimeout", 30000L);
+  /**
+   * 异步刷新线程池，队列满时放弃本次刷新
+   */
+  private static final ThreadPoolExecutor REFRESHER = ThreadUtils
+      .newThreadPool(Integer.getInteger("cache.refreshThreads", 4),
+          Integer.getInteger("cache.refreshThreads", 4), 60,
+          Integer.getInteger("cache.refreshQueueSize", 1024), "cache-refresh-%d");
+
+  private final ConcurrentHashMap<String, Loading> loadings = new ConcurrentHashMap<>(16);
+  private final Set<String> refreshing = ConcurrentHashMap.newKeySet();
+  private final ExpiringMap<String, Long> loadedAt = ExpiringMap.<String, Long>builder()
+      .name("Aspect-Cache-Loaded").maxSize(65536).build();
   private final ArgsKeyGenerator argsKeyGenerator;
 
   @Inject
-  public CacheAspect(DefaultKeyGenerator defaultKeyGenerator, ArgsKeyGenerator argsKeyGenerator) {
-    this.defaultKeyGenerator = defaultKeyGenerator;
+  public CacheAspect(ArgsKeyGenerator argsKeyGenerator) {
     this.argsKeyGenerator = argsKeyGenerator;
   }
 
   @Aspect(annotation = Cacheable.class, type = TYPE.BEFORE)
   public boolean cacheRead(Invocation invocation) {
     Ctx ctx = parse(invocation);
-    Cache cache = Cache.cache(ctx.cacheName);
+    if (isRefreshing(ctx)) {
+      return true;
+    }
+    Cache cache = Cache.cache(ctx.meta.cacheName);
     Object obj = cache.get(ctx.key);
     if (obj != null) {
+      refreshIfNecessary(ctx, invocation);
       invocation.setReturnValue(obj);
       return false;
     }
-    return true;
+
+    Loading loading = new Loading(Thread.currentThread());
+    Loading exist = loadings.putIfAbsent(ctx.id(), loading);
+    if (exist == null) {
+      // 抢到加载权后再检查一次，避免在上一次加载完成的间隙重复加载
+      obj = cache.get(ctx.key);
+      if (obj != null) {
+        invocation.setReturnValue(obj);
+        return false;
+      }
+      return true;
+    }
+    if (exist.owner == Thread.currentThread()) {
+      return true;
+    }
+    obj = exist.await();
+    if (obj == FAILED) {
+      return true;
+    }
+    invocation.setReturnValue(obj);
+    return false;
   }
 
   @Aspect(annotation = Cacheable.class, type = TYPE.AFTER)
   public boolean cacheWrite(Invocation invocation) {
     Ctx ctx = parse(invocation);
-    Object obj = Cache.cache(ctx.cacheName).get(ctx.key);
-    if (!Objects.equals(obj, invocation.getReturnValue())) {
-      if (ctx.duration > 0) {
-        Cache.cache(ctx.cacheName)
-            .set(ctx.key, invocation.getReturnValue(), ctx.duration, ctx.unit);
+    Meta meta = ctx.meta;
+    Object value = invocation.getReturnValue();
+    boolean refresh = isRefreshing(ctx);
+    Cache cache = Cache.cache(meta.cacheName);
+    Object obj = cache.get(ctx.key);
+    if (refresh || !Objects.equals(obj, value)) {
+      if (meta.duration > 0) {
+        cache.set(ctx.key, value, meta.duration, meta.unit);
       } else {
-        Cache.cache(ctx.cacheName).set(ctx.key, invocation.getReturnValue());
+        cache.set(ctx.key, value);
       }
     }
+    Loading loading = loadings.isEmpty() ? null : loadings.get(ctx.id());
+    if (loading != null && loading.owner == Thread.currentThread()) {
+      markLoaded(ctx);
+      loadings.remove(ctx.id(), loading);
+      loading.future.complete(value);
+    } else if (refresh) {
+      markLoaded(ctx);
+    }
     return true;
   }
 
-  private Ctx parse(Invocation invocation) {
-    String cacheKey = String.join(Strings.COLON, invocation.getTarget().getClass().getName(),
-        invocation.getMethod().getName(), Arrays.deepToString(invocation.getArgs()));
-    Ctx ctx = CACHE.get(cacheKey, Ctx.class);
-    if (ctx != null) {
-      return ctx;
-    }
-    ctx = new Ctx();
-    Cacheable cacheable = invocation.getMethod().getAnnotation(Cacheable.class);
-    String cacheName = cacheable.value();
-    if (cacheName.length() == 0) {
-      cacheName = Cache.class.getSimpleName();
-    }
-    String key = cacheable.key();
-    if (key.length() == 0) {
-      key = defaultKeyGenerator
-          .generate(invocation.getTarget(), invocation.getMethod(), invocation.getArgs())
-          .toString();
+  @Aspect(annotation = Cacheable.class, type = TYPE.FINALLY)
+  public boolean cacheFinally(Invocation invocation) {
+    if (loadings.isEmpty()) {
+      return true;
+    }
+    Ctx ctx = parse(invocation);
+    Loading loading = loadings.get(ctx.id());
+    if (loading != null && loading.owner == Thread.currentThread()) {
+      // 加载异常或未写入缓存时唤醒等待线程各自执行
+      loadings.remove(ctx.id(), loading);
+      loading.future.complete(FAILED);
+    }
+    return true;
+  }
+
+  private boolean isRefreshing(Ctx ctx) {
+    String id = REFRESH.get();
+    return id != null && id.equals(ctx.id());
+  }
+
+  private void markLoaded(Ctx ctx) {
+    Meta meta = ctx.meta;
+    if (meta.refreshAfter <= 0) {
+      return;
+    }
+    if (meta.duration > 0) {
+      loadedAt.put(ctx.id(), System.currentTimeMillis(), meta.duration, meta.unit);
     } else {
-      key = argsKeyGenerator
-          .generate(invocation.getTarget(), invocation.getMethod(), key, invocation.getArgs())
-          .toString();
-    }
-    ctx.cacheName = cacheName;
-    ctx.key = key;
-    ctx.duration = cacheable.duration();
-    ctx.unit = cacheable.timeUnit();
-    CACHE.set(cacheKey, ctx, 10, TimeUnit.MINUTES);
-    return ctx;
+      loadedAt.put(ctx.id(), System.currentTimeMillis());
+    }
+  }
+
+  private void refreshIfNecessary(Ctx ctx, Invocation invocation) {
+    if (ctx.meta.refreshAfter <= 0) {
+      return;
+    }
+    Long at = loadedAt.get(ctx.id());
+    if (at == null) {
+      markLoaded(ctx);
+      return;
+    }
+    if (System.currentTimeMillis() - at < ctx.meta.refreshAfter || !refreshing.add(ctx.id())) {
+      return;
+    }
+    Object target = invocation.getTarget();
+    Object[] args = invocation.getArgs() == null ? null
+        : Arrays.copyOf(invocation.getArgs(), invocation.getArgs().length);
+    try {
+      REFRESHER.execute(() -> refresh(ctx, invocation, target, args));
+    } catch (RejectedExecutionException e) {
+      refreshing.remove(ctx.id());
+    }
   }
 
+  private void refresh(Ctx ctx, Invocation invocation, Object target, Object[] args) {
+    REFRESH.set(ctx.id());
+    try {
+      // 经由代理调用，写入由cacheWrite完成
+      invocation.getMethod().invoke(target, args);
+    } catch (Exception e) {
+      log.warn("refresh cache [{}] failed", ctx.id(), e);
+    } finally {
+      REFRESH.remove();
+      refreshing.remove(ctx.id());
+    }
+  }
+
+  private Ctx parse(Invocation invocation) {
+    Method method = invocation.getMethod();
+    Meta meta = METAS.get(method);
+    if (meta == null) {
+      meta = METAS.computeIfAbsent(method, this::compile);
+    }
+    return new Ctx(meta, meta.key(invocation.getArgs()));
+  }
+
+  private Meta compile(Method method) {
+    Cacheable cacheable = method.getAnnotation(Cacheable.class);
+    Meta meta = new Meta();
+    meta.cacheName = cacheable.value();
+    if (meta.cacheName.length() == 0) {
+      meta.cacheName = Cache.class.getSimpleName();
+    }
+    meta.prefix = method.getDeclaringClass().getName() + Strings.DOT + method.getName();
+    if (cacheable.key().length() > 0) {
+      meta.accessor = argsKeyGenerator.compile(cacheable.key());
+    }
+    meta.duration = cacheable.duration();
+    meta.unit = cacheable.timeUnit();
+    meta.refreshAfter =
+        cacheable.refreshAfter() > 0 ? meta.unit.toMillis(cacheable.refreshAfter()) : -1;
+    return meta;
+  }
+
+  /**
+   * 方法级缓存元数据
+   */
   @ToString
-  static class Ctx {
+  static class Meta {
 
-    String key;
     String cacheName;
+    String prefix;
+    Function<Object[], Object> accessor;
     long duration;
     TimeUnit unit;
+    long refreshAfter;
+
+    /**
+     * 生成缓存key，格式与DefaultKeyGenerator、ArgsKeyGenerator保持一致
+     *
+     * @param args 方法入参
+     * @return key
+     */
+    String key(Object[] args) {
+      if (accessor != null) {
+        return prefix + Strings.DOT + MoreObjects.safeToString(accessor.apply(args));
+      }
+      if (args != null && args.length > 0) {
+        return prefix + Strings.DOT + Arrays.deepToString(args);
+      }
+      return prefix;
+    }
+  }
+
+  @ToString
+  @RequiredArgsConstructor
+  static class Ctx {
+
+    final Meta meta;
+    final String key;
+    String id;
+
+    String id() {
+      if (id == null) {
+        id = meta.cacheName + Strings.COLON + key;
+      }
+      return id;
+    }
+  }
+
+  @RequiredArgsConstructor
+  static class Loading {
+
+    final Thread owner;
+    final CompletableFuture<Object> future = new CompletableFuture<>();
+
+    Object await() {
+      try {
+        return future.get(LOAD_WAIT_TIMEOUT, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        return FAILED;
+      } catch (ExecutionException | TimeoutException e) {
+        return FAILED;
+      }
+    }
   }
 
 }
@@ -42,7 +42,7 @@ public class CachePlugin implements Plugin {
   @Override
   public void stop() {
     Cache.clearAll();
-    CacheAspect.CACHE.clear();
+    CacheAspect.METAS.clear();
   }
 
 }
@@ -62,4 +62,13 @@ public @interface Cacheable {
    */
   TimeUnit timeUnit() default TimeUnit.SECONDS;
 
+  /**
+   * 写入后多久异步刷新，单位同timeUnit，小于等于0不刷新
+   * <br>
+   * 刷新期间仍返回旧值
+   *
+   * @return refreshAfter
+   */
+  long refreshAfter() default -1;
+
 }
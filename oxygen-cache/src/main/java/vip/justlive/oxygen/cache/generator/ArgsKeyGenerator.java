@@ -14,8 +14,12 @@
 package vip.justlive.oxygen.cache.generator;
 
 import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
+import lombok.RequiredArgsConstructor;
 import vip.justlive.oxygen.core.exception.Exceptions;
 import vip.justlive.oxygen.core.util.ClassUtils;
 import vip.justlive.oxygen.core.util.MoreObjects;
@@ -41,37 +45,53 @@ public class ArgsKeyGenerator implements KeyGenerator {
     String key = params[0].toString();
     Object[] args = (Object[]) params[1];
     return String.join(Strings.DOT, method.getDeclaringClass().getName(), method.getName(),
-        MoreObjects.safeToString(parse(key, args)));
+        MoreObjects.safeToString(compile(key).apply(args)));
   }
 
-  private Object parse(String key, Object[] args) {
+  /**
+   * 预编译key表达式，返回从入参中取值的函数
+   *
+   * @param key key表达式，如args[0][name]
+   * @return 取值函数
+   */
+  public Function<Object[], Object> compile(String key) {
     Matcher matcher = ARGS_PATTERN.matcher(key);
-    if (matcher.find()) {
-      String source = matcher.group(0);
-      int index = Integer.parseInt(matcher.group(1));
-      if (index > args.length - 1) {
-        throw Exceptions.fail(String.format("Cacheable.key[%s] illegal, out of bounds", key));
-      }
-      return parse(key.substring(source.length()), args[index]);
-    } else {
+    if (!matcher.find()) {
       throw Exceptions.fail(String.format("Cacheable.key[%s] illegal", key));
     }
+    int index = Integer.parseInt(matcher.group(1));
+    List<String> fields = new ArrayList<>(2);
+    matcher = FIELD_PATTERN.matcher(key.substring(matcher.group(0).length()));
+    while (matcher.find()) {
+      fields.add(matcher.group(1));
+    }
+    return new Accessor(key, index, fields.toArray(new String[0]));
   }
 
-  private Object parse(String key, Object obj) {
-    Matcher matcher = FIELD_PATTERN.matcher(key);
-    int index = 0;
-    String field;
-    Object value = obj;
-    while (matcher.find(index)) {
-      if (value == null) {
-        return null;
+  /**
+   * 入参取值函数
+   */
+  @RequiredArgsConstructor
+  private static class Accessor implements Function<Object[], Object> {
+
+    private final String key;
+    private final int index;
+    private final String[] fields;
+
+    @Override
+    public Object apply(Object[] args) {
+      if (index > args.length - 1) {
+        throw Exceptions.fail(String.format("Cacheable.key[%s] illegal, out of bounds", key));
+      }
+      Object value = args[index];
+      for (String field : fields) {
+        if (value == null) {
+          return null;
+        }
+        value = ClassUtils.getValue(value, field);
       }
-      field = matcher.group(1);
-      value = ClassUtils.getValue(value, field);
-      index = matcher.end();
+      return value;
     }
-    return value;
   }
 
 }
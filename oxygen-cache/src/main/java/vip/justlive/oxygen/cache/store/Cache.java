@@ -16,6 +16,7 @@ package vip.justlive.oxygen.cache.store;
 import java.util.Collection;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 
 /**
  * 缓存接口
@@ -50,6 +51,16 @@ public interface Cache {
    */
   Map<String, Object> get(String... keys);
 
+  /**
+   * 批量获取缓存对象，远程实现应在一次往返中完成
+   *
+   * @param keys cache keys
+   * @return return key-value objects
+   */
+  default Map<String, Object> getAll(Collection<String> keys) {
+    return get(keys.toArray(new String[0]));
+  }
+
   /**
    * 判断缓存是否存在
    *
@@ -100,6 +111,62 @@ public interface Cache {
    */
   Object set(String key, Object value, long duration, TimeUnit unit);
 
+  /**
+   * 批量存放对象，远程实现应在一次往返中完成
+   *
+   * @param values key-value objects
+   */
+  default void setAll(Map<String, ?> values) {
+    values.forEach(this::set);
+  }
+
+  /**
+   * 批量存放对象，远程实现应在一次往返中完成
+   *
+   * @param values key-value objects
+   * @param duration duration
+   * @param unit time unit
+   */
+  default void setAll(Map<String, ?> values, long duration, TimeUnit unit) {
+    values.forEach((key, value) -> set(key, value, duration, unit));
+  }
+
+  /**
+   * 根据key当前的值计算新值并存放，新值为null时删除
+   * <br>
+   * 默认实现在当前实例上加锁，实现类应覆盖为原子操作
+   *
+   * @param key cache key
+   * @param remappingFunction 计算函数，入参为key和当前值（可能为null）
+   * @return new value
+   */
+  default Object compute(String key,
+      BiFunction<String, Object, Object> remappingFunction) {
+    synchronized (this) {
+      Object value = remappingFunction.apply(key, get(key));
+      if (value == null) {
+        remove(key);
+      } else {
+        set(key, value);
+      }
+      return value;
+    }
+  }
+
+  /**
+   * key不存在时存放value，否则与当前值合并，合并结果为null时删除
+   * <br>
+   * 默认实现在当前实例上加锁，实现类应覆盖为原子操作
+   *
+   * @param key cache key
+   * @param value cache value
+   * @param remappingFunction 合并函数，入参为当前值和value
+   * @return new value
+   */
+  default Object merge(String key, Object value,
+      BiFunction<Object, Object, Object> remappingFunction) {
+    return compute(key, (k, old) -> old == null ? value : remappingFunction.apply(old, value));
+  }
 
   /**
    * 替换缓存中key对应的value
@@ -135,6 +202,15 @@ public interface Cache {
    */
   void remove(String... keys);
 
+  /**
+   * 批量删除，远程实现应在一次往返中完成
+   *
+   * @param keys Cache keys
+   */
+  default void removeAll(Collection<String> keys) {
+    remove(keys.toArray(new String[0]));
+  }
+
   /**
    * Increment the element value (must be a Number) by 1.
    *
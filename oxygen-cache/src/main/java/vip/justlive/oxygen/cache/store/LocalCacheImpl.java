@@ -17,6 +17,7 @@ import java.util.Collection;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 import lombok.Getter;
 import vip.justlive.oxygen.core.util.ExpiringMap;
 
@@ -49,9 +50,18 @@ public class LocalCacheImpl implements Cache {
 
   @Override
   public Map<String, Object> get(String... keys) {
-    Map<String, Object> map = new HashMap<>(8);
+    Map<String, Object> map = new HashMap<>(keys.length);
     for (String key : keys) {
-      map.put(key, get(key));
+      map.put(key, expiringMap.get(key));
+    }
+    return map;
+  }
+
+  @Override
+  public Map<String, Object> getAll(Collection<String> keys) {
+    Map<String, Object> map = new HashMap<>(keys.size());
+    for (String key : keys) {
+      map.put(key, expiringMap.get(key));
     }
     return map;
   }
@@ -76,6 +86,27 @@ public class LocalCacheImpl implements Cache {
     return expiringMap.put(key, value, duration, unit);
   }
 
+  @Override
+  public void setAll(Map<String, ?> values) {
+    expiringMap.putAll(values);
+  }
+
+  @Override
+  public void setAll(Map<String, ?> values, long duration, TimeUnit unit) {
+    expiringMap.putAll(values, duration, unit);
+  }
+
+  @Override
+  public Object compute(String key, BiFunction<String, Object, Object> remappingFunction) {
+    return expiringMap.compute(key, remappingFunction);
+  }
+
+  @Override
+  public Object merge(String key, Object value,
+      BiFunction<Object, Object, Object> remappingFunction) {
+    return expiringMap.merge(key, value, remappingFunction);
+  }
+
   @Override
   public Object replace(String key, Object value) {
     return expiringMap.replace(key, value);
@@ -99,17 +130,10 @@ public class LocalCacheImpl implements Cache {
   }
 
   @Override
-  public synchronized long incr(String key, int by) {
-    Long value = get(key, Long.class);
-    if (value == null) {
-      value = (long) by;
-      set(key, value);
-      return by;
-    } else {
-      value += by;
-      replace(key, value);
-      return value;
-    }
+  public long incr(String key, int by) {
+    // 基于CAS的merge，不存在时以by为初始值，存在时保留原有期限
+    return ((Number) expiringMap.merge(key, (long) by,
+        (old, delta) -> ((Number) old).longValue() + (Long) delta)).longValue();
   }
 
   @Override
@@ -13,11 +13,15 @@
  */
 package vip.justlive.oxygen.cache;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import org.junit.Assert;
 import org.junit.Test;
 import vip.justlive.oxygen.cache.store.Cache;
 import vip.justlive.oxygen.core.Bootstrap;
+import vip.justlive.oxygen.core.util.ThreadUtils;
 import vip.justlive.oxygen.ioc.IocPlugin;
 
 /**
@@ -38,6 +42,8 @@ public class CachePluginTest {
     cacheService.time1(2);
 
     Assert.assertEquals(3, Cache.cache().keys().size());
+    Assert.assertTrue(Cache.cache().exists(CacheService.class.getName() + ".time"));
+    Assert.assertTrue(Cache.cache().exists(CacheService.class.getName() + ".time1.2"));
 
     TimeUnit.SECONDS.sleep(1);
 
@@ -45,4 +51,50 @@ public class CachePluginTest {
     Assert.assertEquals(2, Cache.cache().keys().size());
 
   }
-}
\ No newline at end of file
+
+  @Test
+  public void loading() throws InterruptedException {
+
+    Bootstrap.start();
+
+    CacheService cacheService = IocPlugin.beanStore().getBean(CacheService.class);
+    int threads = 8;
+    CountDownLatch latch = new CountDownLatch(threads);
+    AtomicInteger sum = new AtomicInteger();
+    for (int i = 0; i < threads; i++) {
+      ThreadUtils.cachedPool().execute(() -> {
+        sum.addAndGet(cacheService.load("k"));
+        latch.countDown();
+      });
+    }
+    latch.await();
+    // 并发未命中只加载一次
+    Assert.assertEquals(1, cacheService.loads.get());
+    Assert.assertEquals(threads, sum.get());
+
+    TimeUnit.MILLISECONDS.sleep(300);
+    // 超过refreshAfter后返回旧值并异步刷新
+    Assert.assertEquals(1, cacheService.load("k").intValue());
+    TimeUnit.MILLISECONDS.sleep(300);
+    Assert.assertEquals(2, cacheService.loads.get());
+    Assert.assertEquals(2, cacheService.load("k").intValue());
+  }
+
+  @Test
+  public void loadingError() throws Exception {
+
+    Bootstrap.start();
+
+    CacheService cacheService = IocPlugin.beanStore().getBean(CacheService.class);
+    try {
+      cacheService.loadError("e");
+      Assert.fail();
+    } catch (AssertionError e) {
+      Assert.assertEquals("load error", e.getMessage());
+    }
+    // 加载抛出Error后不再阻塞后续调用
+    CompletableFuture<Integer> future = CompletableFuture
+        .supplyAsync(() -> cacheService.loadError("e"), ThreadUtils.cachedPool());
+    Assert.assertEquals(2, future.get(5, TimeUnit.SECONDS).intValue());
+  }
+}
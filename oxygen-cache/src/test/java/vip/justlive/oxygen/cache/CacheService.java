@@ -13,8 +13,10 @@
  */
 package vip.justlive.oxygen.cache;
 
-
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import vip.justlive.oxygen.cache.annotation.Cacheable;
+import vip.justlive.oxygen.core.util.ThreadUtils;
 import vip.justlive.oxygen.ioc.annotation.Bean;
 
 /**
@@ -23,6 +25,9 @@ import vip.justlive.oxygen.ioc.annotation.Bean;
 @Bean
 public class CacheService {
 
+  final AtomicInteger loads = new AtomicInteger();
+  final AtomicInteger errors = new AtomicInteger();
+
   @Cacheable
   public Long time() {
     System.out.println("hit time");
@@ -35,4 +40,19 @@ public class CacheService {
     return System.currentTimeMillis();
   }
 
+  @Cacheable(value = "loading", key = "args[0]", duration = 5000, refreshAfter = 200,
+      timeUnit = TimeUnit.MILLISECONDS)
+  public Integer load(String key) {
+    ThreadUtils.sleep(100);
+    return loads.incrementAndGet();
+  }
+
+  @Cacheable(value = "loading", key = "args[0]")
+  public Integer loadError(String key) {
+    if (errors.getAndIncrement() == 0) {
+      throw new AssertionError("load error");
+    }
+    return errors.get();
+  }
+
 }
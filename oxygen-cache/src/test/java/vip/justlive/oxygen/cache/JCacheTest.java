@@ -14,10 +14,18 @@
 package vip.justlive.oxygen.cache;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
 
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 import org.junit.Test;
 import vip.justlive.oxygen.cache.store.Cache;
 import vip.justlive.oxygen.core.Bootstrap;
+import vip.justlive.oxygen.core.util.ThreadUtils;
 
 /**
  * @author wubo
@@ -34,4 +42,49 @@ public class JCacheTest {
 
   }
 
-}
\ No newline at end of file
+  @Test
+  public void batch() {
+
+    Cache cache = Cache.cache("batch");
+    Map<String, Object> values = new HashMap<>(4);
+    values.put("a", 1);
+    values.put("b", 2);
+    cache.setAll(values, 1, TimeUnit.MINUTES);
+    cache.set("c", 3);
+
+    Map<String, Object> result = cache.getAll(Arrays.asList("a", "b", "c", "d"));
+    assertEquals(1, result.get("a"));
+    assertEquals(2, result.get("b"));
+    assertEquals(3, result.get("c"));
+    assertNull(result.get("d"));
+
+    assertEquals(5, cache.merge("c", 2, (o, n) -> (Integer) o + (Integer) n));
+    assertEquals("x", cache.compute("d", (k, v) -> v == null ? "x" : v));
+    assertNull(cache.compute("d", (k, v) -> null));
+    assertFalse(cache.exists("d"));
+
+    cache.removeAll(Arrays.asList("a", "b"));
+    assertEquals(1, cache.keys().size());
+  }
+
+  @Test
+  public void incr() throws InterruptedException {
+
+    Cache cache = Cache.cache("counter");
+    int threads = 8;
+    int times = 1000;
+    CountDownLatch latch = new CountDownLatch(threads);
+    for (int i = 0; i < threads; i++) {
+      ThreadUtils.cachedPool().execute(() -> {
+        for (int j = 0; j < times; j++) {
+          cache.incr("k");
+        }
+        latch.countDown();
+      });
+    }
+    latch.await();
+    assertEquals(threads * times, cache.incr("k", 0));
+    assertEquals(threads * times - 2, cache.decr("k", 2));
+  }
+
+}
@@ -16,6 +16,7 @@ package vip.justlive.oxygen.core.convert;
 import java.lang.reflect.Array;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.function.Function;
 import vip.justlive.oxygen.core.util.MoreObjects;
 
 /**
@@ -86,6 +87,25 @@ public class DefaultConverterService implements ConverterService, ConverterRegis
         .containsKey(ConverterTypePair.create(source, target));
   }
 
+  /**
+   * 预先获取类型转换函数，避免每次转换时查找转换器；规则与{@link #canConverter(Class, Class)}一致
+   *
+   * @param source 源类型
+   * @param target 目标类型
+   * @return 转换函数，不支持时返回null
+   */
+  public Function<Object, Object> converterOf(Class<?> source, Class<?> target) {
+    if (source.equals(target)) {
+      return Function.identity();
+    }
+    Converter<Object, Object> converter = converters
+        .get(ConverterTypePair.create(source, target));
+    if (converter == null) {
+      return null;
+    }
+    return value -> value == null ? null : converter.convert(value);
+  }
+
   @SuppressWarnings("unchecked")
   @Override
   public <T> T convert(Object source, Class<T> targetType) {
@@ -14,25 +14,31 @@
 
 package vip.justlive.oxygen.core.net.aio.core;
 
-import java.util.LinkedList;
+import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.LinkedBlockingQueue;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReentrantLock;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 /**
  * 抽象worker
+ * <p>
+ * 多生产者单消费者：任意线程可以添加数据，同一时刻最多只有一个线程在处理，由调度标识保证
+ * </p>
  *
  * @author wubo
  */
 public abstract class AbstractWorker<T> implements Runnable {
 
   private static final int MAX_LOOP = 10;
+  private static final int MAX_BATCH = 1024;
 
   final ChannelContext channelContext;
-  LinkedBlockingQueue<T> queue = new LinkedBlockingQueue<>();
+  final Queue<T> queue = new ConcurrentLinkedQueue<>();
   volatile boolean stopped;
-  private Lock lock = new ReentrantLock(true);
+  private final AtomicBoolean scheduled = new AtomicBoolean();
+  private final List<T> batch = new ArrayList<>();
 
   AbstractWorker(ChannelContext channelContext) {
     this.channelContext = channelContext;
@@ -49,25 +55,24 @@ public abstract class AbstractWorker<T> implements Runnable {
   }
 
   /**
-   * 执行任务
+   * 执行任务，已在调度中则忽略
    */
   public void execute() {
-    if (stopped) {
+    if (stopped || queue.isEmpty() || !scheduled.compareAndSet(false, true)) {
       return;
     }
-    if (lock.tryLock()) {
-      try {
-        channelContext.getGroupContext().getWorkerExecutor().execute(this);
-      } finally {
-        lock.unlock();
-      }
+    try {
+      channelContext.getExecutor().execute(this);
+    } catch (RejectedExecutionException e) {
+      scheduled.set(false);
+      throw e;
     }
   }
 
   /**
    * 处理逻辑
    *
-   * @param data 数据
+   * @param data 数据，只在本次调用内有效，调用结束后会被复用
    */
   public abstract void handle(List<T> data);
 
@@ -88,28 +93,36 @@ public abstract class AbstractWorker<T> implements Runnable {
 
   @Override
   public void run() {
-    lock.lock();
     try {
       for (int i = 0; i < MAX_LOOP; i++) {
-        loopRun();
+        if (!loopRun()) {
+          break;
+        }
       }
     } finally {
-      lock.unlock();
+      scheduled.set(false);
     }
     if (!queue.isEmpty()) {
       execute();
     }
   }
 
-  private void loopRun() {
+  private boolean loopRun() {
     if (stopped) {
-      return;
+      return false;
     }
-    List<T> data = new LinkedList<>();
-    queue.drainTo(data);
-    if (data.isEmpty()) {
-      return;
+    T data;
+    while (batch.size() < MAX_BATCH && (data = queue.poll()) != null) {
+      batch.add(data);
+    }
+    if (batch.isEmpty()) {
+      return false;
+    }
+    try {
+      handle(batch);
+    } finally {
+      batch.clear();
     }
-    handle(data);
+    return true;
   }
 }
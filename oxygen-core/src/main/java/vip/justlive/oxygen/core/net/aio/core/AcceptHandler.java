@@ -11,27 +11,42 @@
  * or implied. See the License for the specific language governing permissions and limitations under
  * the License.
  */
-
 package vip.justlive.oxygen.core.net.aio.core;
 
 import java.net.StandardSocketOptions;
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
+import java.nio.channels.AsynchronousServerSocketChannel;
 import java.nio.channels.AsynchronousSocketChannel;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.CompletionHandler;
+import java.util.concurrent.TimeUnit;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 /**
  * aio服务端连接接收处理
+ * <p>
+ * 先重新发起accept再将连接的初始化交给channel的执行器，接收路径上不做阻塞操作；accept失败时按指数退避延迟重试
+ * </p>
  *
  * @author wubo
  */
 @Slf4j
+@RequiredArgsConstructor
 public class AcceptHandler implements CompletionHandler<AsynchronousSocketChannel, Server> {
 
+  private static final long MIN_BACKOFF = 10L;
+  private static final long MAX_BACKOFF = 1000L;
+
+  private final AsynchronousServerSocketChannel serverChannel;
+  /**
+   * accept连续失败时的重试延迟，毫秒
+   */
+  private volatile long backoff;
+
   @Override
   public void completed(AsynchronousSocketChannel channel, Server server) {
+    backoff = 0;
+    accept(server);
     try {
       if (log.isDebugEnabled()) {
         log.debug("Aio accept {}", channel);
@@ -40,23 +55,11 @@ public class AcceptHandler implements CompletionHandler<AsynchronousSocketChanne
         log.warn("channel has closed {}", channel);
         return;
       }
-      channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
-      channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
-
       ChannelContext channelContext = new ChannelContext(server.getGroupContext(), channel);
-      channelContext.start();
-
-      ByteBuffer buffer = ByteBuffer.allocate(server.getGroupContext().getBufferCapacity());
-      buffer.order(ByteOrder.BIG_ENDIAN);
-      channel.read(buffer, buffer, channelContext.getReadHandler());
-
-      if (server.getGroupContext().getAioListener() != null) {
-        server.getGroupContext().getAioListener().onConnected(channelContext);
-      }
+      channelContext.getExecutor().execute(() -> setup(channelContext));
     } catch (Exception e) {
       log.error("Aio accept completed error", e);
-    } finally {
-      server.getServerChannel().accept(server, this);
+      Utils.close(channel);
     }
   }
 
@@ -66,6 +69,61 @@ public class AcceptHandler implements CompletionHandler<AsynchronousSocketChanne
     if (exc instanceof ClosedChannelException && server.getGroupContext().isStopped()) {
       return;
     }
-    server.getServerChannel().accept(server, this);
+    // 文件句柄耗尽等错误会立即再次失败，延迟重试避免空转
+    long delay = backoff == 0 ? MIN_BACKOFF : Math.min(backoff << 1, MAX_BACKOFF);
+    backoff = delay;
+    server.getGroupContext().getTimingWheel()
+        .newTimeout(() -> accept(server), delay, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * 重新发起accept，超过每秒接收上限时延迟到下一秒
+   *
+   * @param server 服务端
+   */
+  private void accept(Server server) {
+    if (server.getGroupContext().isStopped()) {
+      return;
+    }
+    long delay = server.acquireAccept();
+    if (delay > 0) {
+      server.getGroupContext().getTimingWheel()
+          .newTimeout(() -> accept(server), delay, TimeUnit.MILLISECONDS);
+      return;
+    }
+    try {
+      serverChannel.accept(server, this);
+    } catch (Exception e) {
+      if (!server.getGroupContext().isStopped()) {
+        log.error("Aio accept error", e);
+      }
+    }
+  }
+
+  private void setup(ChannelContext channelContext) {
+    GroupContext groupContext = channelContext.getGroupContext();
+    AsynchronousSocketChannel channel = channelContext.getChannel();
+    try {
+      channel.setOption(StandardSocketOptions.SO_REUSEADDR, true);
+      channel.setOption(StandardSocketOptions.SO_KEEPALIVE, true);
+      channel.setOption(StandardSocketOptions.TCP_NODELAY, groupContext.isTcpNoDelay());
+      if (groupContext.getReceiveBufferSize() > 0) {
+        channel.setOption(StandardSocketOptions.SO_RCVBUF, groupContext.getReceiveBufferSize());
+      }
+      if (groupContext.getSendBufferSize() > 0) {
+        channel.setOption(StandardSocketOptions.SO_SNDBUF, groupContext.getSendBufferSize());
+      }
+
+      channelContext.start();
+
+      channelContext.beginRead();
+
+      if (groupContext.getAioListener() != null) {
+        groupContext.getAioListener().onConnected(channelContext);
+      }
+    } catch (Exception e) {
+      log.error("Aio accept completed error", e);
+      channelContext.close();
+    }
   }
 }
@@ -15,6 +15,7 @@
 package vip.justlive.oxygen.core.net.aio.core;
 
 import java.nio.ByteBuffer;
+import java.util.List;
 
 /**
  * aio处理逻辑
@@ -23,8 +24,16 @@ import java.nio.ByteBuffer;
  */
 public interface AioHandler {
 
+  /**
+   * 解码已消费部分数据但还未得到完整消息，例如流式处理的请求体；返回该值时已推进的position不会回退
+   */
+  Object CONSUMED = new Object();
+
   /**
    * 将数据译码成buffer
+   * <p>
+   * 返回的buffer写出后会回调{@link #release(ByteBuffer, ChannelContext)}
+   * </p>
    *
    * @param data 数据
    * @param channelContext channel上下文
@@ -32,8 +41,35 @@ public interface AioHandler {
    */
   ByteBuffer encode(Object data, ChannelContext channelContext);
 
+  /**
+   * 将数据译码成多个buffer，写出时使用gathering write不再合并
+   * <p>
+   * 例如消息头和消息体分开译码，避免消息体的复制
+   * </p>
+   *
+   * @param data 数据
+   * @param channelContext channel上下文
+   * @param out 译码的buffer集合
+   */
+  default void encode(Object data, ChannelContext channelContext, List<ByteBuffer> out) {
+    out.add(encode(data, channelContext));
+  }
+
+  /**
+   * 译码的buffer写出后回调，用于归还从{@link GroupContext#getBufferPool()}中申请的buffer
+   *
+   * @param buffer 译码的buffer
+   * @param channelContext channel上下文
+   */
+  default void release(ByteBuffer buffer, ChannelContext channelContext) {
+  }
+
   /**
    * 将buffer解码成原始数据
+   * <p>
+   * buffer来自buffer池，handle完成后会被归还，解码结果引用buffer的内容时只在handle期间有效；数据不足时返回null，position会被回退，
+   * 已消费数据但还没有完整消息时返回{@link #CONSUMED}
+   * </p>
    *
    * @param buffer 译码数据
    * @param readableSize 可读数据大小
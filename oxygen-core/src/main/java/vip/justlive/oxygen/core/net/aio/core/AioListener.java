@@ -58,4 +58,13 @@ public interface AioListener {
   default void onWriteHandled(ChannelContext channelContext, Object data, Throwable throwable) {
   }
 
+  /**
+   * channel待写出字节数越过高水位或回落到低水位时触发，全局待写出字节数越过上限或回落时对所有可写channel触发
+   *
+   * @param channelContext channel上下文
+   * @param writable 是否可写
+   */
+  default void onWritabilityChanged(ChannelContext channelContext, boolean writable) {
+  }
+
 }
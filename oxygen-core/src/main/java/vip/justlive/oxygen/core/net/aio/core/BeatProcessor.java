@@ -32,6 +32,7 @@ public class BeatProcessor implements Runnable {
     if (client.getGroupContext().isStopped()) {
       return;
     }
+    long delay = client.getGroupContext().getBeatInterval();
     try {
       if (client.getChannelContext() == null || client.getChannelContext().isClosed()) {
         return;
@@ -39,16 +40,19 @@ public class BeatProcessor implements Runnable {
 
       long lastActiveAt = Math.max(client.getChannelContext().getLastReceivedAt(),
           client.getChannelContext().getLastSentAt());
-      if (System.currentTimeMillis() - lastActiveAt >= client.getGroupContext().getBeatInterval()) {
-        Object beat = client.getGroupContext().getAioHandler().beat(client.getChannelContext());
-        if (beat == null) {
-          return;
-        }
-        client.getChannelContext().write(beat);
+      long elapsed = System.currentTimeMillis() - lastActiveAt;
+      if (elapsed < delay) {
+        // 期间有数据收发，按最后活跃时间重新计算
+        delay -= elapsed;
+        return;
+      }
+      Object beat = client.getGroupContext().getAioHandler().beat(client.getChannelContext());
+      if (beat == null) {
+        return;
       }
+      client.getChannelContext().write(beat);
     } finally {
-      client.getGroupContext().getScheduledExecutor()
-          .schedule(this, client.getGroupContext().getBeatInterval(), TimeUnit.MILLISECONDS);
+      client.getGroupContext().getTimingWheel().newTimeout(this, delay, TimeUnit.MILLISECONDS);
     }
   }
 }
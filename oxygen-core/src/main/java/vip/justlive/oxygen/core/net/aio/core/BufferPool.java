@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package vip.justlive.oxygen.core.net.aio.core;
+
+import java.nio.ByteBuffer;
+
+/**
+ * buffer池
+ * <p>
+ * 申请方持有buffer，使用完毕后调用{@link #release(ByteBuffer)}归还；非本池申请的buffer不应归还
+ * </p>
+ *
+ * @author wubo
+ */
+public interface BufferPool {
+
+  /**
+   * 申请buffer，返回的buffer已clear且容量不小于指定大小
+   *
+   * @param capacity 最小容量
+   * @return buffer
+   */
+  ByteBuffer acquire(int capacity);
+
+  /**
+   * 归还buffer
+   *
+   * @param buffer buffer
+   */
+  void release(ByteBuffer buffer);
+
+  /**
+   * 是否为堆外内存
+   *
+   * @return true为堆外内存
+   */
+  boolean isDirect();
+
+}
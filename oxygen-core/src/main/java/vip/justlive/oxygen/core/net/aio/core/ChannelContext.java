@@ -18,12 +18,19 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.channels.ClosedChannelException;
 import java.util.Map;
 import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.experimental.Accessors;
+import vip.justlive.oxygen.core.exception.Exceptions;
 import vip.justlive.oxygen.core.util.SnowflakeIdWorker;
 
 /**
@@ -44,11 +51,22 @@ public class ChannelContext {
   private final WriteWorker writeWorker;
   private final WriteHandler writeHandler;
   private final Map<String, Object> attrs = new ConcurrentHashMap<>(4);
+  private final Executor executor;
+  @Getter(AccessLevel.NONE)
+  private final AtomicLong pendingBytes = new AtomicLong();
+  @Getter(AccessLevel.NONE)
+  private final AtomicBoolean writable = new AtomicBoolean(true);
+  @Getter(AccessLevel.NONE)
+  private final AtomicReference<CompletableFuture<Void>> writableFuture = new AtomicReference<>();
 
   private AsynchronousSocketChannel channel;
   private InetSocketAddress address;
   private volatile boolean closed;
   private CompletableFuture<Void> future;
+  /**
+   * 关闭完成的future，close执行完毕后完成
+   */
+  private volatile CompletableFuture<Void> closeFuture = new CompletableFuture<>();
 
   // stat
 
@@ -71,6 +89,7 @@ public class ChannelContext {
     this.id = id;
     this.server = server;
     this.groupContext = groupContext;
+    this.executor = groupContext.nextExecutor(this);
     this.readWorker = new ReadWorker(this);
     this.readHandler = new ReadHandler(this);
     this.writeWorker = new WriteWorker(this);
@@ -93,7 +112,7 @@ public class ChannelContext {
   }
 
   /**
-   * 写数据
+   * 写数据，不检查可写状态；需要背压时配合{@link #isWritable()}、{@link #whenWritable()}或使用{@link #writeAsync(Object)}
    *
    * @param data 数据
    */
@@ -105,15 +124,139 @@ public class ChannelContext {
     writeWorker.execute();
   }
 
+  /**
+   * 写数据，channel不可写时直接失败
+   *
+   * @param data 数据
+   * @return 写出完成的future
+   */
+  public CompletableFuture<Void> writeAsync(Object data) {
+    CompletableFuture<Void> future = new CompletableFuture<>();
+    if (closed) {
+      future.completeExceptionally(new ClosedChannelException());
+    } else if (!isWritable()) {
+      future.completeExceptionally(Exceptions
+          .fail(String.format("%s 待写出数据过多 %s/%s", this, pendingBytes.get(),
+              groupContext.getPendingBytes())));
+    } else {
+      writeWorker.add(new WriteWorker.Promise(data, future));
+      writeWorker.execute();
+    }
+    return future;
+  }
+
+  /**
+   * 是否可写，待写出字节数未超过高水位且全局待写出字节数未超过上限；
+   * 待写出字节数只统计已编码的数据，写队列中尚未编码的对象不计入
+   *
+   * @return true为可写
+   */
+  public boolean isWritable() {
+    return writable.get() && !groupContext.isPendingBytesExceeded();
+  }
+
+  /**
+   * 等待channel可写（与{@link #isWritable()}条件一致），当前可写时返回已完成的future，channel关闭时以异常完成
+   *
+   * @return 恢复可写时完成的future
+   */
+  public CompletableFuture<Void> whenWritable() {
+    if (closed) {
+      CompletableFuture<Void> future = new CompletableFuture<>();
+      future.completeExceptionally(new ClosedChannelException());
+      return future;
+    }
+    if (isWritable()) {
+      return CompletableFuture.completedFuture(null);
+    }
+    CompletableFuture<Void> future = writableFuture
+        .updateAndGet(f -> f == null ? new CompletableFuture<>() : f);
+    // 登记后再检查一次，避免错过期间的状态切换
+    if (isWritable() || closed) {
+      notifyWritable();
+    }
+    return future;
+  }
+
+  /**
+   * 待写出的字节数
+   *
+   * @return 字节数
+   */
+  public long getPendingBytes() {
+    return pendingBytes.get();
+  }
+
+  /**
+   * 累加待写出字节数，越过水位时切换可写状态
+   *
+   * @param delta 增量，写出完成后为负数
+   */
+  void addPendingBytes(long delta) {
+    long pending = pendingBytes.addAndGet(delta);
+    groupContext.addPendingBytes(delta);
+    // 全局超限时整体已不可写，自身水位切换不改变可写状态
+    if (delta > 0) {
+      if (pending > groupContext.getWriteBufferHighWaterMark() && writable
+          .compareAndSet(true, false) && !groupContext.isPendingBytesExceeded()) {
+        writabilityChanged(false);
+      }
+    } else if (pending <= groupContext.getWriteBufferLowWaterMark() && writable
+        .compareAndSet(false, true) && !groupContext.isPendingBytesExceeded()) {
+      writabilityChanged(true);
+    }
+  }
+
+  /**
+   * 全局待写出字节数越过上限或回落时由GroupContext调用，自身不可写时可写状态不变
+   *
+   * @param value 全局是否可写
+   */
+  void groupWritabilityChanged(boolean value) {
+    if (writable.get()) {
+      writabilityChanged(value);
+    }
+  }
+
+  private void notifyWritable() {
+    CompletableFuture<Void> future = writableFuture.getAndSet(null);
+    if (future != null) {
+      if (closed) {
+        future.completeExceptionally(new ClosedChannelException());
+      } else {
+        future.complete(null);
+      }
+    }
+  }
+
+  private void writabilityChanged(boolean value) {
+    if (value) {
+      notifyWritable();
+    }
+    if (groupContext.getAioListener() != null) {
+      groupContext.getAioListener().onWritabilityChanged(this, value);
+    }
+  }
+
+  /**
+   * 从buffer池申请buffer并发起异步读
+   */
+  void beginRead() {
+    ByteBuffer buffer = groupContext.getBufferPool().acquire(groupContext.getBufferCapacity());
+    channel.read(buffer, buffer, readHandler);
+  }
+
+  /**
+   * 读取的数据交由readWorker处理，buffer由readWorker负责归还
+   *
+   * @param buffer 读取的数据
+   */
   void read(ByteBuffer buffer) {
     if (closed) {
+      groupContext.getBufferPool().release(buffer);
       return;
     }
-    ByteBuffer ret = ByteBuffer.allocate(buffer.limit() - buffer.position());
-    ret.put(buffer);
-    ret.flip();
-
-    readWorker.add(ret);
+    readWorker.add(buffer);
     readWorker.execute();
   }
 
@@ -121,6 +264,9 @@ public class ChannelContext {
    * 启动
    */
   public synchronized void start() {
+    if (closed) {
+      closeFuture = new CompletableFuture<>();
+    }
     closed = false;
     readWorker.start();
     writeWorker.start();
@@ -138,16 +284,21 @@ public class ChannelContext {
     closed = true;
     groupContext.unbind(this);
     try {
+      if (groupContext.getCorrelator() != null) {
+        groupContext.getCorrelator().fail(this);
+      }
       if (groupContext.getAioListener() != null) {
         groupContext.getAioListener().onClosed(this);
       }
     } finally {
+      notifyWritable();
       readWorker.stop();
       writeWorker.stop();
       Utils.close(channel);
       readWorker.queue.clear();
       writeWorker.queue.clear();
       clearAttrs();
+      closeFuture.complete(null);
     }
   }
 
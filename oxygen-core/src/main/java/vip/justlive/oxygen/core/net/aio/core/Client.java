@@ -18,10 +18,10 @@ import java.io.IOException;
 import java.net.InetSocketAddress;
 import java.nio.channels.AsynchronousChannelGroup;
 import java.nio.channels.AsynchronousSocketChannel;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.TimeUnit;
 import lombok.Getter;
 import vip.justlive.oxygen.core.util.SystemUtils;
-import vip.justlive.oxygen.core.util.ThreadUtils;
 
 /**
  * aio 客户端
@@ -72,24 +72,43 @@ public class Client {
    * @throws IOException io异常时抛出
    */
   public void connect(InetSocketAddress remote, InetSocketAddress bind) throws IOException {
+    connectAsync(remote, bind).join();
+  }
+
+  /**
+   * 异步连接服务端，指定绑定地址
+   * <p>
+   * 共享同一个GroupContext的客户端复用其channel group
+   * </p>
+   *
+   * @param remote 远程地址
+   * @param bind 本机绑定地址
+   * @return 连接完成的future
+   * @throws IOException io异常时抛出
+   */
+  public CompletableFuture<Void> connectAsync(InetSocketAddress remote, InetSocketAddress bind)
+      throws IOException {
     groupContext.setServerAddress(remote);
-    AsynchronousChannelGroup channelGroup = AsynchronousChannelGroup
-        .withThreadPool(groupContext.getGroupExecutor());
-    groupContext.setChannelGroup(channelGroup);
+    synchronized (groupContext) {
+      if (groupContext.getChannelGroup() == null || groupContext.getChannelGroup().isShutdown()) {
+        groupContext.setChannelGroup(
+            AsynchronousChannelGroup.withThreadPool(groupContext.getGroupExecutor()));
+      }
+    }
     AsynchronousSocketChannel channel = Utils.create(groupContext, bind);
     channelContext = new ChannelContext(groupContext, channel, false);
     channel.connect(remote, channelContext, ConnectHandler.INSTANCE);
 
-    channelContext.getFuture().join();
-
-    if (groupContext.getAioHandler().beat(channelContext) != null) {
-      groupContext.getScheduledExecutor()
-          .schedule(beatProcessor, groupContext.getBeatInterval(), TimeUnit.MILLISECONDS);
-    }
-    if (groupContext.isRetryEnabled()) {
-      groupContext.getScheduledExecutor()
-          .schedule(retryProcessor, groupContext.getRetryInterval(), TimeUnit.MILLISECONDS);
-    }
+    return channelContext.getFuture().thenRun(() -> {
+      if (groupContext.getAioHandler().beat(channelContext) != null) {
+        groupContext.getTimingWheel()
+            .newTimeout(beatProcessor, groupContext.getBeatInterval(), TimeUnit.MILLISECONDS);
+      }
+      if (groupContext.isRetryEnabled()) {
+        groupContext.getTimingWheel()
+            .newTimeout(retryProcessor, groupContext.getRetryInterval(), TimeUnit.MILLISECONDS);
+      }
+    });
   }
 
   /**
@@ -98,7 +117,7 @@ public class Client {
   public void close() {
     if (channelContext != null) {
       channelContext.close();
-      ThreadUtils.sleep(10);
+      channelContext.getCloseFuture().join();
       groupContext.close();
     }
   }
@@ -0,0 +1,136 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package vip.justlive.oxygen.core.net.aio.core;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Getter;
+import vip.justlive.oxygen.core.exception.Exceptions;
+import vip.justlive.oxygen.core.util.SystemUtils;
+
+/**
+ * aio 客户端连接池
+ * <p>
+ * 对同一服务端建立多个连接并轮询分发，请求通过{@link Correlated}的id与响应关联，
+ * 服务端处理时需要将请求的id设置到响应上；协议需要在消息中携带id，如LengthFrameHandler需开启correlated或紧凑消息头
+ * </p>
+ *
+ * @author wubo
+ */
+public class ClientPool {
+
+  @Getter
+  private final GroupContext groupContext;
+  @Getter
+  private final Correlator correlator;
+  private final Client[] clients;
+  private final AtomicInteger index = new AtomicInteger();
+
+  public ClientPool(GroupContext groupContext, int size) {
+    if (size <= 0) {
+      throw new IllegalArgumentException("[size] should be positive");
+    }
+    this.groupContext = groupContext;
+    this.correlator = new Correlator(groupContext);
+    groupContext.setCorrelator(correlator);
+    this.clients = new Client[size];
+    for (int i = 0; i < size; i++) {
+      clients[i] = new Client(groupContext);
+    }
+  }
+
+  /**
+   * 连接服务端
+   *
+   * @param host 主机
+   * @param port 端口
+   * @throws IOException io异常时抛出
+   */
+  public void connect(String host, int port) throws IOException {
+    connect(new InetSocketAddress(host, port));
+  }
+
+  /**
+   * 并行建立所有连接，本地随机端口
+   *
+   * @param remote 远程地址
+   * @throws IOException io异常时抛出
+   */
+  public void connect(InetSocketAddress remote) throws IOException {
+    CompletableFuture<?>[] futures = new CompletableFuture[clients.length];
+    for (int i = 0; i < clients.length; i++) {
+      futures[i] = clients[i]
+          .connectAsync(remote, new InetSocketAddress(SystemUtils.findAvailablePort()));
+    }
+    CompletableFuture.allOf(futures).join();
+  }
+
+  /**
+   * 发送请求，响应由读取线程完成
+   *
+   * @param data 请求
+   * @param <T> 响应类型
+   * @return 响应future
+   */
+  public <T> CompletableFuture<T> request(Correlated data) {
+    return correlator.request(next(), data);
+  }
+
+  /**
+   * 发送不需要响应的数据
+   *
+   * @param data 数据
+   */
+  public void write(Object data) {
+    next().write(data);
+  }
+
+  /**
+   * 关闭所有连接
+   */
+  public void close() {
+    CompletableFuture<?>[] futures = new CompletableFuture[clients.length];
+    for (int i = 0; i < clients.length; i++) {
+      ChannelContext channelContext = clients[i].getChannelContext();
+      if (channelContext == null) {
+        futures[i] = CompletableFuture.completedFuture(null);
+      } else {
+        channelContext.close();
+        futures[i] = channelContext.getCloseFuture();
+      }
+    }
+    // 其他线程正在关闭的连接需要等待其完成后再关闭group
+    CompletableFuture.allOf(futures).join();
+    groupContext.close();
+  }
+
+  /**
+   * 轮询选择可用连接
+   *
+   * @return channel上下文
+   */
+  private ChannelContext next() {
+    int start = index.getAndIncrement();
+    for (int i = 0; i < clients.length; i++) {
+      ChannelContext channelContext = clients[Math.abs((start + i) % clients.length)]
+          .getChannelContext();
+      if (channelContext != null && !channelContext.isClosed()) {
+        return channelContext;
+      }
+    }
+    throw Exceptions.fail("没有可用的连接");
+  }
+}
@@ -14,8 +14,6 @@
 
 package vip.justlive.oxygen.core.net.aio.core;
 
-import java.nio.ByteBuffer;
-import java.nio.ByteOrder;
 import java.nio.channels.CompletionHandler;
 import lombok.extern.slf4j.Slf4j;
 
@@ -31,9 +29,7 @@ public class ConnectHandler implements CompletionHandler<Void, ChannelContext> {
 
   @Override
   public void completed(Void result, ChannelContext channelContext) {
-    ByteBuffer buffer = ByteBuffer.allocate(channelContext.getGroupContext().getBufferCapacity());
-    buffer.order(ByteOrder.BIG_ENDIAN);
-    channelContext.getChannel().read(buffer, buffer, channelContext.getReadHandler());
+    channelContext.beginRead();
     channelContext.start();
 
     if (channelContext.getGroupContext().getAioListener() != null) {
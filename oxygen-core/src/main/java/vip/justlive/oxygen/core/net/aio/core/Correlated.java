@@ -0,0 +1,49 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package vip.justlive.oxygen.core.net.aio.core;
+
+/**
+ * 可关联请求和响应的消息
+ * <p>
+ * 响应需要携带请求的id，id为0表示不需要关联
+ * </p>
+ *
+ * @author wubo
+ */
+public interface Correlated {
+
+  /**
+   * 获取关联id
+   *
+   * @return id
+   */
+  long getId();
+
+  /**
+   * 设置关联id
+   *
+   * @param id 关联id
+   * @return 消息
+   */
+  Correlated setId(long id);
+
+  /**
+   * 脱离接收buffer，响应交给其他线程前调用
+   *
+   * @return 不再引用接收buffer的消息
+   */
+  default Correlated detach() {
+    return this;
+  }
+}
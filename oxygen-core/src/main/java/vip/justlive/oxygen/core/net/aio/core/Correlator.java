@@ -0,0 +1,206 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package vip.justlive.oxygen.core.net.aio.core;
+
+import java.nio.channels.ClosedChannelException;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.RequiredArgsConstructor;
+import vip.justlive.oxygen.core.exception.Exceptions;
+import vip.justlive.oxygen.core.util.TimingWheel;
+
+/**
+ * 请求响应关联器
+ * <p>
+ * 为请求分配id并登记等待中的future，读取到携带相同id的响应时完成；在途请求数超过上限时不阻塞发送方，
+ * 请求排队等待在途请求完成后发送，排队超过请求超时时间则失败
+ * </p>
+ *
+ * @author wubo
+ */
+public class Correlator {
+
+  private final GroupContext groupContext;
+  private final Semaphore permits;
+  private final AtomicLong ids = new AtomicLong();
+  private final Map<Long, Pending> pendings = new ConcurrentHashMap<>(64);
+  private final Queue<Pending> waiters = new ConcurrentLinkedQueue<>();
+
+  public Correlator(GroupContext groupContext) {
+    this.groupContext = groupContext;
+    this.permits = new Semaphore(Math.max(1, groupContext.getMaxInFlightRequests()));
+  }
+
+  /**
+   * 在途请求数
+   *
+   * @return 在途请求数
+   */
+  public int inFlight() {
+    return pendings.size();
+  }
+
+  /**
+   * 发送请求，在途请求数超过上限时排队，不阻塞调用线程
+   *
+   * @param channelContext channel上下文
+   * @param data 请求
+   * @param <T> 响应类型
+   * @return 响应future
+   */
+  @SuppressWarnings("unchecked")
+  public <T> CompletableFuture<T> request(ChannelContext channelContext, Correlated data) {
+    Pending pending = new Pending(channelContext, data);
+    if (permits.tryAcquire()) {
+      send(pending);
+      return (CompletableFuture<T>) pending;
+    }
+    pending.timeout = groupContext.getTimingWheel().newTimeout(() -> {
+      if (pending.claim()) {
+        waiters.remove(pending);
+        pending.completeExceptionally(Exceptions
+            .fail(String.format("在途请求数超过上限 %s", groupContext.getMaxInFlightRequests())));
+      }
+    }, groupContext.getRequestTimeout(), TimeUnit.MILLISECONDS);
+    waiters.offer(pending);
+    // 入队前许可可能已释放，重新获取避免排队的请求一直等到超时
+    if (permits.tryAcquire()) {
+      handoff();
+    }
+    return (CompletableFuture<T>) pending;
+  }
+
+  /**
+   * 使用读取的数据完成等待中的请求
+   *
+   * @param data 解码数据
+   * @return 是否为等待中请求的响应
+   */
+  public boolean complete(Object data) {
+    if (!(data instanceof Correlated)) {
+      return false;
+    }
+    long id = ((Correlated) data).getId();
+    if (id == 0) {
+      return false;
+    }
+    Pending pending = pendings.remove(id);
+    if (pending == null) {
+      return false;
+    }
+    pending.timeout.cancel();
+    pending.complete(((Correlated) data).detach());
+    return true;
+  }
+
+  /**
+   * channel关闭时使其上的在途请求和排队请求失败
+   *
+   * @param channelContext channel上下文
+   */
+  public void fail(ChannelContext channelContext) {
+    Iterator<Map.Entry<Long, Pending>> it = pendings.entrySet().iterator();
+    while (it.hasNext()) {
+      Pending pending = it.next().getValue();
+      if (pending.channelContext == channelContext) {
+        it.remove();
+        if (pending.timeout != null) {
+          pending.timeout.cancel();
+        }
+        pending.completeExceptionally(new ClosedChannelException());
+      }
+    }
+    Iterator<Pending> waiting = waiters.iterator();
+    while (waiting.hasNext()) {
+      Pending pending = waiting.next();
+      if (pending.channelContext == channelContext && pending.claim()) {
+        waiting.remove();
+        pending.timeout.cancel();
+        pending.completeExceptionally(new ClosedChannelException());
+      }
+    }
+  }
+
+  /**
+   * 持有许可时发送请求，完成后许可交给下一个排队的请求
+   */
+  private void send(Pending pending) {
+    pending.whenComplete((r, e) -> handoff());
+    long id = ids.incrementAndGet();
+    if (id == 0) {
+      id = ids.incrementAndGet();
+    }
+    pending.data.setId(id);
+    pendings.put(id, pending);
+    long requestId = id;
+    long timeout = groupContext.getRequestTimeout();
+    ChannelContext channelContext = pending.channelContext;
+    pending.timeout = groupContext.getTimingWheel().newTimeout(() -> {
+      if (pendings.remove(requestId, pending)) {
+        pending.completeExceptionally(new TimeoutException(
+            String.format("%s request [%s] timeout after %sms", channelContext, requestId,
+                timeout)));
+      }
+    }, timeout, TimeUnit.MILLISECONDS);
+    channelContext.write(pending.data);
+  }
+
+  /**
+   * 将持有的许可交给下一个排队的请求，没有排队请求时释放
+   */
+  private void handoff() {
+    for (; ; ) {
+      Pending next;
+      while ((next = waiters.poll()) != null) {
+        if (next.claim()) {
+          next.timeout.cancel();
+          if (!next.isDone()) {
+            send(next);
+            return;
+          }
+        }
+      }
+      permits.release();
+      // 释放后有新的请求入队，重新获取许可避免其一直等待
+      if (waiters.isEmpty() || !permits.tryAcquire()) {
+        return;
+      }
+    }
+  }
+
+  @RequiredArgsConstructor
+  private static class Pending extends CompletableFuture<Object> {
+
+    private final ChannelContext channelContext;
+    private final Correlated data;
+    private final AtomicBoolean waiting = new AtomicBoolean(true);
+    private volatile TimingWheel.Timeout timeout;
+
+    /**
+     * 结束排队，超时、关闭与发送只有一个能成功
+     */
+    boolean claim() {
+      return waiting.compareAndSet(true, false);
+    }
+  }
+}
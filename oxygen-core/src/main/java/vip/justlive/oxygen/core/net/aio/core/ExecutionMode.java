@@ -0,0 +1,36 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package vip.justlive.oxygen.core.net.aio.core;
+
+/**
+ * channel读写任务的执行模式
+ *
+ * @author wubo
+ */
+public enum ExecutionMode {
+
+  /**
+   * 所有channel共享工作线程池，适用于阻塞的处理逻辑
+   */
+  POOL,
+  /**
+   * 每个channel固定绑定到一个事件循环线程，适用于非阻塞的处理逻辑
+   */
+  EVENT_LOOP,
+  /**
+   * 使用虚拟线程执行，JDK不支持时退化为{@link #POOL}
+   */
+  VIRTUAL
+}
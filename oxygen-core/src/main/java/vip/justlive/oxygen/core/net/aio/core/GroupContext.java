@@ -18,19 +18,30 @@ import java.net.InetSocketAddress;
 import java.nio.channels.AsynchronousChannelGroup;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
 import lombok.Setter;
 import lombok.experimental.Accessors;
+import lombok.extern.slf4j.Slf4j;
 import vip.justlive.oxygen.core.util.ThreadUtils;
+import vip.justlive.oxygen.core.util.TimingWheel;
 
 /**
  * 聚合上下文
  *
  * @author wubo
  */
+@Slf4j
 @Getter
 @Setter
 @Accessors(chain = true)
@@ -54,6 +65,27 @@ public class GroupContext {
    * buffer大小
    */
   private int bufferCapacity = 8 * 1024;
+  /**
+   * 单个未解码完成的数据帧最大字节数，超出时关闭连接，0或负数不限制
+   */
+  private int maxFrameSize = 0;
+  /**
+   * 单个channel待写出字节数高水位，超过后channel不可写
+   */
+  private int writeBufferHighWaterMark = 64 * 1024;
+  /**
+   * 单个channel待写出字节数低水位，回落到该值后channel恢复可写
+   */
+  private int writeBufferLowWaterMark = 32 * 1024;
+  /**
+   * 所有channel待写出字节数上限，超出时所有channel不可写，回落到上限以下时恢复，0或负数不限制；
+   * 只统计已编码待写出的字节，WriteWorker队列中尚未编码的对象不计入
+   */
+  private long maxPendingBytes = 0;
+  /**
+   * 是否使用堆外内存buffer
+   */
+  private boolean directBuffer = false;
   /**
    * 服务端地址
    */
@@ -74,7 +106,43 @@ public class GroupContext {
    * 客户端最大重连次数， 0或负数一直重连
    */
   private int retryMaxAttempts = 0;
+  /**
+   * 客户端最大在途请求数，超出时请求排队，不阻塞发送方
+   */
+  private int maxInFlightRequests = 10000;
+  /**
+   * 客户端请求超时时间，毫秒
+   */
+  private long requestTimeout = 3000L;
 
+  /**
+   * 服务端监听数，大于1时每个监听使用独立的channel group，需要支持SO_REUSEPORT
+   */
+  private int acceptors = 1;
+  /**
+   * 服务端是否开启SO_REUSEPORT
+   */
+  private boolean reusePort = false;
+  /**
+   * 服务端连接队列大小，0使用系统默认值
+   */
+  private int backlog = 0;
+  /**
+   * 服务端每秒最多接收连接数，超出时延迟到下一秒再接收，0或负数不限制
+   */
+  private int maxAcceptsPerSecond = 0;
+  /**
+   * 服务端连接是否开启TCP_NODELAY
+   */
+  private boolean tcpNoDelay = true;
+  /**
+   * 服务端连接接收缓冲区大小，0或负数使用系统默认值
+   */
+  private int receiveBufferSize = 0;
+  /**
+   * 服务端连接发送缓冲区大小，0或负数使用系统默认值
+   */
+  private int sendBufferSize = 0;
   /**
    * 连接线程数
    */
@@ -91,16 +159,42 @@ public class GroupContext {
    * 工作线程最大等待数
    */
   private int workerMaxWaiter = 1000000;
+  /**
+   * 读写任务执行模式
+   */
+  private ExecutionMode executionMode = ExecutionMode.POOL;
+  /**
+   * 事件循环线程数，EVENT_LOOP模式下有效
+   */
+  private int eventLoopThreads = Runtime.getRuntime().availableProcessors();
+  /**
+   * 时间轮tick时长，毫秒
+   */
+  private long timerTick = 100L;
   /**
    * 是否hold住端口，true的话随主线程退出而退出，false的话则要主动退出
    */
   private boolean daemon = false;
 
-  private ThreadPoolExecutor groupExecutor;
-  private ThreadPoolExecutor workerExecutor;
-  private ScheduledExecutorService scheduledExecutor;
+  private volatile ThreadPoolExecutor groupExecutor;
+  private volatile ThreadPoolExecutor workerExecutor;
+  private volatile ScheduledExecutorService scheduledExecutor;
+  private ThreadPoolExecutor[] eventLoops;
+  private ExecutorService virtualExecutor;
+  private TimingWheel timingWheel;
+  @Getter(AccessLevel.NONE)
+  private final AtomicInteger eventLoopIndex = new AtomicInteger();
+  @Getter(AccessLevel.NONE)
+  private final AtomicLong pendingBytes = new AtomicLong();
+  @Getter(AccessLevel.NONE)
+  private final AtomicBoolean pendingBytesExceeded = new AtomicBoolean();
 
   private AsynchronousChannelGroup channelGroup;
+  private volatile BufferPool bufferPool;
+  /**
+   * 请求响应关联器，客户端连接池使用
+   */
+  private Correlator correlator;
 
   /**
    * 在线channel
@@ -116,39 +210,189 @@ public class GroupContext {
     if (channelGroup != null) {
       channelGroup.shutdown();
     }
-    groupExecutor.shutdown();
+    if (groupExecutor != null) {
+      groupExecutor.shutdown();
+    }
     if (workerExecutor != null) {
       workerExecutor.shutdown();
     }
+    if (eventLoops != null) {
+      for (ThreadPoolExecutor eventLoop : eventLoops) {
+        eventLoop.shutdown();
+      }
+    }
+    if (virtualExecutor != null) {
+      virtualExecutor.shutdown();
+    }
     if (scheduledExecutor != null) {
       scheduledExecutor.shutdown();
     }
+    if (timingWheel != null) {
+      timingWheel.stop();
+    }
   }
 
   public ThreadPoolExecutor getGroupExecutor() {
-    if (groupExecutor == null) {
-      groupExecutor = ThreadUtils
-          .newThreadPool(acceptThreads, acceptThreads, 120, acceptMaxWaiter, "aio-server-%d",
-              daemon);
-      groupExecutor.prestartCoreThread();
+    ThreadPoolExecutor executor = groupExecutor;
+    if (executor == null) {
+      synchronized (this) {
+        executor = groupExecutor;
+        if (executor == null) {
+          int threads = getEffectiveAcceptThreads();
+          executor = ThreadUtils
+              .newThreadPool(threads, threads, 120, acceptMaxWaiter, "aio-server-%d", daemon);
+          executor.prestartCoreThread();
+          groupExecutor = executor;
+        }
+      }
+    }
+    return executor;
+  }
+
+  /**
+   * channel group实际使用的线程数，EVENT_LOOP模式下group线程只负责io回调，不超过事件循环线程数
+   *
+   * @return 线程数
+   */
+  public int getEffectiveAcceptThreads() {
+    if (executionMode == ExecutionMode.EVENT_LOOP) {
+      return Math.max(1, Math.min(acceptThreads, eventLoopThreads));
     }
-    return groupExecutor;
+    return Math.max(1, acceptThreads);
   }
 
   public ThreadPoolExecutor getWorkerExecutor() {
-    if (workerExecutor == null) {
-      workerExecutor = ThreadUtils
-          .newThreadPool(workerThreads, workerThreads, 120, workerMaxWaiter, "aio-worker-%d");
-      workerExecutor.prestartCoreThread();
+    ThreadPoolExecutor executor = workerExecutor;
+    if (executor == null) {
+      synchronized (this) {
+        executor = workerExecutor;
+        if (executor == null) {
+          executor = ThreadUtils
+              .newThreadPool(workerThreads, workerThreads, 120, workerMaxWaiter, "aio-worker-%d");
+          executor.prestartCoreThread();
+          workerExecutor = executor;
+        }
+      }
+    }
+    return executor;
+  }
+
+  /**
+   * 根据执行模式为channel分配执行器
+   *
+   * @param channelContext channel上下文
+   * @return 执行器
+   */
+  public Executor nextExecutor(ChannelContext channelContext) {
+    if (executionMode == ExecutionMode.EVENT_LOOP) {
+      ThreadPoolExecutor[] loops = getEventLoops();
+      return loops[Math.abs(eventLoopIndex.getAndIncrement() % loops.length)];
+    }
+    if (executionMode == ExecutionMode.VIRTUAL) {
+      ExecutorService executor = getVirtualExecutor();
+      if (executor != null) {
+        return executor;
+      }
+    }
+    return getWorkerExecutor();
+  }
+
+  private synchronized ThreadPoolExecutor[] getEventLoops() {
+    if (eventLoops == null) {
+      int size = Math.max(1, eventLoopThreads);
+      ThreadPoolExecutor[] loops = new ThreadPoolExecutor[size];
+      for (int i = 0; i < size; i++) {
+        loops[i] = ThreadUtils
+            .newThreadPool(1, 1, 120, workerMaxWaiter, "aio-event-loop-" + i, daemon);
+        loops[i].prestartCoreThread();
+      }
+      eventLoops = loops;
+    }
+    return eventLoops;
+  }
+
+  private synchronized ExecutorService getVirtualExecutor() {
+    if (virtualExecutor == null) {
+      try {
+        virtualExecutor = (ExecutorService) Executors.class
+            .getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+      } catch (ReflectiveOperationException e) {
+        log.warn("virtual threads are not supported, fall back to worker pool");
+        executionMode = ExecutionMode.POOL;
+      }
+    }
+    return virtualExecutor;
+  }
+
+  /**
+   * 所有channel待写出的字节数
+   *
+   * @return 字节数
+   */
+  public long getPendingBytes() {
+    return pendingBytes.get();
+  }
+
+  /**
+   * 待写出字节数是否超过全局上限
+   *
+   * @return true为超过
+   */
+  public boolean isPendingBytesExceeded() {
+    return pendingBytesExceeded.get();
+  }
+
+  /**
+   * 累加待写出字节数，越过全局上限或回落时通知所有channel
+   *
+   * @param delta 增量，写出完成后为负数
+   */
+  void addPendingBytes(long delta) {
+    long pending = pendingBytes.addAndGet(delta);
+    if (delta > 0) {
+      if (maxPendingBytes > 0 && pending > maxPendingBytes && pendingBytesExceeded
+          .compareAndSet(false, true)) {
+        channels.values().forEach(ctx -> ctx.groupWritabilityChanged(false));
+      }
+    } else if ((maxPendingBytes <= 0 || pending <= maxPendingBytes) && pendingBytesExceeded
+        .compareAndSet(true, false)) {
+      channels.values().forEach(ctx -> ctx.groupWritabilityChanged(true));
+    }
+  }
+
+  public BufferPool getBufferPool() {
+    BufferPool pool = bufferPool;
+    if (pool == null) {
+      synchronized (this) {
+        pool = bufferPool;
+        if (pool == null) {
+          pool = new PooledBufferPool(directBuffer);
+          bufferPool = pool;
+        }
+      }
+    }
+    return pool;
+  }
+
+  public synchronized TimingWheel getTimingWheel() {
+    if (timingWheel == null) {
+      timingWheel = new TimingWheel(timerTick, TimeUnit.MILLISECONDS, 512, "aio-timer-%d");
     }
-    return workerExecutor;
+    return timingWheel;
   }
 
   public ScheduledExecutorService getScheduledExecutor() {
-    if (scheduledExecutor == null) {
-      scheduledExecutor = ThreadUtils.newScheduledExecutor(5, "aio-scheduled-%d");
+    ScheduledExecutorService executor = scheduledExecutor;
+    if (executor == null) {
+      synchronized (this) {
+        executor = scheduledExecutor;
+        if (executor == null) {
+          executor = ThreadUtils.newScheduledExecutor(5, "aio-scheduled-%d");
+          scheduledExecutor = executor;
+        }
+      }
     }
-    return scheduledExecutor;
+    return executor;
   }
 
   /**
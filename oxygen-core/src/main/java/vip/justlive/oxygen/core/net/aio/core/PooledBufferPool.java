@@ -0,0 +1,232 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package vip.justlive.oxygen.core.net.aio.core;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import lombok.Getter;
+
+/**
+ * 按容量分级的buffer池
+ * <p>
+ * 容量按2的幂分级，每个线程持有本地缓存，本地缓存满或空时与共享区交换；超过最大分级的buffer不做缓存。
+ * 只有申请过该分级的线程才把归还的buffer放入本地缓存，只归还不申请的线程（如在io线程申请、在工作线程归还）
+ * 直接归还到共享区；虚拟线程不使用本地缓存
+ * </p>
+ *
+ * @author wubo
+ */
+public class PooledBufferPool implements BufferPool {
+
+  /**
+   * Thread#isVirtual，低版本jdk不存在
+   */
+  private static final MethodHandle IS_VIRTUAL;
+
+  static {
+    MethodHandle handle = null;
+    try {
+      handle = MethodHandles.publicLookup()
+          .findVirtual(Thread.class, "isVirtual", MethodType.methodType(boolean.class));
+    } catch (ReflectiveOperationException e) {
+      // 不支持虚拟线程
+    }
+    IS_VIRTUAL = handle;
+  }
+
+  private final int minShift;
+  private final int maxCapacity;
+  @Getter
+  private final boolean direct;
+  private final int threadCacheSize;
+  private final Arena[] arenas;
+  private final ThreadLocal<ThreadCache> caches;
+
+  public PooledBufferPool(boolean direct) {
+    this(512, 1024 * 1024, 32, 1024, direct);
+  }
+
+  /**
+   * 构造buffer池
+   *
+   * @param minCapacity 最小分级容量
+   * @param maxCapacity 最大分级容量
+   * @param threadCacheSize 每个分级线程本地缓存数
+   * @param arenaSize 每个分级共享区缓存数
+   * @param direct 是否使用堆外内存
+   */
+  public PooledBufferPool(int minCapacity, int maxCapacity, int threadCacheSize, int arenaSize,
+      boolean direct) {
+    this.minShift = 31 - Integer.numberOfLeadingZeros(ceil(Math.max(minCapacity, 16)));
+    this.maxCapacity = ceil(Math.max(maxCapacity, 1 << minShift));
+    this.direct = direct;
+    this.threadCacheSize = threadCacheSize;
+    int classes = index(this.maxCapacity) + 1;
+    this.arenas = new Arena[classes];
+    for (int i = 0; i < classes; i++) {
+      arenas[i] = new Arena(arenaSize);
+    }
+    this.caches = ThreadLocal.withInitial(() -> new ThreadCache(classes, threadCacheSize));
+  }
+
+  @Override
+  public ByteBuffer acquire(int capacity) {
+    if (capacity > maxCapacity) {
+      return allocate(capacity);
+    }
+    int index = index(capacity);
+    ByteBuffer buffer = null;
+    ThreadCache cache = threadCache();
+    if (cache != null) {
+      buffer = cache.poll(index);
+    }
+    if (buffer == null) {
+      buffer = arenas[index].poll();
+    }
+    if (buffer == null) {
+      return allocate(1 << (index + minShift));
+    }
+    buffer.clear();
+    return buffer.order(ByteOrder.BIG_ENDIAN);
+  }
+
+  @Override
+  public void release(ByteBuffer buffer) {
+    if (buffer == null || buffer.isDirect() != direct || buffer.isReadOnly()) {
+      return;
+    }
+    int capacity = buffer.capacity();
+    if (capacity > maxCapacity || Integer.bitCount(capacity) != 1 || capacity < (1 << minShift)) {
+      return;
+    }
+    int index = index(capacity);
+    ThreadCache cache = threadCache();
+    if (cache != null && cache.offer(index, buffer)) {
+      return;
+    }
+    arenas[index].offer(buffer);
+  }
+
+  private ThreadCache threadCache() {
+    if (threadCacheSize <= 0 || isVirtual(Thread.currentThread())) {
+      return null;
+    }
+    return caches.get();
+  }
+
+  private static boolean isVirtual(Thread thread) {
+    if (IS_VIRTUAL == null) {
+      return false;
+    }
+    try {
+      return (boolean) IS_VIRTUAL.invokeExact(thread);
+    } catch (Throwable e) {
+      return false;
+    }
+  }
+
+  private ByteBuffer allocate(int capacity) {
+    if (direct) {
+      return ByteBuffer.allocateDirect(capacity);
+    }
+    return ByteBuffer.allocate(capacity);
+  }
+
+  private int index(int capacity) {
+    if (capacity <= (1 << minShift)) {
+      return 0;
+    }
+    return 32 - Integer.numberOfLeadingZeros(capacity - 1) - minShift;
+  }
+
+  private static int ceil(int value) {
+    int highest = Integer.highestOneBit(value);
+    return highest == value ? value : highest << 1;
+  }
+
+  /**
+   * 线程本地缓存，只在所属线程内访问
+   */
+  private static class ThreadCache {
+
+    final ByteBuffer[][] buffers;
+    final int[] sizes;
+    /**
+     * 当前线程是否申请过该分级
+     */
+    final boolean[] active;
+
+    ThreadCache(int classes, int size) {
+      this.buffers = new ByteBuffer[classes][size];
+      this.sizes = new int[classes];
+      this.active = new boolean[classes];
+    }
+
+    ByteBuffer poll(int index) {
+      active[index] = true;
+      if (sizes[index] == 0) {
+        return null;
+      }
+      int size = --sizes[index];
+      ByteBuffer buffer = buffers[index][size];
+      buffers[index][size] = null;
+      return buffer;
+    }
+
+    boolean offer(int index, ByteBuffer buffer) {
+      if (!active[index] || sizes[index] == buffers[index].length) {
+        return false;
+      }
+      buffers[index][sizes[index]++] = buffer;
+      return true;
+    }
+  }
+
+  /**
+   * 共享区
+   */
+  private static class Arena {
+
+    final Queue<ByteBuffer> queue = new ConcurrentLinkedQueue<>();
+    final AtomicInteger size = new AtomicInteger();
+    final int maxSize;
+
+    Arena(int maxSize) {
+      this.maxSize = maxSize;
+    }
+
+    ByteBuffer poll() {
+      ByteBuffer buffer = queue.poll();
+      if (buffer != null) {
+        size.decrementAndGet();
+      }
+      return buffer;
+    }
+
+    void offer(ByteBuffer buffer) {
+      if (size.incrementAndGet() > maxSize) {
+        size.decrementAndGet();
+        return;
+      }
+      queue.offer(buffer);
+    }
+  }
+}
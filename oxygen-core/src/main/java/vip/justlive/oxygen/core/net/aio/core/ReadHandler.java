@@ -39,6 +39,7 @@ public class ReadHandler implements CompletionHandler<Integer, ByteBuffer> {
       } else {
         log.warn("{} read result {}", channelContext, result);
       }
+      channelContext.getGroupContext().getBufferPool().release(buffer);
       channelContext.close();
       return;
     }
@@ -47,13 +48,13 @@ public class ReadHandler implements CompletionHandler<Integer, ByteBuffer> {
     channelContext.read(buffer);
 
     if (!channelContext.isClosed()) {
-      buffer.clear();
-      channelContext.getChannel().read(buffer, buffer, this);
+      channelContext.beginRead();
     }
   }
 
   @Override
   public void failed(Throwable exc, ByteBuffer buffer) {
+    channelContext.getGroupContext().getBufferPool().release(buffer);
     if (!(channelContext.isClosed() && exc instanceof AsynchronousCloseException)) {
       log.error("{} read error", channelContext, exc);
     }
@@ -16,7 +16,9 @@ package vip.justlive.oxygen.core.net.aio.core;
 
 import java.nio.ByteBuffer;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
 import lombok.extern.slf4j.Slf4j;
+import vip.justlive.oxygen.core.exception.Exceptions;
 
 /**
  * 读操作worker
@@ -27,30 +29,41 @@ import lombok.extern.slf4j.Slf4j;
 public class ReadWorker extends AbstractWorker<ByteBuffer> {
 
   private final AioHandler aioHandler;
+  private final BufferPool pool;
   /**
-   * 上一次遗留buffer
+   * 累积buffer，保存未解码完成的数据，处于读模式；stop可能在其他线程调用，通过原子交换保证只归还一次
    */
-  private ByteBuffer lastByteBuffer = null;
+  private final AtomicReference<ByteBuffer> cumulation = new AtomicReference<>();
 
   ReadWorker(ChannelContext channelContext) {
     super(channelContext);
     this.aioHandler = channelContext.getGroupContext().getAioHandler();
+    this.pool = channelContext.getGroupContext().getBufferPool();
   }
 
   @Override
   public void handle(List<ByteBuffer> buffers) {
-    if (lastByteBuffer != null) {
-      buffers.add(0, lastByteBuffer);
-      lastByteBuffer = null;
+    ByteBuffer buffer;
+    ByteBuffer saved = cumulation.getAndSet(null);
+    if (saved == null && buffers.size() == 1) {
+      buffer = buffers.get(0);
+    } else {
+      buffer = cumulate(saved, buffers);
     }
-    ByteBuffer buffer = Utils.composite(buffers);
+    boolean close = false;
     while (buffer.hasRemaining()) {
       try {
         int position = buffer.position();
         int limit = buffer.limit();
         int readableSize = limit - position;
         Object data = aioHandler.decode(buffer, readableSize, channelContext);
-        if (data != null) {
+        if (data == AioHandler.CONSUMED) {
+          // 已流式消费，继续处理剩余数据
+          channelContext.setLastReceivedAt(System.currentTimeMillis());
+          if (buffer.position() == position) {
+            throw Exceptions.fail("解码返回CONSUMED但未消费数据");
+          }
+        } else if (data != null) {
           //解码成功
           if (log.isDebugEnabled()) {
             log.debug("{} decoded packet successfully,{} bytes", channelContext,
@@ -62,24 +75,93 @@ public class ReadWorker extends AbstractWorker<ByteBuffer> {
           //数据不够
           buffer.position(position);
           buffer.limit(limit);
-          lastByteBuffer = buffer;
           if (log.isDebugEnabled()) {
             log.debug("{} decoded failed,remain {} bytes", channelContext, readableSize);
           }
-          break;
+          int maxFrameSize = channelContext.getGroupContext().getMaxFrameSize();
+          if (maxFrameSize > 0 && readableSize > maxFrameSize) {
+            log.warn("{} frame exceeds max size {}, closing", channelContext, maxFrameSize);
+            close = true;
+            break;
+          }
+          cumulation.set(buffer);
+          if (stopped && cumulation.compareAndSet(buffer, null)) {
+            pool.release(buffer);
+          }
+          return;
         }
       } catch (Exception e) {
         log.error("aio decode error", e);
-        channelContext.close();
-        return;
+        close = true;
+        break;
       }
     }
+    pool.release(buffer);
+    if (close) {
+      channelContext.close();
+    }
+  }
+
+  @Override
+  public void stop() {
+    ByteBuffer buffer;
+    while ((buffer = queue.poll()) != null) {
+      pool.release(buffer);
+    }
+    super.stop();
+    buffer = cumulation.getAndSet(null);
+    if (buffer != null) {
+      pool.release(buffer);
+    }
+  }
+
+  /**
+   * 将读取的数据追加到累积buffer，空间不足时先原地压缩，仍不足则按2倍扩容
+   *
+   * @param saved 上次未解码完成的数据
+   * @param buffers 读取的数据
+   * @return 累积buffer
+   */
+  private ByteBuffer cumulate(ByteBuffer saved, List<ByteBuffer> buffers) {
+    int required = 0;
+    for (ByteBuffer buffer : buffers) {
+      required += buffer.remaining();
+    }
+    ByteBuffer target = saved;
+    int start = 0;
+    if (target == null) {
+      target = pool.acquire(required);
+    } else {
+      required += target.remaining();
+      if (target.capacity() < required) {
+        ByteBuffer expanded = pool.acquire(Math.max(target.capacity() << 1, required));
+        expanded.put(target);
+        pool.release(target);
+        target = expanded;
+      } else if (target.capacity() - target.limit() < required - target.remaining()) {
+        target.compact();
+      } else {
+        // 直接追加到尾部，保留前面已解码数据之后的读取位置
+        start = target.position();
+        target.position(target.limit()).limit(target.capacity());
+      }
+    }
+    for (ByteBuffer buffer : buffers) {
+      target.put(buffer);
+      pool.release(buffer);
+    }
+    target.flip();
+    target.position(start);
+    return target;
   }
 
   private void doHandle(Object data) {
     Throwable e = null;
     try {
-      aioHandler.handle(data, channelContext);
+      Correlator correlator = channelContext.getGroupContext().getCorrelator();
+      if (correlator == null || !correlator.complete(data)) {
+        aioHandler.handle(data, channelContext);
+      }
     } catch (Throwable exc) {
       e = exc;
     } finally {
@@ -70,8 +70,8 @@ public class RetryProcessor implements Runnable {
           client.getGroupContext().getServerAddress(), e);
     } finally {
       if (hasNext) {
-        client.getGroupContext().getScheduledExecutor()
-            .schedule(this, client.getGroupContext().getRetryInterval(), TimeUnit.MILLISECONDS);
+        client.getGroupContext().getTimingWheel()
+            .newTimeout(this, client.getGroupContext().getRetryInterval(), TimeUnit.MILLISECONDS);
       }
     }
   }
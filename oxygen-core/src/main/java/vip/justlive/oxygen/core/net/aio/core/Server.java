@@ -11,28 +11,49 @@
  * or implied. See the License for the specific language governing permissions and limitations under
  * the License.
  */
-
 package vip.justlive.oxygen.core.net.aio.core;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.SocketOption;
 import java.net.StandardSocketOptions;
 import java.nio.channels.AsynchronousChannelGroup;
 import java.nio.channels.AsynchronousServerSocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import vip.justlive.oxygen.core.util.ThreadUtils;
 
 /**
  * aio服务端
+ * <p>
+ * 支持多个监听共享端口（SO_REUSEPORT），每个监听使用独立的channel group，由内核分发新连接
+ * </p>
  *
  * @author wubo
  */
+@Slf4j
 @Getter
 @RequiredArgsConstructor
 public class Server {
 
   private final GroupContext groupContext;
   private AsynchronousServerSocketChannel serverChannel;
+  private final List<AsynchronousServerSocketChannel> serverChannels = new ArrayList<>(1);
+  @Getter(AccessLevel.NONE)
+  private final List<AsynchronousChannelGroup> acceptGroups = new ArrayList<>(1);
+  @Getter(AccessLevel.NONE)
+  private final List<ThreadPoolExecutor> acceptExecutors = new ArrayList<>(1);
+  /**
+   * 高32位为当前秒窗口，低32位为窗口内已接收数
+   */
+  @Getter(AccessLevel.NONE)
+  private final AtomicLong acceptState = new AtomicLong();
 
   /**
    * 启动服务
@@ -57,10 +78,37 @@ public class Server {
         .withThreadPool(groupContext.getGroupExecutor());
     groupContext.setChannelGroup(channelGroup);
     groupContext.setServerAddress(address);
-    serverChannel = AsynchronousServerSocketChannel.open(channelGroup)
-        .setOption(StandardSocketOptions.SO_REUSEADDR, true).bind(address);
 
-    serverChannel.accept(this, new AcceptHandler());
+    int acceptors = Math.max(1, groupContext.getAcceptors());
+    SocketOption<Boolean> reusePort = null;
+    if (acceptors > 1 || groupContext.isReusePort()) {
+      reusePort = Utils.reusePortOption();
+    }
+    serverChannel = open(channelGroup, address, reusePort);
+    if (acceptors > 1 && !serverChannel.supportedOptions().contains(reusePort)) {
+      log.warn("SO_REUSEPORT is not supported, fall back to single acceptor");
+      acceptors = 1;
+    }
+    serverChannels.add(serverChannel);
+
+    // 端口为0时其余监听绑定到实际分配的端口
+    InetSocketAddress bound = (InetSocketAddress) serverChannel.getLocalAddress();
+    int threads = Math.max(1, groupContext.getEffectiveAcceptThreads() / acceptors);
+    for (int i = 1; i < acceptors; i++) {
+      ThreadPoolExecutor executor = ThreadUtils
+          .newThreadPool(threads, threads, 120, groupContext.getAcceptMaxWaiter(),
+              "aio-server-" + i + "-%d", groupContext.isDaemon());
+      executor.prestartCoreThread();
+      acceptExecutors.add(executor);
+      AsynchronousChannelGroup group = AsynchronousChannelGroup.withThreadPool(executor);
+      acceptGroups.add(group);
+      serverChannels.add(open(group,
+          new InetSocketAddress(address.getAddress(), bound.getPort()), reusePort));
+    }
+
+    for (AsynchronousServerSocketChannel channel : serverChannels) {
+      channel.accept(this, new AcceptHandler(channel));
+    }
   }
 
   /**
@@ -71,12 +119,61 @@ public class Server {
       return;
     }
     groupContext.setStopped(true);
-    try {
-      serverChannel.close();
-    } catch (IOException e) {
-      // ignore
+    for (AsynchronousServerSocketChannel channel : serverChannels) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        // ignore
+      }
     }
+    serverChannels.clear();
     groupContext.close();
+    acceptGroups.forEach(AsynchronousChannelGroup::shutdown);
+    acceptGroups.clear();
+    acceptExecutors.forEach(ThreadPoolExecutor::shutdown);
+    acceptExecutors.clear();
+  }
+
+  /**
+   * 申请接收一个连接
+   *
+   * @return 0为申请成功，否则为需要等待的毫秒数
+   */
+  long acquireAccept() {
+    int limit = groupContext.getMaxAcceptsPerSecond();
+    if (limit <= 0) {
+      return 0;
+    }
+    long now = System.currentTimeMillis();
+    long current = now / 1000;
+    for (; ; ) {
+      long state = acceptState.get();
+      long next;
+      if (state >>> 32 != current) {
+        next = current << 32 | 1;
+      } else if ((int) state < limit) {
+        next = state + 1;
+      } else {
+        return (current + 1) * 1000 - now;
+      }
+      if (acceptState.compareAndSet(state, next)) {
+        return 0;
+      }
+    }
+  }
+
+  private AsynchronousServerSocketChannel open(AsynchronousChannelGroup group,
+      InetSocketAddress address, SocketOption<Boolean> reusePort) throws IOException {
+    AsynchronousServerSocketChannel channel = AsynchronousServerSocketChannel.open(group)
+        .setOption(StandardSocketOptions.SO_REUSEADDR, true);
+    if (reusePort != null && channel.supportedOptions().contains(reusePort)) {
+      channel.setOption(reusePort, true);
+    }
+    if (groupContext.getReceiveBufferSize() > 0) {
+      // 监听上设置才能对新连接的握手窗口生效
+      channel.setOption(StandardSocketOptions.SO_RCVBUF, groupContext.getReceiveBufferSize());
+    }
+    return channel.bind(address, groupContext.getBacklog());
   }
 
 }
@@ -16,6 +16,7 @@ package vip.justlive.oxygen.core.net.aio.core;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
+import java.net.SocketOption;
 import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
 import java.nio.channels.AsynchronousSocketChannel;
@@ -79,6 +80,21 @@ public class Utils {
     return ret;
   }
 
+  /**
+   * 获取SO_REUSEPORT选项，jdk9以下不支持
+   *
+   * @return 选项，不支持时返回null
+   */
+  @SuppressWarnings("unchecked")
+  public static SocketOption<Boolean> reusePortOption() {
+    try {
+      return (SocketOption<Boolean>) StandardSocketOptions.class.getField("SO_REUSEPORT")
+          .get(null);
+    } catch (ReflectiveOperationException e) {
+      return null;
+    }
+  }
+
   /**
    * 创建一个channel
    *
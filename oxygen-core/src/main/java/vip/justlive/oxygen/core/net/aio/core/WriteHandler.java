@@ -17,44 +17,62 @@ package vip.justlive.oxygen.core.net.aio.core;
 import java.nio.ByteBuffer;
 import java.nio.channels.CompletionHandler;
 import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 
 /**
- * aio写操作处理
+ * aio写操作处理，使用gathering write写出多个buffer
  *
  * @author wubo
  */
 @Slf4j
 @RequiredArgsConstructor
-public class WriteHandler implements CompletionHandler<Integer, WriteHandler.WriteContext> {
+public class WriteHandler implements CompletionHandler<Long, WriteHandler.WriteContext> {
 
   private final ChannelContext channelContext;
 
   @Override
-  public void completed(Integer result, WriteContext ctx) {
+  public void completed(Long result, WriteContext ctx) {
     channelContext.setLastSentAt(System.currentTimeMillis());
-    if (ctx.buffer.hasRemaining()) {
+    while (ctx.offset < ctx.buffers.length && !ctx.buffers[ctx.offset].hasRemaining()) {
+      ctx.offset++;
+    }
+    if (ctx.offset < ctx.buffers.length) {
       if (log.isDebugEnabled()) {
-        log.debug("{} sent remained. {}/{}", channelContext, ctx.buffer.position(),
-            ctx.buffer.limit());
+        log.debug("{} sent remained. {}/{}", channelContext, ctx.offset, ctx.buffers.length);
       }
-      channelContext.getChannel().write(ctx.buffer, ctx, this);
+      write(ctx);
     } else {
+      channelContext.getWriteWorker().recycle(ctx);
       ctx.future.complete(null);
     }
   }
 
   @Override
   public void failed(Throwable exc, WriteContext ctx) {
+    channelContext.getWriteWorker().recycle(ctx);
     ctx.future.completeExceptionally(exc);
   }
 
+  /**
+   * 写出未完成的buffer
+   *
+   * @param ctx 写上下文
+   */
+  void write(WriteContext ctx) {
+    channelContext.getChannel()
+        .write(ctx.buffers, ctx.offset, ctx.buffers.length - ctx.offset, 0L, TimeUnit.MILLISECONDS,
+            ctx, this);
+  }
+
   @RequiredArgsConstructor
   static class WriteContext {
 
     final CompletableFuture<Void> future;
-    final ByteBuffer buffer;
+    final ByteBuffer[] buffers;
+    final long size;
+    int offset;
 
   }
 }
@@ -15,9 +15,11 @@
 package vip.justlive.oxygen.core.net.aio.core;
 
 import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.concurrent.CompletableFuture;
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import vip.justlive.oxygen.core.util.MoreObjects;
 
@@ -40,6 +42,12 @@ public class WriteWorker extends AbstractWorker<Object> {
   @Override
   public void stop() {
     writeFuture.cancel(true);
+    Object obj;
+    while ((obj = queue.poll()) != null) {
+      if (obj instanceof Promise) {
+        ((Promise) obj).future.completeExceptionally(new ClosedChannelException());
+      }
+    }
     super.stop();
   }
 
@@ -50,35 +58,83 @@ public class WriteWorker extends AbstractWorker<Object> {
     }
 
     List<ByteBuffer> buffers = new ArrayList<>(data.size());
+    List<Object> items = new ArrayList<>(data.size());
+    List<CompletableFuture<Void>> promises = null;
     for (Object obj : data) {
-      ByteBuffer buffer = aioHandler.encode(obj, channelContext);
-      if (!buffer.hasRemaining()) {
-        buffer.flip();
+      if (obj instanceof Promise) {
+        if (promises == null) {
+          promises = new ArrayList<>(4);
+        }
+        promises.add(((Promise) obj).future);
+        obj = ((Promise) obj).data;
+      }
+      items.add(obj);
+      int index = buffers.size();
+      aioHandler.encode(obj, channelContext, buffers);
+      for (int i = index; i < buffers.size(); i++) {
+        ByteBuffer buffer = buffers.get(i);
+        if (!buffer.hasRemaining()) {
+          buffer.flip();
+        }
       }
-      buffers.add(buffer);
     }
 
     if (channelContext.isClosed()) {
+      buffers.forEach(buffer -> aioHandler.release(buffer, channelContext));
+      if (promises != null) {
+        promises.forEach(f -> f.completeExceptionally(new ClosedChannelException()));
+      }
       return;
     }
 
-    write(Utils.composite(buffers), data);
+    long size = 0;
+    for (ByteBuffer buffer : buffers) {
+      size += buffer.remaining();
+    }
+    channelContext.addPendingBytes(size);
+    write(buffers.toArray(new ByteBuffer[0]), size, items, promises);
+  }
+
+  /**
+   * 写出完成后归还buffer并扣减待写出字节数
+   *
+   * @param ctx 写上下文
+   */
+  void recycle(WriteHandler.WriteContext ctx) {
+    for (ByteBuffer buffer : ctx.buffers) {
+      aioHandler.release(buffer, channelContext);
+    }
+    channelContext.addPendingBytes(-ctx.size);
   }
 
-  private synchronized void write(ByteBuffer buffer, List<Object> data) {
+  private synchronized void write(ByteBuffer[] buffers, long size, List<Object> data,
+      List<CompletableFuture<Void>> promises) {
     CompletableFuture<Void> future = new CompletableFuture<>();
-    future.whenComplete((r, e) -> complete(e, data));
-    writeFuture.whenComplete((r, e) -> write(future, buffer, data));
+    future.whenComplete((r, e) -> {
+      complete(e, data);
+      if (promises == null) {
+        return;
+      }
+      for (CompletableFuture<Void> promise : promises) {
+        if (e == null) {
+          promise.complete(null);
+        } else {
+          promise.completeExceptionally(e);
+        }
+      }
+    });
+    WriteHandler.WriteContext ctx = new WriteHandler.WriteContext(future, buffers, size);
+    writeFuture.whenComplete((r, e) -> write(ctx));
     writeFuture = future;
   }
 
-  private void write(CompletableFuture<Void> future, ByteBuffer buffer, List<Object> data) {
+  private void write(WriteHandler.WriteContext ctx) {
     try {
-      WriteHandler.WriteContext ctx = new WriteHandler.WriteContext(future, buffer);
-      channelContext.getChannel().write(ctx.buffer, ctx, channelContext.getWriteHandler());
+      channelContext.getWriteHandler().write(ctx);
     } catch (Exception e) {
       log.error("write error", e);
-      complete(e, data);
+      recycle(ctx);
+      ctx.future.completeExceptionally(e);
     }
   }
 
@@ -89,4 +145,14 @@ public class WriteWorker extends AbstractWorker<Object> {
     }
   }
 
+  /**
+   * 需要通知写出结果的数据
+   */
+  @RequiredArgsConstructor
+  static class Promise {
+
+    final Object data;
+    final CompletableFuture<Void> future;
+  }
+
 }
@@ -11,32 +11,125 @@
  * or implied. See the License for the specific language governing permissions and limitations under
  * the License.
  */
-
 package vip.justlive.oxygen.core.net.aio.protocol;
 
+import java.nio.ByteBuffer;
 import lombok.Data;
 import lombok.experimental.Accessors;
+import vip.justlive.oxygen.core.net.aio.core.Correlated;
 
 /**
  * 请求体包装，消息头指定消息长度和类型
+ * <p>
+ * 消息体可以是byte数组或ByteBuffer；{@link LengthFrameHandler#setSliceBody(boolean)}开启时解码得到的消息体是接收buffer的只读切片，
+ * 只在handle期间有效，需要保留时调用{@link #detach()}
+ * </p>
  *
  * @author wubo
  */
 @Data
 @Accessors(chain = true)
-public class LengthFrame {
+public class LengthFrame implements Correlated {
 
   /**
-   * 消息头基础长度（类型+数据大小）
+   * 消息头基础长度（数据大小+类型）
    */
   public static final int BASE_LENGTH = 8;
+  /**
+   * 关联id长度，{@link LengthFrameHandler#setCorrelated(boolean)}开启时追加在基础消息头后
+   */
+  public static final int ID_LENGTH = 8;
 
   /**
    * 类型，-1固定为心跳类型
    */
   private int type;
+  /**
+   * 关联id，响应携带请求的id，0表示不关联；定长消息头只在开启correlated时写出
+   */
+  private long id;
   /**
    * 请求体
    */
   private byte[] body;
+  /**
+   * 请求体buffer，编码时按引用写出，写出完成前不能修改
+   */
+  private ByteBuffer bodyBuffer;
+
+  /**
+   * 获取请求体，请求体为buffer时每次复制一份，不缓存
+   *
+   * @return 请求体
+   */
+  public byte[] getBody() {
+    if (body == null && bodyBuffer != null) {
+      byte[] bytes = new byte[bodyBuffer.remaining()];
+      bodyBuffer.duplicate().get(bytes);
+      return bytes;
+    }
+    return body;
+  }
+
+  /**
+   * 设置请求体，替换已设置的请求体buffer
+   *
+   * @param body 请求体
+   * @return frame
+   */
+  public LengthFrame setBody(byte[] body) {
+    this.body = body;
+    this.bodyBuffer = null;
+    return this;
+  }
+
+  /**
+   * 设置请求体buffer，替换已设置的请求体
+   *
+   * @param bodyBuffer 请求体buffer
+   * @return frame
+   */
+  public LengthFrame setBodyBuffer(ByteBuffer bodyBuffer) {
+    this.bodyBuffer = bodyBuffer;
+    this.body = null;
+    return this;
+  }
+
+  /**
+   * 获取请求体buffer，不会修改原buffer的position
+   *
+   * @return 只读buffer，没有请求体时返回null
+   */
+  public ByteBuffer getBodyBuffer() {
+    if (bodyBuffer != null) {
+      return bodyBuffer.asReadOnlyBuffer();
+    }
+    if (body != null) {
+      return ByteBuffer.wrap(body).asReadOnlyBuffer();
+    }
+    return null;
+  }
+
+  /**
+   * 请求体大小
+   *
+   * @return 字节数
+   */
+  public int bodySize() {
+    if (body != null) {
+      return body.length;
+    }
+    if (bodyBuffer != null) {
+      return bodyBuffer.remaining();
+    }
+    return 0;
+  }
+
+  @Override
+  public LengthFrame detach() {
+    if (bodyBuffer != null) {
+      setBody(getBody());
+    }
+    return this;
+  }
 }
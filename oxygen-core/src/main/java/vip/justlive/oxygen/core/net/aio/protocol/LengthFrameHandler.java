@@ -11,56 +11,139 @@
  * or implied. See the License for the specific language governing permissions and limitations under
  * the License.
  */
-
 package vip.justlive.oxygen.core.net.aio.protocol;
 
+import java.io.ByteArrayOutputStream;
 import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.experimental.Accessors;
 import vip.justlive.oxygen.core.exception.Exceptions;
 import vip.justlive.oxygen.core.net.aio.core.AioHandler;
 import vip.justlive.oxygen.core.net.aio.core.ChannelContext;
 
 /**
  * 消息头指定消息长度和类型处理
+ * <p>
+ * 默认消息头为定长：数据大小(4)+类型(4)，开启correlated时追加关联id(8)；紧凑模式下为：标识(1)+数据大小+类型+关联id均为varint+校验和(4，可选)，
+ * 标识记录了是否有校验和以及是否压缩，解码时按标识处理
+ * </p>
  *
  * @author wubo
  */
+@Getter
+@Setter
+@Accessors(chain = true)
 public class LengthFrameHandler implements AioHandler {
 
   private static final LengthFrame BEAT = new LengthFrame().setType(-1);
+  /**
+   * 消息体超过该大小时消息头和消息体分开写出
+   */
+  private static final int MIN_GATHERING_SIZE = 1024;
+  /**
+   * 紧凑消息头最大长度（标识+数据大小+类型+关联id+校验和）
+   */
+  private static final int MAX_COMPACT_HEADER = 1 + 5 + 5 + 10 + 4;
+  private static final int MAX_VARINT_BYTES = 10;
+  private static final int FLAG_CRC = 1;
+  private static final int FLAG_DEFLATE = 1 << 1;
+
+  /**
+   * 定长消息头是否携带关联id，两端需要一致；使用{@link vip.justlive.oxygen.core.net.aio.core.ClientPool}
+   * 请求时需要开启或使用紧凑消息头
+   */
+  private boolean correlated;
+  /**
+   * 是否使用紧凑消息头，两端需要一致
+   */
+  private boolean compact;
+  /**
+   * 是否写出消息体CRC32校验和，仅紧凑模式有效
+   */
+  private boolean checksum;
+  /**
+   * 消息体超过该大小时使用deflate压缩，仅紧凑模式有效，0或负数不压缩
+   */
+  private int compressThreshold;
+  /**
+   * 解码的消息体是否直接使用接收buffer的只读切片，开启后消息体只在handle期间有效
+   */
+  private boolean sliceBody;
+  /**
+   * 解压后消息体最大字节数，超出时解码失败，0或负数不限制；同时受maxFrameSize限制
+   */
+  private int maxInflatedSize = 16 * 1024 * 1024;
 
   @Override
   public ByteBuffer encode(Object data, ChannelContext channelContext) {
-    if (data instanceof LengthFrame) {
-      LengthFrame frame = (LengthFrame) data;
-      int bodySize = 0;
-      if (frame.getBody() != null) {
-        bodySize = frame.getBody().length;
-      }
+    LengthFrame frame = cast(data);
+    int flags = flags(frame);
+    ByteBuffer body = payload(frame, flags);
+    int bodySize = body == null ? 0 : body.remaining();
+    ByteBuffer buffer = channelContext.getGroupContext().getBufferPool()
+        .acquire(headerSize() + bodySize);
+    writeHeader(buffer, frame, body, flags);
+    if (body != null) {
+      buffer.put(body);
+    }
+    buffer.flip();
+    return buffer;
+  }
 
-      ByteBuffer buffer = ByteBuffer.allocate(LengthFrame.BASE_LENGTH + bodySize);
-      buffer.putInt(bodySize);
-      buffer.putInt(frame.getType());
-      if (bodySize > 0) {
-        buffer.put(frame.getBody());
+  @Override
+  public void encode(Object data, ChannelContext channelContext, List<ByteBuffer> out) {
+    LengthFrame frame = cast(data);
+    int flags = flags(frame);
+    ByteBuffer body = payload(frame, flags);
+    if (body == null || body.remaining() < MIN_GATHERING_SIZE) {
+      ByteBuffer buffer = channelContext.getGroupContext().getBufferPool()
+          .acquire(headerSize() + (body == null ? 0 : body.remaining()));
+      writeHeader(buffer, frame, body, flags);
+      if (body != null) {
+        buffer.put(body);
       }
-      return buffer;
+      buffer.flip();
+      out.add(buffer);
+      return;
     }
-    throw Exceptions.fail(String.format("参数类型不匹配, %s -> %s", data.getClass(), LengthFrame.class));
+    ByteBuffer header = channelContext.getGroupContext().getBufferPool().acquire(headerSize());
+    writeHeader(header, frame, body, flags);
+    header.flip();
+    out.add(header);
+    // 只读buffer不会被归还到buffer池
+    out.add(body);
+  }
+
+  @Override
+  public void release(ByteBuffer buffer, ChannelContext channelContext) {
+    channelContext.getGroupContext().getBufferPool().release(buffer);
   }
 
   @Override
   public Object decode(ByteBuffer buffer, int readableSize, ChannelContext channelContext) {
-    if (readableSize < LengthFrame.BASE_LENGTH) {
+    if (compact) {
+      return decodeCompact(buffer, channelContext);
+    }
+    int headerSize = headerSize();
+    if (readableSize < headerSize) {
       return null;
     }
     int bodySize = buffer.getInt();
-    if (readableSize - LengthFrame.BASE_LENGTH < bodySize) {
+    checkSize(bodySize, channelContext);
+    if (readableSize - headerSize < bodySize) {
       return null;
     }
     LengthFrame frame = new LengthFrame().setType(buffer.getInt());
-    byte[] bytes = new byte[bodySize];
-    buffer.get(bytes);
-    return frame.setBody(bytes);
+    if (correlated) {
+      frame.setId(buffer.getLong());
+    }
+    return readBody(frame, buffer, bodySize, 0, 0, channelContext);
   }
 
   @Override
@@ -72,4 +155,219 @@ public class LengthFrameHandler implements AioHandler {
   public Object beat(ChannelContext channelContext) {
     return BEAT;
   }
+
+  private Object decodeCompact(ByteBuffer buffer, ChannelContext channelContext) {
+    if (!buffer.hasRemaining()) {
+      return null;
+    }
+    int flags = buffer.get();
+    if (!hasVarint(buffer)) {
+      return null;
+    }
+    long bodySize = readVarint(buffer);
+    checkSize(bodySize, channelContext);
+    if (!hasVarint(buffer)) {
+      return null;
+    }
+    int type = (int) readVarint(buffer);
+    if (!hasVarint(buffer)) {
+      return null;
+    }
+    long id = readVarint(buffer);
+    int crc = 0;
+    if ((flags & FLAG_CRC) != 0) {
+      if (buffer.remaining() < 4) {
+        return null;
+      }
+      crc = buffer.getInt();
+    }
+    if (buffer.remaining() < bodySize) {
+      return null;
+    }
+    LengthFrame frame = new LengthFrame().setType((type >>> 1) ^ -(type & 1)).setId(id);
+    return readBody(frame, buffer, (int) bodySize, flags, crc, channelContext);
+  }
+
+  private LengthFrame readBody(LengthFrame frame, ByteBuffer buffer, int bodySize, int flags,
+      int crc, ChannelContext channelContext) {
+    int end = buffer.position() + bodySize;
+    ByteBuffer body = buffer.duplicate();
+    body.limit(end);
+    body = body.slice();
+    buffer.position(end);
+    if ((flags & FLAG_CRC) != 0 && crc != crc(body)) {
+      throw Exceptions.fail("消息体校验失败");
+    }
+    if ((flags & FLAG_DEFLATE) != 0) {
+      return frame.setBody(inflate(body, inflateLimit(channelContext)));
+    }
+    if (sliceBody) {
+      return frame.setBodyBuffer(body.asReadOnlyBuffer());
+    }
+    byte[] bytes = new byte[bodySize];
+    body.get(bytes);
+    return frame.setBody(bytes);
+  }
+
+  private LengthFrame cast(Object data) {
+    if (data instanceof LengthFrame) {
+      return (LengthFrame) data;
+    }
+    throw Exceptions.fail(String.format("参数类型不匹配, %s -> %s", data.getClass(), LengthFrame.class));
+  }
+
+  private void checkSize(long bodySize, ChannelContext channelContext) {
+    int maxFrameSize = channelContext.getGroupContext().getMaxFrameSize();
+    if (bodySize < 0 || bodySize > Integer.MAX_VALUE || (maxFrameSize > 0
+        && bodySize > maxFrameSize)) {
+      throw Exceptions.fail(String.format("消息体大小不合法 %s", bodySize));
+    }
+  }
+
+  private int inflateLimit(ChannelContext channelContext) {
+    int limit = maxInflatedSize > 0 ? maxInflatedSize : Integer.MAX_VALUE;
+    int maxFrameSize = channelContext.getGroupContext().getMaxFrameSize();
+    if (maxFrameSize > 0) {
+      limit = Math.min(limit, maxFrameSize);
+    }
+    return limit;
+  }
+
+  private int headerSize() {
+    if (compact) {
+      return MAX_COMPACT_HEADER;
+    }
+    return correlated ? LengthFrame.BASE_LENGTH + LengthFrame.ID_LENGTH : LengthFrame.BASE_LENGTH;
+  }
+
+  private int flags(LengthFrame frame) {
+    if (!compact) {
+      return 0;
+    }
+    int flags = 0;
+    if (checksum) {
+      flags |= FLAG_CRC;
+    }
+    if (compressThreshold > 0 && frame.bodySize() > compressThreshold) {
+      flags |= FLAG_DEFLATE;
+    }
+    return flags;
+  }
+
+  /**
+   * 获取待写出的消息体，不会修改frame中buffer的position
+   */
+  private ByteBuffer payload(LengthFrame frame, int flags) {
+    ByteBuffer body = frame.getBodyBuffer();
+    if (body != null && (flags & FLAG_DEFLATE) != 0) {
+      return ByteBuffer.wrap(deflate(body)).asReadOnlyBuffer();
+    }
+    return body;
+  }
+
+  private void writeHeader(ByteBuffer buffer, LengthFrame frame, ByteBuffer body, int flags) {
+    int bodySize = body == null ? 0 : body.remaining();
+    if (!compact) {
+      buffer.putInt(bodySize).putInt(frame.getType());
+      if (correlated) {
+        buffer.putLong(frame.getId());
+      }
+      return;
+    }
+    buffer.put((byte) flags);
+    writeVarint(buffer, bodySize);
+    writeVarint(buffer, ((frame.getType() << 1) ^ (frame.getType() >> 31)) & 0xFFFFFFFFL);
+    writeVarint(buffer, frame.getId());
+    if ((flags & FLAG_CRC) != 0) {
+      buffer.putInt(body == null ? 0 : crc(body));
+    }
+  }
+
+  private static int crc(ByteBuffer body) {
+    CRC32 crc32 = new CRC32();
+    crc32.update(body.duplicate());
+    return (int) crc32.getValue();
+  }
+
+  private static void writeVarint(ByteBuffer buffer, long value) {
+    while ((value & ~0x7FL) != 0) {
+      buffer.put((byte) ((value & 0x7F) | 0x80));
+      value >>>= 7;
+    }
+    buffer.put((byte) value);
+  }
+
+  private static boolean hasVarint(ByteBuffer buffer) {
+    for (int i = buffer.position(), n = 1; i < buffer.limit(); i++, n++) {
+      if (n > MAX_VARINT_BYTES) {
+        throw Exceptions.fail("varint长度不合法");
+      }
+      if ((buffer.get(i) & 0x80) == 0) {
+        return true;
+      }
+    }
+    return false;
+  }
+
+  private static long readVarint(ByteBuffer buffer) {
+    long value = 0;
+    for (int shift = 0; ; shift += 7) {
+      byte b = buffer.get();
+      value |= (long) (b & 0x7F) << shift;
+      if ((b & 0x80) == 0) {
+        return value;
+      }
+    }
+  }
+
+  private static byte[] toBytes(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+
+  private static byte[] deflate(ByteBuffer body) {
+    Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+    try {
+      deflater.setInput(toBytes(body));
+      deflater.finish();
+      ByteArrayOutputStream out = new ByteArrayOutputStream(body.remaining() / 2 + 16);
+      byte[] buf = new byte[4096];
+      while (!deflater.finished()) {
+        out.write(buf, 0, deflater.deflate(buf));
+      }
+      return out.toByteArray();
+    } finally {
+      deflater.end();
+    }
+  }
+
+  private static byte[] inflate(ByteBuffer body, int limit) {
+    Inflater inflater = new Inflater();
+    try {
+      if (body.hasArray()) {
+        inflater.setInput(body.array(), body.arrayOffset() + body.position(), body.remaining());
+      } else {
+        inflater.setInput(toBytes(body));
+      }
+      ByteArrayOutputStream out = new ByteArrayOutputStream(
+          (int) Math.min(limit, body.remaining() * 2L + 16));
+      byte[] buf = new byte[4096];
+      while (!inflater.finished()) {
+        int n = inflater.inflate(buf);
+        if (n == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+          throw Exceptions.fail("消息体解压失败");
+        }
+        if (out.size() + n > limit) {
+          throw Exceptions.fail(String.format("解压后消息体超出上限 %s", limit));
+        }
+        out.write(buf, 0, n);
+      }
+      return out.toByteArray();
+    } catch (DataFormatException e) {
+      throw Exceptions.wrap(e);
+    } finally {
+      inflater.end();
+    }
+  }
 }
@@ -16,29 +16,37 @@ package vip.justlive.oxygen.core.util;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collection;
-import java.util.Iterator;
-import java.util.LinkedHashMap;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
+import java.util.Queue;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ConcurrentMap;
-import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
-import java.util.concurrent.locks.Lock;
-import java.util.concurrent.locks.ReadWriteLock;
-import java.util.concurrent.locks.ReentrantReadWriteLock;
-import java.util.stream.Collectors;
-import lombok.EqualsAndHashCode;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
 import lombok.Getter;
-import lombok.extern.slf4j.Slf4j;
+import lombok.RequiredArgsConstructor;
+import lombok.ToString;
+import vip.justlive.oxygen.core.util.TimingWheel.Timeout;
 
 /**
  * 有失效时间的 Map，可对每个键值对设置失效时间
  * <p>
+ * 数据保存在ConcurrentHashMap中，读操作无锁；失效由所有实例共享的时间轮驱动，每个键值登记一次到期任务。
+ * 限制最大数量或权重时，访问记录先写入有损的分段缓冲，写操作进入写缓冲，由获取到淘汰锁的线程批量回放并按
+ * {@link EvictionPolicy}淘汰
+ * </p>
+ * <p>
  * Example usages:
  *
  * <pre>
@@ -57,23 +65,28 @@ import lombok.extern.slf4j.Slf4j;
  * @param <V> 泛型类
  * @author wubo
  */
-@Slf4j
 public class ExpiringMap<K, V> implements ConcurrentMap<K, V>, Serializable {
 
   private static final long serialVersionUID = 1L;
 
-  private static final ScheduledExecutorService SCHEDULED;
   private static final AtomicInteger INS = new AtomicInteger(0);
 
-  static {
-    int poolSize = Integer.getInteger("expiringMap.poolSize", 2);
-    SCHEDULED = ThreadUtils.newScheduledExecutor(poolSize, "ExpiringMap-%d");
-  }
-
-  private final transient ReadWriteLock readWriteLock = new ReentrantReadWriteLock();
-  private final transient Lock readLock = readWriteLock.readLock();
-  private final transient Lock writeLock = readWriteLock.writeLock();
-  private final transient AtomicLong accumulate = new AtomicLong();
+  private final transient ConcurrentHashMap<K, Node<K, V>> data = new ConcurrentHashMap<>(16);
+  private final transient ReentrantLock evictionLock = new ReentrantLock();
+  private final transient Queue<Node<K, V>[]> writeBuffer = new ConcurrentLinkedQueue<>();
+  private final transient ReadBuffer<Node<K, V>> readBuffer = new ReadBuffer<>();
+  private final transient long createAt = System.currentTimeMillis();
+  private final transient LongAdder hitCount = new LongAdder();
+  private final transient LongAdder missCount = new LongAdder();
+  private final transient LongAdder evictionCount = new LongAdder();
+  /**
+   * 淘汰策略实现，不限制容量时为null，由evictionLock保护
+   */
+  private transient Policy<K, V> policy;
+  /**
+   * 权重计算
+   */
+  private transient Weigher<K, V> weigher;
   /**
    * 失效监听
    */
@@ -88,6 +101,21 @@ public class ExpiringMap<K, V> implements ConcurrentMap<K, V>, Serializable {
    */
   @Getter
   private int maxSize;
+  /**
+   * 最大权重，未设置权重计算时等于最大数量
+   */
+  @Getter
+  private long maximumWeight;
+  /**
+   * 淘汰策略
+   */
+  @Getter
+  private EvictionPolicy evictionPolicy;
+  /**
+   * 是否统计命中率
+   */
+  @Getter
+  private boolean recordStats;
   /**
    * 有效期
    */
@@ -114,14 +142,10 @@ public class ExpiringMap<K, V> implements ConcurrentMap<K, V>, Serializable {
   @Getter
   private int scheduleDelay;
   /**
-   * 累积阈值
+   * 累积阈值，失效清理由时间轮驱动后仅保留兼容
    */
   @Getter
   private int accumulateThreshold;
-  /**
-   * 实际数据
-   */
-  private LruMap<K, V> data;
 
   /**
    * 构造函数
@@ -142,9 +166,17 @@ public class ExpiringMap<K, V> implements ConcurrentMap<K, V>, Serializable {
     accumulateThreshold = builder.accumulateThreshold;
     int index = INS.getAndIncrement();
     name = MoreObjects.firstNonNull(builder.name, String.format("Unnamed-%d", index));
-    SCHEDULED.scheduleWithFixedDelay(this::runScheduleCleanPolicy, scheduleDelay, scheduleDelay,
-        TimeUnit.SECONDS);
-    data = new LruMap<K, V>().maxSize(maxSize).listeners(asyncExpiredListeners);
+    weigher = builder.weigher;
+    maximumWeight = weigher != null ? builder.maximumWeight : maxSize;
+    evictionPolicy = builder.evictionPolicy;
+    recordStats = builder.recordStats;
+    if (maximumWeight < Integer.MAX_VALUE || weigher != null) {
+      if (evictionPolicy == EvictionPolicy.TINY_LFU) {
+        policy = new TinyLfuPolicy<>(maximumWeight, weigher == null);
+      } else {
+        policy = new LruPolicy<>();
+      }
+    }
   }
 
   /**
@@ -169,76 +201,89 @@ public class ExpiringMap<K, V> implements ConcurrentMap<K, V>, Serializable {
     return ExpiringMap.<K, V>builder().build();
   }
 
+  /**
+   * 命中统计，未开启recordStats时计数均为0
+   *
+   * @return 统计快照
+   */
+  public Stats stats() {
+    return new Stats(hitCount.sum(), missCount.sum(), evictionCount.sum());
+  }
+
   /**
    * 真实数量
    *
    * @return 数量
    */
   public int realSize() {
-    readLock.lock();
-    try {
-      return data.size();
-    } finally {
-      readLock.unlock();
-    }
+    return data.size();
   }
 
   @Override
   public int size() {
-    readLock.lock();
-    try {
-      return (int) data.values().parallelStream().filter(r -> !r.isExpired()).count();
-    } finally {
-      readLock.unlock();
+    long now = System.currentTimeMillis();
+    int size = 0;
+    for (Node<K, V> node : data.values()) {
+      if (!node.isExpired(now)) {
+        size++;
+      }
     }
+    return size;
   }
 
   @Override
   public boolean isEmpty() {
-    return this.size() > 0;
+    long now = System.currentTimeMillis();
+    for (Node<K, V> node : data.values()) {
+      if (!node.isExpired(now)) {
+        return false;
+      }
+    }
+    return true;
   }
 
   @Override
   public boolean containsKey(Object key) {
-    readLock.lock();
-    try {
-      ExpiringValue<V> value = data.get(key);
-      return value != null && !value.isExpired();
-    } finally {
-      readLock.unlock();
-    }
+    Node<K, V> node = data.get(key);
+    return node != null && !node.isExpired(System.currentTimeMillis());
   }
 
   @Override
   public boolean containsValue(Object value) {
-    readLock.lock();
-    try {
-      for (Entry<K, ExpiringValue<V>> entry : data.entrySet()) {
-        ExpiringValue<V> wrapValue = entry.getValue();
-        if (!wrapValue.isExpired() && Objects.equals(wrapValue.value, value)) {
-          return true;
-        }
+    long now = System.currentTimeMillis();
+    for (Node<K, V> node : data.values()) {
+      if (!node.isExpired(now) && Objects.equals(node.value, value)) {
+        return true;
       }
-      return false;
-    } finally {
-      readLock.unlock();
     }
+    return false;
   }
 
   @Override
   public V get(Object key) {
-    readLock.lock();
-    try {
-      ExpiringValue<V> value = data.get(key);
-      if (value == null || value.isExpired()) {
-        return null;
+    Node<K, V> node = data.get(key);
+    if (node == null) {
+      recordMiss();
+      return null;
+    }
+    long now = System.currentTimeMillis();
+    if (node.isExpired(now)) {
+      if (cleanPolicy == CleanPolicy.ACCUMULATE) {
+        expire(node);
       }
-      accessRecord(value);
-      return value.value;
-    } finally {
-      readLock.unlock();
-      record();
+      recordMiss();
+      return null;
+    }
+    if (expiringPolicy == ExpiringPolicy.ACCESSED && node.duration > 0) {
+      node.expireAt = now + node.duration;
     }
+    if (recordStats) {
+      hitCount.increment();
+    }
+    if (isBounded() && readBuffer.offer(node)) {
+      drain();
+    }
+    return node.value;
   }
 
   @Override
@@ -268,99 +313,105 @@ public class ExpiringMap<K, V> implements ConcurrentMap<K, V>, Serializable {
    * @return 已存在的值
    */
   public V put(K key, V value, long duration, TimeUnit timeUnit) {
-    writeLock.lock();
-    try {
-      ExpiringValue<V> wrapValue = new ExpiringValue<>(value, duration, timeUnit);
-      ExpiringValue<V> preValue = data.put(key, wrapValue);
-      if (preValue != null) {
-        if (preValue.value != value) {
-          notifyListener(key, preValue.value);
-        }
-        if (!preValue.isExpired()) {
-          return preValue.value;
-        }
+    Node<K, V> node = newNode(key, value, duration > 0 ? timeUnit.toMillis(duration) : 0);
+    Node<K, V> preNode = data.put(key, node);
+    afterWrite(node, preNode);
+    if (preNode != null) {
+      if (preNode.value != value) {
+        notifyListener(key, preNode.value);
+      }
+      if (!preNode.isExpired(System.currentTimeMillis())) {
+        return preNode.value;
       }
-      return null;
-    } finally {
-      writeLock.unlock();
-      record();
     }
+    return null;
   }
 
   @Override
   @SuppressWarnings("unchecked")
   public V remove(Object key) {
-    writeLock.lock();
-    try {
-      ExpiringValue<V> value = data.remove(key);
-      if (value == null || value.isExpired()) {
-        return null;
-      }
-      notifyListener((K) key, value.value);
-      return value.value;
-    } finally {
-      writeLock.unlock();
+    Node<K, V> node = data.remove(key);
+    if (node == null) {
+      return null;
+    }
+    afterWrite(null, node);
+    if (node.isExpired(System.currentTimeMillis())) {
+      return null;
     }
+    notifyListener((K) key, node.value);
+    return node.value;
   }
 
   @Override
   public void putAll(Map<? extends K, ? extends V> m) {
-    writeLock.lock();
-    try {
-      for (Entry<? extends K, ? extends V> entry : m.entrySet()) {
-        ExpiringValue<V> preValue = data
-            .put(entry.getKey(), new ExpiringValue<>(entry.getValue(), duration, timeUnit));
-        if (preValue != null && preValue.value != entry.getValue()) {
-          notifyListener(entry.getKey(), preValue.value);
-        }
+    for (Entry<? extends K, ? extends V> entry : m.entrySet()) {
+      put(entry.getKey(), entry.getValue());
+    }
+  }
+
+  /**
+   * 批量添加会失效的键值
+   *
+   * @param m 键值
+   * @param duration 期限
+   * @param timeUnit 时间单位
+   */
+  public void putAll(Map<? extends K, ? extends V> m, long duration, TimeUnit timeUnit) {
+    long durationMillis = duration > 0 ? timeUnit.toMillis(duration) : 0;
+    for (Entry<? extends K, ? extends V> entry : m.entrySet()) {
+      K key = entry.getKey();
+      Node<K, V> node = newNode(key, entry.getValue(), durationMillis);
+      Node<K, V> preNode = data.put(key, node);
+      afterWrite(node, preNode);
+      if (preNode != null && preNode.value != node.value) {
+        notifyListener(key, preNode.value);
       }
-    } finally {
-      writeLock.unlock();
-      record();
     }
   }
 
   @Override
   public void clear() {
-    writeLock.lock();
-    try {
-      data.clear();
-    } finally {
-      writeLock.unlock();
+    for (Node<K, V> node : data.values()) {
+      if (data.remove(node.key, node)) {
+        afterWrite(null, node);
+      }
     }
   }
 
   @Override
   public Set<K> keySet() {
-    readLock.lock();
-    try {
-      return data.entrySet().parallelStream().filter(r -> !r.getValue().isExpired())
-          .map(Entry::getKey).collect(Collectors.toSet());
-    } finally {
-      readLock.unlock();
+    long now = System.currentTimeMillis();
+    Set<K> keys = new HashSet<>();
+    for (Node<K, V> node : data.values()) {
+      if (!node.isExpired(now)) {
+        keys.add(node.key);
+      }
     }
+    return keys;
   }
 
   @Override
   public Collection<V> values() {
-    readLock.lock();
-    try {
-      return data.values().parallelStream().filter(r -> !r.isExpired()).map(r -> r.value)
-          .collect(Collectors.toList());
-    } finally {
-      readLock.unlock();
+    long now = System.currentTimeMillis();
+    List<V> values = new ArrayList<>();
+    for (Node<K, V> node : data.values()) {
+      if (!node.isExpired(now)) {
+        values.add(node.value);
+      }
     }
+    return values;
   }
 
   @Override
   public Set<Entry<K, V>> entrySet() {
-    readLock.lock();
-    try {
-      return data.entrySet().parallelStream().filter(r -> !r.getValue().isExpired())
-          .map(r -> new MapEntry<>(r.getKey(), r.getValue().value)).collect(Collectors.toSet());
-    } finally {
-      readLock.unlock();
+    long now = System.currentTimeMillis();
+    Set<Entry<K, V>> entries = new HashSet<>();
+    for (Node<K, V> node : data.values()) {
+      if (!node.isExpired(now)) {
+        entries.add(new MapEntry<>(node.key, node.value));
+      }
     }
+    return entries;
   }
 
   @Override
@@ -368,7 +419,7 @@ public class ExpiringMap<K, V> implements ConcurrentMap<K, V>, Serializable {
     if (duration > 0) {
       return putIfAbsent(key, value, duration);
     }
-    return putIfAbsent(key, new ExpiringValue<>(value));
+    return putIfAbsent(key, newNode(key, value, 0));
   }
 
   public V putIfAbsent(K key, V value, long duration) {
@@ -376,145 +427,233 @@ public class ExpiringMap<K, V> implements ConcurrentMap<K, V>, Serializable {
   }
 
   public V putIfAbsent(K key, V value, long duration, TimeUnit timeUnit) {
-    return putIfAbsent(key, new ExpiringValue<>(value, duration, timeUnit));
+    return putIfAbsent(key,
+        newNode(key, value, duration > 0 ? timeUnit.toMillis(duration) : 0));
   }
 
   @Override
   @SuppressWarnings("unchecked")
   public boolean remove(Object key, Object value) {
-    writeLock.lock();
-    try {
-      ExpiringValue<V> wrapValue = data.get(key);
-      if (wrapValue != null && !wrapValue.isExpired() && Objects.equals(wrapValue.value, value)) {
-        notifyListener((K) key, wrapValue.value);
-        data.remove(key);
-        return true;
-      }
-      return false;
-    } finally {
-      writeLock.unlock();
+    Node<K, V> node = data.get(key);
+    if (node != null && !node.isExpired(System.currentTimeMillis()) && Objects
+        .equals(node.value, value) && data.remove(key, node)) {
+      afterWrite(null, node);
+      notifyListener((K) key, node.value);
+      return true;
     }
+    return false;
   }
 
   @Override
   public boolean replace(K key, V oldValue, V newValue) {
-    writeLock.lock();
-    try {
-      ExpiringValue<V> wrapValue = data.get(key);
-      if (wrapValue != null && !wrapValue.isExpired() && Objects
-          .equals(wrapValue.value, oldValue)) {
-        ExpiringValue<V> newWrapValue = new ExpiringValue<>(newValue);
-        newWrapValue.duration = wrapValue.duration;
-        newWrapValue.expireAt = wrapValue.expireAt;
-        if (newValue != wrapValue.value) {
-          notifyListener(key, wrapValue.value);
+    Node<K, V> node = data.get(key);
+    if (node != null && !node.isExpired(System.currentTimeMillis()) && Objects
+        .equals(node.value, oldValue)) {
+      Node<K, V> newNode = copyNode(node, newValue);
+      if (data.replace(key, node, newNode)) {
+        afterWrite(newNode, node);
+        if (newValue != node.value) {
+          notifyListener(key, node.value);
         }
-        data.put(key, newWrapValue);
         return true;
       }
-      return false;
-    } finally {
-      writeLock.unlock();
     }
+    return false;
   }
 
   @Override
   public V replace(K key, V value) {
-    writeLock.lock();
-    try {
-      ExpiringValue<V> wrapValue = data.get(key);
-      if (wrapValue != null && !wrapValue.isExpired()) {
-        ExpiringValue<V> newWrapValue = new ExpiringValue<>(value);
-        newWrapValue.duration = wrapValue.duration;
-        newWrapValue.expireAt = wrapValue.expireAt;
-        wrapValue = data.put(key, newWrapValue);
-        if (wrapValue != null) {
-          if (wrapValue.value != value) {
-            notifyListener(key, wrapValue.value);
-          }
-          return wrapValue.value;
-        }
+    for (; ; ) {
+      Node<K, V> node = data.get(key);
+      if (node == null || node.isExpired(System.currentTimeMillis())) {
+        return null;
+      }
+      Node<K, V> newNode = copyNode(node, value);
+      if (replace(key, node, newNode)) {
+        return node.value;
       }
-      return null;
-    } finally {
-      writeLock.unlock();
     }
   }
 
   public V replace(K key, V value, long duration, TimeUnit timeUnit) {
-    writeLock.lock();
-    try {
-      ExpiringValue<V> wrapValue = data.get(key);
-      if (wrapValue != null && !wrapValue.isExpired()) {
-        ExpiringValue<V> newWrapValue = new ExpiringValue<>(value, duration, timeUnit);
-        wrapValue = data.put(key, newWrapValue);
-        if (wrapValue != null) {
-          if (wrapValue.value != value) {
-            notifyListener(key, wrapValue.value);
-          }
-          return wrapValue.value;
-        }
+    for (; ; ) {
+      Node<K, V> node = data.get(key);
+      if (node == null || node.isExpired(System.currentTimeMillis())) {
+        return null;
+      }
+      Node<K, V> newNode = newNode(key, value,
+          duration > 0 ? timeUnit.toMillis(duration) : 0);
+      if (replace(key, node, newNode)) {
+        return node.value;
       }
-      return null;
-    } finally {
-      writeLock.unlock();
     }
   }
 
-  private V putIfAbsent(K key, ExpiringValue<V> wrapValue) {
-    writeLock.lock();
-    try {
-      ExpiringValue<V> preVal = data.putIfAbsent(key, wrapValue);
-      if (preVal == null) {
+  private boolean replace(K key, Node<K, V> node, Node<K, V> newNode) {
+    if (!data.replace(key, node, newNode)) {
+      return false;
+    }
+    afterWrite(newNode, node);
+    if (newNode.value != node.value) {
+      notifyListener(key, node.value);
+    }
+    return true;
+  }
+
+  private V putIfAbsent(K key, Node<K, V> node) {
+    for (; ; ) {
+      Node<K, V> preNode = data.putIfAbsent(key, node);
+      if (preNode == null) {
+        afterWrite(node, null);
         return null;
       }
-      if (preVal.expireAt < System.currentTimeMillis()) {
-        data.put(key, wrapValue);
-        if (wrapValue.value != preVal.value) {
-          notifyListener(key, preVal.value);
-        }
+      if (!preNode.isExpired(System.currentTimeMillis())) {
+        return preNode.value;
+      }
+      if (replace(key, preNode, node)) {
         return null;
       }
-      return preVal.value;
-    } finally {
-      writeLock.unlock();
-      record();
     }
   }
 
+  private boolean isBounded() {
+    return policy != null;
+  }
+
+  private void recordMiss() {
+    if (recordStats) {
+      missCount.increment();
+    }
+  }
+
+  private Node<K, V> newNode(K key, V value, long durationMillis) {
+    Node<K, V> node = new Node<>(key, value, durationMillis);
+    node.weight = weigh(key, value);
+    return node;
+  }
+
+  private Node<K, V> copyNode(Node<K, V> node, V value) {
+    Node<K, V> newNode = node.copy(value);
+    newNode.weight = weigh(node.key, value);
+    return newNode;
+  }
+
+  private int weigh(K key, V value) {
+    if (weigher == null) {
+      return 1;
+    }
+    int weight = weigher.weigh(key, value);
+    if (weight < 0) {
+      throw new IllegalArgumentException("[weight] should not be negative");
+    }
+    return weight;
+  }
+
+  /**
+   * 写入或删除后登记失效任务，限制数量时记录到写缓冲
+   *
+   * @param node 新的节点
+   * @param preNode 被替换或删除的节点
+   */
+  @SuppressWarnings("unchecked")
+  private void afterWrite(Node<K, V> node, Node<K, V> preNode) {
+    if (preNode != null) {
+      cancel(preNode);
+    }
+    if (node != null) {
+      schedule(node);
+    }
+    if (isBounded()) {
+      writeBuffer.offer(new Node[]{node, preNode});
+      drain();
+    }
+  }
+
+  private void schedule(Node<K, V> node) {
+    long expireAt = node.expireAt;
+    if (expireAt == Node.NOT_EXPIRED) {
+      return;
+    }
+    if (cleanPolicy == CleanPolicy.SCHEDULE) {
+      // 按定时清理间隔批量失效
+      long period = TimeUnit.SECONDS.toMillis(scheduleDelay);
+      expireAt = createAt + (expireAt - createAt + period - 1) / period * period;
+    }
+    long delay = Math.max(expireAt - System.currentTimeMillis(), 0);
+    node.timeout = Expirer.WHEEL.newTimeout(() -> expire(node), delay, TimeUnit.MILLISECONDS);
+  }
+
+  private void cancel(Node<K, V> node) {
+    Timeout timeout = node.timeout;
+    if (timeout != null) {
+      timeout.cancel();
+    }
+  }
 
-  private void record() {
-    accumulate.getAndIncrement();
-    checkAccumulate();
+  private void expire(Node<K, V> node) {
+    if (data.get(node.key) != node) {
+      return;
+    }
+    if (!node.isExpired(System.currentTimeMillis())) {
+      // 访问后延长了有效期
+      schedule(node);
+      return;
+    }
+    if (data.remove(node.key, node)) {
+      afterWrite(null, node);
+      if (asyncExpiredListeners != null && !asyncExpiredListeners.isEmpty()) {
+        // 监听在时间轮线程外执行，避免阻塞其他实例的失效
+        Expirer.LISTENER.execute(() -> notifyListener(node.key, node.value));
+      }
+    }
   }
 
-  private void accessRecord(ExpiringValue<V> value) {
-    if (expiringPolicy == ExpiringPolicy.ACCESSED) {
-      value.expireAt = System.currentTimeMillis() + value.duration;
+  /**
+   * 回放缓冲的读写记录并淘汰，未获取到锁时由持有锁的线程负责
+   */
+  private void drain() {
+    while (evictionLock.tryLock()) {
+      try {
+        readBuffer.drain(this::onAccess);
+        Node<K, V>[] task;
+        while ((task = writeBuffer.poll()) != null) {
+          if (task[1] != null && task[1].queue != Node.NONE) {
+            policy.onRemove(task[1]);
+          }
+          Node<K, V> node = task[0];
+          if (node != null && node.queue == Node.NONE && data.get(node.key) == node) {
+            policy.onAdd(node);
+          }
+        }
+        evict();
+      } finally {
+        evictionLock.unlock();
+      }
+      if (writeBuffer.isEmpty()) {
+        return;
+      }
     }
   }
 
-  private void checkAccumulate() {
-    if (cleanPolicy == CleanPolicy.ACCUMULATE && accumulate.get() % accumulateThreshold == 0) {
-      runAccumulateCleanPolicy();
+  private void onAccess(Node<K, V> node) {
+    if (node.queue != Node.NONE) {
+      policy.onAccess(node);
     }
   }
 
-  private void expiredClean() {
-    writeLock.lock();
-    try {
-      Iterator<Entry<K, ExpiringValue<V>>> it = data.entrySet().iterator();
-      while (it.hasNext()) {
-        Entry<K, ExpiringValue<V>> entry = it.next();
-        if (entry.getValue().isExpired()) {
-          K key = entry.getKey();
-          V value = entry.getValue().value;
-          it.remove();
-          notifyListener(key, value);
+  private void evict() {
+    while (policy.weightedSize() > maximumWeight) {
+      Node<K, V> victim = policy.evict();
+      if (victim == null) {
+        return;
+      }
+      if (data.remove(victim.key, victim)) {
+        cancel(victim);
+        if (recordStats) {
+          evictionCount.increment();
         }
+        notifyListener(victim.key, victim.value);
       }
-    } finally {
-      writeLock.unlock();
     }
   }
 
@@ -526,20 +665,21 @@ public class ExpiringMap<K, V> implements ConcurrentMap<K, V>, Serializable {
     }
   }
 
-  private void runScheduleCleanPolicy() {
-    int size = this.realSize();
-    if (log.isDebugEnabled() && size > 0) {
-      log.debug("scheduled clean [{}] and now realSize is [{}]", this.name, size);
-    }
-    this.expiredClean();
-  }
+  /**
+   * 所有实例共享的失效时间轮及监听线程池，首次设置有效期时才初始化
+   */
+  private static class Expirer {
+
+    static final TimingWheel WHEEL = new TimingWheel(Long.getLong("expiringMap.tick", 10),
+        TimeUnit.MILLISECONDS, Integer.getInteger("expiringMap.wheelSize", 4096),
+        "ExpiringMap-%d");
+    static final ThreadPoolExecutor LISTENER = ThreadUtils
+        .newThreadPool(1, 1, 60, 4096, "ExpiringMap-listener-%d",
+            new ThreadPoolExecutor.CallerRunsPolicy());
 
-  private void runAccumulateCleanPolicy() {
-    int size = this.realSize();
-    if (log.isDebugEnabled() && size > 0) {
-      log.debug("accumulate clean [{}] and now realSize is [{}]", this.name, size);
+    static {
+      LISTENER.allowCoreThreadTimeOut(true);
     }
-    SCHEDULED.execute(this::expiredClean);
   }
 
   /**
@@ -565,15 +705,86 @@ public class ExpiringMap<K, V> implements ConcurrentMap<K, V>, Serializable {
    */
   public enum CleanPolicy {
     /**
-     * 定时任务
+     * 定时任务，失效的键值按scheduleDelay间隔批量清除
      */
     SCHEDULE,
     /**
-     * 累计
+     * 累计，失效的键值到期即清除，访问到失效键值时也会立即清除
      */
     ACCUMULATE
   }
 
+  /**
+   * 容量淘汰策略
+   *
+   * @author wubo
+   */
+  public enum EvictionPolicy {
+    /**
+     * 淘汰最久未访问
+     */
+    LRU,
+    /**
+     * W-TinyLFU，新数据先进入窗口LRU，离开窗口时与主区域的淘汰对象比较访问频率决定去留，
+     * 一次性扫描不会冲掉热点数据
+     */
+    TINY_LFU
+  }
+
+  /**
+   * 权重计算
+   *
+   * @param <K> 泛型
+   * @param <V> 泛型
+   * @author wubo
+   */
+  @FunctionalInterface
+  public interface Weigher<K, V> {
+
+    /**
+     * 计算键值的权重
+     *
+     * @param key 键
+     * @param value 值
+     * @return 非负的权重
+     */
+    int weigh(K key, V value);
+  }
+
+  /**
+   * 命中统计
+   *
+   * @author wubo
+   */
+  @Getter
+  @ToString
+  @RequiredArgsConstructor
+  public static final class Stats {
+
+    private final long hitCount;
+    private final long missCount;
+    private final long evictionCount;
+
+    /**
+     * 请求总数
+     *
+     * @return 数量
+     */
+    public long requestCount() {
+      return hitCount + missCount;
+    }
+
+    /**
+     * 命中率，没有请求时为1
+     *
+     * @return 命中率
+     */
+    public double hitRate() {
+      long count = requestCount();
+      return count == 0 ? 1.0 : (double) hitCount / count;
+    }
+  }
+
   /**
    * 失效监听
    *
@@ -611,6 +822,10 @@ public class ExpiringMap<K, V> implements ConcurrentMap<K, V>, Serializable {
     private int scheduleDelay = -1;
     private int accumulateThreshold = 10000;
     private String name;
+    private long maximumWeight = -1;
+    private Weigher<K, V> weigher;
+    private EvictionPolicy evictionPolicy = EvictionPolicy.LRU;
+    private boolean recordStats;
 
     private Builder() {
     }
@@ -640,6 +855,45 @@ public class ExpiringMap<K, V> implements ConcurrentMap<K, V>, Serializable {
       return this;
     }
 
+    /**
+     * 按权重限制容量，设置后代替maxSize
+     *
+     * @param maximumWeight 最大权重
+     * @param weigher 权重计算
+     * @return 构造器
+     */
+    public Builder<K, V> maximumWeight(long maximumWeight, Weigher<K, V> weigher) {
+      if (maximumWeight < 0) {
+        throw new IllegalArgumentException("[maximumWeight] should not be negative");
+      }
+      MoreObjects.notNull(weigher, "[weigher] can not be null");
+      this.maximumWeight = maximumWeight;
+      this.weigher = weigher;
+      return this;
+    }
+
+    /**
+     * 设置容量淘汰策略，默认LRU
+     *
+     * @param evictionPolicy 淘汰策略
+     * @return 构造器
+     */
+    public Builder<K, V> evictionPolicy(EvictionPolicy evictionPolicy) {
+      MoreObjects.notNull(evictionPolicy, "[evictionPolicy] can not be null");
+      this.evictionPolicy = evictionPolicy;
+      return this;
+    }
+
+    /**
+     * 开启命中统计
+     *
+     * @return 构造器
+     */
+    public Builder<K, V> recordStats() {
+      this.recordStats = true;
+      return this;
+    }
+
     /**
      * 增加单个异步失效监听
      *
@@ -747,68 +1001,362 @@ public class ExpiringMap<K, V> implements ConcurrentMap<K, V>, Serializable {
   }
 
   /**
-   * 带失效时间的包装
+   * 键值节点
    *
+   * @param <K> 泛型
    * @param <V> 泛型
    */
-  private static final class ExpiringValue<V> {
+  private static final class Node<K, V> {
 
     /**
      * 不过期
      */
     private static final long NOT_EXPIRED = -1L;
-
     /**
-     * 值
+     * 所在的淘汰队列
      */
-    private final V value;
+    private static final byte NONE = 0;
+    private static final byte MAIN = 1;
+    private static final byte WINDOW = 2;
+    private static final byte PROBATION = 3;
+    private static final byte PROTECTED = 4;
 
+    private final K key;
+    private final V value;
+    /**
+     * 期限，毫秒
+     */
+    private final long duration;
     /**
      * 过期时间
      */
-    private long expireAt;
+    private volatile long expireAt;
+    /**
+     * 失效任务
+     */
+    private volatile Timeout timeout;
+    /**
+     * 权重
+     */
+    private int weight;
+    /**
+     * 淘汰队列及链表，由evictionLock保护
+     */
+    private byte queue;
+    private Node<K, V> prev;
+    private Node<K, V> next;
+
+    Node(K key, V value, long duration) {
+      this.key = key;
+      this.value = value;
+      this.duration = duration;
+      this.expireAt = duration > 0 ? System.currentTimeMillis() + duration : NOT_EXPIRED;
+    }
 
     /**
-     * 期限
+     * 保留有效期替换值
+     *
+     * @param value 新值
+     * @return 节点
      */
-    private long duration;
+    Node<K, V> copy(V value) {
+      Node<K, V> node = new Node<>(key, value, duration);
+      node.expireAt = expireAt;
+      return node;
+    }
 
     /**
-     * 构造不过期的包装
+     * 是否过期
      *
-     * @param value 值
+     * @param now 当前时间
+     * @return true是过期
      */
-    ExpiringValue(V value) {
-      this.value = value;
-      this.expireAt = NOT_EXPIRED;
+    boolean isExpired(long now) {
+      long at = expireAt;
+      return at != NOT_EXPIRED && at < now;
     }
+  }
+
+  /**
+   * 访问顺序队列，first为最久未访问
+   *
+   * @param <K> 泛型
+   * @param <V> 泛型
+   */
+  private static final class AccessQueue<K, V> {
+
+    private final Node<K, V> head = new Node<>(null, null, 0);
+    private long weight;
+
+    AccessQueue() {
+      head.prev = head;
+      head.next = head;
+    }
+
+    Node<K, V> first() {
+      return head.next == head ? null : head.next;
+    }
+
+    Node<K, V> last() {
+      return head.prev == head ? null : head.prev;
+    }
+
+    void add(Node<K, V> node, byte queue) {
+      node.queue = queue;
+      node.prev = head.prev;
+      node.next = head;
+      head.prev.next = node;
+      head.prev = node;
+      weight += node.weight;
+    }
+
+    void remove(Node<K, V> node) {
+      node.prev.next = node.next;
+      node.next.prev = node.prev;
+      node.prev = null;
+      node.next = null;
+      node.queue = Node.NONE;
+      weight -= node.weight;
+    }
+
+    void moveToLast(Node<K, V> node) {
+      byte queue = node.queue;
+      remove(node);
+      add(node, queue);
+    }
+  }
+
+  /**
+   * 容量淘汰策略实现，所有方法只能由持有淘汰锁的线程调用
+   *
+   * @param <K> 泛型
+   * @param <V> 泛型
+   */
+  private abstract static class Policy<K, V> {
 
     /**
-     * 构造带过期时间的包装
+     * 新增节点
      *
-     * @param value 值
-     * @param duration 期限
-     * @param timeUnit 时间单位
+     * @param node 节点
      */
-    ExpiringValue(V value, long duration, TimeUnit timeUnit) {
-      this.value = value;
-      if (duration > 0) {
-        this.duration = timeUnit.toMillis(duration);
-        this.expireAt = System.currentTimeMillis() + this.duration;
-      } else {
-        this.expireAt = NOT_EXPIRED;
+    abstract void onAdd(Node<K, V> node);
+
+    /**
+     * 访问节点
+     *
+     * @param node 节点
+     */
+    abstract void onAccess(Node<K, V> node);
+
+    /**
+     * 删除节点
+     *
+     * @param node 节点
+     */
+    abstract void onRemove(Node<K, V> node);
+
+    /**
+     * 选出并移除淘汰的节点
+     *
+     * @return 节点，没有时返回null
+     */
+    abstract Node<K, V> evict();
+
+    /**
+     * 当前总权重
+     *
+     * @return 权重
+     */
+    abstract long weightedSize();
+  }
+
+  private static final class LruPolicy<K, V> extends Policy<K, V> {
+
+    private final AccessQueue<K, V> main = new AccessQueue<>();
+
+    @Override
+    void onAdd(Node<K, V> node) {
+      main.add(node, Node.MAIN);
+    }
+
+    @Override
+    void onAccess(Node<K, V> node) {
+      main.moveToLast(node);
+    }
+
+    @Override
+    void onRemove(Node<K, V> node) {
+      main.remove(node);
+    }
+
+    @Override
+    Node<K, V> evict() {
+      Node<K, V> victim = main.first();
+      if (victim != null) {
+        main.remove(victim);
+      }
+      return victim;
+    }
+
+    @Override
+    long weightedSize() {
+      return main.weight;
+    }
+  }
+
+  /**
+   * W-TinyLFU，窗口占1%，主区域分为试用和保护两段，保护段占主区域的80%
+   */
+  private static final class TinyLfuPolicy<K, V> extends Policy<K, V> {
+
+    private final AccessQueue<K, V> window = new AccessQueue<>();
+    private final AccessQueue<K, V> probation = new AccessQueue<>();
+    private final AccessQueue<K, V> protectedQueue = new AccessQueue<>();
+    private final FrequencySketch sketch;
+    private final long windowMaximum;
+    private final long protectedMaximum;
+
+    TinyLfuPolicy(long maximum, boolean countBased) {
+      this.windowMaximum = Math.max(1, maximum / 100);
+      this.protectedMaximum = (long) ((maximum - windowMaximum) * 0.8);
+      this.sketch = new FrequencySketch(countBased ? maximum : FrequencySketch.WEIGHTED_CAPACITY);
+    }
+
+    @Override
+    void onAdd(Node<K, V> node) {
+      sketch.increment(node.key);
+      window.add(node, Node.WINDOW);
+      // 窗口溢出的数据进入试用段尾部，成为下次淘汰时的候选
+      Node<K, V> candidate;
+      while (window.weight > windowMaximum && (candidate = window.first()) != null) {
+        window.remove(candidate);
+        probation.add(candidate, Node.PROBATION);
+      }
+    }
+
+    @Override
+    void onAccess(Node<K, V> node) {
+      sketch.increment(node.key);
+      if (node.queue == Node.WINDOW) {
+        window.moveToLast(node);
+      } else if (node.queue == Node.PROBATION) {
+        probation.remove(node);
+        protectedQueue.add(node, Node.PROTECTED);
+        Node<K, V> demoted;
+        while (protectedQueue.weight > protectedMaximum
+            && (demoted = protectedQueue.first()) != null) {
+          protectedQueue.remove(demoted);
+          probation.add(demoted, Node.PROBATION);
+        }
+      } else if (node.queue == Node.PROTECTED) {
+        protectedQueue.moveToLast(node);
+      }
+    }
+
+    @Override
+    void onRemove(Node<K, V> node) {
+      if (node.queue == Node.WINDOW) {
+        window.remove(node);
+      } else if (node.queue == Node.PROBATION) {
+        probation.remove(node);
+      } else if (node.queue == Node.PROTECTED) {
+        protectedQueue.remove(node);
+      }
+    }
+
+    @Override
+    Node<K, V> evict() {
+      Node<K, V> victim = probation.first();
+      if (victim == null) {
+        victim = protectedQueue.first();
+        if (victim == null) {
+          victim = window.first();
+        }
+        if (victim != null) {
+          onRemove(victim);
+        }
+        return victim;
+      }
+      // 候选者访问频率更高时淘汰试用段头部，否则淘汰候选者
+      Node<K, V> candidate = probation.last();
+      if (candidate != victim && sketch.frequency(candidate.key) <= sketch
+          .frequency(victim.key)) {
+        victim = candidate;
+      }
+      probation.remove(victim);
+      return victim;
+    }
+
+    @Override
+    long weightedSize() {
+      return window.weight + probation.weight + protectedQueue.weight;
+    }
+  }
+
+  /**
+   * 有损的访问记录缓冲，按线程分段，写满时丢弃，由持有淘汰锁的线程批量回放
+   *
+   * @param <E> 泛型
+   */
+  private static final class ReadBuffer<E> {
+
+    private static final int SIZE = 16;
+    private static final int MASK = SIZE - 1;
+    private static final int STRIPES =
+        Integer.highestOneBit(Runtime.getRuntime().availableProcessors() * 2 - 1) << 1;
+
+    private final AtomicLong[] writes = new AtomicLong[STRIPES];
+    private final long[] reads = new long[STRIPES];
+    private final AtomicReferenceArray<E> buffer = new AtomicReferenceArray<>(STRIPES * SIZE);
+
+    ReadBuffer() {
+      for (int i = 0; i < STRIPES; i++) {
+        writes[i] = new AtomicLong();
       }
     }
 
     /**
-     * 是否过期
+     * 记录访问
      *
-     * @return true是过期
+     * @param e 元素
+     * @return true为需要回放
      */
-    boolean isExpired() {
-      return expireAt != NOT_EXPIRED && expireAt < System.currentTimeMillis();
+    boolean offer(E e) {
+      int stripe = (int) Thread.currentThread().getId() & (STRIPES - 1);
+      AtomicLong write = writes[stripe];
+      long tail = write.get();
+      long size = tail - reads[stripe];
+      if (size >= SIZE) {
+        return true;
+      }
+      if (write.compareAndSet(tail, tail + 1)) {
+        buffer.lazySet(stripe * SIZE + (int) (tail & MASK), e);
+        return size + 1 >= SIZE / 2;
+      }
+      return false;
     }
 
+    /**
+     * 回放访问记录，只能由持有淘汰锁的线程调用
+     *
+     * @param consumer 消费
+     */
+    void drain(Consumer<E> consumer) {
+      for (int stripe = 0; stripe < STRIPES; stripe++) {
+        long head = reads[stripe];
+        long tail = writes[stripe].get();
+        for (; head < tail; head++) {
+          int index = stripe * SIZE + (int) (head & MASK);
+          E e = buffer.get(index);
+          if (e == null) {
+            break;
+          }
+          buffer.lazySet(index, null);
+          consumer.accept(e);
+        }
+        reads[stripe] = head;
+      }
+    }
   }
 
   static final class MapEntry<K, V> implements Entry<K, V> {
@@ -838,35 +1386,4 @@ public class ExpiringMap<K, V> implements ConcurrentMap<K, V>, Serializable {
       return pre;
     }
   }
-
-  @EqualsAndHashCode(callSuper = true)
-  static final class LruMap<K, V> extends LinkedHashMap<K, ExpiringValue<V>> {
-
-    private static final long serialVersionUID = 1L;
-
-    private int maxSize;
-    private transient List<ExpiredListener<K, V>> listeners;
-
-    LruMap<K, V> maxSize(int maxSize) {
-      this.maxSize = maxSize;
-      return this;
-    }
-
-    LruMap<K, V> listeners(List<ExpiredListener<K, V>> listeners) {
-      this.listeners = listeners;
-      return this;
-    }
-
-    @Override
-    protected boolean removeEldestEntry(Entry<K, ExpiringValue<V>> eldest) {
-      boolean b = maxSize > 0 && maxSize < super.size();
-      if (b && listeners != null) {
-        for (ExpiredListener<K, V> listener : listeners) {
-          listener.expire(eldest.getKey(), eldest.getValue().value);
-        }
-      }
-      return b;
-    }
-  }
-
 }
@@ -0,0 +1,127 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package vip.justlive.oxygen.core.util;
+
+/**
+ * 访问频率估算，4位计数器的Count-Min Sketch
+ * <p>
+ * 每个long保存16个计数器，每个元素在4个位置计数取最小值，计数上限15；
+ * 累计增加次数达到采样数时所有计数减半，使频率随时间衰减
+ * </p>
+ * <p>
+ * 非线程安全，由调用方保证同一时刻只有一个线程访问
+ * </p>
+ *
+ * @author wubo
+ */
+final class FrequencySketch {
+
+  /**
+   * 按权重限制容量时无法得知元素数量，使用的默认容量
+   */
+  static final long WEIGHTED_CAPACITY = 1 << 16;
+
+  private static final long[] SEED = {0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+      0x9ae16a3b2f90404fL, 0xcbf29ce484222325L};
+  private static final long RESET_MASK = 0x7777777777777777L;
+  private static final long ONE_MASK = 0x1111111111111111L;
+  private static final int MAX_CAPACITY = 1 << 24;
+
+  private final long[] table;
+  private final int tableMask;
+  private final int sampleSize;
+  private int size;
+
+  /**
+   * 构造
+   *
+   * @param capacity 预计的元素数量
+   */
+  FrequencySketch(long capacity) {
+    int n = (int) Math.min(Math.max(capacity, 16), MAX_CAPACITY);
+    n = Integer.highestOneBit(n - 1) << 1;
+    this.table = new long[n];
+    this.tableMask = n - 1;
+    this.sampleSize = 10 * n;
+  }
+
+  /**
+   * 估算访问频率
+   *
+   * @param e 元素
+   * @return 频率，0-15
+   */
+  int frequency(Object e) {
+    int hash = spread(e.hashCode());
+    int start = (hash & 3) << 2;
+    int frequency = Integer.MAX_VALUE;
+    for (int i = 0; i < 4; i++) {
+      int index = indexOf(hash, i);
+      int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+      frequency = Math.min(frequency, count);
+    }
+    return frequency;
+  }
+
+  /**
+   * 增加访问频率
+   *
+   * @param e 元素
+   */
+  void increment(Object e) {
+    int hash = spread(e.hashCode());
+    int start = (hash & 3) << 2;
+    boolean added = false;
+    for (int i = 0; i < 4; i++) {
+      added |= incrementAt(indexOf(hash, i), start + i);
+    }
+    if (added && ++size == sampleSize) {
+      reset();
+    }
+  }
+
+  private boolean incrementAt(int i, int j) {
+    int offset = j << 2;
+    long mask = 0xfL << offset;
+    if ((table[i] & mask) != mask) {
+      table[i] += 1L << offset;
+      return true;
+    }
+    return false;
+  }
+
+  /**
+   * 所有计数减半
+   */
+  private void reset() {
+    int count = 0;
+    for (int i = 0; i < table.length; i++) {
+      count += Long.bitCount(table[i] & ONE_MASK);
+      table[i] = (table[i] >>> 1) & RESET_MASK;
+    }
+    size = (size >>> 1) - (count >>> 2);
+  }
+
+  private int indexOf(int item, int i) {
+    long hash = (item + SEED[i]) * SEED[i];
+    hash += hash >>> 32;
+    return ((int) hash) & tableMask;
+  }
+
+  private static int spread(int x) {
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    x = ((x >>> 16) ^ x) * 0x45d9f3b;
+    return (x >>> 16) ^ x;
+  }
+}
@@ -29,6 +29,7 @@ public class HttpHeaders {
   public static final String ACCEPT = "Accept";
   public static final String ACCEPT_CHARSET = "Accept-Charset";
   public static final String ACCEPT_ENCODING = "Accept-Encoding";
+  public static final String ACCEPT_RANGES = "Accept-Ranges";
   public static final String ALLOW = "Allow";
   public static final String CACHE_CONTROL = "Cache-Control";
   public static final String CHARSET = "charset";
@@ -36,18 +37,24 @@ public class HttpHeaders {
   public static final String CONTENT_TYPE = "Content-Type";
   public static final String CONTENT_DISPOSITION = "Content-disposition";
   public static final String CONTENT_LENGTH = "Content-length";
+  public static final String CONTENT_ENCODING = "Content-Encoding";
+  public static final String CONTENT_RANGE = "Content-Range";
   public static final String COOKIE = "Cookie";
+  public static final String DATE = "Date";
   public static final String ETAG = "ETag";
   public static final String EXPIRES = "Expires";
   public static final String HOST_NAME = "Host";
   public static final String IF_MATCH = "If-Match";
   public static final String IF_MODIFIED_SINCE = "If-Modified-Since";
   public static final String IF_NONE_MATCH = "If-None-Match";
+  public static final String IF_RANGE = "If-Range";
   public static final String LAST_MODIFIED = "Last-Modified";
   public static final String LOCATION = "Location";
   public static final String PROXY_CLIENT_IP = "Proxy-Client-IP";
+  public static final String RANGE = "Range";
   public static final String SERVER = "Server";
   public static final String TRANSFER_ENCODING = "Transfer-Encoding";
+  public static final String VARY = "Vary";
   public static final String WL_PROXY_CLIENT_IP = "WL-Proxy-Client-IP";
   public static final String X_FORWARDED_FOR = "X-Forwarded-For";
   public static final String X_REAL_IP = "X-Real-IP";
@@ -0,0 +1,270 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package vip.justlive.oxygen.core.util;
+
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * 哈希时间轮
+ * <p>
+ * 添加和取消任务的复杂度为O(1)，到期精度为一个tick；任务在时间轮线程中执行，应尽量短小。
+ * 时间轮线程在首次添加任务时才启动，没有待执行任务时挂起，不再空转
+ * </p>
+ *
+ * @author wubo
+ */
+@Slf4j
+public class TimingWheel {
+
+  private final long tickNanos;
+  private final Bucket[] wheel;
+  private final int mask;
+  private final Queue<Timeout> pending = new ConcurrentLinkedQueue<>();
+  private final AtomicInteger outstanding = new AtomicInteger();
+  private final Thread worker;
+  private long startTime;
+  private volatile boolean started;
+  private volatile boolean stopped;
+  private long tick;
+
+  /**
+   * 构造时间轮
+   *
+   * @param tickDuration 每个tick的时长
+   * @param unit 时间单位
+   * @param wheelSize 槽数，会向上取整为2的幂
+   * @param nameFormat 线程名称
+   */
+  public TimingWheel(long tickDuration, TimeUnit unit, int wheelSize, String nameFormat) {
+    this.tickNanos = Math.max(unit.toNanos(tickDuration), TimeUnit.MILLISECONDS.toNanos(1));
+    int size = Integer.highestOneBit(Math.max(wheelSize, 2) - 1) << 1;
+    this.wheel = new Bucket[size];
+    for (int i = 0; i < size; i++) {
+      wheel[i] = new Bucket();
+    }
+    this.mask = size - 1;
+    this.worker = new ThreadFactoryBuilder().setNameFormat(nameFormat).setDaemon(true).build()
+        .newThread(this::run);
+  }
+
+  /**
+   * 添加延时任务
+   *
+   * @param task 任务
+   * @param delay 延时
+   * @param unit 时间单位
+   * @return 任务句柄
+   */
+  public Timeout newTimeout(Runnable task, long delay, TimeUnit unit) {
+    start();
+    Timeout timeout = new Timeout(task, System.nanoTime() - startTime + unit.toNanos(delay));
+    if (stopped) {
+      timeout.cancel();
+      return timeout;
+    }
+    pending.offer(timeout);
+    if (outstanding.getAndIncrement() == 0) {
+      LockSupport.unpark(worker);
+    }
+    return timeout;
+  }
+
+  /**
+   * 停止时间轮，未执行的任务将被丢弃
+   */
+  public void stop() {
+    stopped = true;
+    worker.interrupt();
+  }
+
+  private void start() {
+    if (started) {
+      return;
+    }
+    synchronized (this) {
+      if (!started && !stopped) {
+        startTime = System.nanoTime();
+        worker.start();
+        started = true;
+      }
+    }
+  }
+
+  private void run() {
+    while (!stopped) {
+      if (outstanding.get() == 0) {
+        awaitTask();
+        continue;
+      }
+      long deadline = waitForNextTick();
+      if (deadline < 0) {
+        continue;
+      }
+      transferPending();
+      outstanding.addAndGet(-wheel[(int) (tick & mask)].expire(deadline));
+      tick++;
+    }
+    pending.clear();
+  }
+
+  private void awaitTask() {
+    LockSupport.park(this);
+    // 挂起期间槽均为空，直接跳到当前tick
+    tick = Math.max(tick, (System.nanoTime() - startTime) / tickNanos);
+  }
+
+  private long waitForNextTick() {
+    long deadline = tickNanos * (tick + 1);
+    for (; ; ) {
+      long current = System.nanoTime() - startTime;
+      long sleepMillis = (deadline - current + 999999) / 1000000;
+      if (sleepMillis <= 0) {
+        return current;
+      }
+      try {
+        Thread.sleep(sleepMillis);
+      } catch (InterruptedException e) {
+        if (stopped) {
+          return -1;
+        }
+      }
+    }
+  }
+
+  private void transferPending() {
+    Timeout timeout;
+    while ((timeout = pending.poll()) != null) {
+      if (timeout.isCancelled()) {
+        outstanding.decrementAndGet();
+        continue;
+      }
+      long calculated = timeout.deadline / tickNanos;
+      timeout.remainingRounds = (calculated - tick) / wheel.length;
+      long ticks = Math.max(calculated, tick);
+      wheel[(int) (ticks & mask)].add(timeout);
+    }
+  }
+
+  /**
+   * 延时任务句柄
+   */
+  public static class Timeout {
+
+    private static final int INIT = 0;
+    private static final int CANCELLED = 1;
+    private static final int EXPIRED = 2;
+
+    private final Runnable task;
+    private final long deadline;
+    private final AtomicInteger state = new AtomicInteger(INIT);
+    private long remainingRounds;
+    private Timeout prev;
+    private Timeout next;
+
+    Timeout(Runnable task, long deadline) {
+      this.task = task;
+      this.deadline = deadline;
+    }
+
+    /**
+     * 取消任务
+     *
+     * @return 是否取消成功
+     */
+    public boolean cancel() {
+      return state.compareAndSet(INIT, CANCELLED);
+    }
+
+    public boolean isCancelled() {
+      return state.get() == CANCELLED;
+    }
+
+    public boolean isExpired() {
+      return state.get() == EXPIRED;
+    }
+
+    private void expire() {
+      if (!state.compareAndSet(INIT, EXPIRED)) {
+        return;
+      }
+      try {
+        task.run();
+      } catch (Throwable e) {
+        log.error("timing wheel task error", e);
+      }
+    }
+  }
+
+  /**
+   * 槽，只在时间轮线程中访问
+   */
+  private static class Bucket {
+
+    private Timeout head;
+    private Timeout tail;
+
+    void add(Timeout timeout) {
+      if (head == null) {
+        head = tail = timeout;
+      } else {
+        tail.next = timeout;
+        timeout.prev = tail;
+        tail = timeout;
+      }
+    }
+
+    int expire(long deadline) {
+      int removed = 0;
+      Timeout timeout = head;
+      while (timeout != null) {
+        Timeout next = timeout.next;
+        if (timeout.isCancelled()) {
+          remove(timeout);
+          removed++;
+        } else if (timeout.remainingRounds > 0) {
+          timeout.remainingRounds--;
+        } else if (timeout.deadline <= deadline) {
+          remove(timeout);
+          removed++;
+          timeout.expire();
+        }
+        timeout = next;
+      }
+      return removed;
+    }
+
+    private void remove(Timeout timeout) {
+      if (timeout.prev != null) {
+        timeout.prev.next = timeout.next;
+      }
+      if (timeout.next != null) {
+        timeout.next.prev = timeout.prev;
+      }
+      if (timeout == head) {
+        head = timeout.next;
+      }
+      if (timeout == tail) {
+        tail = timeout.prev;
+      }
+      timeout.prev = null;
+      timeout.next = null;
+    }
+  }
+}
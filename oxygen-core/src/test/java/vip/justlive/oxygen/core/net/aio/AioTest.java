@@ -16,19 +16,38 @@ package vip.justlive.oxygen.core.net.aio;
 
 
 import java.io.IOException;
+import java.io.InputStream;
 import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousSocketChannel;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
 import lombok.extern.slf4j.Slf4j;
+import org.junit.Assert;
 import org.junit.Test;
+import vip.justlive.oxygen.core.exception.CodedException;
 import vip.justlive.oxygen.core.net.aio.core.AioListener;
 import vip.justlive.oxygen.core.net.aio.core.ChannelContext;
 import vip.justlive.oxygen.core.net.aio.core.Client;
+import vip.justlive.oxygen.core.net.aio.core.ClientPool;
+import vip.justlive.oxygen.core.net.aio.core.ExecutionMode;
 import vip.justlive.oxygen.core.net.aio.core.GroupContext;
 import vip.justlive.oxygen.core.net.aio.core.Server;
 import vip.justlive.oxygen.core.net.aio.protocol.LengthFrame;
 import vip.justlive.oxygen.core.net.aio.protocol.LengthFrameHandler;
+import vip.justlive.oxygen.core.util.SystemUtils;
 import vip.justlive.oxygen.core.util.ThreadUtils;
 
 /**
@@ -111,4 +130,504 @@ public class AioTest {
     ThreadUtils.sleep(2000);
   }
 
-}
\ No newline at end of file
+  @Test
+  public void largeFrame() throws Exception {
+    int port = SystemUtils.findAvailablePort();
+    List<byte[]> received = new CopyOnWriteArrayList<>();
+    CountDownLatch latch = new CountDownLatch(3);
+    GroupContext group = new GroupContext(new LengthFrameHandler() {
+      @Override
+      public void handle(Object data, ChannelContext channelContext) {
+        received.add(((LengthFrame) data).getBody());
+        latch.countDown();
+      }
+    });
+    Server server = new Server(group);
+    server.start(new InetSocketAddress(port));
+
+    Client client = new Client(new GroupContext(new LengthFrameHandler()));
+    client.connect(new InetSocketAddress("localhost", port));
+
+    byte[] body = new byte[300 * 1024];
+    new Random().nextBytes(body);
+    client.write(new LengthFrame().setBody(body));
+    client.write(new LengthFrame().setBody("small".getBytes()));
+    client.write(new LengthFrame().setBody(body));
+
+    Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+    Assert.assertArrayEquals(body, received.get(0));
+    Assert.assertArrayEquals("small".getBytes(), received.get(1));
+    Assert.assertArrayEquals(body, received.get(2));
+
+    client.close();
+    server.stop();
+  }
+
+  @Test
+  public void maxFrameSize() throws Exception {
+    int port = SystemUtils.findAvailablePort();
+    CountDownLatch latch = new CountDownLatch(1);
+    GroupContext group = new GroupContext(new LengthFrameHandler());
+    group.setMaxFrameSize(1024);
+    group.setAioListener(new AioListener() {
+      @Override
+      public void onClosed(ChannelContext channelContext) {
+        latch.countDown();
+      }
+    });
+    Server server = new Server(group);
+    server.start(new InetSocketAddress(port));
+
+    Client client = new Client(new GroupContext(new LengthFrameHandler()));
+    client.connect(new InetSocketAddress("localhost", port));
+    client.write(new LengthFrame().setBody(new byte[2048]));
+
+    Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+
+    client.close();
+    server.stop();
+  }
+
+  @Test
+  public void eventLoop() throws Exception {
+    int port = SystemUtils.findAvailablePort();
+    int count = 100;
+    CountDownLatch latch = new CountDownLatch(count);
+    List<String> threads = new CopyOnWriteArrayList<>();
+    GroupContext group = new GroupContext(new LengthFrameHandler() {
+      @Override
+      public void handle(Object data, ChannelContext channelContext) {
+        threads.add(Thread.currentThread().getName());
+        latch.countDown();
+      }
+    });
+    group.setExecutionMode(ExecutionMode.EVENT_LOOP).setEventLoopThreads(2);
+    Server server = new Server(group);
+    server.start(new InetSocketAddress(port));
+
+    Client client = new Client(new GroupContext(new LengthFrameHandler()));
+    client.connect(new InetSocketAddress("localhost", port));
+    for (int i = 0; i < count; i++) {
+      client.write(new LengthFrame().setBody(String.valueOf(i).getBytes()));
+    }
+
+    Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+    Assert.assertEquals(1, threads.stream().distinct().count());
+    Assert.assertTrue(threads.get(0).startsWith("aio-event-loop-"));
+    // 事件循环模式下group线程数不超过事件循环线程数
+    Assert.assertEquals(2, group.getGroupExecutor().getCorePoolSize());
+
+    client.close();
+    server.stop();
+  }
+
+  @Test
+  public void clientPool() throws Exception {
+    int port = SystemUtils.findAvailablePort();
+    Server server = new Server(new GroupContext(echoHandler()));
+    server.start(new InetSocketAddress(port));
+
+    GroupContext group = new GroupContext(new LengthFrameHandler().setCorrelated(true));
+    ClientPool pool = new ClientPool(group, 4);
+    pool.connect("localhost", port);
+
+    int count = 1000;
+    List<CompletableFuture<LengthFrame>> futures = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      futures.add(pool.request(new LengthFrame().setBody(String.valueOf(i).getBytes())));
+    }
+    for (int i = 0; i < count; i++) {
+      Assert.assertEquals(String.valueOf(i),
+          new String(futures.get(i).get(5, TimeUnit.SECONDS).getBody()));
+    }
+    Assert.assertEquals(4, server.getGroupContext().getChannels().size());
+
+    // 服务端不响应type为2的请求
+    group.setRequestTimeout(300);
+    CompletableFuture<LengthFrame> future = pool.request(new LengthFrame().setType(2));
+    try {
+      future.get(5, TimeUnit.SECONDS);
+      Assert.fail();
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof TimeoutException);
+    }
+    Assert.assertEquals(0, pool.getCorrelator().inFlight());
+
+    pool.close();
+    server.stop();
+  }
+
+  @Test
+  public void lengthFrameBody() {
+    LengthFrame frame = new LengthFrame().setBodyBuffer(ByteBuffer.wrap(new byte[4]));
+    Assert.assertEquals(4, frame.getBody().length);
+    // 读取过请求体后替换buffer，大小以新的buffer为准
+    frame.setBodyBuffer(ByteBuffer.wrap(new byte[64]));
+    Assert.assertEquals(64, frame.bodySize());
+    Assert.assertEquals(64, frame.getBody().length);
+    frame.setBody(new byte[8]);
+    Assert.assertEquals(8, frame.getBodyBuffer().remaining());
+  }
+
+  @Test
+  public void inFlightLimit() throws Exception {
+    int port = SystemUtils.findAvailablePort();
+    Server server = new Server(new GroupContext(echoHandler()));
+    server.start(new InetSocketAddress(port));
+
+    GroupContext group = new GroupContext(new LengthFrameHandler().setCorrelated(true));
+    group.setMaxInFlightRequests(1).setRequestTimeout(1000);
+    ClientPool pool = new ClientPool(group, 1);
+    pool.connect("localhost", port);
+
+    // 超过上限的请求排队，许可依次交给下一个请求
+    int count = 200;
+    List<CompletableFuture<LengthFrame>> futures = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      futures.add(pool.request(new LengthFrame().setBody(String.valueOf(i).getBytes())));
+    }
+    for (int i = 0; i < count; i++) {
+      Assert.assertEquals(String.valueOf(i),
+          new String(futures.get(i).get(5, TimeUnit.SECONDS).getBody()));
+    }
+
+    // 服务端不响应type为2的请求，占用唯一的许可时后续请求不阻塞调用线程
+    CompletableFuture<LengthFrame> blocked = pool.request(new LengthFrame().setType(2));
+    long start = System.currentTimeMillis();
+    CompletableFuture<LengthFrame> queued = pool
+        .request(new LengthFrame().setBody("q".getBytes()));
+    Assert.assertTrue(System.currentTimeMillis() - start < 500);
+    Assert.assertFalse(queued.isDone());
+    try {
+      blocked.get(5, TimeUnit.SECONDS);
+      Assert.fail();
+    } catch (ExecutionException e) {
+      Assert.assertTrue(e.getCause() instanceof TimeoutException);
+    }
+    try {
+      queued.get(5, TimeUnit.SECONDS);
+    } catch (ExecutionException e) {
+      // 与占用许可的请求同时超时
+      Assert.assertTrue(e.getCause() instanceof CodedException);
+    }
+    Assert.assertEquals(0, pool.getCorrelator().inFlight());
+
+    pool.close();
+    server.stop();
+  }
+
+  //  @Test
+  public void clientPoolThroughput() throws Exception {
+    int port = SystemUtils.findAvailablePort();
+    Server server = new Server(new GroupContext(echoHandler()));
+    server.start(new InetSocketAddress(port));
+
+    GroupContext group = new GroupContext(new LengthFrameHandler().setCorrelated(true));
+    group.setMaxInFlightRequests(4096);
+    ClientPool pool = new ClientPool(group, Runtime.getRuntime().availableProcessors());
+    pool.connect("localhost", port);
+
+    byte[] body = new byte[128];
+    int count = 1000000;
+    CountDownLatch latch = new CountDownLatch(count);
+    long start = System.nanoTime();
+    for (int i = 0; i < count; i++) {
+      pool.request(new LengthFrame().setBody(body)).whenComplete((r, e) -> latch.countDown());
+    }
+    latch.await();
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    log.info("{} requests in {}ms, {} req/s", count, elapsed, count * 1000L / elapsed);
+
+    pool.close();
+    server.stop();
+  }
+
+  @Test
+  public void writability() throws Exception {
+    int port = SystemUtils.findAvailablePort();
+    ServerSocket serverSocket = new ServerSocket(port);
+    CountDownLatch unwritable = new CountDownLatch(1);
+    CountDownLatch writable = new CountDownLatch(1);
+    GroupContext group = new GroupContext(new LengthFrameHandler());
+    group.setAioListener(new AioListener() {
+      @Override
+      public void onWritabilityChanged(ChannelContext channelContext, boolean value) {
+        (value ? writable : unwritable).countDown();
+      }
+    });
+    Client client = new Client(group);
+    client.connect(new InetSocketAddress("localhost", port));
+    Socket socket = serverSocket.accept();
+
+    // 对端不读取，数据堆积在待写出队列
+    byte[] body = new byte[512 * 1024];
+    for (int i = 0; i < 64; i++) {
+      client.write(new LengthFrame().setBody(body));
+    }
+    Assert.assertTrue(unwritable.await(5, TimeUnit.SECONDS));
+    Assert.assertFalse(client.getChannelContext().isWritable());
+    Assert.assertTrue(group.getPendingBytes() > group.getWriteBufferHighWaterMark());
+    try {
+      client.getChannelContext().writeAsync(new LengthFrame()).get(5, TimeUnit.SECONDS);
+      Assert.fail();
+    } catch (ExecutionException e) {
+      // expected
+    }
+    CompletableFuture<Void> whenWritable = client.getChannelContext().whenWritable();
+    Assert.assertFalse(whenWritable.isDone());
+
+    ThreadUtils.cachedPool().execute(() -> {
+      byte[] buf = new byte[64 * 1024];
+      try (InputStream in = socket.getInputStream()) {
+        while (in.read(buf) != -1) {
+          // drain
+        }
+      } catch (IOException e) {
+        // closed
+      }
+    });
+    Assert.assertTrue(writable.await(5, TimeUnit.SECONDS));
+    whenWritable.get(5, TimeUnit.SECONDS);
+    // 分批写出时可能多次越过水位，等待全部写完
+    long deadline = System.currentTimeMillis() + 5000;
+    while (client.getChannelContext().getPendingBytes() > 0
+        && System.currentTimeMillis() < deadline) {
+      ThreadUtils.sleep(10);
+    }
+    Assert.assertTrue(client.getChannelContext().isWritable());
+    client.getChannelContext().writeAsync(new LengthFrame()).get(5, TimeUnit.SECONDS);
+
+    client.close();
+    socket.close();
+    serverSocket.close();
+  }
+
+  @Test
+  public void globalPendingBytes() throws Exception {
+    int port = SystemUtils.findAvailablePort();
+    ServerSocket serverSocket = new ServerSocket(port);
+    Map<Long, Boolean> states = new ConcurrentHashMap<>(4);
+    GroupContext group = new GroupContext(new LengthFrameHandler());
+    group.setWriteBufferHighWaterMark(Integer.MAX_VALUE).setMaxPendingBytes(1024 * 1024)
+        .setAioListener(new AioListener() {
+          @Override
+          public void onWritabilityChanged(ChannelContext channelContext, boolean value) {
+            states.put(channelContext.getId(), value);
+          }
+        });
+    ClientPool pool = new ClientPool(group, 2);
+    ThreadUtils.cachedPool().execute(() -> {
+      try {
+        pool.connect("localhost", port);
+      } catch (IOException e) {
+        // ignore
+      }
+    });
+    Socket s1 = serverSocket.accept();
+    Socket s2 = serverSocket.accept();
+    long deadline = System.currentTimeMillis() + 5000;
+    while (group.getChannels().size() < 2 && System.currentTimeMillis() < deadline) {
+      ThreadUtils.sleep(10);
+    }
+    List<ChannelContext> channels = new ArrayList<>(group.getChannels().values());
+    ChannelContext busy = channels.get(0);
+    ChannelContext idle = channels.get(1);
+
+    // 只有一个channel堆积，全局超限后所有channel都不可写
+    byte[] body = new byte[512 * 1024];
+    for (int i = 0; i < 64; i++) {
+      busy.write(new LengthFrame().setBody(body));
+    }
+    deadline = System.currentTimeMillis() + 5000;
+    while (states.size() < 2 && System.currentTimeMillis() < deadline) {
+      ThreadUtils.sleep(10);
+    }
+    Assert.assertEquals(Boolean.FALSE, states.get(idle.getId()));
+    Assert.assertFalse(idle.isWritable());
+    CompletableFuture<Void> whenWritable = idle.whenWritable();
+    Assert.assertFalse(whenWritable.isDone());
+
+    for (Socket socket : new Socket[]{s1, s2}) {
+      ThreadUtils.cachedPool().execute(() -> {
+        byte[] buf = new byte[64 * 1024];
+        try (InputStream in = socket.getInputStream()) {
+          while (in.read(buf) != -1) {
+            // drain
+          }
+        } catch (IOException e) {
+          // closed
+        }
+      });
+    }
+    whenWritable.get(5, TimeUnit.SECONDS);
+    Assert.assertTrue(idle.isWritable());
+
+    pool.close();
+    s1.close();
+    s2.close();
+    serverSocket.close();
+  }
+
+  @Test
+  public void compactFrame() throws Exception {
+    int port = SystemUtils.findAvailablePort();
+    List<LengthFrame> received = new CopyOnWriteArrayList<>();
+    CountDownLatch latch = new CountDownLatch(4);
+    LengthFrameHandler serverHandler = new LengthFrameHandler() {
+      @Override
+      public void handle(Object data, ChannelContext channelContext) {
+        // 切片只在handle期间有效
+        received.add(((LengthFrame) data).detach());
+        latch.countDown();
+      }
+    };
+    serverHandler.setCompact(true).setChecksum(true).setCompressThreshold(4096)
+        .setSliceBody(true);
+    Server server = new Server(new GroupContext(serverHandler));
+    server.start(new InetSocketAddress(port));
+
+    LengthFrameHandler clientHandler = new LengthFrameHandler().setCompact(true)
+        .setChecksum(true).setCompressThreshold(4096);
+    Client client = new Client(new GroupContext(clientHandler));
+    client.connect(new InetSocketAddress("localhost", port));
+
+    byte[] large = new byte[300 * 1024];
+    byte[] random = new byte[2048];
+    new Random().nextBytes(random);
+    client.write(new LengthFrame().setType(-2).setId(Long.MAX_VALUE).setBody("small".getBytes()));
+    client.write(new LengthFrame().setType(1).setBody(large));
+    client.write(new LengthFrame().setType(2).setBodyBuffer(ByteBuffer.wrap(random)));
+    client.write(new LengthFrame().setType(3));
+
+    Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+    Assert.assertEquals(-2, received.get(0).getType());
+    Assert.assertEquals(Long.MAX_VALUE, received.get(0).getId());
+    Assert.assertArrayEquals("small".getBytes(), received.get(0).getBody());
+    Assert.assertArrayEquals(large, received.get(1).getBody());
+    Assert.assertArrayEquals(random, received.get(2).getBody());
+    Assert.assertEquals(0, received.get(3).bodySize());
+
+    client.close();
+    server.stop();
+  }
+
+  @Test
+  public void fixedHeader() throws Exception {
+    LengthFrameHandler handler = new LengthFrameHandler();
+    ChannelContext channelContext = new ChannelContext(new GroupContext(handler),
+        AsynchronousSocketChannel.open());
+    // 默认定长消息头不携带关联id
+    ByteBuffer buffer = handler.encode(new LengthFrame().setType(1).setId(7).setBody(new byte[4]),
+        channelContext);
+    Assert.assertEquals(LengthFrame.BASE_LENGTH + 4, buffer.remaining());
+    LengthFrame frame = (LengthFrame) handler.decode(buffer, buffer.remaining(), channelContext);
+    Assert.assertEquals(1, frame.getType());
+    Assert.assertEquals(0, frame.getId());
+
+    handler.setCorrelated(true);
+    buffer = handler.encode(new LengthFrame().setType(1).setId(7).setBody(new byte[4]),
+        channelContext);
+    Assert.assertEquals(LengthFrame.BASE_LENGTH + LengthFrame.ID_LENGTH + 4, buffer.remaining());
+    frame = (LengthFrame) handler.decode(buffer, buffer.remaining(), channelContext);
+    Assert.assertEquals(7, frame.getId());
+    Assert.assertEquals(4, frame.bodySize());
+  }
+
+  @Test
+  public void inflateLimit() throws Exception {
+    LengthFrameHandler handler = new LengthFrameHandler().setCompact(true)
+        .setCompressThreshold(1024).setMaxInflatedSize(1024 * 1024);
+    ChannelContext channelContext = new ChannelContext(new GroupContext(handler),
+        AsynchronousSocketChannel.open());
+    ByteBuffer small = handler.encode(new LengthFrame().setType(1).setBody(new byte[4096]),
+        channelContext);
+    LengthFrame frame = (LengthFrame) handler.decode(small, small.remaining(), channelContext);
+    Assert.assertEquals(4096, frame.bodySize());
+
+    // 高压缩比的消息体解压后超出上限
+    ByteBuffer bomb = handler.encode(
+        new LengthFrame().setType(1).setBody(new byte[8 * 1024 * 1024]), channelContext);
+    Assert.assertTrue(bomb.remaining() < 64 * 1024);
+    try {
+      handler.decode(bomb, bomb.remaining(), channelContext);
+      Assert.fail();
+    } catch (CodedException e) {
+      // expected
+    }
+  }
+
+  @Test
+  public void acceptors() throws Exception {
+    int count = 20;
+    CountDownLatch latch = new CountDownLatch(count);
+    GroupContext group = new GroupContext(new LengthFrameHandler() {
+      @Override
+      public void handle(Object data, ChannelContext channelContext) {
+        latch.countDown();
+      }
+    });
+    group.setAcceptors(2).setBacklog(1024).setReceiveBufferSize(64 * 1024);
+    Server server = new Server(group);
+    server.start(new InetSocketAddress(0));
+    int port = ((InetSocketAddress) server.getServerChannel().getLocalAddress()).getPort();
+
+    List<Client> clients = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      Client client = new Client(new GroupContext(new LengthFrameHandler()));
+      client.connect(new InetSocketAddress("localhost", port));
+      client.write(new LengthFrame().setBody(String.valueOf(i).getBytes()));
+      clients.add(client);
+    }
+
+    Assert.assertTrue(latch.await(5, TimeUnit.SECONDS));
+    Assert.assertEquals(count, group.getChannels().size());
+
+    clients.forEach(Client::close);
+    server.stop();
+  }
+
+  @Test
+  public void maxAcceptsPerSecond() throws Exception {
+    int count = 10;
+    AtomicInteger connected = new AtomicInteger();
+    CountDownLatch latch = new CountDownLatch(count);
+    GroupContext group = new GroupContext(new LengthFrameHandler());
+    group.setMaxAcceptsPerSecond(2).setAioListener(new AioListener() {
+      @Override
+      public void onConnected(ChannelContext channelContext) {
+        connected.incrementAndGet();
+        latch.countDown();
+      }
+    });
+    Server server = new Server(group);
+    server.start(new InetSocketAddress(0));
+    int port = ((InetSocketAddress) server.getServerChannel().getLocalAddress()).getPort();
+
+    // 超出的连接停留在连接队列中，下一秒再接收
+    List<Client> clients = new ArrayList<>(count);
+    for (int i = 0; i < count; i++) {
+      Client client = new Client(new GroupContext(new LengthFrameHandler()));
+      client.connect(new InetSocketAddress("localhost", port));
+      clients.add(client);
+    }
+    ThreadUtils.sleep(100);
+    Assert.assertTrue(connected.get() < count);
+    Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+
+    clients.forEach(Client::close);
+    server.stop();
+  }
+
+  private LengthFrameHandler echoHandler() {
+    return new LengthFrameHandler() {
+      @Override
+      public void handle(Object data, ChannelContext channelContext) {
+        LengthFrame frame = (LengthFrame) data;
+        if (frame.getType() == 0) {
+          channelContext.write(new LengthFrame().setId(frame.getId()).setBody(frame.getBody()));
+        }
+      }
+    }.setCorrelated(true);
+  }
+
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package vip.justlive.oxygen.core.net.aio.core;
+
+import java.nio.channels.AsynchronousSocketChannel;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+import vip.justlive.oxygen.core.net.aio.protocol.LengthFrameHandler;
+
+/**
+ * @author wubo
+ */
+public class AbstractWorkerTest {
+
+  @Test
+  public void singleConsumer() throws Exception {
+    int producers = 8;
+    int count = 10000;
+    GroupContext groupContext = new GroupContext(new LengthFrameHandler()).setWorkerThreads(16);
+    ChannelContext channelContext = new ChannelContext(groupContext,
+        AsynchronousSocketChannel.open());
+    CountDownLatch latch = new CountDownLatch(producers * count);
+    AtomicBoolean running = new AtomicBoolean();
+    AtomicInteger overlapped = new AtomicInteger();
+    Map<Integer, Integer> last = new ConcurrentHashMap<>();
+    AtomicInteger disordered = new AtomicInteger();
+
+    AbstractWorker<int[]> worker = new AbstractWorker<int[]>(channelContext) {
+      @Override
+      public void handle(List<int[]> data) {
+        if (!running.compareAndSet(false, true)) {
+          overlapped.incrementAndGet();
+        }
+        for (int[] item : data) {
+          Integer prev = last.put(item[0], item[1]);
+          if (prev != null && prev + 1 != item[1]) {
+            disordered.incrementAndGet();
+          }
+          latch.countDown();
+        }
+        running.set(false);
+      }
+    };
+
+    for (int p = 0; p < producers; p++) {
+      int producer = p;
+      new Thread(() -> {
+        for (int i = 0; i < count; i++) {
+          worker.add(new int[]{producer, i});
+          worker.execute();
+        }
+      }).start();
+    }
+
+    Assert.assertTrue(latch.await(10, TimeUnit.SECONDS));
+    Assert.assertEquals(0, overlapped.get());
+    Assert.assertEquals(0, disordered.get());
+    Assert.assertTrue(worker.queue.isEmpty());
+    groupContext.getWorkerExecutor().shutdown();
+  }
+}
@@ -0,0 +1,76 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package vip.justlive.oxygen.core.net.aio.core;
+
+import java.nio.ByteBuffer;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author wubo
+ */
+public class PooledBufferPoolTest {
+
+  @Test
+  public void acquire() {
+    PooledBufferPool pool = new PooledBufferPool(512, 4096, 2, 2, false);
+
+    ByteBuffer buffer = pool.acquire(100);
+    Assert.assertEquals(512, buffer.capacity());
+    Assert.assertEquals(512, pool.acquire(512).capacity());
+    Assert.assertEquals(1024, pool.acquire(513).capacity());
+    Assert.assertEquals(10000, pool.acquire(10000).capacity());
+    Assert.assertFalse(buffer.isDirect());
+
+    buffer.putInt(1);
+    pool.release(buffer);
+    ByteBuffer reused = pool.acquire(10);
+    Assert.assertSame(buffer, reused);
+    Assert.assertEquals(0, reused.position());
+    Assert.assertEquals(reused.capacity(), reused.limit());
+  }
+
+  @Test
+  public void release() {
+    PooledBufferPool pool = new PooledBufferPool(512, 4096, 1, 1, true);
+
+    ByteBuffer heap = ByteBuffer.allocate(512);
+    pool.release(heap);
+    Assert.assertNotSame(heap, pool.acquire(512));
+
+    ByteBuffer b1 = pool.acquire(512);
+    ByteBuffer b2 = pool.acquire(512);
+    ByteBuffer b3 = pool.acquire(512);
+    Assert.assertTrue(b1.isDirect());
+    pool.release(b1);
+    pool.release(b2);
+    pool.release(b3);
+    Assert.assertSame(b1, pool.acquire(512));
+    Assert.assertSame(b2, pool.acquire(512));
+    Assert.assertNotSame(b3, pool.acquire(512));
+  }
+
+  @Test
+  public void releaseOnOtherThread() throws Exception {
+    PooledBufferPool pool = new PooledBufferPool(512, 4096, 4, 4, false);
+    ByteBuffer buffer = pool.acquire(512);
+
+    // 只归还不申请的线程不缓存，buffer回到共享区
+    Thread thread = new Thread(() -> pool.release(buffer));
+    thread.start();
+    thread.join();
+    Assert.assertSame(buffer, pool.acquire(512));
+  }
+}
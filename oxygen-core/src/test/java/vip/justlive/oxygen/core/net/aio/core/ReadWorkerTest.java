@@ -0,0 +1,109 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package vip.justlive.oxygen.core.net.aio.core;
+
+import java.nio.ByteBuffer;
+import java.nio.channels.AsynchronousSocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author wubo
+ */
+public class ReadWorkerTest {
+
+  @Test
+  public void partialFrame() throws Exception {
+    List<String> received = new ArrayList<>();
+    GroupContext groupContext = new GroupContext(new LineHandler(received));
+    ChannelContext channelContext = new ChannelContext(groupContext,
+        AsynchronousSocketChannel.open());
+    ReadWorker worker = new ReadWorker(channelContext);
+
+    // 一次读取包含完整帧和半帧，剩余空间足够时直接追加
+    worker.handle(Collections.singletonList(wrap("one\nt", 64)));
+    Assert.assertEquals(Collections.singletonList("one"), received);
+    worker.handle(Collections.singletonList(wrap("wo\n", 16)));
+    Assert.assertEquals(Arrays.asList("one", "two"), received);
+
+    // 剩余空间不足时压缩
+    worker.handle(Collections.singletonList(wrap("three\nfo", 8)));
+    worker.handle(Collections.singletonList(wrap("ur\nfive\n", 8)));
+    Assert.assertEquals(Arrays.asList("one", "two", "three", "four", "five"), received);
+  }
+
+  @Test
+  public void stopReleasesCumulation() throws Exception {
+    PooledBufferPool pool = new PooledBufferPool(512, 4096, 4, 4, false);
+    GroupContext groupContext = new GroupContext(new LineHandler(new ArrayList<>()))
+        .setBufferPool(pool);
+    ChannelContext channelContext = new ChannelContext(groupContext,
+        AsynchronousSocketChannel.open());
+    ReadWorker worker = new ReadWorker(channelContext);
+
+    ByteBuffer buffer = pool.acquire(64);
+    buffer.put("partial".getBytes(StandardCharsets.UTF_8)).flip();
+    worker.handle(Collections.singletonList(buffer));
+    worker.stop();
+    Assert.assertSame(buffer, pool.acquire(64));
+  }
+
+  private static ByteBuffer wrap(String value, int capacity) {
+    ByteBuffer buffer = ByteBuffer.allocate(capacity);
+    buffer.put(value.getBytes(StandardCharsets.UTF_8)).flip();
+    return buffer;
+  }
+
+  /**
+   * 按换行分帧
+   */
+  private static class LineHandler implements AioHandler {
+
+    final List<String> received;
+
+    LineHandler(List<String> received) {
+      this.received = received;
+    }
+
+    @Override
+    public ByteBuffer encode(Object data, ChannelContext channelContext) {
+      return null;
+    }
+
+    @Override
+    public Object decode(ByteBuffer buffer, int readableSize, ChannelContext channelContext) {
+      int start = buffer.position();
+      for (int i = start; i < buffer.limit(); i++) {
+        if (buffer.get(i) == '\n') {
+          byte[] bytes = new byte[i - start];
+          buffer.get(bytes);
+          buffer.get();
+          return new String(bytes, StandardCharsets.UTF_8);
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public void handle(Object data, ChannelContext channelContext) {
+      received.add((String) data);
+    }
+  }
+}
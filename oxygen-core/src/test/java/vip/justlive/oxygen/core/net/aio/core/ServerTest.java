@@ -0,0 +1,51 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package vip.justlive.oxygen.core.net.aio.core;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+import vip.justlive.oxygen.core.util.ThreadUtils;
+
+/**
+ * @author wubo
+ */
+public class ServerTest {
+
+  @Test
+  public void acquireAccept() throws Exception {
+    int limit = 100;
+    Server server = new Server(new GroupContext(null).setMaxAcceptsPerSecond(limit));
+    AtomicInteger accepted = new AtomicInteger();
+    int threads = 8;
+    CountDownLatch latch = new CountDownLatch(threads);
+    long startWindow = System.currentTimeMillis() / 1000;
+    for (int i = 0; i < threads; i++) {
+      ThreadUtils.cachedPool().execute(() -> {
+        for (int j = 0; j < 1000; j++) {
+          if (server.acquireAccept() == 0) {
+            accepted.incrementAndGet();
+          }
+        }
+        latch.countDown();
+      });
+    }
+    latch.await();
+    long windows = System.currentTimeMillis() / 1000 - startWindow + 1;
+    Assert.assertTrue(accepted.get() >= limit);
+    Assert.assertTrue(accepted.get() <= limit * windows);
+  }
+}
@@ -16,11 +16,15 @@ package vip.justlive.oxygen.core.util;
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
+import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 import org.junit.Assert;
 import org.junit.Test;
 import vip.justlive.oxygen.core.util.ExpiringMap.CleanPolicy;
+import vip.justlive.oxygen.core.util.ExpiringMap.EvictionPolicy;
 import vip.justlive.oxygen.core.util.ExpiringMap.ExpiringPolicy;
 
 public class ExpiringMapTest {
@@ -147,7 +151,7 @@ public class ExpiringMapTest {
 
   @Test
   public void test5() throws InterruptedException {
-    List<String> list = new ArrayList<>();
+    List<String> list = Collections.synchronizedList(new ArrayList<>());
     ExpiringMap<String, Integer> expiringMap = ExpiringMap.<String, Integer>builder()
         // 默认失效时间 10
         .expiration(30, TimeUnit.MILLISECONDS)
@@ -157,7 +161,7 @@ public class ExpiringMapTest {
     expiringMap.put("1", 1);
     expiringMap.put("2", 2);
     TimeUnit.MILLISECONDS.sleep(25);
-    expiringMap.put("3", 3);
+    expiringMap.put("3", 3, 100, TimeUnit.MILLISECONDS);
     TimeUnit.MILLISECONDS.sleep(10);
     expiringMap.get("3");
     TimeUnit.MILLISECONDS.sleep(20);
@@ -169,4 +173,86 @@ public class ExpiringMapTest {
 
   }
 
-}
\ No newline at end of file
+  @Test
+  public void lru() {
+    ExpiringMap<String, Integer> expiringMap = ExpiringMap.<String, Integer>builder().maxSize(2)
+        .build();
+    expiringMap.put("a", 1);
+    expiringMap.put("b", 2);
+    expiringMap.get("a");
+    expiringMap.put("c", 3);
+
+    Assert.assertEquals(2, expiringMap.realSize());
+    Assert.assertNotNull(expiringMap.get("a"));
+    Assert.assertNull(expiringMap.get("b"));
+    Assert.assertNotNull(expiringMap.get("c"));
+  }
+
+  @Test
+  public void concurrent() throws InterruptedException {
+    ExpiringMap<Integer, Integer> expiringMap = ExpiringMap.<Integer, Integer>builder()
+        .maxSize(100).expiration(1, TimeUnit.MINUTES).build();
+    int threads = 8;
+    CountDownLatch latch = new CountDownLatch(threads);
+    for (int t = 0; t < threads; t++) {
+      int seed = t;
+      new Thread(() -> {
+        for (int i = 0; i < 10000; i++) {
+          int key = (i * 31 + seed) % 1000;
+          if (expiringMap.get(key) == null) {
+            expiringMap.putIfAbsent(key, i);
+          }
+        }
+        latch.countDown();
+      }).start();
+    }
+    latch.await();
+
+    Assert.assertTrue(expiringMap.realSize() <= 100);
+    Assert.assertFalse(expiringMap.isEmpty());
+  }
+
+  @Test
+  public void tinyLfu() {
+    ExpiringMap<Integer, Integer> lru = ExpiringMap.<Integer, Integer>builder().maxSize(100)
+        .recordStats().build();
+    ExpiringMap<Integer, Integer> tinyLfu = ExpiringMap.<Integer, Integer>builder().maxSize(100)
+        .evictionPolicy(EvictionPolicy.TINY_LFU).recordStats().build();
+    for (ExpiringMap<Integer, Integer> map : Arrays.asList(lru, tinyLfu)) {
+      for (int round = 0; round < 5; round++) {
+        for (int i = 0; i < 50; i++) {
+          if (map.get(i) == null) {
+            map.put(i, i);
+          }
+        }
+      }
+      // 一次性扫描
+      for (int i = 1000; i < 2000; i++) {
+        map.put(i, i);
+      }
+      for (int i = 0; i < 50; i++) {
+        map.get(i);
+      }
+      Assert.assertEquals(100, map.realSize());
+    }
+
+    Assert.assertEquals(200, lru.stats().getHitCount());
+    Assert.assertEquals(250, tinyLfu.stats().getHitCount());
+    Assert.assertTrue(tinyLfu.stats().hitRate() > lru.stats().hitRate());
+  }
+
+  @Test
+  public void weigher() {
+    ExpiringMap<String, String> expiringMap = ExpiringMap.<String, String>builder()
+        .maximumWeight(10, (k, v) -> v.length()).build();
+    expiringMap.put("a", "1234");
+    expiringMap.put("b", "1234");
+    Assert.assertEquals(2, expiringMap.realSize());
+    expiringMap.put("c", "1234");
+    Assert.assertEquals(2, expiringMap.realSize());
+    Assert.assertNull(expiringMap.get("a"));
+    expiringMap.put("d", "12345678901");
+    Assert.assertNull(expiringMap.get("d"));
+  }
+
+}
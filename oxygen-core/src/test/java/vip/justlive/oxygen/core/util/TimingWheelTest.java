@@ -0,0 +1,78 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package vip.justlive.oxygen.core.util;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * @author wubo
+ */
+public class TimingWheelTest {
+
+  @Test
+  public void expire() throws Exception {
+    TimingWheel wheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 8, "timer-test-%d");
+    CountDownLatch latch = new CountDownLatch(1);
+    long start = System.nanoTime();
+    // 超过一圈
+    wheel.newTimeout(latch::countDown, 200, TimeUnit.MILLISECONDS);
+    Assert.assertTrue(latch.await(2, TimeUnit.SECONDS));
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    Assert.assertTrue(elapsed >= 200);
+    wheel.stop();
+  }
+
+  @Test
+  public void cancel() throws Exception {
+    TimingWheel wheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 8, "timer-test-%d");
+    AtomicInteger count = new AtomicInteger();
+    CountDownLatch latch = new CountDownLatch(100);
+    for (int i = 0; i < 200; i++) {
+      TimingWheel.Timeout timeout = wheel.newTimeout(() -> {
+        count.incrementAndGet();
+        latch.countDown();
+      }, i % 50, TimeUnit.MILLISECONDS);
+      if (i % 2 == 0) {
+        Assert.assertTrue(timeout.cancel());
+        Assert.assertTrue(timeout.isCancelled());
+      }
+    }
+    Assert.assertTrue(latch.await(2, TimeUnit.SECONDS));
+    TimeUnit.MILLISECONDS.sleep(100);
+    Assert.assertEquals(100, count.get());
+    wheel.stop();
+  }
+
+  @Test
+  public void resumeAfterIdle() throws Exception {
+    TimingWheel wheel = new TimingWheel(10, TimeUnit.MILLISECONDS, 8, "timer-test-%d");
+    CountDownLatch first = new CountDownLatch(1);
+    wheel.newTimeout(first::countDown, 10, TimeUnit.MILLISECONDS);
+    Assert.assertTrue(first.await(1, TimeUnit.SECONDS));
+    // 空闲期间挂起，恢复后仍按时到期
+    TimeUnit.MILLISECONDS.sleep(300);
+    CountDownLatch second = new CountDownLatch(1);
+    long start = System.nanoTime();
+    wheel.newTimeout(second::countDown, 50, TimeUnit.MILLISECONDS);
+    Assert.assertTrue(second.await(1, TimeUnit.SECONDS));
+    long elapsed = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+    Assert.assertTrue(elapsed >= 50 && elapsed < 500);
+    wheel.stop();
+  }
+}
@@ -25,6 +25,7 @@ import java.util.Map;
 import java.util.Objects;
 import java.util.concurrent.ConcurrentHashMap;
 import javax.sql.DataSource;
+import vip.justlive.oxygen.core.util.ExpiringMap;
 import vip.justlive.oxygen.jdbc.handler.ResultSetHandler;
 import vip.justlive.oxygen.jdbc.interceptor.JdbcInterceptor;
 import vip.justlive.oxygen.jdbc.interceptor.PageJdbcInterceptor;
@@ -141,6 +142,28 @@ public class Jdbc {
     });
     DATA_SOURCE_MAP.clear();
     PageDialectHelper.clear();
+    StatementCache.clearAll();
+  }
+
+  /**
+   * 设置每个连接缓存的预编译语句数量，小于等于0时关闭缓存
+   *
+   * @param size 数量
+   */
+  public static void setStatementCacheSize(int size) {
+    StatementCache.maxSize = size;
+    if (size <= 0) {
+      StatementCache.clearAll();
+    }
+  }
+
+  /**
+   * 预编译语句缓存的命中统计
+   *
+   * @return 统计快照
+   */
+  public static ExpiringMap.Stats statementCacheStats() {
+    return StatementCache.stats();
   }
 
   /**
@@ -210,6 +233,7 @@ public class Jdbc {
       try {
         connection.setAutoCommit(false);
         connection.commit();
+        StatementCache.evict(connection);
         connection.close();
       } catch (SQLException e) {
         throw JdbcException.wrap(e);
@@ -433,7 +457,7 @@ public class Jdbc {
     SqlCtx ctx = new SqlCtx().setSql(sql).setParams(params);
     try {
       before(ctx);
-      stmt = connection.prepareStatement(ctx.getSql());
+      stmt = prepare(connection, ctx.getSql(), closeCon);
       fillStatement(stmt, ctx.getParams());
       rs = stmt.executeQuery();
       result = handler.handle(rs);
@@ -443,7 +467,7 @@ public class Jdbc {
       throw JdbcException.wrap(e);
     } finally {
       close(rs);
-      close(stmt);
+      release(connection, ctx.getSql(), stmt, closeCon);
       if (closeCon) {
         close(connection);
         removeThreadLocal(connection);
@@ -759,7 +783,7 @@ public class Jdbc {
     SqlCtx ctx = new SqlCtx().setSql(sql).setParams(params);
     try {
       before(ctx);
-      stmt = connection.prepareStatement(ctx.getSql());
+      stmt = prepare(connection, ctx.getSql(), closeCon);
       fillStatement(stmt, ctx.getParams());
       rows = stmt.executeUpdate();
       after(ctx, rows);
@@ -767,7 +791,7 @@ public class Jdbc {
       onException(ctx, e);
       throw JdbcException.wrap(e);
     } finally {
-      close(stmt);
+      release(connection, ctx.getSql(), stmt, closeCon);
       if (closeCon) {
         close(connection);
         removeThreadLocal(connection);
@@ -777,6 +801,24 @@ public class Jdbc {
     return rows;
   }
 
+  private static PreparedStatement prepare(Connection connection, String sql, boolean closeCon)
+      throws SQLException {
+    if (closeCon) {
+      // 用完即关闭的连接无需缓存
+      return connection.prepareStatement(sql);
+    }
+    return StatementCache.prepare(connection, sql);
+  }
+
+  private static void release(Connection connection, String sql, PreparedStatement stmt,
+      boolean closeCon) {
+    if (closeCon) {
+      close(stmt);
+    } else {
+      StatementCache.release(connection, sql, stmt);
+    }
+  }
+
   static void fillStatement(PreparedStatement stmt, List<Object> params) throws SQLException {
     if (params != null && !params.isEmpty()) {
       for (int i = 0, len = params.size(); i < len; i++) {
@@ -795,6 +837,9 @@ public class Jdbc {
    */
   public static void close(AutoCloseable closeable) {
     if (closeable != null) {
+      if (closeable instanceof Connection) {
+        StatementCache.evict((Connection) closeable);
+      }
       try {
         closeable.close();
       } catch (Exception e) {
@@ -39,6 +39,7 @@ public class JdbcPlugin implements Plugin {
     if (primary.isLogSql()) {
       Jdbc.addJdbcInterceptor(new LogSqlJdbcInterceptor());
     }
+    Jdbc.setStatementCacheSize(primary.getStatementCacheSize());
 
     lookupDataSource();
 
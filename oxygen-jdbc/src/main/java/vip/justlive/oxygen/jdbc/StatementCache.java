@@ -0,0 +1,200 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+package vip.justlive.oxygen.jdbc;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import vip.justlive.oxygen.core.util.ExpiringMap;
+
+/**
+ * 预编译语句缓存
+ * <br>
+ * 按连接维护以sql为key的LRU，使用时取出、用完归还；同一条sql并发使用时多出的语句在归还时直接关闭
+ *
+ * @author wubo
+ */
+class StatementCache {
+
+  /**
+   * 连接数超过该值时清理已关闭连接的缓存
+   */
+  private static final int SWEEP_THRESHOLD = 64;
+  private static final Map<Connection, StatementCache> CACHES = new ConcurrentHashMap<>(16);
+  private static final LongAdder HIT_COUNT = new LongAdder();
+  private static final LongAdder MISS_COUNT = new LongAdder();
+  private static final LongAdder EVICTION_COUNT = new LongAdder();
+
+  /**
+   * 每个连接缓存的语句数量，小于等于0时不缓存
+   */
+  static volatile int maxSize = 64;
+
+  private final LinkedHashMap<String, PreparedStatement> statements = new LinkedHashMap<>(16,
+      0.75f, true);
+
+  /**
+   * 获取预编译语句，优先使用缓存
+   *
+   * @param connection 连接
+   * @param sql sql
+   * @return stmt
+   * @throws SQLException 预编译异常
+   */
+  static PreparedStatement prepare(Connection connection, String sql) throws SQLException {
+    if (maxSize <= 0) {
+      return connection.prepareStatement(sql);
+    }
+    StatementCache cache = CACHES.get(connection);
+    if (cache == null) {
+      if (CACHES.size() >= SWEEP_THRESHOLD) {
+        sweep();
+      }
+      cache = CACHES.computeIfAbsent(connection, k -> new StatementCache());
+    }
+    PreparedStatement stmt = cache.take(sql);
+    if (stmt != null) {
+      HIT_COUNT.increment();
+      return stmt;
+    }
+    MISS_COUNT.increment();
+    return connection.prepareStatement(sql);
+  }
+
+  /**
+   * 归还预编译语句，无法缓存时关闭
+   *
+   * @param connection 连接
+   * @param sql sql
+   * @param stmt 语句
+   */
+  static void release(Connection connection, String sql, PreparedStatement stmt) {
+    if (stmt == null) {
+      return;
+    }
+    StatementCache cache = maxSize > 0 ? CACHES.get(connection) : null;
+    if (cache != null) {
+      try {
+        stmt.clearParameters();
+        if (cache.offer(sql, stmt)) {
+          return;
+        }
+      } catch (SQLException e) {
+        // 语句不可复用，关闭即可
+      }
+    }
+    Jdbc.close(stmt);
+  }
+
+  /**
+   * 移除连接的缓存并关闭其语句，需在关闭连接前调用
+   *
+   * @param connection 连接
+   */
+  static void evict(Connection connection) {
+    StatementCache cache = CACHES.remove(connection);
+    if (cache != null) {
+      cache.clear();
+    }
+  }
+
+  /**
+   * 清空所有缓存
+   */
+  static void clearAll() {
+    Iterator<StatementCache> it = CACHES.values().iterator();
+    while (it.hasNext()) {
+      StatementCache cache = it.next();
+      it.remove();
+      cache.clear();
+    }
+  }
+
+  /**
+   * 命中统计
+   *
+   * @return 统计快照
+   */
+  static ExpiringMap.Stats stats() {
+    return new ExpiringMap.Stats(HIT_COUNT.sum(), MISS_COUNT.sum(), EVICTION_COUNT.sum());
+  }
+
+  private static void sweep() {
+    for (Connection connection : CACHES.keySet()) {
+      boolean closed;
+      try {
+        closed = connection.isClosed();
+      } catch (SQLException e) {
+        closed = true;
+      }
+      if (closed) {
+        evict(connection);
+      }
+    }
+  }
+
+  private synchronized PreparedStatement take(String sql) {
+    PreparedStatement stmt = statements.remove(sql);
+    if (stmt == null) {
+      return null;
+    }
+    try {
+      if (!stmt.isClosed()) {
+        return stmt;
+      }
+    } catch (SQLException e) {
+      quietClose(stmt);
+    }
+    return null;
+  }
+
+  private synchronized boolean offer(String sql, PreparedStatement stmt) {
+    if (statements.containsKey(sql)) {
+      return false;
+    }
+    statements.put(sql, stmt);
+    if (statements.size() > maxSize) {
+      Iterator<PreparedStatement> it = statements.values().iterator();
+      PreparedStatement eldest = it.next();
+      it.remove();
+      EVICTION_COUNT.increment();
+      quietClose(eldest);
+    }
+    return true;
+  }
+
+  private void clear() {
+    List<PreparedStatement> list;
+    synchronized (this) {
+      list = new ArrayList<>(statements.values());
+      statements.clear();
+    }
+    list.forEach(StatementCache::quietClose);
+  }
+
+  private static void quietClose(PreparedStatement stmt) {
+    try {
+      stmt.close();
+    } catch (SQLException e) {
+      // 连接已关闭时语句随之失效，忽略
+    }
+  }
+}
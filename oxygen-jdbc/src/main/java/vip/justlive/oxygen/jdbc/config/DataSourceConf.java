@@ -32,6 +32,10 @@ public class DataSourceConf {
    * 打印sql
    */
   private boolean logSql = false;
+  /**
+   * 每个连接缓存的预编译语句数量，小于等于0时不缓存
+   */
+  private int statementCacheSize = 64;
   /**
    * 是否为主数据源
    */
@@ -14,10 +14,12 @@
 package vip.justlive.oxygen.jdbc.record;
 
 import java.lang.reflect.Field;
-import java.util.LinkedList;
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Function;
 import vip.justlive.oxygen.jdbc.Batch;
 import vip.justlive.oxygen.jdbc.Jdbc;
 import vip.justlive.oxygen.jdbc.JdbcException;
@@ -45,6 +47,7 @@ public final class Record {
   private static final String WHERE = " where 1 = 1 ";
   private static final String DELETE = "delete from ";
   private static final String COUNT = "select count(*) from ";
+  private static final int MAX_CACHED_SQL = 256;
 
   Record() {
   }
@@ -59,8 +62,11 @@ public final class Record {
    */
   public static <T> T findById(Class<T> clazz, Object id) {
     Model model = parseClass(clazz);
-    String sql = model.getBaseQuery() + AND + String.format(PARAM_STR, model.primary.name);
-    return Jdbc.query(sql, clazz, id);
+    if (model.findByIdSql == null) {
+      model.findByIdSql =
+          model.getBaseQuery() + AND + String.format(PARAM_STR, model.primary.name);
+    }
+    return Jdbc.query(model.findByIdSql, clazz, id);
   }
 
   /**
@@ -96,13 +102,14 @@ public final class Record {
   public static <T> List<T> page(T obj, Page<T> page) {
     @SuppressWarnings("unchecked") Class<T> clazz = (Class<T>) obj.getClass();
     Model model = parseClass(clazz);
-    List<Object> params = new LinkedList<>();
-    StringBuilder sb = new StringBuilder(model.getBaseQuery());
-    margeWhere(model, obj, sb, params);
+    List<Object> params = new ArrayList<>(model.properties.size() + 1);
+    BitSet mask = collect(model, obj, params, false);
+    String sql = model.sql(model.pageSqls, mask,
+        m -> margeWhere(model, m, new StringBuilder(model.getBaseQuery())));
     if (page != null) {
       params.add(page);
     }
-    return Jdbc.queryForList(sb.toString(), clazz, params);
+    return Jdbc.queryForList(sql, clazz, params);
   }
 
   /**
@@ -114,10 +121,11 @@ public final class Record {
    */
   public static <T> int count(T obj) {
     Model model = parseClass(obj.getClass());
-    StringBuilder sb = new StringBuilder(COUNT).append(model.table).append(WHERE);
-    List<Object> params = new LinkedList<>();
-    margeWhere(model, obj, sb, params);
-    return Jdbc.query(sb.toString(), ResultSetHandler.intHandler(), params);
+    List<Object> params = new ArrayList<>(model.properties.size());
+    BitSet mask = collect(model, obj, params, false);
+    String sql = model.sql(model.countSqls, mask,
+        m -> margeWhere(model, m, new StringBuilder(COUNT).append(model.table).append(WHERE)));
+    return Jdbc.query(sql, ResultSetHandler.intHandler(), params);
   }
 
   /**
@@ -129,23 +137,25 @@ public final class Record {
    */
   public static <T> int update(T obj) {
     Model model = parseClass(obj.getClass());
-    List<Object> params = new LinkedList<>();
+    List<Object> params = new ArrayList<>(model.properties.size());
+    BitSet mask = collect(model, obj, params, true);
     try {
-      StringBuilder sb = new StringBuilder(UPDATE).append(model.table).append(SET);
-      for (Property property : model.properties) {
-        Object value = property.field.get(obj);
-        if (!property.pk && value != null) {
-          sb.append(String.format(PARAM_STR, property.name)).append(COMMA);
-          params.add(value);
-        }
-      }
-      sb.deleteCharAt(sb.length() - 1);
       params.add(model.primary.field.get(obj));
-      sb.append(WHERE).append(AND).append(String.format(PARAM_STR, model.primary.name));
-      return Jdbc.update(sb.toString(), params);
     } catch (IllegalAccessException e) {
       throw JdbcException.wrap(e);
     }
+    String sql = model.sql(model.updateSqls, mask, m -> {
+      StringBuilder sb = new StringBuilder(UPDATE).append(model.table).append(SET);
+      for (int i = 0, len = model.properties.size(); i < len; i++) {
+        if (m.get(i)) {
+          sb.append(String.format(PARAM_STR, model.properties.get(i).name)).append(COMMA);
+        }
+      }
+      sb.deleteCharAt(sb.length() - 1);
+      return sb.append(WHERE).append(AND).append(String.format(PARAM_STR, model.primary.name))
+          .toString();
+    });
+    return Jdbc.update(sql, params);
   }
 
   /**
@@ -157,13 +167,9 @@ public final class Record {
    */
   public static <T> int insert(T obj) {
     Model model = parseClass(obj.getClass());
-    List<Object> params = new LinkedList<>();
-    try {
-      String sql = formatInsertSql(model, obj, params);
-      return Jdbc.update(sql, params);
-    } catch (IllegalAccessException e) {
-      throw JdbcException.wrap(e);
-    }
+    List<Object> params = new ArrayList<>(model.properties.size());
+    String sql = formatInsertSql(model, obj, params);
+    return Jdbc.update(sql, params);
   }
 
   /**
@@ -177,17 +183,13 @@ public final class Record {
       return;
     }
     Model model = parseClass(list.get(0).getClass());
-    try {
-      Batch batch = Batch.use();
-      for (T obj : list) {
-        List<Object> params = new LinkedList<>();
-        String sql = formatInsertSql(model, obj, params);
-        batch.addBatch(sql, params);
-      }
-      batch.commit();
-    } catch (IllegalAccessException e) {
-      throw JdbcException.wrap(e);
+    Batch batch = Batch.use();
+    for (T obj : list) {
+      List<Object> params = new ArrayList<>(model.properties.size());
+      String sql = formatInsertSql(model, obj, params);
+      batch.addBatch(sql, params);
     }
+    batch.commit();
   }
 
   /**
@@ -200,9 +202,11 @@ public final class Record {
    */
   public static <T> int deleteById(Class<T> clazz, Object id) {
     Model model = parseClass(clazz);
-    StringBuilder sb = new StringBuilder(DELETE).append(model.table).append(WHERE).append(AND)
-        .append(String.format(PARAM_STR, model.primary.name));
-    return Jdbc.update(sb.toString(), id);
+    if (model.deleteByIdSql == null) {
+      model.deleteByIdSql = DELETE + model.table + WHERE + AND + String
+          .format(PARAM_STR, model.primary.name);
+    }
+    return Jdbc.update(model.deleteByIdSql, id);
   }
 
   /**
@@ -214,41 +218,57 @@ public final class Record {
    */
   public static <T> int delete(T obj) {
     Model model = parseClass(obj.getClass());
-    StringBuilder sb = new StringBuilder(DELETE).append(model.table).append(WHERE);
-    List<Object> params = new LinkedList<>();
-    margeWhere(model, obj, sb, params);
-    return Jdbc.update(sb.toString(), params);
+    List<Object> params = new ArrayList<>(model.properties.size());
+    BitSet mask = collect(model, obj, params, false);
+    String sql = model.sql(model.deleteSqls, mask,
+        m -> margeWhere(model, m, new StringBuilder(DELETE).append(model.table).append(WHERE)));
+    return Jdbc.update(sql, params);
   }
 
-  private static String formatInsertSql(Model model, Object obj, List<Object> params)
-      throws IllegalAccessException {
-    StringBuilder fields = new StringBuilder();
-    StringBuilder values = new StringBuilder();
-    for (Property property : model.properties) {
-      Object value = property.field.get(obj);
-      if (value != null) {
-        fields.append(property.name).append(COMMA);
-        values.append(SEAT).append(COMMA);
-        params.add(value);
+  private static String formatInsertSql(Model model, Object obj, List<Object> params) {
+    BitSet mask = collect(model, obj, params, false);
+    return model.sql(model.insertSqls, mask, m -> {
+      StringBuilder fields = new StringBuilder();
+      StringBuilder values = new StringBuilder();
+      for (int i = 0, len = model.properties.size(); i < len; i++) {
+        if (m.get(i)) {
+          fields.append(model.properties.get(i).name).append(COMMA);
+          values.append(SEAT).append(COMMA);
+        }
       }
-    }
-    fields.deleteCharAt(fields.length() - 1);
-    values.deleteCharAt(values.length() - 1);
-    return String.format(INSERT, model.table, fields.toString(), values.toString());
+      fields.deleteCharAt(fields.length() - 1);
+      values.deleteCharAt(values.length() - 1);
+      return String.format(INSERT, model.table, fields.toString(), values.toString());
+    });
   }
 
-  private static void margeWhere(Model model, Object obj, StringBuilder sb, List<Object> params) {
+  /**
+   * 收集非空属性值，返回非空属性的下标集合
+   */
+  private static BitSet collect(Model model, Object obj, List<Object> params, boolean skipPk) {
+    BitSet mask = new BitSet(model.properties.size());
     try {
-      for (Property property : model.properties) {
+      for (int i = 0, len = model.properties.size(); i < len; i++) {
+        Property property = model.properties.get(i);
         Object value = property.field.get(obj);
-        if (value != null) {
-          sb.append(AND).append(String.format(PARAM_STR, property.name));
+        if (value != null && !(skipPk && property.pk)) {
+          mask.set(i);
           params.add(value);
         }
       }
     } catch (IllegalAccessException e) {
       throw JdbcException.wrap(e);
     }
+    return mask;
+  }
+
+  private static String margeWhere(Model model, BitSet mask, StringBuilder sb) {
+    for (int i = 0, len = model.properties.size(); i < len; i++) {
+      if (mask.get(i)) {
+        sb.append(AND).append(String.format(PARAM_STR, model.properties.get(i).name));
+      }
+    }
+    return sb.toString();
   }
 
   private static Model parseClass(Class<?> clazz) {
@@ -262,7 +282,7 @@ public final class Record {
     }
     model = new Model();
     model.table = table.value();
-    model.properties = new LinkedList<>();
+    model.properties = new ArrayList<>();
     if (model.table.length() == 0) {
       model.table = clazz.getSimpleName().toLowerCase();
     }
@@ -302,6 +322,32 @@ public final class Record {
     Property primary;
     List<Property> properties;
     String baseQuery;
+    String findByIdSql;
+    String deleteByIdSql;
+    final Map<BitSet, String> pageSqls = new ConcurrentHashMap<>(4);
+    final Map<BitSet, String> countSqls = new ConcurrentHashMap<>(4);
+    final Map<BitSet, String> updateSqls = new ConcurrentHashMap<>(4);
+    final Map<BitSet, String> insertSqls = new ConcurrentHashMap<>(4);
+    final Map<BitSet, String> deleteSqls = new ConcurrentHashMap<>(4);
+
+    /**
+     * 按非空属性的组合缓存生成的sql，组合过多时不再缓存
+     *
+     * @param cache 操作对应的缓存
+     * @param mask 非空属性下标
+     * @param builder sql生成
+     * @return sql
+     */
+    String sql(Map<BitSet, String> cache, BitSet mask, Function<BitSet, String> builder) {
+      String sql = cache.get(mask);
+      if (sql == null) {
+        sql = builder.apply(mask);
+        if (cache.size() < MAX_CACHED_SQL) {
+          cache.putIfAbsent(mask, sql);
+        }
+      }
+      return sql;
+    }
 
     String getBaseQuery() {
       if (baseQuery != null) {
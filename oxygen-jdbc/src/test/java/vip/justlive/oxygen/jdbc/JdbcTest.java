@@ -13,11 +13,13 @@
  */
 package vip.justlive.oxygen.jdbc;
 
+import java.sql.Connection;
 import java.util.List;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 import vip.justlive.oxygen.core.Bootstrap;
+import vip.justlive.oxygen.core.util.ExpiringMap;
 import vip.justlive.oxygen.jdbc.handler.ResultSetHandler;
 import vip.justlive.oxygen.jdbc.page.Page;
 import vip.justlive.oxygen.jdbc.record.Record;
@@ -117,4 +119,50 @@ public class JdbcTest {
     Assert.assertNull(page.getTotalNumber());
   }
 
-}
\ No newline at end of file
+  @Test
+  public void statementCache() {
+    Jdbc.update("drop table if exists option");
+    Jdbc.update("create table option (id int primary key, st varchar)");
+
+    Connection connection = Jdbc.getConnection(Jdbc.PRIMARY_KEY);
+    Jdbc.startTx();
+    ExpiringMap.Stats before = Jdbc.statementCacheStats();
+    for (int i = 0; i < 10; i++) {
+      Jdbc.update(connection, "insert into option (id, st) values (?, ?)", i, "st" + i);
+      Assert.assertEquals("st" + i,
+          Jdbc.query(connection, "select st from option where id = ?",
+              ResultSetHandler.arrayHandler(), i)[0]);
+    }
+    ExpiringMap.Stats after = Jdbc.statementCacheStats();
+    Assert.assertEquals(2, after.getMissCount() - before.getMissCount());
+    Assert.assertEquals(18, after.getHitCount() - before.getHitCount());
+    Jdbc.closeTx();
+
+    Assert.assertEquals(10, Record.count(new Option()));
+  }
+
+  //  @Test
+  public void statementCacheBenchmark() {
+    Jdbc.update("drop table if exists option");
+    Jdbc.update("create table option (id int primary key, st varchar)");
+    Jdbc.update("insert into option (id, st) values (1, 'st')");
+    String sql = "select st from option where id = ?";
+    int loop = 200000;
+    for (int size : new int[]{0, 64}) {
+      Jdbc.setStatementCacheSize(size);
+      Jdbc.startTx();
+      Connection connection = Jdbc.getConnection(Jdbc.PRIMARY_KEY);
+      for (int i = 0; i < loop; i++) {
+        Jdbc.query(connection, sql, ResultSetHandler.arrayHandler(), 1);
+      }
+      long start = java.lang.System.nanoTime();
+      for (int i = 0; i < loop; i++) {
+        Jdbc.query(connection, sql, ResultSetHandler.arrayHandler(), 1);
+      }
+      long cost = java.lang.System.nanoTime() - start;
+      Jdbc.closeTx();
+      java.lang.System.out.printf("statementCacheSize=%d: %d ns/op%n", size, cost / loop);
+    }
+    java.lang.System.out.println(Jdbc.statementCacheStats());
+  }
+}
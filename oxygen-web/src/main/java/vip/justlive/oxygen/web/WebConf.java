@@ -65,6 +65,36 @@ public class WebConf {
   @Value("${web.static.cache:3600}")
   private Integer staticCache;
 
+  /**
+   * 静态资源内存缓存的单个文件大小上限
+   */
+  @Value("${web.static.hot.maxFileSize:262144}")
+  private Integer staticHotMaxFileSize;
+
+  /**
+   * 静态资源内存缓存总大小上限
+   */
+  @Value("${web.static.hot.capacity:33554432}")
+  private Long staticHotCapacity;
+
+  /**
+   * 静态资源是否预先gzip压缩
+   */
+  @Value("${web.static.gzip:true}")
+  private boolean staticGzipEnabled;
+
+  /**
+   * multipart文件保存在内存的阈值，超过后写入临时文件；普通字段只保存在内存，超过该值时拒绝请求
+   */
+  @Value("${web.multipart.fileSizeThreshold:16384}")
+  private Integer multipartFileSizeThreshold;
+
+  /**
+   * multipart请求体最大字节数，小于等于0时不限制
+   */
+  @Value("${web.multipart.maxSize:-1}")
+  private Long multipartMaxSize;
+
   /**
    * web jsp路径前缀
    */
@@ -77,7 +77,8 @@ public class WebPlugin implements Plugin {
     }
     vip.justlive.oxygen.web.router.Router.staticRoute().prefix(conf.getStaticPrefix())
         .locations(Arrays.asList(paths)).cachingEnabled(conf.isViewCacheEnabled())
-        .maxAge(conf.getStaticCache());
+        .maxAge(conf.getStaticCache()).hotMaxFileSize(conf.getStaticHotMaxFileSize())
+        .hotCapacity(conf.getStaticHotCapacity()).gzipEnabled(conf.isStaticGzipEnabled());
   }
 
   private void loadAnnotationRouter() {
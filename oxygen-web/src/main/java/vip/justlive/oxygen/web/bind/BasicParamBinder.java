@@ -15,6 +15,7 @@ package vip.justlive.oxygen.web.bind;
 
 import com.alibaba.fastjson.JSONObject;
 import java.lang.reflect.Parameter;
+import java.util.function.Function;
 import vip.justlive.oxygen.core.convert.DefaultConverterService;
 import vip.justlive.oxygen.core.util.Strings;
 import vip.justlive.oxygen.ioc.annotation.Bean;
@@ -43,25 +44,36 @@ public class BasicParamBinder implements ParamBinder {
     if (param.defaultValue().length() > 0) {
       dataBinder.setDefaultValue(param.defaultValue());
     }
-    dataBinder.setFunc(ctx -> this.func(ctx, dataBinder));
+    Function<Object, Object> converter = DefaultConverterService.sharedConverterService()
+        .converterOf(String.class, dataBinder.getType());
+    dataBinder.setFunc(ctx -> this.func(ctx, dataBinder.getName(), dataBinder.getDefaultValue(),
+        dataBinder.getType(), converter));
     return dataBinder;
   }
 
-  private Object func(RoutingContext ctx, DataBinder dataBinder) {
-    DefaultConverterService converterService = DefaultConverterService.sharedConverterService();
-    Object value = ctx.request().getParam(dataBinder.getName());
+  private Object func(RoutingContext ctx, String name, String defaultValue, Class<?> type,
+      Function<Object, Object> converter) {
+    Object value = ctx.request().getParam(name);
     if (value == null) {
-      value = ctx.request().getBodyParams().get(dataBinder.getName());
+      value = ctx.request().getBodyParams().get(name);
     }
     if (value == null) {
-      value = dataBinder.getDefaultValue();
+      value = defaultValue;
     }
-    if (value != null && converterService.canConverter(value.getClass(), dataBinder.getType())) {
-      return converterService.convert(value, dataBinder.getType());
+    if (value instanceof String) {
+      // 请求参数均为字符串，使用预先解析的转换器
+      if (converter != null) {
+        return converter.apply(value);
+      }
+    } else if (value != null) {
+      DefaultConverterService converterService = DefaultConverterService.sharedConverterService();
+      if (converterService.canConverter(value.getClass(), type)) {
+        return converterService.convert(value, type);
+      }
+      if (value instanceof JSONObject) {
+        return ((JSONObject) value).toJavaObject(type);
+      }
     }
-    if (value instanceof JSONObject) {
-      return ((JSONObject) value).toJavaObject(dataBinder.getType());
-    }
-    return ctx.bindParam(dataBinder.getType());
+    return ctx.bindParam(type);
   }
 }
@@ -14,6 +14,7 @@
 package vip.justlive.oxygen.web.bind;
 
 import java.lang.reflect.Parameter;
+import java.util.function.Function;
 import vip.justlive.oxygen.core.convert.DefaultConverterService;
 import vip.justlive.oxygen.core.util.MoreObjects;
 import vip.justlive.oxygen.core.util.Strings;
@@ -42,15 +43,17 @@ public class CookieParamBinder implements ParamBinder {
     if (param.defaultValue().length() > 0) {
       dataBinder.setDefaultValue(param.defaultValue());
     }
-    dataBinder.setFunc(ctx -> {
-      DefaultConverterService converterService = DefaultConverterService.sharedConverterService();
-      if (converterService.canConverter(String.class, dataBinder.getType())) {
-        return converterService.convert(MoreObjects
-            .firstOrNull(ctx.request().getCookieValue(dataBinder.getName()),
-                dataBinder.getDefaultValue()), dataBinder.getType());
-      }
-      return ctx.bindCookie(dataBinder.getType());
-    });
+    String name = dataBinder.getName();
+    String defaultValue = dataBinder.getDefaultValue();
+    Class<?> type = dataBinder.getType();
+    Function<Object, Object> converter = DefaultConverterService.sharedConverterService()
+        .converterOf(String.class, type);
+    if (converter != null) {
+      dataBinder.setFunc(ctx -> converter
+          .apply(MoreObjects.firstOrNull(ctx.request().getCookieValue(name), defaultValue)));
+    } else {
+      dataBinder.setFunc(ctx -> ctx.bindCookie(type));
+    }
     return dataBinder;
   }
 }
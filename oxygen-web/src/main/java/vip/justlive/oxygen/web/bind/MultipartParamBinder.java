@@ -40,7 +40,8 @@ public class MultipartParamBinder implements ParamBinder {
     if (param != null && param.value().length() > 0) {
       dataBinder.setName(param.value());
     }
-    dataBinder.setFunc(ctx -> ctx.request().getMultipartItem(dataBinder.getName()));
+    String name = dataBinder.getName();
+    dataBinder.setFunc(ctx -> ctx.request().getMultipartItem(name));
     return dataBinder;
   }
 }
@@ -40,12 +40,11 @@ public class OthersParamBinder implements ParamBinder {
     DataBinder dataBinder = new DataBinder();
     dataBinder.setType(parameter.getType());
     dataBinder.setName(parameter.getName());
-    dataBinder.setFunc(ctx -> {
-      if (RoutingContext.class.isAssignableFrom(parameter.getType())) {
-        return ctx;
-      }
-      return null;
-    });
+    if (RoutingContext.class.isAssignableFrom(parameter.getType())) {
+      dataBinder.setFunc(ctx -> ctx);
+    } else {
+      dataBinder.setFunc(ctx -> null);
+    }
     return dataBinder;
   }
 
@@ -0,0 +1,430 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package vip.justlive.oxygen.web.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import lombok.Getter;
+import vip.justlive.oxygen.core.exception.Exceptions;
+import vip.justlive.oxygen.core.util.Bytes;
+import vip.justlive.oxygen.core.util.FileUtils;
+import vip.justlive.oxygen.core.util.HttpHeaders;
+import vip.justlive.oxygen.core.util.SnowflakeIdWorker;
+import vip.justlive.oxygen.core.util.Strings;
+
+/**
+ * multipart流式解码
+ * <p>
+ * 数据可以分批写入，使用Boyer-Moore-Horspool算法查找分隔符，窗口中只保留可能是分隔符前缀的尾部数据，内存占用固定；
+ * 文件内容不超过阈值时保存在内存，超过后写入临时文件，每个文件只打开一次FileChannel；
+ * 普通字段超过阈值时解码失败
+ * </p>
+ *
+ * @author wubo
+ */
+public class MultipartDecoder implements Closeable {
+
+  /**
+   * 已解码的multipart在request中的属性名
+   */
+  public static final String DECODER_KEY = "_MULTIPART_DECODER";
+
+  private static final int WINDOW_SIZE = 16 * 1024;
+  private static final int MAX_PART_HEADER_SIZE = 8 * 1024;
+  private static final String CONTENT_DISPOSITION = HttpHeaders.CONTENT_DISPOSITION
+      .toLowerCase(Locale.ENGLISH);
+  private static final String CONTENT_TYPE = HttpHeaders.CONTENT_TYPE.toLowerCase(Locale.ENGLISH);
+
+  private static final int PREAMBLE = 0;
+  private static final int BOUNDARY = 1;
+  private static final int HEADERS = 2;
+  private static final int CONTENT = 3;
+  private static final int EPILOGUE = 4;
+
+  /**
+   * CRLF--boundary
+   */
+  private final byte[] delimiter;
+  private final int[] shift = new int[256];
+  private final Charset charset;
+  private final int fileSizeThreshold;
+  private final long maxSize;
+  private final byte[] window;
+  private int start;
+  private int end;
+  private long size;
+  private int state = PREAMBLE;
+
+  @Getter
+  private final Map<String, String> formData = new HashMap<>(4);
+  @Getter
+  private final List<MultipartItem> items = new ArrayList<>(2);
+
+  private int headerSize;
+  private String disposition;
+  private String name;
+  private String filename;
+  private String contentType;
+  private ByteArrayOutputStream memory;
+  private Path path;
+  private FileChannel channel;
+
+  /**
+   * 创建解码器
+   *
+   * @param boundary 分隔符
+   * @param charset 编码
+   * @param fileSizeThreshold 文件保存在内存的阈值，超过后写入临时文件；同时也是普通字段的最大字节数
+   * @param maxSize 最大字节数，小于等于0时不限制
+   */
+  public MultipartDecoder(byte[] boundary, Charset charset, int fileSizeThreshold, long maxSize) {
+    this.delimiter = new byte[boundary.length + 4];
+    this.delimiter[0] = Bytes.CR;
+    this.delimiter[1] = Bytes.LF;
+    this.delimiter[2] = Bytes.DASH;
+    this.delimiter[3] = Bytes.DASH;
+    System.arraycopy(boundary, 0, this.delimiter, 4, boundary.length);
+    this.charset = charset;
+    this.fileSizeThreshold = fileSizeThreshold;
+    this.maxSize = maxSize;
+    this.window = new byte[Math.max(WINDOW_SIZE, (delimiter.length + MAX_PART_HEADER_SIZE) << 1)];
+    Arrays.fill(shift, delimiter.length);
+    for (int i = 0; i < delimiter.length - 1; i++) {
+      shift[delimiter[i] & 0xff] = delimiter.length - 1 - i;
+    }
+    // 第一个分隔符前没有CRLF，预置后统一处理
+    window[end++] = Bytes.CR;
+    window[end++] = Bytes.LF;
+  }
+
+  /**
+   * 解码数据，消费全部可读数据
+   *
+   * @param data 数据
+   */
+  public void decode(ByteBuffer data) {
+    size += data.remaining();
+    if (maxSize > 0 && size > maxSize) {
+      throw Exceptions.fail("Multipart body is too large");
+    }
+    while (data.hasRemaining()) {
+      if (end == window.length) {
+        compact();
+      }
+      int length = Math.min(window.length - end, data.remaining());
+      data.get(window, end, length);
+      end += length;
+      process();
+      compact();
+    }
+  }
+
+  /**
+   * 是否已读取到结束分隔符
+   *
+   * @return true为已结束
+   */
+  public boolean isFinished() {
+    return state == EPILOGUE;
+  }
+
+  /**
+   * 关闭并删除已写入的临时文件，用于解码失败或连接中断
+   */
+  @Override
+  public void close() {
+    closeChannel();
+    deleteFile(path);
+    path = null;
+    for (MultipartItem item : items) {
+      if (item.getContent() == null) {
+        deleteFile(item.getPath());
+      }
+    }
+  }
+
+  private void process() {
+    for (; ; ) {
+      switch (state) {
+        case PREAMBLE:
+          if (!skipPreamble()) {
+            return;
+          }
+          break;
+        case BOUNDARY:
+          if (!afterBoundary()) {
+            return;
+          }
+          break;
+        case HEADERS:
+          if (!parseHeaders()) {
+            return;
+          }
+          break;
+        case CONTENT:
+          if (!readContent()) {
+            return;
+          }
+          break;
+        default:
+          // 忽略结束分隔符之后的数据
+          start = end;
+          return;
+      }
+    }
+  }
+
+  private boolean skipPreamble() {
+    int index = indexOf(start);
+    if (index < 0) {
+      start = Math.max(start, end - delimiter.length + 1);
+      return false;
+    }
+    start = index + delimiter.length;
+    state = BOUNDARY;
+    return true;
+  }
+
+  private boolean afterBoundary() {
+    if (end - start < 2) {
+      return false;
+    }
+    if (window[start] == Bytes.DASH && window[start + 1] == Bytes.DASH) {
+      state = EPILOGUE;
+      return true;
+    }
+    // 跳过分隔符后的空白直到行尾
+    int lf = indexOf(Bytes.LF, start);
+    if (lf < 0) {
+      if (end - start > MAX_PART_HEADER_SIZE) {
+        throw Exceptions.fail("Illegal multipart boundary");
+      }
+      return false;
+    }
+    start = lf + 1;
+    headerSize = 0;
+    state = HEADERS;
+    return true;
+  }
+
+  private boolean parseHeaders() {
+    for (; ; ) {
+      int lf = indexOf(Bytes.LF, start);
+      if (lf < 0) {
+        if (headerSize + end - start > MAX_PART_HEADER_SIZE) {
+          throw Exceptions.fail("Multipart header is too large");
+        }
+        return false;
+      }
+      headerSize += lf + 1 - start;
+      if (headerSize > MAX_PART_HEADER_SIZE) {
+        throw Exceptions.fail("Multipart header is too large");
+      }
+      int lineEnd = lf > start && window[lf - 1] == Bytes.CR ? lf - 1 : lf;
+      if (lineEnd == start) {
+        start = lf + 1;
+        memory = new ByteArrayOutputStream();
+        state = CONTENT;
+        return true;
+      }
+      parseHeader(new String(window, start, lineEnd - start, charset));
+      start = lf + 1;
+    }
+  }
+
+  private void parseHeader(String line) {
+    int colon = line.indexOf(Bytes.COLON);
+    if (colon < 0) {
+      return;
+    }
+    String key = line.substring(0, colon).trim().toLowerCase(Locale.ENGLISH);
+    if (CONTENT_DISPOSITION.equals(key)) {
+      disposition = line;
+      for (String item : line.substring(colon + 1).split(Strings.SEMICOLON)) {
+        int index = item.indexOf(Bytes.EQUAL);
+        if (index < 0) {
+          continue;
+        }
+        String prop = item.substring(0, index).trim();
+        String val = item.substring(index + 1).replace(Strings.DOUBLE_QUOTATION_MARK, Strings.EMPTY)
+            .trim();
+        if (HttpHeaders.FORM_DATA_NAME.equals(prop)) {
+          name = val;
+        } else if (HttpHeaders.FORM_DATA_FILENAME.equals(prop)) {
+          filename = val;
+        }
+      }
+    } else if (CONTENT_TYPE.equals(key)) {
+      contentType = line.substring(colon + 1).trim();
+    }
+  }
+
+  private boolean readContent() {
+    int index = indexOf(start);
+    if (index >= 0) {
+      write(start, index);
+      endPart();
+      start = index + delimiter.length;
+      state = BOUNDARY;
+      return true;
+    }
+    // 末尾可能是分隔符的前缀，保留在窗口中
+    int safe = end - delimiter.length + 1;
+    if (safe > start) {
+      write(start, safe);
+      start = safe;
+    }
+    return false;
+  }
+
+  private void write(int from, int to) {
+    int length = to - from;
+    if (length <= 0) {
+      return;
+    }
+    if (channel == null && memory.size() + length > fileSizeThreshold) {
+      if (!isFile()) {
+        // 普通字段只保存在内存，即使未限制请求体大小也不能无限增长
+        throw Exceptions.fail("Multipart field is too large");
+      }
+      spill();
+    }
+    if (channel != null) {
+      write(ByteBuffer.wrap(window, from, length));
+    } else {
+      memory.write(window, from, length);
+    }
+  }
+
+  private void spill() {
+    path = new File(FileUtils.createTempDir(MultipartItem.class.getSimpleName()),
+        String.valueOf(SnowflakeIdWorker.defaultNextId())).toPath();
+    try {
+      channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+    } catch (IOException e) {
+      throw Exceptions.wrap(e);
+    }
+    if (memory.size() > 0) {
+      write(ByteBuffer.wrap(memory.toByteArray()));
+    }
+    memory = null;
+  }
+
+  private void write(ByteBuffer buffer) {
+    try {
+      while (buffer.hasRemaining()) {
+        channel.write(buffer);
+      }
+    } catch (IOException e) {
+      throw Exceptions.wrap(e);
+    }
+  }
+
+  private void endPart() {
+    if (isFile()) {
+      MultipartItem item = new MultipartItem();
+      item.setContentType(contentType);
+      item.setDisposition(disposition);
+      item.setName(name);
+      item.setFilename(filename);
+      item.setCharset(charset);
+      if (channel != null) {
+        closeChannel();
+        item.setPath(path);
+        path = null;
+      } else {
+        item.setContent(memory.toByteArray());
+      }
+      items.add(item);
+    } else if (name != null) {
+      formData.put(name, new String(memory.toByteArray(), charset));
+    }
+    memory = null;
+    disposition = null;
+    name = null;
+    filename = null;
+    contentType = null;
+  }
+
+  private boolean isFile() {
+    return filename != null || contentType != null;
+  }
+
+  private void closeChannel() {
+    if (channel != null) {
+      try {
+        channel.close();
+      } catch (IOException e) {
+        // ignore
+      }
+      channel = null;
+    }
+  }
+
+  private void compact() {
+    if (start == end) {
+      start = end = 0;
+    } else if (start > 0) {
+      System.arraycopy(window, start, window, 0, end - start);
+      end -= start;
+      start = 0;
+    }
+  }
+
+  private int indexOf(int from) {
+    int last = delimiter.length - 1;
+    int i = from;
+    while (i + last < end) {
+      int j = last;
+      while (window[i + j] == delimiter[j]) {
+        if (j == 0) {
+          return i;
+        }
+        j--;
+      }
+      i += shift[window[i + last] & 0xff];
+    }
+    return -1;
+  }
+
+  private int indexOf(byte b, int from) {
+    for (int i = from; i < end; i++) {
+      if (window[i] == b) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static void deleteFile(Path path) {
+    if (path != null) {
+      FileUtils.deleteFile(path.toFile());
+    }
+  }
+}
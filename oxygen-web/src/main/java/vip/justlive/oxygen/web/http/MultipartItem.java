@@ -13,16 +13,20 @@
  */
 package vip.justlive.oxygen.web.http;
 
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.nio.charset.Charset;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import lombok.Data;
+import vip.justlive.oxygen.core.exception.Exceptions;
 import vip.justlive.oxygen.core.io.SourceStream;
 import vip.justlive.oxygen.core.util.FileUtils;
 import vip.justlive.oxygen.core.util.MoreObjects;
+import vip.justlive.oxygen.core.util.SnowflakeIdWorker;
 import vip.justlive.oxygen.core.util.Strings;
 
 /**
@@ -40,6 +44,10 @@ public class MultipartItem implements SourceStream {
   private String extension = Strings.EMPTY;
   private String contentType;
   private Path path;
+  /**
+   * 未超过内存阈值的文件内容，此时path为空
+   */
+  private byte[] content;
 
   public void setFilename(String filename) {
     this.filename = filename;
@@ -56,11 +64,37 @@ public class MultipartItem implements SourceStream {
    */
   public void transferTo(File file) throws IOException {
     MoreObjects.notNull(file);
-    Files.copy(path, file.toPath());
+    if (path == null && content != null) {
+      Files.write(file.toPath(), content, StandardOpenOption.CREATE_NEW);
+    } else {
+      Files.copy(path, file.toPath());
+    }
+  }
+
+  /**
+   * 获取文件路径，内容在内存中时写入临时文件
+   *
+   * @return path
+   */
+  public Path getPath() {
+    if (path == null && content != null) {
+      Path temp = new File(FileUtils.createTempDir(MultipartItem.class.getSimpleName()),
+          String.valueOf(SnowflakeIdWorker.defaultNextId())).toPath();
+      try {
+        Files.write(temp, content, StandardOpenOption.CREATE_NEW);
+      } catch (IOException e) {
+        throw Exceptions.wrap(e);
+      }
+      path = temp;
+    }
+    return path;
   }
 
   @Override
   public InputStream getInputStream() throws IOException {
+    if (path == null && content != null) {
+      return new ByteArrayInputStream(content);
+    }
     return Files.newInputStream(path);
   }
 }
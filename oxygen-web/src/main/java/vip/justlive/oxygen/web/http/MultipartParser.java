@@ -13,11 +13,13 @@
  */
 package vip.justlive.oxygen.web.http;
 
-import java.io.ByteArrayInputStream;
-import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
 import java.util.Map;
+import vip.justlive.oxygen.core.config.ConfigFactory;
 import vip.justlive.oxygen.core.exception.Exceptions;
 import vip.justlive.oxygen.ioc.annotation.Bean;
+import vip.justlive.oxygen.web.WebConf;
 
 /**
  * multipart请求解析
@@ -34,20 +36,34 @@ public class MultipartParser implements Parser {
 
   @Override
   public void parse(Request request) {
-    if (!request.isMultipart() || request.body == null) {
+    if (!request.isMultipart()) {
       return;
     }
-    try {
-      MultipartStream multipart = new MultipartStream(new ByteArrayInputStream(request.body),
-          request.getMultipart().getBoundary(), request.getEncoding());
-      multipart.readMultipartItem();
-      multipart.formData.forEach((k, v) -> margeParam(request.getParams(), k, v));
-      Map<String, MultipartItem> map = request.getMultipart().getData();
-      for (MultipartItem item : multipart.items) {
-        map.put(item.getName(), item);
+    // aio服务在读取请求时已流式解码
+    MultipartDecoder decoder = (MultipartDecoder) request
+        .removeAttribute(MultipartDecoder.DECODER_KEY);
+    if (decoder == null) {
+      if (request.body == null) {
+        return;
       }
-    } catch (IOException e) {
-      throw Exceptions.wrap(e);
+      WebConf conf = ConfigFactory.load(WebConf.class);
+      decoder = new MultipartDecoder(request.getMultipart().getBoundary(),
+          Charset.forName(request.getEncoding()), conf.getMultipartFileSizeThreshold(),
+          conf.getMultipartMaxSize());
+      try {
+        decoder.decode(ByteBuffer.wrap(request.body));
+        if (!decoder.isFinished()) {
+          throw Exceptions.fail("Incomplete multipart body");
+        }
+      } catch (RuntimeException e) {
+        decoder.close();
+        throw e;
+      }
+    }
+    decoder.getFormData().forEach((k, v) -> margeParam(request.getParams(), k, v));
+    Map<String, MultipartItem> map = request.getMultipart().getData();
+    for (MultipartItem item : decoder.getItems()) {
+      map.put(item.getName(), item);
     }
   }
 
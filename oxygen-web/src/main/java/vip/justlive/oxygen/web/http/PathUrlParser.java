@@ -13,9 +13,8 @@
  */
 package vip.justlive.oxygen.web.http;
 
+import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 import vip.justlive.oxygen.core.config.ConfigFactory;
 import vip.justlive.oxygen.core.net.http.HttpMethod;
 import vip.justlive.oxygen.ioc.annotation.Bean;
@@ -48,10 +47,11 @@ public class PathUrlParser implements Parser {
       handler = Router.lookupStatic(request.getPath());
     }
     Route route = null;
+    List<String> values = new ArrayList<>(2);
     if (handler != null) {
       request.routeHandler = handler;
     } else {
-      route = Router.lookup(request.getMethod(), request.getPath());
+      route = Router.lookup(request.getMethod(), request.getPath(), values);
       if (route != null) {
         request.routeHandler = route.handler();
       }
@@ -59,13 +59,9 @@ public class PathUrlParser implements Parser {
     if (route == null || route.pathVars().isEmpty()) {
       return;
     }
-    String path = request.getPath();
-    Matcher matcher = Pattern.compile(route.path()).matcher(path);
-    if (matcher.matches()) {
-      List<String> pathVariables = route.pathVars();
-      for (int i = 1, len = matcher.groupCount(); i <= len; i++) {
-        request.addAttribute(Request.PATH_VARS + pathVariables.get(i - 1), matcher.group(i));
-      }
+    List<String> pathVariables = route.pathVars();
+    for (int i = 0, len = Math.min(values.size(), pathVariables.size()); i < len; i++) {
+      request.addAttribute(Request.PATH_VARS + pathVariables.get(i), values.get(i));
     }
   }
 }
@@ -15,7 +15,9 @@ package vip.justlive.oxygen.web.http;
 
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.OutputStream;
 import java.io.Serializable;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
@@ -65,6 +67,14 @@ public class Response implements Serializable {
    * out
    */
   private transient ByteArrayOutputStream out = new ByteArrayOutputStream();
+  /**
+   * 流式输出，由服务端提供
+   */
+  private transient OutputStream streamOut;
+  /**
+   * 只读响应体，设置后代替out输出，由服务端直接写出不再拷贝到out
+   */
+  private transient ByteBuffer body;
   /**
    * result
    */
@@ -211,6 +221,22 @@ public class Response implements Serializable {
     }
   }
 
+  /**
+   * 获取流式输出，写入的数据分块直接写出到客户端而不在内存中缓存整个响应体
+   * <p>
+   * 首次写出时提交响应头，之后修改header和cookie不再生效；服务端不支持时返回{@link #getOut()}。
+   * aio服务端事件循环模式下不会等待客户端读取，待写出数据超出水位时响应失败
+   * </p>
+   *
+   * @return 输出流
+   */
+  public OutputStream stream() {
+    if (streamOut != null) {
+      return streamOut;
+    }
+    return out;
+  }
+
   /**
    * 写入文本
    *
@@ -240,6 +266,15 @@ public class Response implements Serializable {
     setResult(Result.json(data));
   }
 
+  /**
+   * 流式写入json，Iterator、Iterable或Stream逐个元素输出
+   *
+   * @param data 数据
+   */
+  public void jsonStream(Object data) {
+    setResult(Result.jsonStream(data));
+  }
+
   /**
    * 模板渲染
    *
@@ -17,6 +17,9 @@ import lombok.Getter;
 
 /**
  * json result
+ * <p>
+ * 流式输出时直接序列化到响应的流式输出，数据为Iterator、Iterable或Stream时逐个元素输出为json数组
+ * </p>
  *
  * @author wubo
  */
@@ -24,8 +27,17 @@ import lombok.Getter;
 public class JsonResult implements Result {
 
   private final Object data;
+  /**
+   * 是否流式输出
+   */
+  private final boolean streaming;
 
   public JsonResult(Object data) {
+    this(data, false);
+  }
+
+  public JsonResult(Object data, boolean streaming) {
     this.data = data;
+    this.streaming = streaming;
   }
 }
@@ -14,6 +14,12 @@
 package vip.justlive.oxygen.web.result;
 
 import com.alibaba.fastjson.JSON;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Iterator;
+import java.util.stream.BaseStream;
+import vip.justlive.oxygen.core.exception.Exceptions;
 import vip.justlive.oxygen.core.util.HttpHeaders;
 import vip.justlive.oxygen.ioc.annotation.Bean;
 import vip.justlive.oxygen.web.http.Response;
@@ -21,6 +27,9 @@ import vip.justlive.oxygen.web.router.RoutingContext;
 
 /**
  * json result
+ * <p>
+ * 直接序列化到响应的输出流，不再生成中间字符串
+ * </p>
  *
  * @author wubo
  */
@@ -37,6 +46,42 @@ public class JsonResultHandler implements ResultHandler {
     JsonResult data = (JsonResult) result;
     Response response = ctx.response();
     response.setContentType(HttpHeaders.APPLICATION_JSON);
-    response.write(JSON.toJSONString(data.getData()));
+    Charset charset = Charset.forName(response.getEncoding());
+    try {
+      if (data.isStreaming()) {
+        writeStream(response.stream(), charset, data.getData());
+      } else {
+        JSON.writeJSONString(response.getOut(), charset, data.getData());
+      }
+    } catch (IOException e) {
+      throw Exceptions.wrap(e);
+    }
+  }
+
+  private void writeStream(OutputStream out, Charset charset, Object data) throws IOException {
+    if (data instanceof BaseStream) {
+      try (BaseStream<?, ?> stream = (BaseStream<?, ?>) data) {
+        writeArray(out, charset, stream.iterator());
+      }
+    } else if (data instanceof Iterable) {
+      writeArray(out, charset, ((Iterable<?>) data).iterator());
+    } else if (data instanceof Iterator) {
+      writeArray(out, charset, (Iterator<?>) data);
+    } else {
+      JSON.writeJSONString(out, charset, data);
+    }
+  }
+
+  private void writeArray(OutputStream out, Charset charset, Iterator<?> it) throws IOException {
+    out.write('[');
+    boolean first = true;
+    while (it.hasNext()) {
+      if (!first) {
+        out.write(',');
+      }
+      first = false;
+      JSON.writeJSONString(out, charset, it.next());
+    }
+    out.write(']');
   }
 }
@@ -51,4 +51,14 @@ public interface Result {
   static JsonResult json(Object data) {
     return new JsonResult(data);
   }
+
+  /**
+   * 流式json result，数据为Iterator、Iterable或Stream时逐个元素输出，内存占用与结果大小无关
+   *
+   * @param data 数据
+   * @return Result
+   */
+  static JsonResult jsonStream(Object data) {
+    return new JsonResult(data, true);
+  }
 }
@@ -13,9 +13,14 @@
  */
 package vip.justlive.oxygen.web.router;
 
-import java.lang.reflect.InvocationTargetException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.lang.reflect.Parameter;
+import java.util.concurrent.CompletionStage;
+import java.util.function.Function;
 import vip.justlive.oxygen.core.exception.Exceptions;
 import vip.justlive.oxygen.web.Context;
 import vip.justlive.oxygen.web.bind.DataBinder;
@@ -23,50 +28,98 @@ import vip.justlive.oxygen.web.result.Result;
 
 /**
  * 注解路由处理
+ * <p>
+ * 创建时将方法编译为固定签名的MethodHandle，参数绑定函数预先解析，调用时不再经过反射
+ * </p>
+ * <p>
+ * 方法返回CompletionStage时挂起请求，完成后的值按同步返回值的规则处理
+ * </p>
  *
  * @author wubo
  */
 public class AnnotationRouteHandler implements RouteHandler {
 
-  private final Object router;
-  private final Method proxyMethod;
+  private static final MethodType INVOKER_TYPE = MethodType
+      .methodType(Object.class, Object[].class);
+
   private final Method method;
-  private final DataBinder[] dataBinders;
+  private final Function<RoutingContext, Object>[] binders;
+  /**
+   * (Object[])Object
+   */
+  private final MethodHandle invoker;
+  private final boolean resultType;
+  private final boolean asyncType;
 
   public AnnotationRouteHandler(Object router, Method proxyMethod, Method method) {
-    this.router = router;
-    this.proxyMethod = proxyMethod;
     this.method = method;
-    this.dataBinders = new DataBinder[method.getParameterCount()];
-    parse();
+    this.binders = parse(method);
+    this.invoker = compile(router, proxyMethod);
+    this.resultType = Result.class.isAssignableFrom(method.getReturnType());
+    this.asyncType = CompletionStage.class.isAssignableFrom(method.getReturnType());
   }
 
-  private void parse() {
+  @SuppressWarnings("unchecked")
+  private static Function<RoutingContext, Object>[] parse(Method method) {
     Parameter[] parameters = method.getParameters();
+    Function<RoutingContext, Object>[] binders = new Function[parameters.length];
     for (int i = 0; i < parameters.length; i++) {
-      dataBinders[i] = Context.bind(parameters[i]);
+      DataBinder dataBinder = Context.bind(parameters[i]);
+      if (dataBinder == null) {
+        throw Exceptions.fail(String.format("参数[%s]没有匹配的绑定器", parameters[i]));
+      }
+      binders[i] = dataBinder.getFunc();
+    }
+    return binders;
+  }
+
+  private static MethodHandle compile(Object router, Method proxyMethod) {
+    try {
+      if (!proxyMethod.isAccessible()) {
+        proxyMethod.setAccessible(true);
+      }
+      MethodHandle handle = MethodHandles.lookup().unreflect(proxyMethod);
+      if (!Modifier.isStatic(proxyMethod.getModifiers())) {
+        handle = handle.bindTo(router);
+      }
+      return handle.asSpreader(Object[].class, proxyMethod.getParameterCount())
+          .asType(INVOKER_TYPE);
+    } catch (IllegalAccessException e) {
+      throw Exceptions.wrap(e);
     }
   }
 
   @Override
   public void handle(RoutingContext ctx) {
-    Object[] args = new Object[dataBinders.length];
-    for (int i = 0; i < dataBinders.length; i++) {
-      args[i] = dataBinders[i].getFunc().apply(ctx);
+    Object[] args = new Object[binders.length];
+    for (int i = 0; i < binders.length; i++) {
+      args[i] = binders[i].apply(ctx);
     }
     Object result;
     try {
-      result = proxyMethod.invoke(router, args);
-    } catch (IllegalAccessException | InvocationTargetException e) {
+      result = (Object) invoker.invokeExact(args);
+    } catch (RuntimeException e) {
+      throw e;
+    } catch (Throwable e) {
       throw Exceptions.wrap(e);
     }
-    if (Result.class.isAssignableFrom(method.getReturnType())) {
+    if (resultType) {
       ctx.response().setResult((Result) result);
+    } else if (asyncType && result != null) {
+      ctx.suspend(((CompletionStage<?>) result).thenAccept(value -> setResult(ctx, value)));
     } else if (result != null) {
       ctx.response().setResult(Result.json(result));
     }
   }
 
+  private static void setResult(RoutingContext ctx, Object value) {
+    if (value instanceof Result) {
+      ctx.response().setResult((Result) value);
+    } else if (value != null) {
+      ctx.response().setResult(Result.json(value));
+    }
+  }
+
   @Override
   public String toString() {
     return String.format("@Router->%s#%s", method.getDeclaringClass().getName(), method.getName());
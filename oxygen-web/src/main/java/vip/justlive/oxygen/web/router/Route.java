@@ -13,8 +13,8 @@
  */
 package vip.justlive.oxygen.web.router;
 
+import java.util.ArrayList;
 import java.util.HashSet;
-import java.util.LinkedList;
 import java.util.List;
 import java.util.Set;
 import java.util.regex.Matcher;
@@ -33,6 +33,7 @@ public class Route {
 
   public static final String REGEX_PATH_VAR = "\\{\\w+}";
   public static final String REGEX_PATH_VAR_REPLACE = "(\\\\w+)";
+  static final String REGEX_PATH_VAR_GROUP = "(\\w+)";
 
   /**
    * 方法
@@ -51,7 +52,7 @@ public class Route {
    */
   private RouteHandler handler;
 
-  private List<String> pathVars = new LinkedList<>();
+  private List<String> pathVars = new ArrayList<>(2);
 
   Route() {
   }
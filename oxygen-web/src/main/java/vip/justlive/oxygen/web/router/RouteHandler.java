@@ -13,6 +13,7 @@
  */
 package vip.justlive.oxygen.web.router;
 
+import java.util.concurrent.CompletionException;
 import vip.justlive.oxygen.core.exception.Exceptions;
 import vip.justlive.oxygen.ioc.IocPlugin;
 import vip.justlive.oxygen.web.exception.ExceptionHandler;
@@ -45,6 +46,20 @@ public interface RouteHandler {
     IocPlugin.beanStore().getBean(ExceptionHandler.class).handle(ctx, e, 500);
   }
 
+  /**
+   * 处理挂起请求的异常，解开CompletionException
+   *
+   * @param ctx 上下文
+   * @param e 异常
+   */
+  static void asyncError(RoutingContext ctx, Throwable e) {
+    Throwable cause = e;
+    if (cause instanceof CompletionException && cause.getCause() != null) {
+      cause = cause.getCause();
+    }
+    error(ctx, cause instanceof Exception ? (Exception) cause : Exceptions.wrap(cause));
+  }
+
   /**
    * 处理
    *
@@ -0,0 +1,230 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package vip.justlive.oxygen.web.router;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import lombok.RequiredArgsConstructor;
+import vip.justlive.oxygen.core.exception.Exceptions;
+import vip.justlive.oxygen.core.net.http.HttpMethod;
+
+/**
+ * 路由前缀树
+ * <p>
+ * 按'/'分段构建，每个节点按请求方法分发；匹配时依次尝试静态段、路径变量段和含变量的正则段，一次遍历得到路由和路径变量值。
+ * 不含路径变量的路由额外以完整路径索引
+ * </p>
+ *
+ * @author wubo
+ */
+class RouteTrie {
+
+  private static final char SEPARATOR = '/';
+
+  private final Map<String, Node> simples = new ConcurrentHashMap<>(4, 1);
+  private volatile Node root = new Node();
+
+  /**
+   * 添加路由
+   *
+   * @param route 路由
+   */
+  synchronized void add(Route route) {
+    String path = route.path();
+    Node node = root;
+    int start = 0;
+    while (start <= path.length()) {
+      int end = end(path, start);
+      node = node.child(path.substring(start, end));
+      start = end + 1;
+    }
+    for (HttpMethod method : route.methods()) {
+      if (node.routes.containsKey(method)) {
+        throw Exceptions.fail(String.format("path [%s] already exists", path));
+      }
+    }
+    for (HttpMethod method : route.methods()) {
+      node.routes.put(method, route);
+    }
+    if (!route.regex()) {
+      simples.put(path, node);
+    }
+  }
+
+  /**
+   * 清除
+   */
+  synchronized void clear() {
+    simples.clear();
+    root = new Node();
+  }
+
+  /**
+   * 匹配路由
+   *
+   * @param method 请求方法
+   * @param path 请求路径
+   * @param values 路径变量值，按路由中变量顺序写入
+   * @return route
+   */
+  Route lookup(HttpMethod method, String path, List<String> values) {
+    Node node = simples.get(path);
+    if (node != null) {
+      Route route = node.routes.get(method);
+      if (route != null) {
+        return route;
+      }
+    }
+    node = match(root, method, path, 0, values);
+    if (node == null) {
+      return null;
+    }
+    return node.routes.get(method);
+  }
+
+  /**
+   * 获取路径支持的方法
+   *
+   * @param path 请求路径
+   * @return http methods
+   */
+  Set<HttpMethod> allows(String path) {
+    Node node = simples.get(path);
+    if (node == null) {
+      node = match(root, null, path, 0, new ArrayList<>(2));
+    }
+    if (node == null || node.routes.isEmpty()) {
+      return EnumSet.noneOf(HttpMethod.class);
+    }
+    return EnumSet.copyOf(node.routes.keySet());
+  }
+
+  private Node match(Node node, HttpMethod method, String path, int start, List<String> values) {
+    if (start > path.length()) {
+      if (method == null ? node.routes.isEmpty() : !node.routes.containsKey(method)) {
+        return null;
+      }
+      return node;
+    }
+    int end = end(path, start);
+    String segment = path.substring(start, end);
+    Node result;
+    Node child = node.children.get(segment);
+    if (child != null) {
+      result = match(child, method, path, end + 1, values);
+      if (result != null) {
+        return result;
+      }
+    }
+    int size = values.size();
+    if (node.param != null && isWord(segment)) {
+      values.add(segment);
+      result = match(node.param, method, path, end + 1, values);
+      if (result != null) {
+        return result;
+      }
+      truncate(values, size);
+    }
+    for (PatternNode patternNode : node.patterns) {
+      Matcher matcher = patternNode.pattern.matcher(segment);
+      if (matcher.matches()) {
+        for (int i = 1, len = matcher.groupCount(); i <= len; i++) {
+          values.add(matcher.group(i));
+        }
+        result = match(patternNode.node, method, path, end + 1, values);
+        if (result != null) {
+          return result;
+        }
+        truncate(values, size);
+      }
+    }
+    return null;
+  }
+
+  private static int end(String path, int start) {
+    int end = path.indexOf(SEPARATOR, start);
+    return end < 0 ? path.length() : end;
+  }
+
+  private static boolean isWord(String segment) {
+    if (segment.isEmpty()) {
+      return false;
+    }
+    for (int i = 0, len = segment.length(); i < len; i++) {
+      char c = segment.charAt(i);
+      if (!(c == '_' || (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0'
+          && c <= '9'))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static void truncate(List<String> values, int size) {
+    while (values.size() > size) {
+      values.remove(values.size() - 1);
+    }
+  }
+
+  /**
+   * 树节点
+   */
+  private static class Node {
+
+    private final Map<String, Node> children = new ConcurrentHashMap<>(4, 1);
+    private final List<PatternNode> patterns = new CopyOnWriteArrayList<>();
+    private final Map<HttpMethod, Route> routes = new EnumMap<>(HttpMethod.class);
+    private volatile Node param;
+
+    private Node child(String segment) {
+      if (Route.REGEX_PATH_VAR_GROUP.equals(segment)) {
+        if (param == null) {
+          param = new Node();
+        }
+        return param;
+      }
+      if (segment.contains(Route.REGEX_PATH_VAR_GROUP)) {
+        for (PatternNode patternNode : patterns) {
+          if (patternNode.pattern.pattern().equals(segment)) {
+            return patternNode.node;
+          }
+        }
+        PatternNode patternNode = new PatternNode(Pattern.compile(segment), new Node());
+        patterns.add(patternNode);
+        return patternNode.node;
+      }
+      return children.computeIfAbsent(segment, k -> new Node());
+    }
+  }
+
+  /**
+   * 含路径变量的正则段，构建时编译
+   */
+  @RequiredArgsConstructor
+  private static class PatternNode {
+
+    private final Pattern pattern;
+    private final Node node;
+  }
+}
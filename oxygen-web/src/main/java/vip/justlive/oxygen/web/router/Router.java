@@ -13,13 +13,12 @@
  */
 package vip.justlive.oxygen.web.router;
 
+import java.util.ArrayList;
 import java.util.HashMap;
-import java.util.HashSet;
 import java.util.LinkedList;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ConcurrentHashMap;
 import java.util.regex.Pattern;
 import lombok.experimental.UtilityClass;
 import lombok.extern.slf4j.Slf4j;
@@ -36,8 +35,7 @@ import vip.justlive.oxygen.core.net.http.HttpMethod;
 public class Router {
 
   static final Pattern REGEX_PATH_GROUP = Pattern.compile("\\{(\\w+)[}]");
-  private static final Map<String, Route> SIMPLE_HANDLERS = new ConcurrentHashMap<>(4, 1);
-  private static final Map<String, Route> REGEX_HANDLERS = new ConcurrentHashMap<>(4, 1);
+  private static final RouteTrie HANDLERS = new RouteTrie();
   private static final Map<String, RouteHandler> STATIC_HANDLERS = new HashMap<>(4, 1);
   private static final List<Route> ROUTES = new LinkedList<>();
   private static final List<StaticRoute> STATIC_ROUTES = new LinkedList<>();
@@ -76,8 +74,7 @@ public class Router {
    * clear
    */
   public static void clear() {
-    SIMPLE_HANDLERS.clear();
-    REGEX_HANDLERS.clear();
+    HANDLERS.clear();
   }
 
   /**
@@ -88,17 +85,19 @@ public class Router {
    * @return route
    */
   public static Route lookup(HttpMethod method, String path) {
-    Route route = SIMPLE_HANDLERS.get(path);
-    if (route != null && route.methods().contains(method)) {
-      return route;
-    }
-    for (Map.Entry<String, Route> entry : REGEX_HANDLERS.entrySet()) {
-      if (Pattern.compile(entry.getKey()).matcher(path).matches() && entry.getValue().methods()
-          .contains(method)) {
-        return entry.getValue();
-      }
-    }
-    return null;
+    return lookup(method, path, new ArrayList<>(2));
+  }
+
+  /**
+   * lookup route，同时按路由变量顺序提取路径变量值
+   *
+   * @param method request method
+   * @param path request path
+   * @param values 路径变量值
+   * @return route
+   */
+  public static Route lookup(HttpMethod method, String path, List<String> values) {
+    return HANDLERS.lookup(method, path, values);
   }
 
   /**
@@ -108,16 +107,7 @@ public class Router {
    * @return http methods
    */
   public static Set<HttpMethod> getAllows(String path) {
-    Route route = SIMPLE_HANDLERS.get(path);
-    if (route != null) {
-      return new HashSet<>(route.methods());
-    }
-    for (Map.Entry<String, Route> entry : REGEX_HANDLERS.entrySet()) {
-      if (Pattern.compile(entry.getKey()).matcher(path).matches()) {
-        return new HashSet<>(entry.getValue().methods());
-      }
-    }
-    return new HashSet<>(0);
+    return HANDLERS.allows(path);
   }
 
   /**
@@ -143,15 +133,7 @@ public class Router {
         }
       }
     }
-    Route exist;
-    if (route.regex()) {
-      exist = REGEX_HANDLERS.putIfAbsent(route.path(), route);
-    } else {
-      exist = SIMPLE_HANDLERS.putIfAbsent(route.path(), route);
-    }
-    if (exist != null) {
-      throw Exceptions.fail(String.format("path [%s] already exists", route.path()));
-    }
+    HANDLERS.add(route);
     if (log.isDebugEnabled()) {
       log.debug("build route: {}", route);
     }
@@ -13,6 +13,7 @@
  */
 package vip.justlive.oxygen.web.router;
 
+import java.util.concurrent.CompletionStage;
 import vip.justlive.oxygen.web.http.Request;
 import vip.justlive.oxygen.web.http.Response;
 
@@ -79,4 +80,18 @@ public interface RoutingContext {
    * @return obj
    */
   <T> T bindPathVariables(Class<T> clazz);
+
+  /**
+   * 挂起请求，当前线程直接返回，在stage完成后再处理结果、执行后置处理并输出响应
+   *
+   * @param stage 异步处理
+   */
+  void suspend(CompletionStage<?> stage);
+
+  /**
+   * 获取挂起的异步处理
+   *
+   * @return 未挂起时返回null
+   */
+  CompletionStage<?> suspended();
 }
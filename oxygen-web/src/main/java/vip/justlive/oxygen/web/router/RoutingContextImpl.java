@@ -16,6 +16,7 @@ package vip.justlive.oxygen.web.router;
 import com.alibaba.fastjson.JSONObject;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.CompletionStage;
 import vip.justlive.oxygen.web.http.Request;
 import vip.justlive.oxygen.web.http.Response;
 
@@ -28,6 +29,7 @@ public class RoutingContextImpl implements RoutingContext {
 
   private final Request request;
   private final Response response;
+  private CompletionStage<?> suspended;
 
   public RoutingContextImpl(Request request, Response response) {
     this.request = request;
@@ -83,6 +85,16 @@ public class RoutingContextImpl implements RoutingContext {
     return bind(map, clazz);
   }
 
+  @Override
+  public void suspend(CompletionStage<?> stage) {
+    this.suspended = stage;
+  }
+
+  @Override
+  public CompletionStage<?> suspended() {
+    return suspended;
+  }
+
   private <T> T bind(Map<String, Object> map, Class<T> clazz) {
     if (Map.class.isAssignableFrom(clazz)) {
       return clazz.cast(map);
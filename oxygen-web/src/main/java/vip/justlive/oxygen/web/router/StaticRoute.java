@@ -44,6 +44,18 @@ public class StaticRoute {
    * 是否启用缓存
    */
   private boolean cachingEnabled;
+  /**
+   * 内存缓存的单个文件大小上限，超过的文件使用内存映射输出
+   */
+  private int hotMaxFileSize = 256 * 1024;
+  /**
+   * 内存缓存总大小上限
+   */
+  private long hotCapacity = 32 * 1024 * 1024;
+  /**
+   * 是否对文本类资源预先gzip压缩
+   */
+  private boolean gzipEnabled = true;
 
   StaticRoute() {
   }
@@ -91,4 +103,37 @@ public class StaticRoute {
     this.cachingEnabled = enabled;
     return this;
   }
+
+  /**
+   * 设置内存缓存的单个文件大小上限
+   *
+   * @param hotMaxFileSize 文件大小上限
+   * @return route
+   */
+  public StaticRoute hotMaxFileSize(int hotMaxFileSize) {
+    this.hotMaxFileSize = hotMaxFileSize;
+    return this;
+  }
+
+  /**
+   * 设置内存缓存总大小上限
+   *
+   * @param hotCapacity 总大小上限
+   * @return route
+   */
+  public StaticRoute hotCapacity(long hotCapacity) {
+    this.hotCapacity = hotCapacity;
+    return this;
+  }
+
+  /**
+   * 设置是否预先gzip压缩
+   *
+   * @param enabled 是否启用
+   * @return route
+   */
+  public StaticRoute gzipEnabled(boolean enabled) {
+    this.gzipEnabled = enabled;
+    return this;
+  }
 }
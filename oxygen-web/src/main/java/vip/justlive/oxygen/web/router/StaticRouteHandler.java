@@ -13,18 +13,28 @@
  */
 package vip.justlive.oxygen.web.router;
 
+import java.io.ByteArrayOutputStream;
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.nio.file.Files;
 import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.Instant;
-import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.time.format.DateTimeParseException;
 import java.util.Properties;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPOutputStream;
+import lombok.AccessLevel;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import vip.justlive.oxygen.core.exception.Exceptions;
@@ -32,23 +42,31 @@ import vip.justlive.oxygen.core.io.SimpleResourceLoader;
 import vip.justlive.oxygen.core.io.SourceResource;
 import vip.justlive.oxygen.core.util.ExpiringMap;
 import vip.justlive.oxygen.core.util.ExpiringMap.ExpiringPolicy;
-import vip.justlive.oxygen.core.util.FileUtils;
 import vip.justlive.oxygen.core.util.HttpHeaders;
-import vip.justlive.oxygen.core.util.SnowflakeIdWorker;
+import vip.justlive.oxygen.core.util.IOUtils;
 import vip.justlive.oxygen.core.util.Strings;
 import vip.justlive.oxygen.web.http.Request;
 import vip.justlive.oxygen.web.http.Response;
 
 /**
  * 静态资源处理
+ * <p>
+ * 小文件读入内存并按总大小限制缓存，文本类资源预先gzip压缩，同目录下存在.br/.gz预压缩文件时一并加载；
+ * 大文件使用只读内存映射直接写出，不再拷贝到响应缓冲区；jar等非文件资源超过大小上限时每次请求流式读取输出。
+ * 缓存命中时检查文件修改时间和大小，变化后重新加载。支持ETag、Last-Modified条件请求以及单段Range请求
+ * </p>
  *
  * @author wubo
  */
 @Slf4j
 public class StaticRouteHandler implements RouteHandler {
 
-  private static final File TEMP_DIR;
   private static final Properties MIME_TYPES = new Properties();
+  private static final String GZIP = "gzip";
+  private static final String BR = "br";
+  private static final String BYTES_UNIT = "bytes";
+  private static final String RANGE_PREFIX = BYTES_UNIT + Strings.EQUAL;
+  private static final int MIN_COMPRESS_SIZE = 256;
 
   static {
     try {
@@ -56,10 +74,10 @@ public class StaticRouteHandler implements RouteHandler {
     } catch (IOException e) {
       log.warn("mime types initial failed ", e);
     }
-    TEMP_DIR = FileUtils.createTempDir("static");
   }
 
   private final StaticRoute route;
+  private final AtomicLong hotSize = new AtomicLong();
   private ExpiringMap<String, StaticSource> expiringMap;
 
   public StaticRouteHandler(StaticRoute route) {
@@ -67,7 +85,7 @@ public class StaticRouteHandler implements RouteHandler {
     if (this.route.cachingEnabled()) {
       expiringMap = ExpiringMap.<String, StaticSource>builder().name("Static-Source")
           .expiringPolicy(ExpiringPolicy.ACCESSED).expiration(10, TimeUnit.MINUTES)
-          .asyncExpiredListeners(this::cleanExpiredFile).build();
+          .asyncExpiredListeners(this::cleanExpired).build();
     }
   }
 
@@ -83,36 +101,181 @@ public class StaticRouteHandler implements RouteHandler {
     Request req = ctx.request();
     Response resp = ctx.response();
     resp.setContentType(source.getContentType());
+    resp.setHeader(HttpHeaders.ETAG, source.getETag());
+    resp.setHeader(HttpHeaders.LAST_MODIFIED, source.getLastModifiedText());
+    resp.setHeader(HttpHeaders.ACCEPT_RANGES, BYTES_UNIT);
+    if (route.maxAge() > 0) {
+      resp.setHeader(HttpHeaders.CACHE_CONTROL,
+          HttpHeaders.MAX_AGE + Strings.EQUAL + route.maxAge());
+    }
+    if (notModified(req, source)) {
+      resp.setStatus(304);
+      return;
+    }
+    String range = req.getHeader(HttpHeaders.RANGE);
+    if (range != null && ifRange(req, source)) {
+      long[] positions = parseRange(range, source.getLength());
+      if (positions != null) {
+        writeRange(resp, source, positions);
+        return;
+      }
+    }
+    if (source.isStreaming()) {
+      writeStream(resp, source, 0, source.getLength());
+      return;
+    }
+    if (source.hasVariants()) {
+      resp.setHeader(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+      String acceptEncoding = req.getHeader(HttpHeaders.ACCEPT_ENCODING);
+      if (source.getBr() != null && accepts(acceptEncoding, BR)) {
+        resp.setHeader(HttpHeaders.CONTENT_ENCODING, BR);
+        resp.setBody(ByteBuffer.wrap(source.getBr()).asReadOnlyBuffer());
+        return;
+      }
+      if (source.getGzip() != null && accepts(acceptEncoding, GZIP)) {
+        resp.setHeader(HttpHeaders.CONTENT_ENCODING, GZIP);
+        resp.setBody(ByteBuffer.wrap(source.getGzip()).asReadOnlyBuffer());
+        return;
+      }
+    }
+    resp.setBody(source.body());
+  }
+
+  private boolean notModified(Request req, StaticSource source) {
     String browserETag = req.getHeader(HttpHeaders.IF_NONE_MATCH);
+    if (browserETag != null) {
+      return Strings.ANY.equals(browserETag.trim()) || browserETag.contains(source.getETag());
+    }
     String ifModifiedSince = req.getHeader(HttpHeaders.IF_MODIFIED_SINCE);
-    ZonedDateTime last = Instant.ofEpochMilli(source.lastModified()).atZone(ZoneId.systemDefault());
-    String eTag = source.eTag();
-    resp.setHeader(HttpHeaders.ETAG, eTag);
+    if (ifModifiedSince == null) {
+      return false;
+    }
     try {
-      if (eTag.equals(browserETag) && ifModifiedSince != null && !ZonedDateTime
-          .parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).isBefore(last)) {
-        resp.setStatus(304);
-        return;
-      }
+      return ZonedDateTime.parse(ifModifiedSince, DateTimeFormatter.RFC_1123_DATE_TIME).toInstant()
+          .toEpochMilli() >= source.getLastModified();
     } catch (DateTimeParseException e) {
       log.warn("Can't parse 'If-Modified-Since' header date [{}]", ifModifiedSince);
     }
-    resp.setHeader(HttpHeaders.LAST_MODIFIED, DateTimeFormatter.RFC_1123_DATE_TIME.format(last));
-    if (route.maxAge() > 0) {
-      resp.setHeader(HttpHeaders.CACHE_CONTROL,
-          HttpHeaders.MAX_AGE + Strings.EQUAL + route.maxAge());
+    return false;
+  }
+
+  private boolean ifRange(Request req, StaticSource source) {
+    String ifRange = req.getHeader(HttpHeaders.IF_RANGE);
+    return ifRange == null || ifRange.equals(source.getETag()) || ifRange
+        .equals(source.getLastModifiedText());
+  }
+
+  private void writeRange(Response resp, StaticSource source, long[] positions) {
+    long length = source.getLength();
+    if (positions.length == 0) {
+      resp.setStatus(416);
+      resp.setHeader(HttpHeaders.CONTENT_RANGE, BYTES_UNIT + " */" + length);
+      return;
     }
-    try {
-      Files.copy(source.getPath(), resp.getOut());
+    resp.setStatus(206);
+    resp.setHeader(HttpHeaders.CONTENT_RANGE,
+        BYTES_UNIT + " " + positions[0] + Strings.DASH + positions[1] + Strings.SLASH
+            + length);
+    if (source.isStreaming()) {
+      writeStream(resp, source, positions[0], positions[1] - positions[0] + 1);
+      return;
+    }
+    ByteBuffer body = source.body();
+    body.limit((int) positions[1] + 1).position((int) positions[0]);
+    resp.setBody(body.slice());
+  }
+
+  private void writeStream(Response resp, StaticSource source, long start, long count) {
+    try (InputStream is = source.getUrl().openStream()) {
+      long skipped = 0;
+      while (skipped < start) {
+        long n = is.skip(start - skipped);
+        if (n <= 0) {
+          throw Exceptions.fail(String.format("static source [%s] changed", source.getUrl()));
+        }
+        skipped += n;
+      }
+      OutputStream out = resp.stream();
+      byte[] buf = new byte[IOUtils.BUFFER_SIZE];
+      long remaining = count;
+      int len;
+      while (remaining > 0
+          && (len = is.read(buf, 0, (int) Math.min(buf.length, remaining))) != -1) {
+        out.write(buf, 0, len);
+        remaining -= len;
+      }
     } catch (IOException e) {
       throw Exceptions.wrap(e);
     }
+  }
 
+  /**
+   * 解析单段Range，多段或格式错误时返回null按完整内容响应，无法满足时返回空数组
+   *
+   * @param range Range头
+   * @param length 资源长度
+   * @return [start, end]
+   */
+  static long[] parseRange(String range, long length) {
+    if (!range.startsWith(RANGE_PREFIX) || range.indexOf(Strings.COMMA) >= 0) {
+      return null;
+    }
+    String spec = range.substring(RANGE_PREFIX.length()).trim();
+    int dash = spec.indexOf(Strings.DASH);
+    if (dash < 0) {
+      return null;
+    }
+    String first = spec.substring(0, dash).trim();
+    String last = spec.substring(dash + 1).trim();
+    long start;
+    long end;
+    try {
+      if (first.isEmpty()) {
+        long suffix = Long.parseLong(last);
+        if (suffix <= 0) {
+          return new long[0];
+        }
+        start = Math.max(0, length - suffix);
+        end = length - 1;
+      } else {
+        start = Long.parseLong(first);
+        end = last.isEmpty() ? length - 1 : Math.min(Long.parseLong(last), length - 1);
+        if (start > end && !last.isEmpty() && start < length) {
+          return null;
+        }
+      }
+    } catch (NumberFormatException e) {
+      return null;
+    }
+    if (start < 0 || start >= length || end < start) {
+      return new long[0];
+    }
+    return new long[]{start, end};
+  }
+
+  private static boolean accepts(String acceptEncoding, String coding) {
+    if (acceptEncoding == null) {
+      return false;
+    }
+    for (String item : acceptEncoding.split(Strings.COMMA)) {
+      String[] parts = item.split(Strings.SEMICOLON);
+      if (coding.equalsIgnoreCase(parts[0].trim())) {
+        return parts.length == 1 || !parts[1].trim().replace(" ", "").matches("q=0(\\.0*)?");
+      }
+    }
+    return false;
   }
 
   private StaticSource findStaticResource(String path) {
-    if (route.cachingEnabled() && expiringMap.containsKey(path)) {
-      return expiringMap.get(path);
+    if (route.cachingEnabled()) {
+      StaticSource source = expiringMap.get(path);
+      if (source != null) {
+        if (!source.isStale()) {
+          return source;
+        }
+        // 文件已被替换或截断，丢弃旧内容和内存映射
+        expiringMap.remove(path, source);
+      }
     }
     StaticSource source = null;
     for (String location : route.locations()) {
@@ -121,8 +284,14 @@ public class StaticRouteHandler implements RouteHandler {
         break;
       }
     }
-    if (source != null && route.cachingEnabled() && expiringMap.putIfAbsent(path, source) != null) {
-      source.remove();
+    if (source != null && route.cachingEnabled() && source.isCacheable()) {
+      StaticSource exist = expiringMap.putIfAbsent(path, source);
+      if (exist != null) {
+        hotSize.addAndGet(-source.getHotSize());
+        return exist;
+      }
+    } else if (source != null) {
+      hotSize.addAndGet(-source.getHotSize());
     }
     return source;
   }
@@ -132,26 +301,106 @@ public class StaticRouteHandler implements RouteHandler {
       SourceResource sourceResource = new SimpleResourceLoader(
           basePath + path.substring(route.prefix().length()));
       File file = sourceResource.getFile();
-      if (file != null && file.isDirectory()) {
-        return null;
-      }
-      try (InputStream is = sourceResource.getInputStream()) {
-        File savedFile = new File(TEMP_DIR, String.valueOf(SnowflakeIdWorker.defaultNextId()));
-        Files.copy(is, savedFile.toPath());
-        return new StaticSource(savedFile, path);
+      if (file != null) {
+        if (file.isDirectory() || !file.exists()) {
+          return null;
+        }
+        return loadFile(file, path);
       }
+      return loadUrl(sourceResource.getURL(), path);
     } catch (IOException e) {
       // not found or error happens ignore
     }
     return null;
   }
 
-  private void cleanExpiredFile(String key, StaticSource source) {
+  private StaticSource loadFile(File file, String path) throws IOException {
+    long length = file.length();
+    if (length > route.hotMaxFileSize() || !reserve(null, length)) {
+      return new StaticSource(file.toPath(), path, file.lastModified(), length, null);
+    }
+    StaticSource source = new StaticSource(file.toPath(), path, file.lastModified(), length,
+        Files.readAllBytes(file.toPath()));
+    source.hotSize = length;
+    loadVariants(source, file);
+    return source;
+  }
+
+  private StaticSource loadUrl(URL url, String path) throws IOException {
+    URLConnection connection = url.openConnection();
+    long length = connection.getContentLengthLong();
+    long lastModified = connection.getLastModified();
+    if (lastModified <= 0) {
+      lastModified = System.currentTimeMillis();
+    }
+    // 未知大小时读入内存，超过上限或缓存已满时只记录元数据，每次请求流式读取
+    if (length >= 0 && (length > route.hotMaxFileSize() || !reserve(null, length))) {
+      StaticSource source = new StaticSource(null, path, lastModified, length, null);
+      source.url = url;
+      return source;
+    }
+    byte[] content;
+    try (InputStream is = connection.getInputStream()) {
+      content = IOUtils.toBytes(is);
+    }
+    StaticSource source = new StaticSource(null, path, lastModified, content.length, content);
+    if (length >= 0) {
+      // 已按声明大小预留，修正为实际大小
+      hotSize.addAndGet(content.length - length);
+      source.hotSize = content.length;
+    } else {
+      reserve(source, content.length);
+    }
+    return source;
+  }
+
+  private void loadVariants(StaticSource source, File file) throws IOException {
+    File br = new File(file.getPath() + ".br");
+    if (br.isFile() && br.length() < source.getLength() && reserve(source, br.length())) {
+      source.br = Files.readAllBytes(br.toPath());
+    }
+    File gz = new File(file.getPath() + ".gz");
+    if (gz.isFile() && gz.length() < source.getLength() && reserve(source, gz.length())) {
+      source.gzip = Files.readAllBytes(gz.toPath());
+    } else if (route.gzipEnabled() && source.getLength() >= MIN_COMPRESS_SIZE && compressible(
+        source.getContentType())) {
+      byte[] compressed = gzip(source.getContent());
+      if (compressed.length < source.getLength() && reserve(source, compressed.length)) {
+        source.gzip = compressed;
+      }
+    }
+  }
+
+  private boolean reserve(StaticSource source, long size) {
+    if (hotSize.addAndGet(size) > route.hotCapacity()) {
+      hotSize.addAndGet(-size);
+      return false;
+    }
+    if (source != null) {
+      source.hotSize += size;
+    }
+    return true;
+  }
+
+  private static boolean compressible(String contentType) {
+    return contentType.startsWith("text/") || contentType.contains("javascript") || contentType
+        .contains("json") || contentType.contains("xml") || contentType.contains("svg");
+  }
+
+  private static byte[] gzip(byte[] content) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream(content.length / 2);
+    try (GZIPOutputStream gzip = new GZIPOutputStream(out)) {
+      gzip.write(content);
+    }
+    return out.toByteArray();
+  }
+
+  private void cleanExpired(String key, StaticSource source) {
     if (log.isDebugEnabled()) {
       log.debug("static mapping cached source expired for [{}] [{}]", key, source);
     }
     if (source != null) {
-      source.remove();
+      hotSize.addAndGet(-source.getHotSize());
     }
   }
 
@@ -164,38 +413,107 @@ public class StaticRouteHandler implements RouteHandler {
     private final Path path;
     private final String contentType;
     private final String requestPath;
+    private final long lastModified;
+    private final long length;
+    private final String eTag;
+    private final String lastModifiedText;
+    private final byte[] content;
+    private byte[] gzip;
+    private byte[] br;
+    /**
+     * 非文件资源未读入内存时的地址，每次请求流式读取
+     */
+    private URL url;
+    /**
+     * 已计入内存缓存总大小的字节数
+     */
+    private long hotSize;
+    @Getter(AccessLevel.NONE)
+    private volatile ByteBuffer mapped;
 
-    StaticSource(File file, String requestPath) {
-      this.path = file.toPath();
+    StaticSource(Path path, String requestPath, long lastModified, long length, byte[] content) {
+      this.path = path;
       this.requestPath = requestPath;
       String suffix = requestPath.substring(requestPath.lastIndexOf(Strings.DOT) + 1);
-      contentType = MIME_TYPES.getProperty(suffix, HttpHeaders.APPLICATION_OCTET_STREAM);
+      this.contentType = MIME_TYPES.getProperty(suffix, HttpHeaders.APPLICATION_OCTET_STREAM);
+      // 去除毫秒值
+      this.lastModified = lastModified / 1000 * 1000;
+      this.length = length;
+      this.content = content;
+      this.eTag = Strings.DOUBLE_QUOTATION_MARK + Long.toHexString(this.lastModified) + Strings.DASH
+          + Long.toHexString(length) + Strings.DOUBLE_QUOTATION_MARK;
+      this.lastModifiedText = DateTimeFormatter.RFC_1123_DATE_TIME
+          .format(ZonedDateTime.ofInstant(Instant.ofEpochMilli(this.lastModified), ZoneOffset.UTC));
     }
 
     /**
-     * 修改时间
+     * 是否每次请求流式读取
      *
-     * @return lastModified
+     * @return true为流式读取
      */
-    long lastModified() {
-      // 去除毫秒值
-      return path.toFile().lastModified() / 1000 * 1000;
+    boolean isStreaming() {
+      return content == null && url != null;
+    }
+
+    /**
+     * 文件是否已修改，修改时间或大小与加载时不一致
+     *
+     * @return true为已修改
+     */
+    boolean isStale() {
+      if (path == null) {
+        return false;
+      }
+      File file = path.toFile();
+      return file.lastModified() / 1000 * 1000 != lastModified || file.length() != length;
     }
 
     /**
-     * etag
+     * 是否有压缩版本
      *
-     * @return etag
+     * @return true为有
      */
-    String eTag() {
-      return Strings.DOUBLE_QUOTATION_MARK + lastModified() + Strings.DASH + path.hashCode()
-          + Strings.DOUBLE_QUOTATION_MARK;
+    boolean hasVariants() {
+      return gzip != null || br != null;
+    }
+
+    /**
+     * 是否可以缓存，内存内容未计入缓存总大小时不缓存
+     *
+     * @return true为可以缓存
+     */
+    boolean isCacheable() {
+      return content == null || hotSize >= content.length;
+    }
+
+    /**
+     * 响应体，内存缓存或只读内存映射，每次返回独立的视图
+     *
+     * @return body
+     */
+    ByteBuffer body() {
+      if (content != null) {
+        return ByteBuffer.wrap(content).asReadOnlyBuffer();
+      }
+      ByteBuffer buffer = mapped;
+      if (buffer == null) {
+        buffer = map();
+      }
+      return buffer.duplicate();
     }
 
-    void remove() {
-      if (path != null) {
-        FileUtils.deleteFile(path.toFile());
+    private synchronized ByteBuffer map() {
+      if (mapped == null) {
+        if (length > Integer.MAX_VALUE) {
+          throw Exceptions.fail(String.format("static source [%s] is too large", path));
+        }
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+          mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+        } catch (IOException e) {
+          throw Exceptions.wrap(e);
+        }
       }
+      return mapped;
     }
   }
 }
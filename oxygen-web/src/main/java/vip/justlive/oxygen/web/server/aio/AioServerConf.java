@@ -37,6 +37,48 @@ public class AioServerConf {
   @Value("${server.aio.requestTimeout:-1}")
   private long aioRequestTimeout;
 
+  /**
+   * 监听数，大于1时需要系统支持SO_REUSEPORT
+   */
+  @Value("${server.aio.acceptors:1}")
+  private int acceptors = 1;
+
+  /**
+   * 是否开启SO_REUSEPORT
+   */
+  @Value("${server.aio.reusePort:false}")
+  private boolean reusePort;
+
+  /**
+   * 连接队列大小，0使用系统默认值
+   */
+  @Value("${server.aio.backlog:0}")
+  private int backlog;
+
+  /**
+   * 每秒最多接收连接数，0或负数不限制
+   */
+  @Value("${server.aio.maxAcceptsPerSecond:0}")
+  private int maxAcceptsPerSecond;
+
+  /**
+   * 是否开启TCP_NODELAY
+   */
+  @Value("${server.aio.tcpNoDelay:true}")
+  private boolean tcpNoDelay = true;
+
+  /**
+   * 连接接收缓冲区大小，0使用系统默认值
+   */
+  @Value("${server.aio.receiveBufferSize:0}")
+  private int receiveBufferSize;
+
+  /**
+   * 连接发送缓冲区大小，0使用系统默认值
+   */
+  @Value("${server.aio.sendBufferSize:0}")
+  private int sendBufferSize;
+
   /**
    * 连接线程数
    */
@@ -61,6 +103,36 @@ public class AioServerConf {
   @Value("${server.aio.workerMaxWaiter:1000000}")
   private int workerMaxWaiter = 1000000;
 
+  /**
+   * 读写任务执行模式 POOL, EVENT_LOOP, VIRTUAL；EVENT_LOOP下流式响应超出写出水位时失败
+   */
+  @Value("${server.aio.executionMode:POOL}")
+  private String executionMode;
+
+  /**
+   * 事件循环线程数，0或负数时为cpu核数
+   */
+  @Value("${server.aio.eventLoopThreads:0}")
+  private int eventLoopThreads;
+
+  /**
+   * 单个请求未解码完成时允许的最大字节数，超出时关闭连接，0或负数不限制
+   */
+  @Value("${server.aio.maxFrameSize:0}")
+  private int maxFrameSize;
+
+  /**
+   * 请求行最大字节数
+   */
+  @Value("${server.aio.maxRequestLineSize:8192}")
+  private int maxRequestLineSize;
+
+  /**
+   * 请求头最大字节数
+   */
+  @Value("${server.aio.maxHeaderSize:65536}")
+  private int maxHeaderSize;
+
   /**
    * 是否hold住端口，true的话随主线程退出而退出，false的话则要主动退出
    */
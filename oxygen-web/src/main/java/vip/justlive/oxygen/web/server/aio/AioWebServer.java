@@ -16,11 +16,12 @@ package vip.justlive.oxygen.web.server.aio;
 
 import java.io.IOException;
 import java.net.InetSocketAddress;
-import java.util.concurrent.TimeUnit;
+import java.util.Locale;
 import lombok.extern.slf4j.Slf4j;
 import vip.justlive.oxygen.core.Bootstrap;
 import vip.justlive.oxygen.core.config.ConfigFactory;
 import vip.justlive.oxygen.core.exception.Exceptions;
+import vip.justlive.oxygen.core.net.aio.core.ExecutionMode;
 import vip.justlive.oxygen.core.net.aio.core.GroupContext;
 import vip.justlive.oxygen.core.net.aio.core.Server;
 import vip.justlive.oxygen.web.WebConf;
@@ -42,13 +43,32 @@ public class AioWebServer implements WebServer {
     this.port = port;
     AioServerConf serverConf = ConfigFactory.load(AioServerConf.class);
     WebConf webConf = ConfigFactory.load(WebConf.class);
-    GroupContext groupContext = new GroupContext(
-        new HttpServerAioHandler(webConf.getContextPath()));
-    groupContext.setAioListener(new HttpServerAioListener());
+    HttpServerAioHandler aioHandler = new HttpServerAioHandler(webConf.getContextPath());
+    aioHandler.setMaxRequestLineSize(serverConf.getMaxRequestLineSize());
+    aioHandler.setMaxHeaderSize(serverConf.getMaxHeaderSize());
+    aioHandler.setMultipartFileSizeThreshold(webConf.getMultipartFileSizeThreshold());
+    aioHandler.setMultipartMaxSize(webConf.getMultipartMaxSize());
+    GroupContext groupContext = new GroupContext(aioHandler);
+    groupContext.setAioListener(new HttpServerAioListener(
+        new ConnectionTimeoutUpdater(serverConf.getAioIdleTimeout(),
+            serverConf.getAioRequestTimeout())));
+    groupContext.setAcceptors(serverConf.getAcceptors());
+    groupContext.setReusePort(serverConf.isReusePort());
+    groupContext.setBacklog(serverConf.getBacklog());
+    groupContext.setMaxAcceptsPerSecond(serverConf.getMaxAcceptsPerSecond());
+    groupContext.setTcpNoDelay(serverConf.isTcpNoDelay());
+    groupContext.setReceiveBufferSize(serverConf.getReceiveBufferSize());
+    groupContext.setSendBufferSize(serverConf.getSendBufferSize());
     groupContext.setAcceptThreads(serverConf.getAcceptThreads());
     groupContext.setAcceptMaxWaiter(serverConf.getAcceptMaxWaiter());
     groupContext.setWorkerThreads(serverConf.getWorkerThreads());
     groupContext.setWorkerMaxWaiter(serverConf.getWorkerMaxWaiter());
+    groupContext.setMaxFrameSize(serverConf.getMaxFrameSize());
+    groupContext.setExecutionMode(
+        ExecutionMode.valueOf(serverConf.getExecutionMode().toUpperCase(Locale.ROOT)));
+    if (serverConf.getEventLoopThreads() > 0) {
+      groupContext.setEventLoopThreads(serverConf.getEventLoopThreads());
+    }
     groupContext.setDaemon(serverConf.isDaemon());
     this.server = new Server(groupContext);
     Bootstrap.start();
@@ -57,10 +77,6 @@ public class AioWebServer implements WebServer {
     } catch (IOException e) {
       throw Exceptions.wrap(e);
     }
-    groupContext.getScheduledExecutor().scheduleWithFixedDelay(
-        new ConnectionTimeoutUpdater(groupContext, serverConf.getAioIdleTimeout(),
-            serverConf.getAioRequestTimeout()), serverConf.getAioIdleTimeout(),
-        serverConf.getAioIdleTimeout(), TimeUnit.MILLISECONDS);
 
     log.info("aio-web-server started and listened on port [{}] with context path [{}]", this.port,
         webConf.getContextPath());
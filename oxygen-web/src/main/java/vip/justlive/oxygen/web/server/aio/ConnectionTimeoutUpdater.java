@@ -14,58 +14,82 @@
 
 package vip.justlive.oxygen.web.server.aio;
 
-import java.util.Map;
+import java.util.concurrent.TimeUnit;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import vip.justlive.oxygen.core.net.aio.core.ChannelContext;
-import vip.justlive.oxygen.core.net.aio.core.GroupContext;
 
 /**
  * 空闲连接处理
+ * <p>
+ * 每个连接在时间轮中登记一个到期时间，到期时按最后收发时间判断，未超时则重新登记；
+ * 登记间隔不超过空闲超时和请求超时中较短的一个，保证收发状态变化后超时能及时生效
+ * </p>
  *
  * @author wubo
  */
 @Slf4j
 @RequiredArgsConstructor
-public class ConnectionTimeoutUpdater implements Runnable {
+public class ConnectionTimeoutUpdater {
 
-  private final GroupContext context;
   private final long idleTimeout;
   private final long requestTimeout;
 
-  @Override
-  public void run() {
-    long now = System.currentTimeMillis();
-    int size = context.getChannels().size();
-    if (size > 0 && log.isDebugEnabled()) {
-      log.debug("current {} connections.", size);
+  /**
+   * 登记连接超时检查
+   *
+   * @param channelContext channel上下文
+   */
+  public void watch(ChannelContext channelContext) {
+    if (idleTimeout <= 0 && requestTimeout <= 0) {
+      return;
+    }
+    schedule(channelContext, shortest());
+  }
+
+  private long shortest() {
+    if (idleTimeout <= 0) {
+      return requestTimeout;
     }
-    for (Map.Entry<Long, ChannelContext> entry : context.getChannels().entrySet()) {
-      check(entry.getValue(), now);
+    if (requestTimeout <= 0) {
+      return idleTimeout;
     }
+    return Math.min(idleTimeout, requestTimeout);
+  }
+
+  private void schedule(ChannelContext channelContext, long delay) {
+    channelContext.getGroupContext().getTimingWheel()
+        .newTimeout(() -> check(channelContext), Math.min(delay, shortest()),
+            TimeUnit.MILLISECONDS);
   }
 
-  private void check(ChannelContext channelContext, long now) {
+  private void check(ChannelContext channelContext) {
+    if (channelContext.isClosed()) {
+      return;
+    }
+    long now = System.currentTimeMillis();
     long last = Math
         .max(Math.max(channelContext.getLastReceivedAt(), channelContext.getLastSentAt()),
             channelContext.getCreateAt());
-    boolean isIdle = (channelContext.getLastReceivedAt() < channelContext.getLastSentAt() || (
-        channelContext.getLastSentAt() < 0 && channelContext.getLastReceivedAt() < 0))
-        && last + idleTimeout < now;
-    if (isIdle) {
-      if (log.isDebugEnabled()) {
-        log.debug("Timing out idle connection from {}", channelContext);
-      }
-      channelContext.close();
+    boolean requesting = channelContext.getLastReceivedAt() > channelContext.getLastSentAt();
+    long timeout = requesting ? requestTimeout : idleTimeout;
+    if (timeout <= 0) {
+      // 当前状态不限制超时，稍后再检查
+      schedule(channelContext, shortest());
       return;
     }
-
-    if (requestTimeout > 0 && channelContext.getLastReceivedAt() > channelContext.getLastSentAt()
-        && last + requestTimeout < now) {
-      if (log.isDebugEnabled()) {
+    long deadline = last + timeout;
+    if (deadline > now) {
+      schedule(channelContext, deadline - now);
+      return;
+    }
+    if (log.isDebugEnabled()) {
+      if (requesting) {
         log.debug("Closing channel because of request timeout from {}", channelContext);
+      } else {
+        log.debug("Timing out idle connection from {}", channelContext);
       }
-      channelContext.close();
     }
+    channelContext.close();
   }
 }
@@ -0,0 +1,63 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package vip.justlive.oxygen.web.server.aio;
+
+import lombok.AccessLevel;
+import lombok.Getter;
+import lombok.RequiredArgsConstructor;
+import vip.justlive.oxygen.web.http.Response;
+
+/**
+ * 流式响应的分块数据
+ *
+ * @author wubo
+ */
+@Getter
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+public class HttpChunk {
+
+  /**
+   * 响应
+   */
+  private final Response response;
+  /**
+   * 是否为响应头
+   */
+  private final boolean head;
+  /**
+   * 是否为最后一块
+   */
+  private final boolean last;
+  /**
+   * 数据
+   */
+  private final byte[] data;
+  /**
+   * 数据长度
+   */
+  private final int length;
+
+  static HttpChunk head(Response response) {
+    return new HttpChunk(response, true, false, null, 0);
+  }
+
+  static HttpChunk data(Response response, byte[] data, int length) {
+    return new HttpChunk(response, false, false, data, length);
+  }
+
+  static HttpChunk last(Response response) {
+    return new HttpChunk(response, false, true, null, 0);
+  }
+}
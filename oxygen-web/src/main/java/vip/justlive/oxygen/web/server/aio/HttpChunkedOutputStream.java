@@ -0,0 +1,169 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package vip.justlive.oxygen.web.server.aio;
+
+import java.io.OutputStream;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
+import lombok.RequiredArgsConstructor;
+import vip.justlive.oxygen.core.exception.Exceptions;
+import vip.justlive.oxygen.core.net.aio.core.ChannelContext;
+import vip.justlive.oxygen.core.net.aio.core.ExecutionMode;
+import vip.justlive.oxygen.web.http.Response;
+
+/**
+ * 流式响应输出，缓冲满或flush时以chunked编码直接写出，首次写出时提交响应头
+ * <p>
+ * 响应头提交后再修改header或cookie不再生效；channel不可写（超过高水位或全局待写出上限）时阻塞写入线程，
+ * 直到恢复可写，内存占用受水位限制。事件循环模式下处理线程即写出线程，不能阻塞等待，写出完成前不会编码，
+ * 因此由本流统计未写出的字节数，超过高水位或channel不可写时关闭连接并抛出异常，
+ * 即该模式下只支持不超过水位的流式响应
+ * </p>
+ *
+ * @author wubo
+ */
+@RequiredArgsConstructor
+public class HttpChunkedOutputStream extends OutputStream {
+
+  private static final int BUFFER_SIZE = 8 * 1024;
+  private static final long WRITABLE_TIMEOUT = 30000L;
+
+  private final ChannelContext channelContext;
+  private final Response response;
+  /**
+   * 事件循环模式下已提交但未写出的字节数
+   */
+  private final AtomicLong unflushed = new AtomicLong();
+  private byte[] buffer;
+  private int count;
+  private boolean committed;
+  private boolean closed;
+
+  @Override
+  public void write(int b) {
+    if (buffer == null) {
+      buffer = new byte[BUFFER_SIZE];
+    }
+    buffer[count++] = (byte) b;
+    if (count == buffer.length) {
+      flushBuffer();
+    }
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    if (len >= BUFFER_SIZE) {
+      flushBuffer();
+      byte[] data = new byte[len];
+      System.arraycopy(b, off, data, 0, len);
+      writeChunk(data, len);
+      return;
+    }
+    if (buffer == null) {
+      buffer = new byte[BUFFER_SIZE];
+    } else if (count + len > buffer.length) {
+      flushBuffer();
+      buffer = new byte[BUFFER_SIZE];
+    }
+    System.arraycopy(b, off, buffer, count, len);
+    count += len;
+  }
+
+  @Override
+  public void flush() {
+    flushBuffer();
+  }
+
+  @Override
+  public void close() {
+    if (closed) {
+      return;
+    }
+    flushBuffer();
+    commit();
+    closed = true;
+    channelContext.write(HttpChunk.last(response));
+  }
+
+  /**
+   * 响应头是否已提交
+   *
+   * @return true为已提交
+   */
+  public boolean isCommitted() {
+    return committed;
+  }
+
+  private void flushBuffer() {
+    if (count > 0) {
+      // 缓冲交由写线程，不再复用
+      writeChunk(buffer, count);
+      buffer = null;
+      count = 0;
+    }
+  }
+
+  private void writeChunk(byte[] data, int length) {
+    commit();
+    if (channelContext.getGroupContext().getExecutionMode() == ExecutionMode.EVENT_LOOP) {
+      writeBounded(HttpChunk.data(response, data, length), length);
+      return;
+    }
+    awaitWritable();
+    channelContext.write(HttpChunk.data(response, data, length));
+  }
+
+  private void writeBounded(HttpChunk chunk, int length) {
+    // 等待会阻塞事件循环，继续写入则内存无上限
+    if (unflushed.get() + length > channelContext.getGroupContext().getWriteBufferHighWaterMark()) {
+      channelContext.close();
+      throw Exceptions.fail("事件循环模式下流式响应超出写出水位");
+    }
+    unflushed.addAndGet(length);
+    CompletableFuture<Void> future = channelContext.writeAsync(chunk);
+    future.whenComplete((v, e) -> unflushed.addAndGet(-length));
+    if (future.isCompletedExceptionally()) {
+      channelContext.close();
+      throw Exceptions.fail("事件循环模式下流式响应超出写出水位");
+    }
+  }
+
+  private void awaitWritable() {
+    if (channelContext.isWritable()) {
+      return;
+    }
+    try {
+      channelContext.whenWritable().get(WRITABLE_TIMEOUT, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw Exceptions.wrap(e);
+    } catch (ExecutionException e) {
+      throw Exceptions.wrap(e.getCause());
+    } catch (TimeoutException e) {
+      channelContext.close();
+      throw Exceptions.wrap(e);
+    }
+  }
+
+  private void commit() {
+    if (!committed) {
+      committed = true;
+      channelContext.write(HttpChunk.head(response));
+    }
+  }
+}
@@ -0,0 +1,625 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package vip.justlive.oxygen.web.server.aio;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import vip.justlive.oxygen.core.exception.Exceptions;
+import vip.justlive.oxygen.core.net.http.HttpMethod;
+import vip.justlive.oxygen.core.util.Bytes;
+import vip.justlive.oxygen.core.util.HttpHeaders;
+import vip.justlive.oxygen.core.util.Strings;
+import vip.justlive.oxygen.web.http.MultipartDecoder;
+import vip.justlive.oxygen.web.http.Request;
+
+/**
+ * 可恢复的http请求解析器，每个连接一个实例
+ * <p>
+ * 数据不完整时记录已解析的位置（相对于请求起始位置），下次从该位置继续解析，不会从请求行重新开始；
+ * header以字节区间记录，请求完整后再一次性生成字符串，常用header名称直接复用常量；
+ * multipart请求体不缓存，读取到多少就交给{@link MultipartDecoder}解码多少
+ * </p>
+ *
+ * @author wubo
+ */
+public class HttpRequestParser {
+
+  /**
+   * 请求被拒绝时，拒绝原因在request中的属性名
+   */
+  public static final String REJECTED_KEY = "_HTTP_REQUEST_REJECTED";
+
+  private static final String[] KNOWN_HEADERS = {HttpHeaders.ACCEPT, HttpHeaders.ACCEPT_CHARSET,
+      HttpHeaders.ACCEPT_ENCODING, "Accept-Language", "Authorization", HttpHeaders.CACHE_CONTROL,
+      HttpHeaders.CONNECTION, HttpHeaders.CONTENT_LENGTH, HttpHeaders.CONTENT_TYPE,
+      HttpHeaders.COOKIE, HttpHeaders.HOST_NAME, HttpHeaders.IF_MATCH,
+      HttpHeaders.IF_MODIFIED_SINCE, HttpHeaders.IF_NONE_MATCH, "Origin", "Pragma", "Range",
+      "Referer", HttpHeaders.TRANSFER_ENCODING, "Upgrade", "User-Agent",
+      HttpHeaders.X_FORWARDED_FOR, HttpHeaders.X_REAL_IP, HttpHeaders.X_REQUESTED_WITH};
+  private static final byte[][] KNOWN_HEADER_BYTES = new byte[KNOWN_HEADERS.length][];
+
+  static {
+    for (int i = 0; i < KNOWN_HEADERS.length; i++) {
+      KNOWN_HEADER_BYTES[i] = KNOWN_HEADERS[i].toLowerCase().getBytes(StandardCharsets.US_ASCII);
+    }
+  }
+
+  private static final byte[] CHUNKED = HttpHeaders.CHUNKED.getBytes(StandardCharsets.US_ASCII);
+  private static final int CONTENT_LENGTH_INDEX = indexOf(HttpHeaders.CONTENT_LENGTH);
+  private static final int TRANSFER_ENCODING_INDEX = indexOf(HttpHeaders.TRANSFER_ENCODING);
+  private static final int CONTENT_TYPE_INDEX = indexOf(HttpHeaders.CONTENT_TYPE);
+  private static final int MAX_CHUNK_LINE_SIZE = 1024;
+
+  private static final int REQUEST_LINE = 0;
+  private static final int HEADERS = 1;
+  private static final int BODY = 2;
+  private static final int CHUNK_SIZE = 3;
+  private static final int CHUNK_DATA = 4;
+  private static final int TRAILERS = 5;
+  private static final int STREAM = 6;
+  private static final int REJECTED = 7;
+
+  private final String contextPath;
+  private final int maxRequestLineSize;
+  private final int maxHeaderSize;
+  private final int multipartFileSizeThreshold;
+  private final long multipartMaxSize;
+
+  private int state = REQUEST_LINE;
+  /**
+   * 已解析的位置，相对于请求起始位置
+   */
+  private int scanned;
+  private int headerStart;
+  private int bodyStart;
+  private HttpMethod method;
+  private String requestUri;
+  private String version;
+  private long contentLength = -1;
+  private boolean chunked;
+  private String rejected;
+  private long chunkSize;
+  private long chunkedLength;
+  /**
+   * 每个chunk占2个int: dataStart, dataEnd
+   */
+  private int[] chunkSlices = new int[16];
+  private int chunkCount;
+  /**
+   * 每个header占4个int: nameStart, nameEnd, valueStart, valueEnd；nameStart为负数时表示常用header的下标
+   */
+  private int[] headerSlices = new int[64];
+  private int headerCount;
+  private int contentTypeHeader = -1;
+  /**
+   * 流式解码中的请求
+   */
+  private Request streaming;
+  private MultipartDecoder decoder;
+  private long streamed;
+
+  public HttpRequestParser(String contextPath, int maxRequestLineSize, int maxHeaderSize) {
+    this(contextPath, maxRequestLineSize, maxHeaderSize, 16 * 1024, -1);
+  }
+
+  public HttpRequestParser(String contextPath, int maxRequestLineSize, int maxHeaderSize,
+      int multipartFileSizeThreshold, long multipartMaxSize) {
+    this.contextPath = contextPath;
+    this.maxRequestLineSize = maxRequestLineSize;
+    this.maxHeaderSize = maxHeaderSize;
+    this.multipartFileSizeThreshold = multipartFileSizeThreshold;
+    this.multipartMaxSize = multipartMaxSize;
+  }
+
+  /**
+   * 解析请求，数据不完整时返回null且不改变buffer的position；
+   * multipart请求体为流式解码，已解码的数据会推进position；
+   * 请求体长度有歧义时返回带{@link #REJECTED_KEY}属性的请求，并丢弃连接上的后续数据；
+   * multipart请求体不完整时同样返回带该属性的请求
+   *
+   * @param buffer 数据
+   * @return request
+   */
+  public Request parse(ByteBuffer buffer) {
+    if (state == STREAM) {
+      return stream(buffer);
+    }
+    if (state == REJECTED) {
+      // 已拒绝的连接无法确定后续请求的边界，丢弃剩余数据
+      buffer.position(buffer.limit());
+      return null;
+    }
+    int base = buffer.position();
+    int limit = buffer.limit();
+    if (state == REQUEST_LINE && !parseRequestLine(buffer, base, limit)) {
+      return null;
+    }
+    if (state == HEADERS && !parseHeaders(buffer, base, limit)) {
+      return null;
+    }
+    if (state == REJECTED) {
+      return reject(buffer, base);
+    }
+    if (startStream(buffer, base)) {
+      return stream(buffer);
+    }
+    byte[] body = null;
+    if (chunked) {
+      if (!parseChunks(buffer, base, limit)) {
+        return null;
+      }
+      if (chunkedLength > 0) {
+        body = chunkedBody(buffer, base);
+      }
+    } else {
+      if (limit - base - bodyStart < contentLength) {
+        return null;
+      }
+      scanned = bodyStart;
+      if (contentLength > 0) {
+        body = new byte[(int) contentLength];
+        buffer.position(base + bodyStart);
+        buffer.get(body);
+        scanned += body.length;
+      }
+    }
+    buffer.position(base + scanned);
+    Request request = new Request(method, requestUri, version, contextPath, body);
+    fillHeaders(buffer, base, request.getHeaders());
+    reset();
+    return request;
+  }
+
+  /**
+   * 重置状态，用于解析下一个请求
+   */
+  public void reset() {
+    state = REQUEST_LINE;
+    scanned = 0;
+    headerStart = 0;
+    bodyStart = 0;
+    method = null;
+    requestUri = null;
+    version = null;
+    contentLength = -1;
+    chunked = false;
+    rejected = null;
+    chunkSize = 0;
+    chunkedLength = 0;
+    chunkCount = 0;
+    headerCount = 0;
+    contentTypeHeader = -1;
+    streaming = null;
+    decoder = null;
+    streamed = 0;
+  }
+
+  /**
+   * 关闭解析器，删除未完成的multipart临时文件
+   */
+  public void close() {
+    if (decoder != null) {
+      decoder.close();
+    }
+    reset();
+  }
+
+  /**
+   * 拒绝请求体长度有歧义的请求（RFC 7230 3.3.3），生成带拒绝原因且关闭连接的请求，
+   * 解析器进入拒绝状态，不再解析连接上的后续数据
+   */
+  private Request reject(ByteBuffer buffer, int base) {
+    Request request = new Request(method, requestUri, version, contextPath, null);
+    fillHeaders(buffer, base, request.getHeaders());
+    request.getHeaders()
+        .put(HttpHeaders.CONNECTION, new String[]{HttpHeaders.CONNECTION_CLOSE});
+    request.addAttribute(REJECTED_KEY, rejected);
+    buffer.position(buffer.limit());
+    return request;
+  }
+
+  private boolean startStream(ByteBuffer buffer, int base) {
+    if (chunked || contentLength <= 0 || method != HttpMethod.POST || contentTypeHeader < 0) {
+      return false;
+    }
+    int offset = contentTypeHeader * 4;
+    decoder = multipart(string(buffer, base + headerSlices[offset + 2],
+        base + headerSlices[offset + 3], StandardCharsets.UTF_8));
+    if (decoder == null) {
+      return false;
+    }
+    // header之后不再保留在buffer中，提前生成请求
+    streaming = new Request(method, requestUri, version, contextPath, null);
+    fillHeaders(buffer, base, streaming.getHeaders());
+    buffer.position(base + bodyStart);
+    state = STREAM;
+    return true;
+  }
+
+  private MultipartDecoder multipart(String contentType) {
+    String[] arr = contentType.split(Strings.SEMICOLON);
+    if (!arr[0].trim().toLowerCase(Locale.ENGLISH).startsWith(HttpHeaders.MULTIPART)) {
+      return null;
+    }
+    String boundary = null;
+    Charset charset = StandardCharsets.UTF_8;
+    for (int i = 1; i < arr.length; i++) {
+      String[] args = arr[i].split(Strings.EQUAL);
+      if (args.length != 2) {
+        continue;
+      }
+      String key = args[0].trim();
+      if (key.equalsIgnoreCase(HttpHeaders.CHARSET)) {
+        charset = Charset.forName(args[1].trim());
+      } else if (key.equalsIgnoreCase(HttpHeaders.BOUNDARY)) {
+        boundary = args[1].trim();
+      }
+    }
+    if (boundary == null) {
+      return null;
+    }
+    return new MultipartDecoder(boundary.getBytes(charset), charset, multipartFileSizeThreshold,
+        multipartMaxSize);
+  }
+
+  private Request stream(ByteBuffer buffer) {
+    int length = (int) Math.min(buffer.remaining(), contentLength - streamed);
+    ByteBuffer data = buffer.duplicate();
+    data.limit(data.position() + length);
+    try {
+      decoder.decode(data);
+    } catch (RuntimeException e) {
+      close();
+      throw e;
+    }
+    buffer.position(buffer.position() + length);
+    streamed += length;
+    if (streamed < contentLength) {
+      return null;
+    }
+    Request request = streaming;
+    if (decoder.isFinished()) {
+      request.addAttribute(MultipartDecoder.DECODER_KEY, decoder);
+    } else {
+      // 请求体已读完但未读取到结束分隔符
+      decoder.close();
+      request.addAttribute(REJECTED_KEY, "Incomplete multipart body");
+    }
+    reset();
+    return request;
+  }
+
+  private boolean parseRequestLine(ByteBuffer buffer, int base, int limit) {
+    int lineStart = base + scanned;
+    int lf = indexOf(buffer, lineStart, limit, Bytes.LF);
+    while (lf == lineStart || (lf == lineStart + 1 && buffer.get(lineStart) == Bytes.CR)) {
+      // 忽略请求行之前的空行
+      lineStart = lf + 1;
+      scanned = lineStart - base;
+      lf = indexOf(buffer, lineStart, limit, Bytes.LF);
+    }
+    if (lf < 0) {
+      if (limit - lineStart > maxRequestLineSize) {
+        throw Exceptions.fail("Request line is too large");
+      }
+      return false;
+    }
+    if (lf - lineStart > maxRequestLineSize) {
+      throw Exceptions.fail("Request line is too large");
+    }
+    int end = lineEnd(buffer, lineStart, lf);
+    int sp1 = indexOf(buffer, lineStart, end, Bytes.SPACE);
+    int sp2 = sp1 < 0 ? -1 : indexOf(buffer, sp1 + 1, end, Bytes.SPACE);
+    if (sp2 < 0) {
+      throw Exceptions.fail("Illegal request line");
+    }
+    method = HttpMethod.find(string(buffer, lineStart, sp1, StandardCharsets.US_ASCII));
+    requestUri = string(buffer, sp1 + 1, sp2, StandardCharsets.UTF_8);
+    version = string(buffer, sp2 + 1, end, StandardCharsets.US_ASCII);
+    if (!requestUri.startsWith(contextPath)) {
+      throw Exceptions.fail("RequestUri not match contextPath");
+    }
+    scanned = lf + 1 - base;
+    headerStart = scanned;
+    state = HEADERS;
+    return true;
+  }
+
+  private boolean parseHeaders(ByteBuffer buffer, int base, int limit) {
+    for (; ; ) {
+      int lineStart = base + scanned;
+      int lf = indexOf(buffer, lineStart, limit, Bytes.LF);
+      if (lf < 0) {
+        if (limit - base - headerStart > maxHeaderSize) {
+          throw Exceptions.fail("Request header is too large");
+        }
+        return false;
+      }
+      scanned = lf + 1 - base;
+      if (scanned - headerStart > maxHeaderSize) {
+        throw Exceptions.fail("Request header is too large");
+      }
+      int end = lineEnd(buffer, lineStart, lf);
+      if (end == lineStart) {
+        bodyStart = scanned;
+        if (rejected == null && chunked && contentLength >= 0) {
+          rejected = "Content-Length with chunked Transfer-Encoding";
+        }
+        if (rejected != null) {
+          state = REJECTED;
+        } else {
+          state = chunked ? CHUNK_SIZE : BODY;
+        }
+        return true;
+      }
+      addHeader(buffer, base, lineStart, end);
+    }
+  }
+
+  private void addHeader(ByteBuffer buffer, int base, int start, int end) {
+    int colon = indexOf(buffer, start, end, Bytes.COLON);
+    if (colon <= start) {
+      throw Exceptions.fail("Illegal request header");
+    }
+    int valueStart = colon + 1;
+    while (valueStart < end && isWhitespace(buffer.get(valueStart))) {
+      valueStart++;
+    }
+    int valueEnd = end;
+    while (valueEnd > valueStart && isWhitespace(buffer.get(valueEnd - 1))) {
+      valueEnd--;
+    }
+    int known = known(buffer, start, colon);
+    if (known == CONTENT_LENGTH_INDEX) {
+      long length = parseLong(buffer, valueStart, valueEnd);
+      if (contentLength >= 0 && contentLength != length) {
+        rejected = "Conflicting Content-Length";
+      }
+      contentLength = length;
+    } else if (known == TRANSFER_ENCODING_INDEX && endsWith(buffer, valueStart, valueEnd,
+        CHUNKED)) {
+      chunked = true;
+    } else if (known == CONTENT_TYPE_INDEX) {
+      contentTypeHeader = headerCount;
+    }
+    int offset = headerCount * 4;
+    if (offset + 4 > headerSlices.length) {
+      headerSlices = Arrays.copyOf(headerSlices, headerSlices.length << 1);
+    }
+    headerSlices[offset] = known >= 0 ? -known - 1 : start - base;
+    headerSlices[offset + 1] = colon - base;
+    headerSlices[offset + 2] = valueStart - base;
+    headerSlices[offset + 3] = valueEnd - base;
+    headerCount++;
+  }
+
+  private boolean parseChunks(ByteBuffer buffer, int base, int limit) {
+    for (; ; ) {
+      if (state == CHUNK_SIZE) {
+        int lineStart = base + scanned;
+        int lf = indexOf(buffer, lineStart, limit, Bytes.LF);
+        if (lf < 0) {
+          if (limit - lineStart > MAX_CHUNK_LINE_SIZE) {
+            throw Exceptions.fail("Chunk size line is too large");
+          }
+          return false;
+        }
+        chunkSize = parseHex(buffer, lineStart, lineEnd(buffer, lineStart, lf));
+        scanned = lf + 1 - base;
+        state = chunkSize == 0 ? TRAILERS : CHUNK_DATA;
+      } else if (state == CHUNK_DATA) {
+        // chunk数据加上结尾的CRLF
+        if (limit - base - scanned < chunkSize + 2) {
+          return false;
+        }
+        addChunk(scanned, (int) (scanned + chunkSize));
+        scanned += chunkSize;
+        if (buffer.get(base + scanned) != Bytes.CR || buffer.get(base + scanned + 1) != Bytes.LF) {
+          throw Exceptions.fail("Illegal chunk data");
+        }
+        scanned += 2;
+        state = CHUNK_SIZE;
+      } else {
+        // 忽略trailer
+        int lineStart = base + scanned;
+        int lf = indexOf(buffer, lineStart, limit, Bytes.LF);
+        if (lf < 0) {
+          if (limit - lineStart > maxHeaderSize) {
+            throw Exceptions.fail("Request trailer is too large");
+          }
+          return false;
+        }
+        scanned = lf + 1 - base;
+        if (lineEnd(buffer, lineStart, lf) == lineStart) {
+          return true;
+        }
+      }
+    }
+  }
+
+  private void addChunk(int start, int end) {
+    chunkedLength += end - start;
+    if (chunkedLength > Integer.MAX_VALUE) {
+      throw Exceptions.fail("Request body is too large");
+    }
+    int offset = chunkCount * 2;
+    if (offset + 2 > chunkSlices.length) {
+      chunkSlices = Arrays.copyOf(chunkSlices, chunkSlices.length << 1);
+    }
+    chunkSlices[offset] = start;
+    chunkSlices[offset + 1] = end;
+    chunkCount++;
+  }
+
+  private byte[] chunkedBody(ByteBuffer buffer, int base) {
+    byte[] body = new byte[(int) chunkedLength];
+    ByteBuffer view = buffer.duplicate();
+    int index = 0;
+    for (int i = 0; i < chunkCount; i++) {
+      int start = chunkSlices[i * 2];
+      int length = chunkSlices[i * 2 + 1] - start;
+      view.limit(base + start + length).position(base + start);
+      view.get(body, index, length);
+      index += length;
+    }
+    return body;
+  }
+
+  private void fillHeaders(ByteBuffer buffer, int base, Map<String, String[]> headers) {
+    for (int i = 0; i < headerCount; i++) {
+      int offset = i * 4;
+      int nameStart = headerSlices[offset];
+      String name;
+      if (nameStart < 0) {
+        name = KNOWN_HEADERS[-nameStart - 1];
+      } else {
+        name = string(buffer, base + nameStart, base + headerSlices[offset + 1],
+            StandardCharsets.US_ASCII);
+      }
+      String value = string(buffer, base + headerSlices[offset + 2],
+          base + headerSlices[offset + 3], StandardCharsets.UTF_8);
+      String[] values = headers.get(name);
+      if (values == null) {
+        headers.put(name, new String[]{value});
+      } else if (!Arrays.asList(values).contains(value)) {
+        values = Arrays.copyOf(values, values.length + 1);
+        values[values.length - 1] = value;
+        headers.put(name, values);
+      }
+    }
+  }
+
+  private static int known(ByteBuffer buffer, int start, int end) {
+    int length = end - start;
+    for (int i = 0; i < KNOWN_HEADER_BYTES.length; i++) {
+      byte[] name = KNOWN_HEADER_BYTES[i];
+      if (name.length != length) {
+        continue;
+      }
+      int j = 0;
+      while (j < length && lower(buffer.get(start + j)) == name[j]) {
+        j++;
+      }
+      if (j == length) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static long parseLong(ByteBuffer buffer, int start, int end) {
+    if (start == end) {
+      throw Exceptions.fail("Illegal Content-Length");
+    }
+    long value = 0;
+    for (int i = start; i < end; i++) {
+      byte b = buffer.get(i);
+      if (b < '0' || b > '9' || value > Integer.MAX_VALUE) {
+        throw Exceptions.fail("Illegal Content-Length");
+      }
+      value = value * 10 + (b - '0');
+    }
+    return value;
+  }
+
+  private static long parseHex(ByteBuffer buffer, int start, int end) {
+    long value = 0;
+    int i = start;
+    for (; i < end; i++) {
+      byte b = buffer.get(i);
+      int digit = Character.digit(b, 16);
+      if (digit < 0) {
+        if (b == Bytes.SEMICOLON || isWhitespace(b)) {
+          // chunk扩展
+          break;
+        }
+        throw Exceptions.fail("Illegal chunk size");
+      }
+      value = (value << 4) + digit;
+      if (value > Integer.MAX_VALUE) {
+        throw Exceptions.fail("Illegal chunk size");
+      }
+    }
+    if (i == start) {
+      throw Exceptions.fail("Illegal chunk size");
+    }
+    return value;
+  }
+
+  private static boolean endsWith(ByteBuffer buffer, int start, int end, byte[] suffix) {
+    if (end - start < suffix.length) {
+      return false;
+    }
+    int offset = end - suffix.length;
+    for (int i = 0; i < suffix.length; i++) {
+      if (lower(buffer.get(offset + i)) != suffix[i]) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  private static int indexOf(String header) {
+    for (int i = 0; i < KNOWN_HEADERS.length; i++) {
+      if (KNOWN_HEADERS[i].equals(header)) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int indexOf(ByteBuffer buffer, int from, int to, byte target) {
+    for (int i = from; i < to; i++) {
+      if (buffer.get(i) == target) {
+        return i;
+      }
+    }
+    return -1;
+  }
+
+  private static int lineEnd(ByteBuffer buffer, int start, int lf) {
+    if (lf > start && buffer.get(lf - 1) == Bytes.CR) {
+      return lf - 1;
+    }
+    return lf;
+  }
+
+  private static String string(ByteBuffer buffer, int start, int end,
+      Charset charset) {
+    if (buffer.hasArray()) {
+      return new String(buffer.array(), buffer.arrayOffset() + start, end - start, charset);
+    }
+    byte[] bytes = new byte[end - start];
+    for (int i = 0; i < bytes.length; i++) {
+      bytes[i] = buffer.get(start + i);
+    }
+    return new String(bytes, charset);
+  }
+
+  private static boolean isWhitespace(byte b) {
+    return b == Bytes.SPACE || b == '\t';
+  }
+
+  private static byte lower(byte b) {
+    if (b >= 'A' && b <= 'Z') {
+      return (byte) (b + 32);
+    }
+    return b;
+  }
+}
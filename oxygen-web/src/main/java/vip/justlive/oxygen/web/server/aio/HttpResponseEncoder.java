@@ -0,0 +1,429 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package vip.justlive.oxygen.web.server.aio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import lombok.EqualsAndHashCode;
+import lombok.RequiredArgsConstructor;
+import vip.justlive.oxygen.core.exception.Exceptions;
+import vip.justlive.oxygen.core.net.aio.core.BufferPool;
+import vip.justlive.oxygen.core.util.HttpHeaders;
+import vip.justlive.oxygen.core.util.Strings;
+import vip.justlive.oxygen.web.http.Cookie;
+import vip.justlive.oxygen.web.http.Request;
+import vip.justlive.oxygen.web.http.Response;
+
+/**
+ * http响应编码
+ * <p>
+ * 常用状态行和响应头预先编码为字节，Date头每秒生成一次，直接写入池化buffer，响应体最多拷贝一次
+ * </p>
+ *
+ * @author wubo
+ */
+final class HttpResponseEncoder extends OutputStream {
+
+  static final String HTTP_1_0 = "HTTP/1.0";
+  static final String HTTP_1_1 = "HTTP/1.1";
+
+  private static final int HEAD_ESTIMATE = 512;
+  private static final int MIN_GATHERING_SIZE = 1024;
+  private static final int MAX_CONTENT_TYPES = 256;
+  private static final String CRLF_STR = "\r\n";
+  private static final byte[] CRLF = {'\r', '\n'};
+  private static final byte[] HEADER_SEPARATOR = {':', ' '};
+  private static final byte[][] STATUS_LINES_1_1 = new byte[600][];
+  private static final byte[][] STATUS_LINES_1_0 = new byte[600][];
+  private static final String[] REASONS = new String[600];
+  private static final byte[] CONTENT_LENGTH = bytes(HttpHeaders.CONTENT_LENGTH + ": ");
+  private static final byte[] CONNECTION_CLOSE = bytes(
+      HttpHeaders.CONNECTION + ": " + HttpHeaders.CONNECTION_CLOSE + CRLF_STR);
+  private static final byte[] CONNECTION_KEEP_ALIVE = bytes(
+      HttpHeaders.CONNECTION + ": " + HttpHeaders.CONNECTION_KEEP_ALIVE + CRLF_STR);
+  private static final byte[] TRANSFER_ENCODING_CHUNKED = bytes(
+      HttpHeaders.TRANSFER_ENCODING + ": " + HttpHeaders.CHUNKED + CRLF_STR);
+  private static final Map<String, byte[]> HEADER_NAMES = new ConcurrentHashMap<>(16);
+  private static final Map<ContentType, byte[]> CONTENT_TYPES = new ConcurrentHashMap<>(16);
+  private static volatile DateLine dateLine = new DateLine(0, null);
+
+  static {
+    status(100, "Continue");
+    status(101, "Switching Protocols");
+    status(200, "OK");
+    status(201, "Created");
+    status(202, "Accepted");
+    status(204, "No Content");
+    status(206, "Partial Content");
+    status(301, "Moved Permanently");
+    status(302, "Found");
+    status(303, "See Other");
+    status(304, "Not Modified");
+    status(307, "Temporary Redirect");
+    status(308, "Permanent Redirect");
+    status(400, "Bad Request");
+    status(401, "Unauthorized");
+    status(403, "Forbidden");
+    status(404, "Not Found");
+    status(405, "Method Not Allowed");
+    status(406, "Not Acceptable");
+    status(408, "Request Timeout");
+    status(409, "Conflict");
+    status(413, "Payload Too Large");
+    status(415, "Unsupported Media Type");
+    status(416, "Range Not Satisfiable");
+    status(429, "Too Many Requests");
+    status(500, "Internal Server Error");
+    status(501, "Not Implemented");
+    status(502, "Bad Gateway");
+    status(503, "Service Unavailable");
+    status(504, "Gateway Timeout");
+    for (String name : new String[]{HttpHeaders.SERVER, HttpHeaders.CONTENT_TYPE,
+        HttpHeaders.CACHE_CONTROL, HttpHeaders.LOCATION, HttpHeaders.ETAG, HttpHeaders.EXPIRES,
+        HttpHeaders.LAST_MODIFIED, HttpHeaders.CONTENT_DISPOSITION, HttpHeaders.ALLOW}) {
+      headerName(name);
+    }
+  }
+
+  private final BufferPool pool;
+  private ByteBuffer buffer;
+
+  private HttpResponseEncoder(BufferPool pool, int capacity) {
+    this.pool = pool;
+    this.buffer = pool.acquire(capacity);
+  }
+
+  /**
+   * 编码完整响应，{@link Response#getBody()}较大时作为单独的只读buffer写出，不拷贝
+   *
+   * @param pool buffer池
+   * @param response 响应
+   * @param keepAlive 是否保持连接
+   * @param out 编码结果，读模式
+   */
+  static void encode(BufferPool pool, Response response, boolean keepAlive,
+      List<ByteBuffer> out) {
+    ByteBuffer body = response.getBody();
+    if (body == null) {
+      out.add(encode(pool, response, keepAlive));
+      return;
+    }
+    // 只读视图，不影响原buffer的position且不会被归还到池中
+    body = body.asReadOnlyBuffer();
+    int length = body.remaining();
+    boolean gathering = length >= MIN_GATHERING_SIZE;
+    HttpResponseEncoder encoder = new HttpResponseEncoder(pool,
+        HEAD_ESTIMATE + (gathering ? 0 : length));
+    encoder.head(response, length, keepAlive, false);
+    if (gathering) {
+      out.add(encoder.finish());
+      out.add(body);
+    } else {
+      encoder.ensure(length);
+      encoder.buffer.put(body);
+      out.add(encoder.finish());
+    }
+  }
+
+  /**
+   * 编码完整响应，包含响应头和响应体
+   *
+   * @param pool buffer池
+   * @param response 响应
+   * @param keepAlive 是否保持连接
+   * @return 池化buffer，读模式
+   */
+  static ByteBuffer encode(BufferPool pool, Response response, boolean keepAlive) {
+    ByteArrayOutputStream out = response.getOut();
+    int length = out == null ? 0 : out.size();
+    HttpResponseEncoder encoder = new HttpResponseEncoder(pool, HEAD_ESTIMATE + length);
+    encoder.head(response, length, keepAlive, false);
+    if (length > 0) {
+      encoder.ensure(length);
+      try {
+        // 直接从内部数组写入，避免toByteArray拷贝
+        out.writeTo(encoder);
+      } catch (IOException e) {
+        throw Exceptions.wrap(e);
+      }
+    }
+    return encoder.finish();
+  }
+
+  /**
+   * 编码流式响应的响应头
+   *
+   * @param pool buffer池
+   * @param response 响应
+   * @param keepAlive 是否保持连接
+   * @param chunked 是否chunked编码
+   * @return 池化buffer，读模式
+   */
+  static ByteBuffer encodeHead(BufferPool pool, Response response, boolean keepAlive,
+      boolean chunked) {
+    HttpResponseEncoder encoder = new HttpResponseEncoder(pool, HEAD_ESTIMATE);
+    encoder.head(response, -1, keepAlive, chunked);
+    return encoder.finish();
+  }
+
+  /**
+   * 编码chunk大小行
+   *
+   * @param pool buffer池
+   * @param length chunk长度
+   * @return 池化buffer，读模式
+   */
+  static ByteBuffer encodeChunkSize(BufferPool pool, int length) {
+    HttpResponseEncoder encoder = new HttpResponseEncoder(pool, 16);
+    encoder.ascii(Integer.toHexString(length));
+    encoder.write(CRLF);
+    return encoder.finish();
+  }
+
+  private ByteBuffer finish() {
+    buffer.flip();
+    return buffer;
+  }
+
+  @Override
+  public void write(int b) {
+    ensure(1);
+    buffer.put((byte) b);
+  }
+
+  @Override
+  public void write(byte[] b) {
+    write(b, 0, b.length);
+  }
+
+  @Override
+  public void write(byte[] b, int off, int len) {
+    ensure(len);
+    buffer.put(b, off, len);
+  }
+
+  private void head(Response response, int contentLength, boolean keepAlive, boolean chunked) {
+    Request request = response.getRequest();
+    boolean http10 = HTTP_1_0.equalsIgnoreCase(request.getProtocol());
+    // 状态行
+    statusLine(request.getProtocol(), http10, response.getStatus());
+    // 连接
+    if (!keepAlive || (contentLength < 0 && !chunked)) {
+      write(CONNECTION_CLOSE);
+    } else if (http10 || HttpHeaders.CONNECTION_KEEP_ALIVE
+        .equalsIgnoreCase(request.getHeader(HttpHeaders.CONNECTION))) {
+      write(CONNECTION_KEEP_ALIVE);
+    }
+    if (contentLength >= 0) {
+      write(CONTENT_LENGTH);
+      ascii(Integer.toString(contentLength));
+      write(CRLF);
+    } else if (chunked) {
+      write(TRANSFER_ENCODING_CHUNKED);
+    }
+    boolean hasContentType = false;
+    boolean hasDate = false;
+    for (Map.Entry<String, String> entry : response.getHeaders().entrySet()) {
+      String name = entry.getKey();
+      if (name.equalsIgnoreCase(HttpHeaders.CONNECTION) || name
+          .equalsIgnoreCase(HttpHeaders.CONTENT_LENGTH) || name
+          .equalsIgnoreCase(HttpHeaders.TRANSFER_ENCODING) || entry.getValue() == null) {
+        // 由服务端管理
+        continue;
+      }
+      hasContentType |= name.equalsIgnoreCase(HttpHeaders.CONTENT_TYPE);
+      hasDate |= name.equalsIgnoreCase(HttpHeaders.DATE);
+      header(name, entry.getValue());
+    }
+    if (!hasContentType && response.getContentType() != null) {
+      write(contentType(response.getContentType(), response.getEncoding()));
+    }
+    if (!hasDate) {
+      write(dateLine());
+    }
+    // cookies
+    for (Cookie cookie : response.getCookies().values()) {
+      write(cookie.toBytes());
+      write(CRLF);
+    }
+    write(CRLF);
+  }
+
+  private void statusLine(String protocol, boolean http10, int status) {
+    if (status >= 0 && status < STATUS_LINES_1_1.length) {
+      byte[] line = null;
+      if (http10) {
+        line = STATUS_LINES_1_0[status];
+      } else if (protocol == null || HTTP_1_1.equalsIgnoreCase(protocol)) {
+        line = STATUS_LINES_1_1[status];
+      }
+      if (line != null) {
+        write(line);
+        return;
+      }
+    }
+    string(protocol == null || protocol.isEmpty() ? HTTP_1_1 : protocol);
+    write(' ');
+    ascii(Integer.toString(status));
+    write(' ');
+    ascii(reason(status));
+    write(CRLF);
+  }
+
+  private void header(String name, String value) {
+    byte[] encoded = HEADER_NAMES.get(name);
+    if (encoded != null) {
+      write(encoded);
+    } else {
+      string(name);
+      write(HEADER_SEPARATOR);
+    }
+    string(value);
+    write(CRLF);
+  }
+
+  private void ascii(String value) {
+    int len = value.length();
+    ensure(len);
+    for (int i = 0; i < len; i++) {
+      buffer.put((byte) value.charAt(i));
+    }
+  }
+
+  private void string(String value) {
+    if (value == null) {
+      return;
+    }
+    int len = value.length();
+    for (int i = 0; i < len; i++) {
+      if (value.charAt(i) >= 0x80) {
+        write(value.getBytes(StandardCharsets.UTF_8));
+        return;
+      }
+    }
+    ascii(value);
+  }
+
+  private void ensure(int len) {
+    if (buffer.remaining() >= len) {
+      return;
+    }
+    ByteBuffer larger = pool
+        .acquire(Math.max(buffer.capacity() << 1, buffer.position() + len));
+    buffer.flip();
+    larger.put(buffer);
+    pool.release(buffer);
+    buffer = larger;
+  }
+
+  private static byte[] contentType(String contentType, String encoding) {
+    ContentType key = new ContentType(contentType, encoding);
+    byte[] line = CONTENT_TYPES.get(key);
+    if (line != null) {
+      return line;
+    }
+    String value = contentType;
+    if (!contentType.contains(HttpHeaders.CHARSET)) {
+      value = contentType + Strings.SEMICOLON + HttpHeaders.CHARSET + Strings.EQUAL + encoding;
+    }
+    line = (HttpHeaders.CONTENT_TYPE + ": " + value + CRLF_STR)
+        .getBytes(StandardCharsets.UTF_8);
+    if (CONTENT_TYPES.size() < MAX_CONTENT_TYPES) {
+      CONTENT_TYPES.put(key, line);
+    }
+    return line;
+  }
+
+  private static byte[] dateLine() {
+    DateLine current = dateLine;
+    long second = System.currentTimeMillis() / 1000;
+    if (current.second != second) {
+      String date = DateTimeFormatter.RFC_1123_DATE_TIME
+          .format(ZonedDateTime.ofInstant(Instant.ofEpochSecond(second), ZoneOffset.UTC));
+      current = new DateLine(second, bytes(HttpHeaders.DATE + ": " + date + CRLF_STR));
+      dateLine = current;
+    }
+    return current.line;
+  }
+
+  /**
+   * 状态码对应的原因短语，未登记的状态码按类别返回通用短语
+   */
+  private static String reason(int status) {
+    if (status >= 0 && status < REASONS.length && REASONS[status] != null) {
+      return REASONS[status];
+    }
+    switch (status / 100) {
+      case 1:
+        return "Informational";
+      case 2:
+        return "Success";
+      case 3:
+        return "Redirection";
+      case 4:
+        return "Client Error";
+      case 5:
+        return "Server Error";
+      default:
+        return "Unknown";
+    }
+  }
+
+  private static void status(int status, String reason) {
+    REASONS[status] = reason;
+    STATUS_LINES_1_1[status] = bytes(HTTP_1_1 + " " + status + " " + reason + CRLF_STR);
+    STATUS_LINES_1_0[status] = bytes(HTTP_1_0 + " " + status + " " + reason + CRLF_STR);
+  }
+
+  private static void headerName(String name) {
+    HEADER_NAMES.put(name, bytes(name + ": "));
+  }
+
+  private static byte[] bytes(String value) {
+    return value.getBytes(StandardCharsets.US_ASCII);
+  }
+
+  /**
+   * 每秒生成的Date头
+   */
+  @RequiredArgsConstructor
+  private static class DateLine {
+
+    private final long second;
+    private final byte[] line;
+  }
+
+  /**
+   * content-type缓存key
+   */
+  @EqualsAndHashCode
+  @RequiredArgsConstructor
+  private static class ContentType {
+
+    private final String type;
+    private final String encoding;
+  }
+}
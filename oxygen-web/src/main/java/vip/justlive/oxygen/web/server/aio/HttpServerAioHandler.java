@@ -16,19 +16,20 @@ package vip.justlive.oxygen.web.server.aio;
 
 import java.nio.ByteBuffer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
 import java.util.ArrayList;
-import java.util.LinkedHashMap;
 import java.util.List;
-import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.CompletionStage;
 import lombok.RequiredArgsConstructor;
+import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
-import vip.justlive.oxygen.core.exception.Exceptions;
 import vip.justlive.oxygen.core.net.aio.core.AioHandler;
+import vip.justlive.oxygen.core.net.aio.core.BufferPool;
 import vip.justlive.oxygen.core.net.aio.core.ChannelContext;
 import vip.justlive.oxygen.core.net.http.HttpMethod;
 import vip.justlive.oxygen.core.util.Bytes;
 import vip.justlive.oxygen.core.util.HttpHeaders;
-import vip.justlive.oxygen.core.util.Strings;
 import vip.justlive.oxygen.web.Context;
 import vip.justlive.oxygen.web.http.Request;
 import vip.justlive.oxygen.web.http.Response;
@@ -39,6 +40,9 @@ import vip.justlive.oxygen.web.router.RoutingContextImpl;
 
 /**
  * http aio处理
+ * <p>
+ * 路由挂起时不占用aio线程，连接上后续的请求排队直到挂起的请求输出响应
+ * </p>
  *
  * @author wubo
  */
@@ -46,244 +50,315 @@ import vip.justlive.oxygen.web.router.RoutingContextImpl;
 @RequiredArgsConstructor
 public class HttpServerAioHandler implements AioHandler {
 
+  private static final String PARSER_KEY = "_HTTP_REQUEST_PARSER";
+  private static final String PIPELINE_KEY = "_HTTP_PIPELINE";
+  private static final byte[] CRLF = {Bytes.CR, Bytes.LF};
+  private static final byte[] LAST_CHUNK = "0\r\n\r\n".getBytes(StandardCharsets.US_ASCII);
+
   private final String contextPath;
+  /**
+   * 请求行最大字节数
+   */
+  @Setter
+  private int maxRequestLineSize = 8 * 1024;
+  /**
+   * 请求头最大字节数
+   */
+  @Setter
+  private int maxHeaderSize = 64 * 1024;
+  /**
+   * multipart文件保存在内存的阈值
+   */
+  @Setter
+  private int multipartFileSizeThreshold = 16 * 1024;
+  /**
+   * multipart请求体最大字节数，小于等于0时不限制
+   */
+  @Setter
+  private long multipartMaxSize = -1;
 
   @Override
   public ByteBuffer encode(Object data, ChannelContext channelContext) {
-    Response response = (Response) data;
-    Bytes bytes = new Bytes();
-    // 状态行
-    bytes.write(response.getRequest().getProtocol()).write(Bytes.SPACE)
-        .write(Integer.toString(response.getStatus())).write(Bytes.CR).write(Bytes.LF);
+    List<ByteBuffer> buffers = new ArrayList<>(3);
+    encode(data, channelContext, buffers);
+    if (buffers.size() == 1) {
+      return buffers.get(0);
+    }
+    int size = 0;
+    for (ByteBuffer buffer : buffers) {
+      size += buffer.remaining();
+    }
+    ByteBuffer result = ByteBuffer.allocate(size);
+    for (ByteBuffer buffer : buffers) {
+      result.put(buffer);
+      release(buffer, channelContext);
+    }
+    result.flip();
+    return result;
+  }
 
-    byte[] body = new byte[0];
-    if (response.getOut() != null) {
-      body = response.getOut().toByteArray();
+  @Override
+  public void encode(Object data, ChannelContext channelContext, List<ByteBuffer> out) {
+    BufferPool pool = channelContext.getGroupContext().getBufferPool();
+    if (data instanceof HttpChunk) {
+      encodeChunk((HttpChunk) data, pool, out);
+      return;
     }
+    Response response = (Response) data;
+    HttpResponseEncoder.encode(pool, response, isKeepAlive(response.getRequest()), out);
+  }
+
+  @Override
+  public void release(ByteBuffer buffer, ChannelContext channelContext) {
+    channelContext.getGroupContext().getBufferPool().release(buffer);
+  }
 
-    String connection = response.getRequest().getHeader(HttpHeaders.CONNECTION);
-    if (HttpHeaders.CONNECTION_KEEP_ALIVE.equalsIgnoreCase(connection)) {
-      response.setHeader(HttpHeaders.CONNECTION, HttpHeaders.CONNECTION_KEEP_ALIVE);
+  private void encodeChunk(HttpChunk chunk, BufferPool pool, List<ByteBuffer> out) {
+    Request request = chunk.getResponse().getRequest();
+    boolean chunked = isChunked(request);
+    if (chunk.isHead()) {
+      out.add(HttpResponseEncoder
+          .encodeHead(pool, chunk.getResponse(), isKeepAlive(request), chunked));
+    } else if (chunk.isLast()) {
+      out.add(chunked ? readOnly(LAST_CHUNK, LAST_CHUNK.length) : readOnly(new byte[0], 0));
+    } else if (chunked) {
+      out.add(HttpResponseEncoder.encodeChunkSize(pool, chunk.getLength()));
+      out.add(readOnly(chunk.getData(), chunk.getLength()));
+      out.add(readOnly(CRLF, CRLF.length));
+    } else {
+      out.add(readOnly(chunk.getData(), chunk.getLength()));
     }
-    // content-length
-    response.setHeader(HttpHeaders.CONTENT_LENGTH, Integer.toString(body.length));
-    // content-type
-    if (response.getHeader(HttpHeaders.CONTENT_TYPE) == null && response.getContentType() != null) {
-      String contentType = response.getContentType();
-      if (!contentType.contains(HttpHeaders.CHARSET)) {
-        contentType += Strings.SEMICOLON.concat(HttpHeaders.CHARSET).concat(Strings.EQUAL)
-            .concat(response.getEncoding());
-      }
-      response.setHeader(HttpHeaders.CONTENT_TYPE, contentType);
+  }
+
+  /**
+   * 只读buffer不会被归还到池中
+   */
+  private static ByteBuffer readOnly(byte[] data, int length) {
+    return ByteBuffer.wrap(data, 0, length).asReadOnlyBuffer();
+  }
+
+  /**
+   * 是否保持连接，HTTP/1.1默认保持，HTTP/1.0需显式指定keep-alive
+   *
+   * @param request 请求
+   * @return true为保持连接
+   */
+  static boolean isKeepAlive(Request request) {
+    String connection = request.getHeader(HttpHeaders.CONNECTION);
+    if (HttpResponseEncoder.HTTP_1_0.equalsIgnoreCase(request.getProtocol())) {
+      return HttpHeaders.CONNECTION_KEEP_ALIVE.equalsIgnoreCase(connection);
     }
-    // 响应头
-    response.getHeaders().forEach(
-        (k, v) -> bytes.write(k).write(Bytes.COLON).write(Bytes.SPACE).write(v).write(Bytes.CR)
-            .write(Bytes.LF));
-    // cookies
-    response.getCookies().values()
-        .forEach(cookie -> bytes.write(cookie.toBytes()).write(Bytes.CR).write(Bytes.LF));
+    return !HttpHeaders.CONNECTION_CLOSE.equalsIgnoreCase(connection);
+  }
 
-    bytes.write(Bytes.CR).write(Bytes.LF);
+  /**
+   * 流式响应是否使用chunked编码，HTTP/1.0不支持，直接输出并在结束后关闭连接
+   *
+   * @param request 请求
+   * @return true为chunked编码
+   */
+  static boolean isChunked(Request request) {
+    return !HttpResponseEncoder.HTTP_1_0.equalsIgnoreCase(request.getProtocol());
+  }
 
-    // 响应体
-    if (body.length > 0) {
-      bytes.write(body);
+  /**
+   * 关闭连接上的请求解析器
+   *
+   * @param channelContext channel上下文
+   */
+  static void closeParser(ChannelContext channelContext) {
+    HttpRequestParser parser = (HttpRequestParser) channelContext.getAttrs().remove(PARSER_KEY);
+    if (parser != null) {
+      parser.close();
     }
-    return ByteBuffer.wrap(bytes.toArray());
   }
 
   @Override
   public Object decode(ByteBuffer buffer, int readableSize, ChannelContext channelContext) {
     int index = buffer.position();
-    RequestBuilder builder = parseStatusText(buffer);
-    if (builder == null) {
-      return null;
+    HttpRequestParser parser = (HttpRequestParser) channelContext.getAttrs()
+        .computeIfAbsent(PARSER_KEY,
+            k -> new HttpRequestParser(contextPath, maxRequestLineSize, maxHeaderSize,
+                multipartFileSizeThreshold, multipartMaxSize));
+    Request request = parser.parse(buffer);
+    if (request == null) {
+      // multipart请求体已流式解码的部分不再保留
+      return buffer.position() != index ? AioHandler.CONSUMED : null;
     }
-    if (!builder.requestUri.startsWith(contextPath)) {
-      channelContext.close();
-      throw Exceptions.fail("RequestUri not match contextPath");
+    request.addAttribute(Request.ORIGINAL_REQUEST, channelContext);
+    if (log.isDebugEnabled()) {
+      ByteBuffer received = buffer.duplicate();
+      received.flip().position(index);
+      byte[] bytes = new byte[received.remaining()];
+      received.get(bytes);
+      log.debug("Received Http [{}]", new String(bytes, StandardCharsets.ISO_8859_1));
     }
-    if (parseHeaders(builder, buffer) && parseBody(builder, buffer)) {
-      Request request = builder.build(channelContext);
-      if (log.isDebugEnabled()) {
-        log.debug("Received Http [{}]",
-            new String(buffer.array(), index, buffer.position(), StandardCharsets.ISO_8859_1));
-      }
-      return request;
-    }
-    return null;
+    return request;
   }
 
   @Override
   public void handle(Object data, ChannelContext channelContext) {
     Request request = (Request) data;
+    Pipeline pipeline = (Pipeline) channelContext.getAttrs()
+        .computeIfAbsent(PIPELINE_KEY, k -> new Pipeline());
+    if (!pipeline.enqueue(request)) {
+      dispatch(request, channelContext, pipeline);
+    }
+  }
+
+  /**
+   * 处理请求
+   *
+   * @param request 请求
+   * @param channelContext channel上下文
+   * @param pipeline 连接上的请求队列
+   * @return true为请求已挂起
+   */
+  private boolean dispatch(Request request, ChannelContext channelContext, Pipeline pipeline) {
     Response response = new Response(request);
 
     if (request.getMethod() == HttpMethod.UNKNOWN) {
       response.write("method is not supported");
       channelContext.write(response);
-      return;
+      return false;
+    }
+
+    Object rejected = request.getAttribute(HttpRequestParser.REJECTED_KEY);
+    if (rejected != null) {
+      // 请求已标记Connection: close，响应写出后关闭连接
+      response.setStatus(400);
+      response.write(rejected.toString());
+      channelContext.write(response);
+      return false;
     }
 
+    HttpChunkedOutputStream stream = new HttpChunkedOutputStream(channelContext, response);
+    response.setStreamOut(stream);
     request.local();
     response.local();
     final RoutingContext ctx = new RoutingContextImpl(request, response);
+    boolean suspended = false;
     try {
       Context.parseRequest(request);
       RouteHandler handler = request.getRouteHandler();
       if (handler == null) {
         RouteHandler.notFound(ctx);
-        return;
+        return false;
       }
       if (!Context.invokeBefore(ctx)) {
-        return;
+        return false;
       }
       handler.handle(ctx);
-      for (ResultHandler resultHandler : Context.HANDLERS) {
-        if (resultHandler.support(response.getResult())) {
-          resultHandler.apply(ctx, response.getResult());
-          break;
-        }
+      CompletionStage<?> stage = ctx.suspended();
+      if (stage != null) {
+        // 释放当前线程，完成后回到连接的工作线程输出响应并继续处理排队的请求，
+        // 避免排队的请求在完成线程（如公共ForkJoinPool）上执行
+        suspended = true;
+        pipeline.suspend();
+        stage.whenCompleteAsync((v, e) -> resume(ctx, stream, channelContext, pipeline, e),
+            channelContext.getExecutor());
+        return true;
       }
-      Context.invokeAfter(ctx);
+      handleResult(ctx);
     } catch (Exception e) {
       RouteHandler.error(ctx, e);
     } finally {
-      Context.invokeFinished(ctx);
-      Context.restoreSession(request, response);
-      channelContext.write(response);
+      if (!suspended) {
+        complete(ctx, stream, channelContext);
+      }
       Request.clear();
       Response.clear();
     }
+    return false;
   }
 
-  private RequestBuilder parseStatusText(ByteBuffer buffer) {
-    int position = buffer.position();
-    String method = null;
-    String requestUrl = null;
-    byte[] data;
-    while (buffer.hasRemaining()) {
-      byte b = buffer.get();
-      if (b == ' ') {
-        int curr = buffer.position();
-        data = new byte[curr - position - 1];
-        getData(data, buffer, curr, position);
-        position = curr;
-        String line = new String(data);
-        if (method == null) {
-          method = line;
-        } else if (requestUrl == null) {
-          requestUrl = line;
-        } else {
-          break;
-        }
-      } else if (lineFinished(buffer, b)) {
-        int curr = buffer.position();
-        data = new byte[curr - position - 2];
-        getData(data, buffer, curr, position);
-        return new RequestBuilder(method, requestUrl, new String(data));
+  private void resume(RoutingContext ctx, HttpChunkedOutputStream stream,
+      ChannelContext channelContext, Pipeline pipeline, Throwable throwable) {
+    ctx.request().local();
+    ctx.response().local();
+    try {
+      if (throwable != null) {
+        RouteHandler.asyncError(ctx, throwable);
+      } else {
+        handleResult(ctx);
       }
+    } catch (Exception e) {
+      RouteHandler.error(ctx, e);
+    } finally {
+      complete(ctx, stream, channelContext);
+      Request.clear();
+      Response.clear();
     }
-    return null;
-  }
-
-  private boolean parseHeaders(RequestBuilder builder, ByteBuffer buffer) {
-    if (!buffer.hasRemaining()) {
-      return false;
-    }
-    int position = buffer.position();
-    if (headerFinished(buffer)) {
-      return true;
-    }
-    String name = null;
-    byte[] data;
-    while (buffer.hasRemaining()) {
-      byte b = buffer.get();
-      int curr = buffer.position();
-      if (name == null && b == Bytes.COLON) {
-        data = new byte[curr - position - 1];
-        getData(data, buffer, curr, position);
-        name = new String(data);
-        position = curr;
-      } else if (name != null && lineFinished(buffer, b)) {
-        data = new byte[curr - position - 2];
-        getData(data, buffer, curr, position);
-        builder.addHeader(name, new String(data).trim());
-        name = null;
-        position = curr;
-        if (headerFinished(buffer)) {
-          return true;
-        }
+    Request next;
+    while ((next = pipeline.resume()) != null) {
+      if (dispatch(next, channelContext, pipeline)) {
+        return;
       }
     }
-    return false;
   }
 
-  private boolean parseBody(RequestBuilder builder, ByteBuffer buffer) {
-    String contentLength = builder.getContentLength();
-    if (contentLength != null) {
-      int length = Integer.parseInt(contentLength);
-      if (buffer.remaining() < length) {
-        return false;
-      }
-      if (length == 0) {
-        return true;
+  private void handleResult(RoutingContext ctx) {
+    Response response = ctx.response();
+    for (ResultHandler resultHandler : Context.HANDLERS) {
+      if (resultHandler.support(response.getResult())) {
+        resultHandler.apply(ctx, response.getResult());
+        break;
       }
-      builder.body = new byte[length];
-      buffer.get(builder.body);
-      return true;
     }
-    // 找不到contentLength当没有body处理
-    return true;
+    Context.invokeAfter(ctx);
   }
 
-  private boolean headerFinished(ByteBuffer buffer) {
-    return buffer.get() == Bytes.CR && buffer.hasRemaining() && buffer.get() == Bytes.LF;
-  }
-
-  private boolean lineFinished(ByteBuffer buffer, byte curr) {
-    return curr == Bytes.LF && buffer.get(buffer.position() - 2) == Bytes.CR;
-  }
-
-  private void getData(byte[] data, ByteBuffer buffer, int curr, int index) {
-    buffer.position(index);
-    buffer.get(data);
-    buffer.position(curr);
+  private void complete(RoutingContext ctx, HttpChunkedOutputStream stream,
+      ChannelContext channelContext) {
+    Request request = ctx.request();
+    Response response = ctx.response();
+    Context.invokeFinished(ctx);
+    Context.restoreSession(request, response);
+    if (stream.isCommitted()) {
+      if (response.getOut().size() > 0) {
+        byte[] rest = response.getOut().toByteArray();
+        stream.write(rest, 0, rest.length);
+      }
+      stream.close();
+    } else {
+      channelContext.write(response);
+    }
   }
 
-  @RequiredArgsConstructor
-  private class RequestBuilder {
+  /**
+   * 连接上的请求队列，有请求挂起时后续流水线请求排队等待，保证响应按请求顺序输出
+   */
+  private static class Pipeline {
 
-    final String method;
-    final String requestUri;
-    final String version;
-    final Map<String, List<String>> headers = new LinkedHashMap<>();
-    byte[] body;
+    private final Queue<Request> queue = new ArrayDeque<>();
+    private boolean busy;
 
-    void addHeader(String key, String value) {
-      List<String> values = headers.computeIfAbsent(key, k -> new ArrayList<>(1));
-      if (!values.contains(value)) {
-        values.add(value);
+    /**
+     * 有请求挂起时排队
+     *
+     * @param request 请求
+     * @return true为已排队
+     */
+    synchronized boolean enqueue(Request request) {
+      if (busy) {
+        queue.add(request);
       }
+      return busy;
     }
 
-    String getContentLength() {
-      for (Map.Entry<String, List<String>> entry : headers.entrySet()) {
-        if (entry.getKey().equalsIgnoreCase(HttpHeaders.CONTENT_LENGTH)) {
-          return entry.getValue().get(0);
-        }
-      }
-      return null;
+    synchronized void suspend() {
+      busy = true;
     }
 
-    Request build(ChannelContext channelContext) {
-      Request request = new Request(HttpMethod.find(method), requestUri, version, contextPath,
-          body);
-      String[] arr = new String[0];
-      headers.forEach((k, v) -> request.getHeaders().put(k, v.toArray(arr)));
-      request.addAttribute(Request.ORIGINAL_REQUEST, channelContext);
-      return request;
+    /**
+     * 挂起的请求完成后取出下一个排队的请求，没有时解除挂起
+     *
+     * @return 下一个请求
+     */
+    synchronized Request resume() {
+      Request next = queue.poll();
+      busy = next != null;
+      return next;
     }
   }
-}
\ No newline at end of file
+}
@@ -14,10 +14,10 @@
 
 package vip.justlive.oxygen.web.server.aio;
 
+import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import vip.justlive.oxygen.core.net.aio.core.AioListener;
 import vip.justlive.oxygen.core.net.aio.core.ChannelContext;
-import vip.justlive.oxygen.core.util.HttpHeaders;
 import vip.justlive.oxygen.web.http.Response;
 
 /**
@@ -26,13 +26,42 @@ import vip.justlive.oxygen.web.http.Response;
  * @author wubo
  */
 @Slf4j
+@RequiredArgsConstructor
 public class HttpServerAioListener implements AioListener {
 
+  private final ConnectionTimeoutUpdater timeoutUpdater;
+
+  @Override
+  public void onConnected(ChannelContext channelContext) {
+    timeoutUpdater.watch(channelContext);
+  }
+
+  @Override
+  public void onClosed(ChannelContext channelContext) {
+    HttpServerAioHandler.closeParser(channelContext);
+  }
+
   @Override
   public void onWriteHandled(ChannelContext channelContext, Object data, Throwable throwable) {
-    Response response = (Response) data;
-    if (throwable != null || !HttpHeaders.CONNECTION_KEEP_ALIVE
-        .equalsIgnoreCase(response.getRequest().getHeader(HttpHeaders.CONNECTION))) {
+    if (throwable != null) {
+      channelContext.close();
+      return;
+    }
+    Response response;
+    if (data instanceof HttpChunk) {
+      HttpChunk chunk = (HttpChunk) data;
+      if (!chunk.isLast()) {
+        return;
+      }
+      response = chunk.getResponse();
+      if (!HttpServerAioHandler.isChunked(response.getRequest())) {
+        channelContext.close();
+        return;
+      }
+    } else {
+      response = (Response) data;
+    }
+    if (!HttpServerAioHandler.isKeepAlive(response.getRequest())) {
       channelContext.close();
     }
   }
@@ -14,6 +14,11 @@
 package vip.justlive.oxygen.web.servlet;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.concurrent.CompletionStage;
+import javax.servlet.AsyncContext;
 import javax.servlet.ServletException;
 import javax.servlet.http.HttpServlet;
 import javax.servlet.http.HttpServletRequest;
@@ -60,6 +65,7 @@ public class DispatcherServlet extends HttpServlet {
     final Response response = new Response(request);
     response.local();
     final RoutingContext ctx = new RoutingContextImpl(request, response);
+    boolean suspended = false;
     try {
       Context.parseRequest(request);
       RouteHandler handler = request.getRouteHandler();
@@ -69,20 +75,54 @@ public class DispatcherServlet extends HttpServlet {
       }
       if (Context.invokeBefore(ctx)) {
         handler.handle(ctx);
+        CompletionStage<?> stage = ctx.suspended();
+        if (stage != null) {
+          suspended = true;
+          AsyncContext asyncContext = req.startAsync();
+          stage.whenComplete((v, e) -> resume(ctx, resp, asyncContext, e));
+          return;
+        }
         handleResult(ctx, response.getResult(), resp);
         Context.invokeAfter(ctx);
       }
     } catch (Exception e) {
       RouteHandler.error(ctx, e);
     } finally {
-      Context.invokeFinished(ctx);
-      copyResponse(request, response, resp);
-      copyStream(response, resp);
+      if (!suspended) {
+        complete(ctx, resp);
+      }
+      Request.clear();
+      Response.clear();
+    }
+  }
+
+  private void resume(RoutingContext ctx, HttpServletResponse resp, AsyncContext asyncContext,
+      Throwable throwable) {
+    ctx.request().local();
+    ctx.response().local();
+    try {
+      if (throwable != null) {
+        RouteHandler.asyncError(ctx, throwable);
+      } else {
+        handleResult(ctx, ctx.response().getResult(), resp);
+        Context.invokeAfter(ctx);
+      }
+    } catch (Exception e) {
+      RouteHandler.error(ctx, e);
+    } finally {
+      complete(ctx, resp);
       Request.clear();
       Response.clear();
+      asyncContext.complete();
     }
   }
 
+  private void complete(RoutingContext ctx, HttpServletResponse resp) {
+    Context.invokeFinished(ctx);
+    copyResponse(ctx.request(), ctx.response(), resp);
+    copyStream(ctx.response(), resp);
+  }
+
   private void handleResult(RoutingContext ctx, Result result, HttpServletResponse resp) {
     for (ResultHandler handler : Context.HANDLERS) {
       if (handler.support(result)) {
@@ -121,7 +161,18 @@ public class DispatcherServlet extends HttpServlet {
   }
 
   private void copyStream(Response response, HttpServletResponse resp) {
-    if (response.getOut().size() > 0) {
+    if (response.getBody() != null) {
+      ByteBuffer body = response.getBody().duplicate();
+      resp.setContentLengthLong(body.remaining());
+      try {
+        WritableByteChannel channel = Channels.newChannel(resp.getOutputStream());
+        while (body.hasRemaining()) {
+          channel.write(body);
+        }
+      } catch (IOException e) {
+        log.error("write outputStream error", e);
+      }
+    } else if (response.getOut().size() > 0) {
       try {
         resp.getOutputStream().write(response.getOut().toByteArray());
       } catch (IOException e) {
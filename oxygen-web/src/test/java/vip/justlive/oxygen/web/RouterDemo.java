@@ -14,8 +14,12 @@
 
 package vip.justlive.oxygen.web;
 
+import java.util.concurrent.CompletableFuture;
 import vip.justlive.oxygen.core.net.http.HttpMethod;
+import vip.justlive.oxygen.core.util.ThreadUtils;
+import vip.justlive.oxygen.web.annotation.HeaderParam;
 import vip.justlive.oxygen.web.annotation.Mapping;
+import vip.justlive.oxygen.web.annotation.Param;
 import vip.justlive.oxygen.web.annotation.PathParam;
 import vip.justlive.oxygen.web.annotation.Router;
 import vip.justlive.oxygen.web.router.RoutingContext;
@@ -30,4 +34,18 @@ public class RouterDemo {
   public void id(@PathParam("id") String id, RoutingContext ctx) {
     ctx.response().write(id);
   }
+
+  @Mapping("/sum/{a}")
+  public Integer sum(@PathParam("a") Integer a, @Param(value = "b", defaultValue = "2") int b,
+      @HeaderParam("c") Long c) {
+    return a + b + c.intValue();
+  }
+
+  @Mapping("/async/{a}")
+  public CompletableFuture<Integer> async(@PathParam("a") Integer a) {
+    return CompletableFuture.supplyAsync(() -> {
+      ThreadUtils.sleep(100);
+      return a * 2;
+    });
+  }
 }
@@ -14,11 +14,22 @@
 
 package vip.justlive.oxygen.web;
 
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.stream.IntStream;
 import org.junit.Assert;
 import org.junit.Test;
+import vip.justlive.oxygen.core.exception.Exceptions;
 import vip.justlive.oxygen.core.net.http.HttpMethod;
 import vip.justlive.oxygen.core.net.http.HttpRequest;
 import vip.justlive.oxygen.core.net.http.HttpResponse;
+import vip.justlive.oxygen.core.util.HttpHeaders;
 import vip.justlive.oxygen.core.util.SystemUtils;
 import vip.justlive.oxygen.core.util.ThreadUtils;
 import vip.justlive.oxygen.web.router.Router;
@@ -36,6 +47,26 @@ public class WebTest {
     int port = SystemUtils.findAvailablePort();
 
     Router.router().method(HttpMethod.GET).path("/a").handler(ctx -> ctx.response().write(msg));
+    Router.router().method(HttpMethod.GET).path("/s").handler(ctx -> {
+      try {
+        for (int i = 0; i < 2000; i++) {
+          ctx.response().stream().write(msg.getBytes());
+        }
+      } catch (IOException e) {
+        throw Exceptions.wrap(e);
+      }
+    });
+    Router.router().method(HttpMethod.GET).path("/async").handler(ctx -> ctx
+        .suspend(CompletableFuture.runAsync(() -> ctx.response().write(msg))));
+    Router.router().method(HttpMethod.GET).path("/slow").handler(ctx -> ctx
+        .suspend(CompletableFuture.runAsync(() -> {
+          ThreadUtils.sleep(200);
+          ctx.response().write(msg);
+        }, ThreadUtils.cachedPool())));
+    Router.router().method(HttpMethod.GET).path("/thread")
+        .handler(ctx -> ctx.response().write(Thread.currentThread().getName()));
+    Router.router().method(HttpMethod.GET).path("/rows")
+        .handler(ctx -> ctx.response().jsonStream(IntStream.range(0, 5000).boxed()));
     Server server = Server.server();
     new Thread(() -> server.listen(port)).start();
 
@@ -55,6 +86,75 @@ public class WebTest {
       Assert.fail();
     }
 
+    try (HttpResponse response = HttpRequest.get("http://localhost:" + port + "/b/sum/1")
+        .addHeader("c", "3").execute()) {
+      Assert.assertEquals("6", response.bodyAsString());
+    } catch (Exception e) {
+      e.printStackTrace();
+      Assert.fail();
+    }
+
+    try (HttpResponse response = HttpRequest.get("http://localhost:" + port + "/b/async/21")
+        .execute()) {
+      Assert.assertEquals("42", response.bodyAsString());
+    } catch (Exception e) {
+      e.printStackTrace();
+      Assert.fail();
+    }
+
+    try (HttpResponse response = HttpRequest.get("http://localhost:" + port + "/async")
+        .execute()) {
+      Assert.assertEquals(msg, response.bodyAsString());
+    } catch (Exception e) {
+      e.printStackTrace();
+      Assert.fail();
+    }
+
+    // 挂起请求之后排队的流水线请求不在完成线程上处理
+    try (Socket socket = new Socket("localhost", port)) {
+      socket.setSoTimeout(5000);
+      socket.getOutputStream().write(("GET /slow HTTP/1.1\r\nHost: localhost\r\n\r\n"
+          + "GET /thread HTTP/1.1\r\nHost: localhost\r\nConnection: close\r\n\r\n")
+          .getBytes(StandardCharsets.US_ASCII));
+      ByteArrayOutputStream out = new ByteArrayOutputStream();
+      byte[] buf = new byte[1024];
+      int len;
+      try {
+        while ((len = socket.getInputStream().read(buf)) != -1) {
+          out.write(buf, 0, len);
+        }
+      } catch (SocketTimeoutException e) {
+        // 读取已有内容
+      }
+      String raw = new String(out.toByteArray(), StandardCharsets.US_ASCII);
+      Assert.assertTrue(raw.contains(msg));
+      Assert.assertTrue(raw.lastIndexOf("HTTP/1.1 200") > raw.indexOf(msg));
+      Assert.assertFalse(raw.contains("cached-pool"));
+    } catch (IOException e) {
+      e.printStackTrace();
+      Assert.fail();
+    }
+
+    try (HttpResponse response = HttpRequest.get("http://localhost:" + port + "/s").execute()) {
+      Assert.assertEquals(HttpHeaders.CHUNKED,
+          response.getHeaders().get(HttpHeaders.TRANSFER_ENCODING));
+      Assert.assertEquals(msg.length() * 2000, response.bodyAsString().length());
+    } catch (Exception e) {
+      e.printStackTrace();
+      Assert.fail();
+    }
+
+    try (HttpResponse response = HttpRequest.get("http://localhost:" + port + "/rows").execute()) {
+      Assert.assertEquals(HttpHeaders.CHUNKED,
+          response.getHeaders().get(HttpHeaders.TRANSFER_ENCODING));
+      JSONArray rows = JSON.parseArray(response.bodyAsString());
+      Assert.assertEquals(5000, rows.size());
+      Assert.assertEquals(4999, rows.getIntValue(4999));
+    } catch (Exception e) {
+      e.printStackTrace();
+      Assert.fail();
+    }
+
     server.stop();
 
   }
@@ -0,0 +1,132 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package vip.justlive.oxygen.web.http;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import vip.justlive.oxygen.core.exception.CodedException;
+
+/**
+ * @author wubo
+ */
+public class MultipartDecoderTest {
+
+  private static final String BOUNDARY = "----WebKitFormBoundary7MA4YWxk";
+
+  static byte[] body(byte[] file) {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    String head = "preamble\r\n--" + BOUNDARY + "\r\n"
+        + "Content-Disposition: form-data; name=\"title\"\r\n\r\nhello\r\nworld\r\n--" + BOUNDARY
+        + "\r\nContent-Disposition: form-data; name=\"file\"; filename=\"a.txt\"\r\n"
+        + "Content-Type: text/plain\r\n\r\n";
+    out.write(head.getBytes(StandardCharsets.UTF_8), 0, head.length());
+    out.write(file, 0, file.length);
+    String tail = "\r\n--" + BOUNDARY + "--\r\nepilogue";
+    out.write(tail.getBytes(StandardCharsets.UTF_8), 0, tail.length());
+    return out.toByteArray();
+  }
+
+  static byte[] file(int size) {
+    // 包含分隔符的前缀，验证不会被误判
+    byte[] prefix = ("\r\n--" + BOUNDARY.substring(0, 10)).getBytes(StandardCharsets.UTF_8);
+    byte[] file = new byte[size];
+    for (int i = 0; i < size; i++) {
+      file[i] = i % 1000 < prefix.length ? prefix[i % 1000] : (byte) i;
+    }
+    return file;
+  }
+
+  @Test
+  public void memory() throws IOException {
+    byte[] file = file(3000);
+    byte[] body = body(file);
+    MultipartDecoder decoder = new MultipartDecoder(BOUNDARY.getBytes(StandardCharsets.UTF_8),
+        StandardCharsets.UTF_8, 4096, -1);
+    // 逐字节写入
+    for (byte b : body) {
+      decoder.decode(ByteBuffer.wrap(new byte[]{b}));
+    }
+    Assert.assertTrue(decoder.isFinished());
+    Assert.assertEquals("hello\r\nworld", decoder.getFormData().get("title"));
+    List<MultipartItem> items = decoder.getItems();
+    Assert.assertEquals(1, items.size());
+    MultipartItem item = items.get(0);
+    Assert.assertEquals("file", item.getName());
+    Assert.assertEquals("a.txt", item.getFilename());
+    Assert.assertEquals("txt", item.getExtension());
+    Assert.assertEquals("text/plain", item.getContentType());
+    Assert.assertArrayEquals(file, item.getContent());
+    Assert.assertArrayEquals(file, read(item.getInputStream()));
+    Assert.assertArrayEquals(file, Files.readAllBytes(item.getPath()));
+    Files.delete(item.getPath());
+  }
+
+  @Test
+  public void disk() throws IOException {
+    byte[] file = file(200 * 1024);
+    byte[] body = body(file);
+    MultipartDecoder decoder = new MultipartDecoder(BOUNDARY.getBytes(StandardCharsets.UTF_8),
+        StandardCharsets.UTF_8, 1024, body.length);
+    ByteBuffer buffer = ByteBuffer.wrap(body);
+    while (buffer.hasRemaining()) {
+      ByteBuffer data = buffer.duplicate();
+      data.limit(Math.min(buffer.limit(), buffer.position() + 7777));
+      decoder.decode(data);
+      buffer.position(data.position());
+    }
+    Assert.assertTrue(decoder.isFinished());
+    MultipartItem item = decoder.getItems().get(0);
+    Assert.assertNull(item.getContent());
+    Assert.assertArrayEquals(file, Files.readAllBytes(item.getPath()));
+    decoder.close();
+    Assert.assertFalse(Files.exists(item.getPath()));
+  }
+
+  @Test(expected = CodedException.class)
+  public void tooLarge() {
+    byte[] body = body(file(1024));
+    MultipartDecoder decoder = new MultipartDecoder(BOUNDARY.getBytes(StandardCharsets.UTF_8),
+        StandardCharsets.UTF_8, 1024, body.length - 1);
+    decoder.decode(ByteBuffer.wrap(body));
+  }
+
+  @Test(expected = CodedException.class)
+  public void fieldTooLarge() {
+    String body = "--" + BOUNDARY + "\r\nContent-Disposition: form-data; name=\"title\"\r\n\r\n"
+        + new String(new char[256]).replace('\0', 'x');
+    MultipartDecoder decoder = new MultipartDecoder(BOUNDARY.getBytes(StandardCharsets.UTF_8),
+        StandardCharsets.UTF_8, 32, -1);
+    decoder.decode(ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  private static byte[] read(InputStream in) throws IOException {
+    ByteArrayOutputStream out = new ByteArrayOutputStream();
+    byte[] buf = new byte[1024];
+    int len;
+    while ((len = in.read(buf)) != -1) {
+      out.write(buf, 0, len);
+    }
+    in.close();
+    return out.toByteArray();
+  }
+}
@@ -0,0 +1,87 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package vip.justlive.oxygen.web.router;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.List;
+import org.junit.Assert;
+import org.junit.Test;
+import vip.justlive.oxygen.core.exception.CodedException;
+import vip.justlive.oxygen.core.net.http.HttpMethod;
+
+/**
+ * @author wubo
+ */
+public class RouteTrieTest {
+
+  private final RouteTrie trie = new RouteTrie();
+
+  @Test
+  public void lookup() {
+    Route users = route("/users/{id}", HttpMethod.GET);
+    Route update = route("/users/{id}", HttpMethod.PUT);
+    Route self = route("/users/self", HttpMethod.GET);
+    Route posts = route("/users/{uid}/posts/{pid}", HttpMethod.GET);
+    Route file = route("/files/{name}.txt", HttpMethod.GET);
+    Route root = route("/", HttpMethod.GET);
+    Arrays.asList(users, update, self, posts, file, root).forEach(trie::add);
+
+    List<String> values = new ArrayList<>();
+    Assert.assertSame(self, trie.lookup(HttpMethod.GET, "/users/self", values));
+    Assert.assertTrue(values.isEmpty());
+
+    Assert.assertSame(users, trie.lookup(HttpMethod.GET, "/users/12", values));
+    Assert.assertEquals(Collections.singletonList("12"), values);
+
+    values.clear();
+    Assert.assertSame(update, trie.lookup(HttpMethod.PUT, "/users/self", values));
+    Assert.assertEquals(Collections.singletonList("self"), values);
+
+    values.clear();
+    Assert.assertSame(posts, trie.lookup(HttpMethod.GET, "/users/1/posts/2", values));
+    Assert.assertEquals(Arrays.asList("1", "2"), values);
+
+    values.clear();
+    Assert.assertSame(file, trie.lookup(HttpMethod.GET, "/files/a_b.txt", values));
+    Assert.assertEquals(Collections.singletonList("a_b"), values);
+
+    Assert.assertSame(root, trie.lookup(HttpMethod.GET, "/", new ArrayList<>()));
+    Assert.assertNull(trie.lookup(HttpMethod.GET, "/users/a-b", new ArrayList<>()));
+    Assert.assertNull(trie.lookup(HttpMethod.GET, "/users/", new ArrayList<>()));
+    Assert.assertNull(trie.lookup(HttpMethod.DELETE, "/users/1", new ArrayList<>()));
+    Assert.assertNull(trie.lookup(HttpMethod.GET, "/users/1/posts", new ArrayList<>()));
+
+    Assert.assertEquals(EnumSet.of(HttpMethod.GET, HttpMethod.PUT), trie.allows("/users/1"));
+    Assert.assertEquals(EnumSet.of(HttpMethod.GET), trie.allows("/users/self"));
+    Assert.assertTrue(trie.allows("/none").isEmpty());
+
+    trie.clear();
+    Assert.assertNull(trie.lookup(HttpMethod.GET, "/users/self", new ArrayList<>()));
+  }
+
+  @Test(expected = CodedException.class)
+  public void duplicate() {
+    trie.add(route("/a/{id}", HttpMethod.GET));
+    trie.add(route("/a/{name}", HttpMethod.GET));
+  }
+
+  private Route route(String path, HttpMethod method) {
+    return new Route().path(path).method(method);
+  }
+}
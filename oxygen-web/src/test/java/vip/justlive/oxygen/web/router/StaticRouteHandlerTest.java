@@ -0,0 +1,161 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package vip.justlive.oxygen.web.router;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.zip.GZIPInputStream;
+import org.junit.Assert;
+import org.junit.Test;
+import vip.justlive.oxygen.core.util.FileUtils;
+import vip.justlive.oxygen.core.util.HttpHeaders;
+import vip.justlive.oxygen.core.util.IOUtils;
+import vip.justlive.oxygen.web.http.Request;
+import vip.justlive.oxygen.web.http.Response;
+
+/**
+ * @author wubo
+ */
+public class StaticRouteHandlerTest {
+
+  @Test
+  public void handle() throws IOException {
+    File dir = FileUtils.createTempDir("static-test");
+    byte[] js = new byte[1000];
+    Arrays.fill(js, (byte) 'a');
+    Files.write(new File(dir, "app.js").toPath(), js);
+    byte[] bin = new byte[4096];
+    for (int i = 0; i < bin.length; i++) {
+      bin[i] = (byte) i;
+    }
+    Files.write(new File(dir, "big.bin").toPath(), bin);
+
+    StaticRoute route = new StaticRoute().prefix("/p").location("file:" + dir.getPath())
+        .cachingEnabled(true).hotMaxFileSize(2048);
+    StaticRouteHandler handler = new StaticRouteHandler(route);
+
+    Response response = handle(handler, "/p/app.js", HttpHeaders.ACCEPT_ENCODING, "gzip, br");
+    Assert.assertEquals(200, response.getStatus());
+    Assert.assertEquals("gzip", response.getHeader(HttpHeaders.CONTENT_ENCODING));
+    byte[] gzip = toArray(response.getBody());
+    Assert.assertTrue(gzip.length < js.length);
+    Assert.assertArrayEquals(js,
+        IOUtils.toBytes(new GZIPInputStream(new ByteArrayInputStream(gzip))));
+    String eTag = response.getHeader(HttpHeaders.ETAG);
+
+    response = handle(handler, "/p/app.js", HttpHeaders.IF_NONE_MATCH, eTag);
+    Assert.assertEquals(304, response.getStatus());
+    Assert.assertNull(response.getBody());
+
+    response = handle(handler, "/p/app.js", HttpHeaders.RANGE, "bytes=10-19");
+    Assert.assertEquals(206, response.getStatus());
+    Assert.assertEquals("bytes 10-19/1000", response.getHeader(HttpHeaders.CONTENT_RANGE));
+    Assert.assertEquals(10, response.getBody().remaining());
+
+    response = handle(handler, "/p/app.js", HttpHeaders.RANGE, "bytes=1000-");
+    Assert.assertEquals(416, response.getStatus());
+
+    response = handle(handler, "/p/big.bin", HttpHeaders.RANGE, "bytes=-96");
+    Assert.assertEquals(206, response.getStatus());
+    Assert.assertTrue(response.getBody().isDirect());
+    Assert.assertArrayEquals(Arrays.copyOfRange(bin, 4000, 4096), toArray(response.getBody()));
+
+    response = handle(handler, "/p/big.bin", null, null);
+    Assert.assertNull(response.getHeader(HttpHeaders.CONTENT_ENCODING));
+    Assert.assertArrayEquals(bin, toArray(response.getBody()));
+
+    FileUtils.deleteFile(dir);
+  }
+
+  @Test
+  public void reloadChanged() throws IOException {
+    File dir = FileUtils.createTempDir("static-test");
+    File file = new File(dir, "big.bin");
+    Files.write(file.toPath(), new byte[4096]);
+    StaticRoute route = new StaticRoute().prefix("/p").location("file:" + dir.getPath())
+        .cachingEnabled(true).hotMaxFileSize(1024);
+    StaticRouteHandler handler = new StaticRouteHandler(route);
+
+    Response response = handle(handler, "/p/big.bin", null, null);
+    Assert.assertEquals(4096, response.getBody().remaining());
+    String eTag = response.getHeader(HttpHeaders.ETAG);
+
+    // 原地替换为更小的文件
+    byte[] replaced = new byte[2048];
+    Arrays.fill(replaced, (byte) 1);
+    Files.write(file.toPath(), replaced);
+    Assert.assertTrue(file.setLastModified(file.lastModified() + 2000));
+    response = handle(handler, "/p/big.bin", null, null);
+    Assert.assertNotEquals(eTag, response.getHeader(HttpHeaders.ETAG));
+    Assert.assertArrayEquals(replaced, toArray(response.getBody()));
+
+    FileUtils.deleteFile(dir);
+  }
+
+  @Test
+  public void streamNonFile() throws IOException {
+    StaticRoute route = new StaticRoute().prefix("/p").location("classpath:/org/junit")
+        .cachingEnabled(true).hotMaxFileSize(16);
+    StaticRouteHandler handler = new StaticRouteHandler(route);
+    byte[] expected = IOUtils.toBytes(Test.class.getResourceAsStream("Test.class"));
+
+    Response response = handle(handler, "/p/Test.class", null, null);
+    Assert.assertNull(response.getBody());
+    Assert.assertArrayEquals(expected, response.getOut().toByteArray());
+
+    response = handle(handler, "/p/Test.class", HttpHeaders.RANGE, "bytes=4-11");
+    Assert.assertEquals(206, response.getStatus());
+    Assert.assertArrayEquals(Arrays.copyOfRange(expected, 4, 12),
+        response.getOut().toByteArray());
+  }
+
+  @Test
+  public void parseRange() {
+    Assert.assertArrayEquals(new long[]{0, 99}, StaticRouteHandler.parseRange("bytes=0-", 100));
+    Assert.assertArrayEquals(new long[]{90, 99},
+        StaticRouteHandler.parseRange("bytes=90-200", 100));
+    Assert.assertArrayEquals(new long[]{0, 99}, StaticRouteHandler.parseRange("bytes=-200", 100));
+    Assert.assertEquals(0, StaticRouteHandler.parseRange("bytes=100-", 100).length);
+    Assert.assertNull(StaticRouteHandler.parseRange("bytes=0-1,5-6", 100));
+    Assert.assertNull(StaticRouteHandler.parseRange("items=0-1", 100));
+    Assert.assertNull(StaticRouteHandler.parseRange("bytes=5-1", 100));
+  }
+
+  private Response handle(StaticRouteHandler handler, String path, String header, String value) {
+    Request request = new Request(null, path, "HTTP/1.1", "", null) {
+      @Override
+      public String getPath() {
+        return path;
+      }
+    };
+    if (header != null) {
+      request.getHeaders().put(header, new String[]{value});
+    }
+    Response response = new Response(request);
+    handler.handle(new RoutingContextImpl(request, response));
+    return response;
+  }
+
+  private byte[] toArray(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.duplicate().get(bytes);
+    return bytes;
+  }
+}
@@ -0,0 +1,47 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package vip.justlive.oxygen.web.server.aio;
+
+import java.nio.channels.AsynchronousSocketChannel;
+import org.junit.Assert;
+import org.junit.Test;
+import vip.justlive.oxygen.core.net.aio.core.ChannelContext;
+import vip.justlive.oxygen.core.net.aio.core.GroupContext;
+import vip.justlive.oxygen.core.util.ThreadUtils;
+
+/**
+ * @author wubo
+ */
+public class ConnectionTimeoutUpdaterTest {
+
+  @Test
+  public void requestTimeoutShorterThanIdle() throws Exception {
+    GroupContext groupContext = new GroupContext(null).setTimerTick(10);
+    ChannelContext channelContext = new ChannelContext(groupContext,
+        AsynchronousSocketChannel.open());
+    new ConnectionTimeoutUpdater(5000, 200).watch(channelContext);
+
+    ThreadUtils.sleep(100);
+    // 收到请求但一直未响应
+    channelContext.setLastReceivedAt(System.currentTimeMillis());
+    long start = System.currentTimeMillis();
+    while (!channelContext.isClosed() && System.currentTimeMillis() - start < 3000) {
+      ThreadUtils.sleep(10);
+    }
+    Assert.assertTrue(channelContext.isClosed());
+    Assert.assertTrue(System.currentTimeMillis() - start < 1000);
+    groupContext.getTimingWheel().stop();
+  }
+}
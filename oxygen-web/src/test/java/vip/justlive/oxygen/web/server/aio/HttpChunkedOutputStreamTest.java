@@ -0,0 +1,64 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package vip.justlive.oxygen.web.server.aio;
+
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import org.junit.Assert;
+import org.junit.Test;
+import vip.justlive.oxygen.core.exception.CodedException;
+import vip.justlive.oxygen.core.net.aio.core.ChannelContext;
+import vip.justlive.oxygen.core.net.aio.core.Client;
+import vip.justlive.oxygen.core.net.aio.core.ExecutionMode;
+import vip.justlive.oxygen.core.net.aio.core.GroupContext;
+import vip.justlive.oxygen.core.net.http.HttpMethod;
+import vip.justlive.oxygen.core.util.SystemUtils;
+import vip.justlive.oxygen.web.http.Request;
+import vip.justlive.oxygen.web.http.Response;
+
+/**
+ * @author wubo
+ */
+public class HttpChunkedOutputStreamTest {
+
+  @Test
+  public void eventLoopBounded() throws Exception {
+    int port = SystemUtils.findAvailablePort();
+    try (ServerSocket serverSocket = new ServerSocket(port)) {
+      GroupContext group = new GroupContext(new HttpServerAioHandler(""))
+          .setExecutionMode(ExecutionMode.EVENT_LOOP);
+      Client client = new Client(group);
+      client.connect(new InetSocketAddress("localhost", port));
+      try (Socket ignore = serverSocket.accept()) {
+        ChannelContext channelContext = client.getChannelContext();
+        Response response = new Response(new Request(HttpMethod.GET, "/", "HTTP/1.1", "", null));
+        HttpChunkedOutputStream out = new HttpChunkedOutputStream(channelContext, response);
+        // 对端不读取，超出水位后失败而不是无限堆积
+        byte[] data = new byte[64 * 1024];
+        try {
+          for (int i = 0; i < 1024; i++) {
+            out.write(data, 0, data.length);
+          }
+          Assert.fail();
+        } catch (CodedException e) {
+          Assert.assertTrue(channelContext.isClosed());
+        }
+      } finally {
+        client.close();
+      }
+    }
+  }
+}
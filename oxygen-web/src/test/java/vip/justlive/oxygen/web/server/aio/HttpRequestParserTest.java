@@ -0,0 +1,198 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+package vip.justlive.oxygen.web.server.aio;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.Assert;
+import org.junit.Test;
+import vip.justlive.oxygen.core.exception.CodedException;
+import vip.justlive.oxygen.core.net.http.HttpMethod;
+import vip.justlive.oxygen.core.util.HttpHeaders;
+import vip.justlive.oxygen.web.http.MultipartDecoder;
+import vip.justlive.oxygen.web.http.Request;
+
+/**
+ * @author wubo
+ */
+public class HttpRequestParserTest {
+
+  private static final String POST = "POST /ctx/a?x=1 HTTP/1.1\r\nHost: localhost\r\n"
+      + "content-length: 5\r\nX-Custom:  v1 \r\nX-Custom: v2\r\n\r\nhello";
+  private static final String GET = "GET /ctx/b HTTP/1.1\r\nConnection: keep-alive\r\n\r\n";
+
+  @Test
+  public void incremental() {
+    HttpRequestParser parser = new HttpRequestParser("/ctx", 1024, 1024);
+    byte[] bytes = (POST + GET).getBytes(StandardCharsets.UTF_8);
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    Request request = null;
+    int limit = 0;
+    while (request == null) {
+      buffer.limit(++limit);
+      request = parser.parse(buffer);
+      if (request == null) {
+        Assert.assertEquals(0, buffer.position());
+      }
+    }
+    Assert.assertEquals(POST.length(), limit);
+    Assert.assertEquals(POST.length(), buffer.position());
+    Assert.assertEquals(HttpMethod.POST, request.getMethod());
+    Assert.assertEquals("/ctx/a?x=1", request.getRequestUri());
+    Assert.assertEquals("HTTP/1.1", request.getProtocol());
+    Assert.assertEquals("hello", new String(request.getBody(), StandardCharsets.UTF_8));
+    Assert.assertEquals("localhost", request.getHeader(HttpHeaders.HOST_NAME));
+    Assert.assertEquals("5", request.getHeader("Content-Length"));
+    Assert.assertArrayEquals(new String[]{"v1", "v2"}, request.getHeaders("x-custom"));
+
+    buffer.limit(bytes.length);
+    request = parser.parse(buffer);
+    Assert.assertNotNull(request);
+    Assert.assertEquals(HttpMethod.GET, request.getMethod());
+    Assert.assertNull(request.getBody());
+    Assert.assertEquals("keep-alive", request.getHeader(HttpHeaders.CONNECTION));
+    Assert.assertFalse(buffer.hasRemaining());
+  }
+
+  @Test
+  public void chunked() {
+    String chunked = "POST /c HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\n"
+        + "5;ext=1\r\nhello\r\nB\r\n, pipelined\r\n0\r\nX-Trailer: t\r\n\r\n";
+    HttpRequestParser parser = new HttpRequestParser("", 1024, 1024);
+    byte[] bytes = (chunked + GET).getBytes(StandardCharsets.UTF_8);
+    ByteBuffer buffer = ByteBuffer.wrap(bytes);
+    Request request = null;
+    int limit = 0;
+    while (request == null) {
+      buffer.limit(++limit);
+      request = parser.parse(buffer);
+    }
+    Assert.assertEquals(chunked.length(), buffer.position());
+    Assert.assertEquals("hello, pipelined",
+        new String(request.getBody(), StandardCharsets.UTF_8));
+
+    buffer.limit(bytes.length);
+    request = parser.parse(buffer);
+    Assert.assertNotNull(request);
+    Assert.assertEquals("/ctx/b", request.getRequestUri());
+    Assert.assertFalse(buffer.hasRemaining());
+  }
+
+  @Test
+  public void multipart() {
+    String body = "--xyz\r\nContent-Disposition: form-data; name=\"a\"\r\n\r\n1\r\n"
+        + "--xyz\r\nContent-Disposition: form-data; name=\"f\"; filename=\"f.txt\"\r\n\r\n"
+        + "file content\r\n--xyz--\r\n";
+    String multipart = "POST /m HTTP/1.1\r\nContent-Type: multipart/form-data; boundary=xyz\r\n"
+        + "Content-Length: " + body.length() + "\r\n\r\n" + body;
+    HttpRequestParser parser = new HttpRequestParser("", 1024, 1024, 4, -1);
+    ByteBuffer buffer = ByteBuffer.wrap((multipart + GET).getBytes(StandardCharsets.UTF_8));
+    Request request = null;
+    int limit = 0;
+    while (request == null) {
+      buffer.limit(++limit);
+      request = parser.parse(buffer);
+    }
+    // 请求体不缓存，已解码部分推进position
+    Assert.assertEquals(multipart.length(), buffer.position());
+    Assert.assertNull(request.getBody());
+    Assert.assertEquals("/m", request.getRequestUri());
+    MultipartDecoder decoder = (MultipartDecoder) request
+        .getAttribute(MultipartDecoder.DECODER_KEY);
+    Assert.assertTrue(decoder.isFinished());
+    Assert.assertEquals("1", decoder.getFormData().get("a"));
+    Assert.assertEquals("f.txt", decoder.getItems().get(0).getFilename());
+    decoder.close();
+
+    buffer.limit(buffer.capacity());
+    request = parser.parse(buffer);
+    Assert.assertEquals("/ctx/b", request.getRequestUri());
+    Assert.assertFalse(buffer.hasRemaining());
+  }
+
+  @Test
+  public void incompleteMultipart() {
+    // 缺少结束分隔符
+    String body = "--xyz\r\nContent-Disposition: form-data; name=\"a\"\r\n\r\n1\r\n";
+    String multipart = "POST /m HTTP/1.1\r\nContent-Type: multipart/form-data; boundary=xyz\r\n"
+        + "Content-Length: " + body.length() + "\r\n\r\n" + body;
+    HttpRequestParser parser = new HttpRequestParser("", 1024, 1024);
+    ByteBuffer buffer = ByteBuffer.wrap((multipart + GET).getBytes(StandardCharsets.UTF_8));
+    Request request = parser.parse(buffer);
+    Assert.assertNotNull(request);
+    Assert.assertNull(request.getAttribute(MultipartDecoder.DECODER_KEY));
+    Assert.assertNotNull(request.getAttribute(HttpRequestParser.REJECTED_KEY));
+    Assert.assertEquals("/ctx/b", parser.parse(buffer).getRequestUri());
+  }
+
+  @Test(expected = CodedException.class)
+  public void illegalChunkSize() {
+    HttpRequestParser parser = new HttpRequestParser("", 1024, 1024);
+    parser.parse(ByteBuffer.wrap(
+        "POST /c HTTP/1.1\r\nTransfer-Encoding: chunked\r\n\r\nzz\r\n"
+            .getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test(expected = CodedException.class)
+  public void headerTooLarge() {
+    HttpRequestParser parser = new HttpRequestParser("", 1024, 16);
+    parser.parse(ByteBuffer.wrap(POST.getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test(expected = CodedException.class)
+  public void requestLineTooLarge() {
+    HttpRequestParser parser = new HttpRequestParser("", 8, 1024);
+    parser.parse(ByteBuffer.wrap("GET /aaaaaaaaaaaaaaaaaaaaaaa".getBytes(StandardCharsets.UTF_8)));
+  }
+
+  @Test
+  public void duplicateContentLength() {
+    HttpRequestParser parser = new HttpRequestParser("", 1024, 1024);
+    // 重复且相同的Content-Length可以接受
+    Request request = parser.parse(ByteBuffer.wrap(
+        "POST /a HTTP/1.1\r\nContent-Length: 2\r\nContent-Length: 2\r\n\r\nok"
+            .getBytes(StandardCharsets.UTF_8)));
+    Assert.assertNotNull(request);
+    Assert.assertNull(request.getAttribute(HttpRequestParser.REJECTED_KEY));
+    Assert.assertEquals("ok", new String(request.getBody(), StandardCharsets.UTF_8));
+
+    ByteBuffer buffer = ByteBuffer.wrap(
+        ("POST /a HTTP/1.1\r\nContent-Length: 2\r\nContent-Length: 7\r\n\r\nok" + GET)
+            .getBytes(StandardCharsets.UTF_8));
+    request = parser.parse(buffer);
+    assertRejected(request, buffer);
+    // 后续数据被丢弃
+    buffer = ByteBuffer.wrap(GET.getBytes(StandardCharsets.UTF_8));
+    Assert.assertNull(parser.parse(buffer));
+    Assert.assertFalse(buffer.hasRemaining());
+  }
+
+  @Test
+  public void contentLengthWithChunked() {
+    HttpRequestParser parser = new HttpRequestParser("", 1024, 1024);
+    ByteBuffer buffer = ByteBuffer.wrap(
+        ("POST /a HTTP/1.1\r\nTransfer-Encoding: chunked\r\nContent-Length: 4\r\n\r\n"
+            + "0\r\n\r\n" + GET).getBytes(StandardCharsets.UTF_8));
+    assertRejected(parser.parse(buffer), buffer);
+  }
+
+  private static void assertRejected(Request request, ByteBuffer buffer) {
+    Assert.assertNotNull(request);
+    Assert.assertNotNull(request.getAttribute(HttpRequestParser.REJECTED_KEY));
+    Assert.assertEquals(HttpHeaders.CONNECTION_CLOSE, request.getHeader(HttpHeaders.CONNECTION));
+    Assert.assertFalse(HttpServerAioHandler.isKeepAlive(request));
+    Assert.assertFalse(buffer.hasRemaining());
+  }
+}
@@ -0,0 +1,116 @@
+/*
+ * Copyright (C) 2019 the original author or authors.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License"); you may not use this file except
+ * in compliance with the License. You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software distributed under the License
+ * is distributed on an "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express
+ * or implied. See the License for the specific language governing permissions and limitations under
+ * the License.
+ */
+
+
+package vip.justlive.oxygen.web.server.aio;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.Assert;
+import org.junit.Test;
+import vip.justlive.oxygen.core.net.aio.core.BufferPool;
+import vip.justlive.oxygen.core.net.aio.core.PooledBufferPool;
+import vip.justlive.oxygen.core.util.HttpHeaders;
+import vip.justlive.oxygen.web.http.Request;
+import vip.justlive.oxygen.web.http.Response;
+
+/**
+ * @author wubo
+ */
+public class HttpResponseEncoderTest {
+
+  private final BufferPool pool = new PooledBufferPool(false);
+
+  @Test
+  public void encode() {
+    Response response = new Response(request("HTTP/1.1", null));
+    response.setContentType(HttpHeaders.APPLICATION_JSON);
+    response.setHeader("X-Custom", "值");
+    response.setHeader(HttpHeaders.CONTENT_LENGTH, "999");
+    response.write("{\"a\":1}");
+
+    ByteBuffer buffer = HttpResponseEncoder.encode(pool, response, true);
+    String text = new String(toArray(buffer), StandardCharsets.UTF_8);
+    pool.release(buffer);
+
+    Assert.assertTrue(text.startsWith("HTTP/1.1 200 OK\r\n"));
+    Assert.assertTrue(text.contains("Content-length: 7\r\n"));
+    Assert.assertFalse(text.contains("999"));
+    Assert.assertFalse(text.contains(HttpHeaders.CONNECTION));
+    Assert.assertTrue(text.contains("Content-Type: application/json;charset=UTF-8\r\n"));
+    Assert.assertTrue(text.contains("X-Custom: 值\r\n"));
+    Assert.assertTrue(text.contains("\r\nDate: "));
+    Assert.assertTrue(text.endsWith("\r\n\r\n{\"a\":1}"));
+  }
+
+  @Test
+  public void large() {
+    Response response = new Response(request("HTTP/1.0", HttpHeaders.CONNECTION_KEEP_ALIVE));
+    response.setStatus(599);
+    byte[] body = new byte[4096];
+    response.getOut().write(body, 0, body.length);
+
+    ByteBuffer buffer = HttpResponseEncoder.encode(pool, response, true);
+    byte[] bytes = toArray(buffer);
+    pool.release(buffer);
+
+    String text = new String(bytes, StandardCharsets.ISO_8859_1);
+    Assert.assertTrue(text.startsWith("HTTP/1.0 599 Server Error\r\n"));
+    Assert.assertTrue(text.contains("Connection: keep-alive\r\n"));
+    Assert.assertEquals(text.indexOf("\r\n\r\n") + 4 + body.length, bytes.length);
+  }
+
+  @Test
+  public void head() {
+    Response response = new Response(request("HTTP/1.1", null));
+    response.setStatus(404);
+    ByteBuffer buffer = HttpResponseEncoder.encodeHead(pool, response, true, true);
+    String text = new String(toArray(buffer), StandardCharsets.ISO_8859_1);
+    Assert.assertTrue(text.startsWith("HTTP/1.1 404 Not Found\r\n"));
+    Assert.assertTrue(text.contains("Transfer-Encoding: chunked\r\n"));
+
+    buffer = HttpResponseEncoder.encodeHead(pool, response, true, false);
+    text = new String(toArray(buffer), StandardCharsets.ISO_8859_1);
+    Assert.assertTrue(text.contains("Connection: close\r\n"));
+  }
+
+  @Test
+  public void statusLine() {
+    Response response = new Response(request(null, null));
+    response.setStatus(299);
+    ByteBuffer buffer = HttpResponseEncoder.encodeHead(pool, response, true, true);
+    String text = new String(toArray(buffer), StandardCharsets.ISO_8859_1);
+    Assert.assertTrue(text.startsWith("HTTP/1.1 299 Success\r\n"));
+
+    response = new Response(request("HTTP/2.0", null));
+    response.setStatus(404);
+    buffer = HttpResponseEncoder.encodeHead(pool, response, true, true);
+    text = new String(toArray(buffer), StandardCharsets.ISO_8859_1);
+    Assert.assertTrue(text.startsWith("HTTP/2.0 404 Not Found\r\n"));
+  }
+
+  private Request request(String protocol, String connection) {
+    Request request = new Request(null, "/", protocol, "", null);
+    if (connection != null) {
+      request.getHeaders().put(HttpHeaders.CONNECTION, new String[]{connection});
+    }
+    return request;
+  }
+
+  private byte[] toArray(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return bytes;
+  }
+}